@@ -35,6 +35,7 @@
 package org.xipki.pki.ca.api.publisher.x509;
 
 import java.security.cert.X509CRL;
+import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
@@ -73,6 +74,27 @@ public abstract class X509CertPublisher {
 
     public abstract boolean certificateAdded(@Nonnull X509CertificateInfo certInfo);
 
+    /**
+     * Publishes several certificates. The default implementation calls
+     * {@link #certificateAdded(X509CertificateInfo)} for each certificate and stops at the
+     * first failure. Publishers which can store several certificates at once should overwrite
+     * this method.
+     *
+     * @param certInfos certificates to be published
+     * @return number of the certificates, counted from the beginning of the list, which have
+     *         been published successfully.
+     */
+    public int certificatesAdded(@Nonnull final List<X509CertificateInfo> certInfos) {
+        int num = 0;
+        for (X509CertificateInfo certInfo : certInfos) {
+            if (!certificateAdded(certInfo)) {
+                break;
+            }
+            num++;
+        }
+        return num;
+    }
+
     public abstract boolean certificateRevoked(@Nonnull X509Cert caCert,
             @Nonnull X509CertWithDbId cert, @Nullable String certprofile,
             @Nonnull CertRevocationInfo revInfo);
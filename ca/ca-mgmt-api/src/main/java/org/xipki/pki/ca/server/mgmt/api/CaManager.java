@@ -65,6 +65,21 @@ public interface CaManager {
 
     CaSystemStatus getCaSystemStatus();
 
+    /**
+     * Returns the status of the worker pools and the periodic jobs of the CA system.
+     *
+     * @return the status, {@code null} if the CA system is not started.
+     */
+    String getJobSchedulerStatus();
+
+    /**
+     * Returns, per CA, how many issued certificates have been verified against the CA public
+     * key, how many verifications have been skipped and how many have failed.
+     *
+     * @return the status, {@code null} if the CA system is not started.
+     */
+    String getCertVerificationStatus();
+
     boolean unlockCa();
 
     boolean notifyCaChange() throws CaMgmtException;
@@ -0,0 +1,184 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.mgmt.api.x509;
+
+import org.xipki.commons.common.ConfPairs;
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * Controls which issued certificates are verified against the CA public key before they are
+ * saved. The first {@code newSignerCerts} certificates issued after the CA signer has been
+ * initialized are verified in all modes except never.
+ *
+ * Example configuration
+ *<pre>
+ * verifyCerts.mode=&lt;always|sample|hsmOrNewSigner|never&gt;, \
+ *   [verifyCerts.sampleRate=&lt;N&gt;,\
+ *    verifyCerts.newSignerCerts=&lt;number of certificates&gt;]
+ *</pre>
+ * where in mode sample 1 of N certificates is verified.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CertVerificationControl {
+
+    public enum Mode {
+
+        /**
+         * Verify all certificates.
+         */
+        ALWAYS("always"),
+
+        /**
+         * Verify 1 of N certificates.
+         */
+        SAMPLE("sample"),
+
+        /**
+         * Verify all certificates if the CA key is in an HSM (PKCS#11).
+         */
+        HSM_OR_NEW_SIGNER("hsmOrNewSigner"),
+
+        /**
+         * Verify no certificate.
+         */
+        NEVER("never");
+
+        private final String text;
+
+        Mode(final String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public static Mode forText(final String text) {
+            ParamUtil.requireNonNull("text", text);
+            for (Mode m : values()) {
+                if (m.text.equalsIgnoreCase(text) || m.name().equalsIgnoreCase(text)) {
+                    return m;
+                }
+            }
+            throw new IllegalArgumentException("invalid Mode " + text);
+        }
+
+    } // enum Mode
+
+    public static final String KEY_MODE = "verifyCerts.mode";
+
+    public static final String KEY_SAMPLE_RATE = "verifyCerts.sampleRate";
+
+    public static final String KEY_NEW_SIGNER_CERTS = "verifyCerts.newSignerCerts";
+
+    public static final int DFLT_SAMPLE_RATE = 100;
+
+    public static final int DFLT_NEW_SIGNER_CERTS = 100;
+
+    private final Mode mode;
+
+    private final int sampleRate;
+
+    private final int newSignerCerts;
+
+    public CertVerificationControl(final Mode mode, final int sampleRate,
+            final int newSignerCerts) {
+        this.mode = ParamUtil.requireNonNull("mode", mode);
+        this.sampleRate = ParamUtil.requireMin("sampleRate", sampleRate, 1);
+        this.newSignerCerts = ParamUtil.requireMin("newSignerCerts", newSignerCerts, 0);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getNewSignerCerts() {
+        return newSignerCerts;
+    }
+
+    /**
+     * Decides whether a certificate must be verified.
+     * @param certIndex 1-based index of the certificate issued since the signer is initialized.
+     * @param hsmSigner whether the CA key is in an HSM.
+     * @return whether the certificate must be verified.
+     */
+    public boolean isVerificationRequired(final long certIndex, final boolean hsmSigner) {
+        switch (mode) {
+        case ALWAYS:
+            return true;
+        case NEVER:
+            return false;
+        case SAMPLE:
+            return certIndex <= newSignerCerts || certIndex % sampleRate == 0;
+        case HSM_OR_NEW_SIGNER:
+            return hsmSigner || certIndex <= newSignerCerts;
+        default:
+            throw new RuntimeException("should not reach here, unknown Mode " + mode);
+        }
+    }
+
+    @Override
+    public String toString() {
+        ConfPairs pairs = new ConfPairs();
+        pairs.putPair(KEY_MODE, mode.getText());
+        pairs.putPair(KEY_SAMPLE_RATE, Integer.toString(sampleRate));
+        pairs.putPair(KEY_NEW_SIGNER_CERTS, Integer.toString(newSignerCerts));
+        return pairs.getEncoded();
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof CertVerificationControl)) {
+            return false;
+        }
+
+        CertVerificationControl obj2 = (CertVerificationControl) obj;
+        return mode == obj2.mode && sampleRate == obj2.sampleRate
+                && newSignerCerts == obj2.newSignerCerts;
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.pki.ca.api.OperationException;
+import org.xipki.pki.ca.api.OperationException.ErrorCode;
+
+/**
+ * Generates the certificates of one request. If an executor is given, the templates are
+ * granted and the certificates are generated in parallel. If more than one certificate is
+ * requested, the certificates are saved in one batch after all of them have been generated.
+ *
+ * @param <T> type of the requested template.
+ * @param <G> type of the granted template.
+ * @param <C> type of the generated certificate.
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+abstract class BatchEnrollment<T, G, C> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchEnrollment.class);
+
+    abstract G grant(T template) throws OperationException;
+
+    /**
+     * Generates the certificate. If {@code deferStore} is {@code true}, the certificate is not
+     * saved and the in-process markers of the granted template are kept until
+     * {@link #release(Object)} is called.
+     */
+    abstract C generate(G granted, boolean deferStore) throws OperationException;
+
+    /**
+     * Saves the certificates generated with deferred store.
+     */
+    abstract void store(List<C> certs) throws OperationException;
+
+    /**
+     * Releases the in-process markers of the granted template.
+     */
+    abstract void release(G granted);
+
+    /**
+     * Reverts the certificates which have been saved before the generation of another one
+     * failed.
+     */
+    abstract void revert(List<C> certs, OperationExceptionWithIndex exception);
+
+    /**
+     * @param templates templates of the request. Must not be {@code null} or empty.
+     * @param executor executor to generate the certificates in parallel, {@code null} to
+     *          generate them sequentially.
+     * @return the generated certificates in the order of the templates.
+     */
+    List<C> execute(final List<T> templates, final ExecutorService executor)
+    throws OperationExceptionWithIndex {
+        ParamUtil.requireNonEmpty("templates", templates);
+        final int n = templates.size();
+        List<G> grantedList = new ArrayList<>(n);
+
+        if (executor == null) {
+            for (int i = 0; i < n; i++) {
+                try {
+                    grantedList.add(grant(templates.get(i)));
+                } catch (OperationException ex) {
+                    throw new OperationExceptionWithIndex(i, ex);
+                }
+            }
+        } else {
+            List<Callable<G>> tasks = new ArrayList<>(n);
+            for (T template : templates) {
+                tasks.add(() -> grant(template));
+            }
+
+            OperationExceptionWithIndex exception = executeInParallel(executor, tasks,
+                    grantedList);
+            if (exception != null) {
+                throw exception;
+            }
+        }
+
+        List<C> certs = new ArrayList<>(n);
+        OperationExceptionWithIndex exception = null;
+
+        // several certificates are saved in the CA certstore in one transaction
+        final boolean batchStore = n > 1;
+        try {
+            generate(grantedList, certs, batchStore ? executor : null, batchStore);
+        } catch (OperationExceptionWithIndex ex) {
+            exception = ex;
+        } finally {
+            if (batchStore) {
+                // release the markers held by the successfully generated certificates
+                for (int i = 0; i < certs.size(); i++) {
+                    if (certs.get(i) != null) {
+                        release(grantedList.get(i));
+                    }
+                }
+            }
+        }
+
+        if (exception != null) {
+            if (batchStore) {
+                // none of the generated certificates has been saved
+                LOG.error("could not generate certificate for request[{}]",
+                        exception.getIndex());
+            } else {
+                revert(certs, exception);
+            }
+
+            LogUtil.warn(LOG, exception);
+            throw exception;
+        }
+
+        return certs;
+    } // method execute
+
+    private void generate(final List<G> grantedList, final List<C> certs,
+            final ExecutorService executor, final boolean batchStore)
+    throws OperationExceptionWithIndex {
+        final int n = grantedList.size();
+        OperationExceptionWithIndex exception = null;
+
+        // in parallel mode the certificates are always stored in one batch, hence no generated
+        // certificate has to be reverted if the generation of another one fails.
+        if (executor == null) {
+            for (int i = 0; i < n; i++) {
+                try {
+                    certs.add(generate(grantedList.get(i), batchStore));
+                } catch (OperationException ex) {
+                    exception = new OperationExceptionWithIndex(i, ex);
+                    break;
+                }
+            }
+        } else {
+            List<Callable<C>> tasks = new ArrayList<>(n);
+            for (G granted : grantedList) {
+                tasks.add(() -> generate(granted, batchStore));
+            }
+            exception = executeInParallel(executor, tasks, certs);
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+
+        if (batchStore) {
+            try {
+                store(certs);
+            } catch (OperationException ex) {
+                throw new OperationExceptionWithIndex(0, ex);
+            }
+        }
+    } // method generate
+
+    /**
+     * Executes the tasks in the given executor and waits until all of them are finished. Tasks
+     * rejected by the executor, e.g. because it has been shut down meanwhile, are executed in
+     * the calling thread.
+     * @param executor executor to execute the tasks.
+     * @param tasks tasks to be executed.
+     * @param results list to which the result of each task, or {@code null} if it failed, is
+     *          added in the order of the tasks.
+     * @return exception of the failed task with the lowest index, or {@code null} if all tasks
+     *          were successful.
+     */
+    static <R> OperationExceptionWithIndex executeInParallel(final ExecutorService executor,
+            final List<Callable<R>> tasks, final List<R> results) {
+        List<Future<R>> futures = new ArrayList<>(tasks.size());
+        boolean rejected = false;
+        for (Callable<R> task : tasks) {
+            Future<R> future = null;
+            if (!rejected) {
+                try {
+                    future = executor.submit(task);
+                } catch (RejectedExecutionException ex) {
+                    LOG.warn("enrollment executor rejected task, execute remaining {} tasks"
+                            + " sequentially", tasks.size() - futures.size());
+                    rejected = true;
+                }
+            }
+
+            if (future == null) {
+                FutureTask<R> inlineTask = new FutureTask<>(task);
+                inlineTask.run();
+                future = inlineTask;
+            }
+            futures.add(future);
+        }
+
+        OperationExceptionWithIndex exception = null;
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++) {
+            R result = null;
+            // all tasks must be finished, since the successful ones hold in-process markers
+            while (true) {
+                try {
+                    result = futures.get(i).get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (exception == null) {
+                        Throwable cause = ex.getCause();
+                        OperationException opEx = (cause instanceof OperationException)
+                                ? (OperationException) cause
+                                : new OperationException(ErrorCode.SYSTEM_FAILURE, cause);
+                        exception = new OperationExceptionWithIndex(i, opEx);
+                    }
+                    break;
+                }
+            }
+            results.add(result);
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return exception;
+    } // method executeInParallel
+
+}
@@ -0,0 +1,347 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * Scheduler of the periodic jobs of the CA system.
+ *
+ * <p>One thread triggers the jobs, which are then executed in the worker pool of their
+ * {@link JobClass}, so that long running jobs of one class, e.g. the generation of
+ * full CRLs, do not delay the jobs of other classes. The size of each pool limits the number
+ * of concurrently running jobs of the class. In addition
+ * <ul>
+ *  <li>a job is not triggered again while its previous execution is pending.</li>
+ *  <li>jobs with the same key, e.g. all jobs of one CA, are not executed concurrently.
+ *    If the key is in use, the job is deferred.</li>
+ *  <li>the first execution of a job is delayed by a random jitter, so that the jobs of
+ *    many CAs do not all start at the same time.</li>
+ * </ul>
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CaJobScheduler {
+
+    public enum JobClass {
+
+        /**
+         * Generation of CRLs.
+         */
+        CRL,
+
+        /**
+         * Database intensive jobs on the certstore.
+         */
+        CERTSTORE,
+
+        /**
+         * Short maintenance jobs.
+         */
+        DEFAULT
+
+    } // enum JobClass
+
+    public class Job implements Runnable {
+
+        private final String name;
+
+        private final JobClass jobClass;
+
+        private final String key;
+
+        private final Runnable task;
+
+        private final AtomicBoolean pending = new AtomicBoolean(false);
+
+        private final AtomicLong numRuns = new AtomicLong(0);
+
+        private final AtomicLong numSkipped = new AtomicLong(0);
+
+        private final AtomicLong numDeferred = new AtomicLong(0);
+
+        private ScheduledFuture<?> trigger;
+
+        private volatile boolean running;
+
+        private volatile long lastStart;
+
+        private volatile long lastDuration;
+
+        private volatile boolean cancelled;
+
+        private Job(final String name, final JobClass jobClass, final String key,
+                final Runnable task) {
+            this.name = name;
+            this.jobClass = jobClass;
+            this.key = key;
+            this.task = task;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Cancels the future executions of this job. A running execution is not interrupted.
+         */
+        public void cancel() {
+            cancelled = true;
+            if (trigger != null) {
+                trigger.cancel(false);
+            }
+            jobs.remove(this);
+        }
+
+        private void trigger() {
+            if (cancelled) {
+                return;
+            }
+
+            if (!pending.compareAndSet(false, true)) {
+                // previous execution is still waiting or running
+                numSkipped.incrementAndGet();
+                return;
+            }
+
+            submit();
+        }
+
+        private void submit() {
+            try {
+                workers.get(jobClass).execute(this);
+            } catch (RejectedExecutionException ex) {
+                // scheduler is being shutdown
+                pending.set(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                pending.set(false);
+                return;
+            }
+
+            ReentrantLock lock = null;
+            if (key != null) {
+                lock = keyLocks.computeIfAbsent(key, (k) -> new ReentrantLock());
+                if (!lock.tryLock()) {
+                    // another job with the same key is running
+                    numDeferred.incrementAndGet();
+                    try {
+                        timer.schedule(this::submit, DEFER_DELAY_SECONDS, TimeUnit.SECONDS);
+                    } catch (RejectedExecutionException ex) {
+                        pending.set(false);
+                    }
+                    return;
+                }
+            }
+
+            running = true;
+            long start = System.currentTimeMillis();
+            lastStart = start;
+            try {
+                task.run();
+            } catch (Throwable th) {
+                LogUtil.error(LOG, th, "error while executing job " + name);
+            } finally {
+                lastDuration = System.currentTimeMillis() - start;
+                numRuns.incrementAndGet();
+                running = false;
+                pending.set(false);
+                if (lock != null) {
+                    lock.unlock();
+                }
+            }
+        } // method run
+
+        private String getStatus() {
+            String state = running ? "running" : pending.get() ? "waiting" : "idle";
+            StringBuilder sb = new StringBuilder(200);
+            sb.append(name).append(" (").append(jobClass);
+            if (key != null) {
+                sb.append(", ").append(key);
+            }
+            sb.append("): ").append(state);
+            sb.append(", runs=").append(numRuns.get());
+            sb.append(", skipped=").append(numSkipped.get());
+            sb.append(", deferred=").append(numDeferred.get());
+            if (lastStart == 0) {
+                sb.append(", last run=never");
+            } else {
+                sb.append(", last run=").append(new Date(lastStart));
+                sb.append(", duration=").append(lastDuration).append(" ms");
+            }
+            return sb.toString();
+        }
+
+    } // class Job
+
+    private static final Logger LOG = LoggerFactory.getLogger(CaJobScheduler.class);
+
+    private static final long DEFER_DELAY_SECONDS = 5;
+
+    private static final long MAX_JITTER_MS = 60 * 1000L;
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final Map<JobClass, ThreadPoolExecutor> workers = new EnumMap<>(JobClass.class);
+
+    private final Map<String, ReentrantLock> keyLocks = new ConcurrentHashMap<>();
+
+    private final Set<Job> jobs = ConcurrentHashMap.newKeySet();
+
+    public CaJobScheduler(final Map<JobClass, Integer> poolSizes) {
+        ParamUtil.requireNonNull("poolSizes", poolSizes);
+
+        this.timer = new ScheduledThreadPoolExecutor(1, newThreadFactory("ca-scheduler"));
+        this.timer.setRemoveOnCancelPolicy(true);
+
+        for (JobClass jobClass : JobClass.values()) {
+            Integer size = poolSizes.get(jobClass);
+            int poolSize = (size == null) ? 2 : ParamUtil.requireMin("poolSize", size, 1);
+            String prefix = "ca-scheduler-" + jobClass.name().toLowerCase();
+            workers.put(jobClass, new ThreadPoolExecutor(poolSize, poolSize, 0L,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), newThreadFactory(prefix)));
+        }
+    }
+
+    /**
+     * Schedules the periodic execution of a job.
+     *
+     * @param name name of the job, used in logs and status
+     * @param jobClass class of the job
+     * @param key jobs with the same non-null key are not executed concurrently
+     * @param task the task to execute
+     * @param initialDelay delay of the first execution, a random jitter will be added
+     * @param period period between the triggers of the job
+     * @param unit time unit of initialDelay and period
+     * @return the scheduled job.
+     */
+    public Job schedule(final String name, final JobClass jobClass, final String key,
+            final Runnable task, final long initialDelay, final long period,
+            final TimeUnit unit) {
+        ParamUtil.requireNonBlank("name", name);
+        ParamUtil.requireNonNull("jobClass", jobClass);
+        ParamUtil.requireNonNull("task", task);
+        ParamUtil.requireNonNull("unit", unit);
+        ParamUtil.requireMin("period", period, 1);
+
+        long periodMs = unit.toMillis(period);
+        long maxJitter = Math.min(MAX_JITTER_MS, periodMs / 10);
+        long jitter = (maxJitter < 1) ? 0 : ThreadLocalRandom.current().nextLong(maxJitter);
+
+        Job job = new Job(name, jobClass, key, task);
+        job.trigger = timer.scheduleAtFixedRate(job::trigger, unit.toMillis(initialDelay) + jitter,
+                periodMs, TimeUnit.MILLISECONDS);
+        jobs.add(job);
+        return job;
+    }
+
+    public String getStatus() {
+        StringBuilder sb = new StringBuilder(1000);
+        sb.append("pools:");
+        for (JobClass jobClass : workers.keySet()) {
+            ThreadPoolExecutor pool = workers.get(jobClass);
+            sb.append("\n  ").append(jobClass);
+            sb.append(": threads=").append(pool.getMaximumPoolSize());
+            sb.append(", active=").append(pool.getActiveCount());
+            sb.append(", queued=").append(pool.getQueue().size());
+        }
+
+        sb.append("\njobs:");
+        jobs.stream().sorted((a, b) -> a.name.compareTo(b.name)).forEach(
+            (job) -> sb.append("\n  ").append(job.getStatus()));
+        return sb.toString();
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+        for (ThreadPoolExecutor pool : workers.values()) {
+            // jobs not started yet are dropped, running jobs are not interrupted
+            pool.getQueue().clear();
+            pool.shutdown();
+        }
+
+        for (ThreadPoolExecutor pool : workers.values()) {
+            while (!pool.isTerminated()) {
+                try {
+                    pool.awaitTermination(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    LOG.error("interrupted: {}", ex.getMessage());
+                }
+            }
+        }
+        jobs.clear();
+    } // method shutdown
+
+    private static ThreadFactory newThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + "-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
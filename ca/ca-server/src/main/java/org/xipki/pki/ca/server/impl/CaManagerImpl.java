@@ -53,6 +53,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -61,6 +63,10 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.Deflater;
@@ -123,6 +129,7 @@ import org.xipki.pki.ca.api.publisher.CertPublisherException;
 import org.xipki.pki.ca.api.publisher.x509.X509CertPublisher;
 import org.xipki.pki.ca.api.publisher.x509.X509CertPublisherFactoryRegister;
 import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
+import org.xipki.pki.ca.server.impl.CaJobScheduler.JobClass;
 import org.xipki.pki.ca.server.impl.X509SelfSignedCertBuilder.GenerateSelfSignedResult;
 import org.xipki.pki.ca.server.impl.cmp.CmpRequestorEntryWrapper;
 import org.xipki.pki.ca.server.impl.cmp.CmpResponderEntryWrapper;
@@ -168,6 +175,7 @@ import org.xipki.pki.ca.server.mgmt.api.conf.jaxb.ResponderType;
 import org.xipki.pki.ca.server.mgmt.api.conf.jaxb.ScepType;
 import org.xipki.pki.ca.server.mgmt.api.conf.jaxb.StringsType;
 import org.xipki.pki.ca.server.mgmt.api.conf.jaxb.X509CaInfoType;
+import org.xipki.pki.ca.server.mgmt.api.x509.CertVerificationControl;
 import org.xipki.pki.ca.server.mgmt.api.x509.CertWithStatusInfo;
 import org.xipki.pki.ca.server.mgmt.api.x509.RevokeSuspendedCertsControl;
 import org.xipki.pki.ca.server.mgmt.api.x509.ScepEntry;
@@ -196,9 +204,34 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
             inProcess = true;
             try {
                 LOG.debug("publishing certificates in PUBLISHQUEUE");
+                // the queue is partitioned by CA and publisher, each partition is drained by
+                // one task.
+                Map<String, List<Future<Boolean>>> caResults = new HashMap<>();
                 for (String name : x509cas.keySet()) {
                     X509Ca ca = x509cas.get(name);
-                    boolean bo = ca.publishCertsInQueue();
+                    List<Future<Boolean>> results = new LinkedList<>();
+                    for (IdentifiedX509CertPublisher publisher
+                            : getIdentifiedPublishersForCa(name)) {
+                        results.add(publishQueueExecutor.submit(
+                                () -> ca.publishCertsInQueue(publisher)));
+                    }
+                    caResults.put(name, results);
+                }
+
+                for (String name : caResults.keySet()) {
+                    boolean bo = true;
+                    for (Future<Boolean> result : caResults.get(name)) {
+                        try {
+                            if (!result.get()) {
+                                bo = false;
+                            }
+                        } catch (ExecutionException ex) {
+                            LogUtil.error(LOG, ex.getCause(),
+                                    "could not publish CertsInQueue of CA " + name);
+                            bo = false;
+                        }
+                    }
+
                     if (bo) {
                         LOG.info(" published certificates of CA '{}' in PUBLISHQUEUE", name);
                     } else {
@@ -332,7 +365,19 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
 
     private ScheduledThreadPoolExecutor persistentScheduledThreadPoolExecutor;
 
-    private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+    private CaJobScheduler jobScheduler;
+
+    private final Map<JobClass, Integer> schedulerPoolSizes = new EnumMap<>(JobClass.class);
+
+    private ExecutorService publishQueueExecutor;
+
+    private int publishQueueThreads = 4;
+
+    private int publishQueueInterval = 120; // in seconds
+
+    private volatile ExecutorService enrollmentExecutor;
+
+    private int enrollmentThreads = Runtime.getRuntime().availableProcessors();
 
     private final Map<String, X509CaCmpResponder> x509Responders = new ConcurrentHashMap<>();
 
@@ -549,8 +594,26 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
 
         UniqueIdGenerator idGen = new UniqueIdGenerator(epoch, shardId);
 
+        boolean groupCommit = Boolean.parseBoolean(
+                caConfProps.getProperty("ca.certstore.groupCommit", "false").trim());
+        LOG.info("ca.certstore.groupCommit: {}", groupCommit);
+
+        publishQueueThreads = getPositiveIntProperty(caConfProps, "ca.publishQueue.threads", 4);
+        publishQueueInterval = getPositiveIntProperty(caConfProps, "ca.publishQueue.interval",
+                120);
+
+        enrollmentThreads = getPositiveIntProperty(caConfProps, "ca.enrollment.threads",
+                Runtime.getRuntime().availableProcessors());
+
+        schedulerPoolSizes.put(JobClass.CRL,
+                getPositiveIntProperty(caConfProps, "ca.scheduler.crl.threads", 2));
+        schedulerPoolSizes.put(JobClass.CERTSTORE,
+                getPositiveIntProperty(caConfProps, "ca.scheduler.certstore.threads", 2));
+        schedulerPoolSizes.put(JobClass.DEFAULT,
+                getPositiveIntProperty(caConfProps, "ca.scheduler.default.threads", 2));
+
         try {
-            this.certstore = new CertificateStore(datasource, idGen);
+            this.certstore = new CertificateStore(datasource, idGen, groupCommit);
         } catch (DataAccessException ex) {
             throw new CaMgmtException(ex.getMessage(), ex);
         }
@@ -579,6 +642,30 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
         }
     }
 
+    @Override
+    public String getJobSchedulerStatus() {
+        CaJobScheduler scheduler = jobScheduler;
+        return (scheduler == null) ? null : scheduler.getStatus();
+    }
+
+    @Override
+    public String getCertVerificationStatus() {
+        if (!caSystemSetuped) {
+            return null;
+        }
+
+        StringBuilder sb = new StringBuilder(200);
+        List<String> caNames = new ArrayList<>(x509cas.keySet());
+        Collections.sort(caNames);
+        for (String caName : caNames) {
+            X509Ca ca = x509cas.get(caName);
+            if (ca != null) {
+                sb.append(caName).append(": ").append(ca.getCertVerificationStatus()).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
     private boolean lockCa(final boolean forceRelock) throws DataAccessException, CaMgmtException {
         SystemEvent lockInfo = queryExecutor.getSystemEvent(EVENT_LOCK);
 
@@ -642,7 +729,7 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
         environmentParametersInitialized = false;
         scepsInitialized = false;
 
-        shutdownScheduledThreadPoolExecutor();
+        shutdownJobScheduler();
     } // method reset
 
     @Override
@@ -709,7 +796,7 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
         }
 
         initializing = true;
-        shutdownScheduledThreadPoolExecutor();
+        shutdownJobScheduler();
 
         try {
             LOG.info("starting CA system");
@@ -725,8 +812,11 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
             x509cas.clear();
             x509Responders.clear();
 
-            scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(10);
-            scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+            jobScheduler = new CaJobScheduler(schedulerPoolSizes);
+            publishQueueExecutor = Executors.newFixedThreadPool(publishQueueThreads);
+            if (enrollmentThreads > 1) {
+                enrollmentExecutor = Executors.newFixedThreadPool(enrollmentThreads);
+            }
 
             List<String> startedCaNames = new LinkedList<>();
             List<String> failedCaNames = new LinkedList<>();
@@ -769,9 +859,10 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
                 int len = sb.length();
                 sb.delete(len - 2, len);
 
-                scheduledThreadPoolExecutor.scheduleAtFixedRate(
-                        new ScheduledPublishQueueCleaner(), 120, 120, TimeUnit.SECONDS);
-                scheduledThreadPoolExecutor.scheduleAtFixedRate(
+                jobScheduler.schedule("publish-queue", JobClass.DEFAULT, null,
+                        new ScheduledPublishQueueCleaner(), publishQueueInterval,
+                        publishQueueInterval, TimeUnit.SECONDS);
+                jobScheduler.schedule("delete-unreferenced-requests", JobClass.CERTSTORE, null,
                         new ScheduledDeleteUnreferencedRequstervice(), 60, 24 * 60 * 60, // 1 DAY
                         TimeUnit.SECONDS);
             } else {
@@ -835,6 +926,23 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
                         unchangedSince);
                 caEntry.setRevokeSuspendedCertsControl(control);
             }
+
+            str = cp.getValue(CertVerificationControl.KEY_MODE);
+            if (str != null) {
+                CertVerificationControl.Mode mode = CertVerificationControl.Mode.forText(str);
+
+                str = cp.getValue(CertVerificationControl.KEY_SAMPLE_RATE);
+                int sampleRate = (str == null) ? CertVerificationControl.DFLT_SAMPLE_RATE
+                        : Integer.parseInt(str.trim());
+
+                str = cp.getValue(CertVerificationControl.KEY_NEW_SIGNER_CERTS);
+                int newSignerCerts = (str == null) ? CertVerificationControl.DFLT_NEW_SIGNER_CERTS
+                        : Integer.parseInt(str.trim());
+                CertVerificationControl control = new CertVerificationControl(mode, sampleRate,
+                        newSignerCerts);
+                caEntry.setCertVerificationControl(control);
+                LOG.info("CA {}: verification of issued certificates: {}", caName, control);
+            }
         }
 
         boolean signerRequired = caEntry.isSignerRequired();
@@ -881,7 +989,7 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
 
     public void shutdown() {
         LOG.info("stopping CA system");
-        shutdownScheduledThreadPoolExecutor();
+        shutdownJobScheduler();
 
         if (persistentScheduledThreadPoolExecutor != null) {
             persistentScheduledThreadPoolExecutor.shutdown();
@@ -932,8 +1040,8 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
         return x509Responders.get(name.toUpperCase());
     }
 
-    public ScheduledThreadPoolExecutor getScheduledThreadPoolExecutor() {
-        return scheduledThreadPoolExecutor;
+    public CaJobScheduler getJobScheduler() {
+        return jobScheduler;
     }
 
     @Override
@@ -1538,6 +1646,9 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
 
         requestorDbEntries.put(name, requestor.getDbEntry());
         requestors.put(name, requestor);
+        for (X509Ca ca : x509cas.values()) {
+            ca.invalidateRequestorIndex();
+        }
         return true;
     } // method changeCmpRequestor
 
@@ -1558,6 +1669,7 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
                 }
             }
             entries.remove(entry);
+            invalidateRequestorIndex(tmpCaName);
         }
         return bo;
     } // method removeCmpRequestorFromCa
@@ -1591,9 +1703,17 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
         cmpRequestors.add(requestor);
         queryExecutor.addCmpRequestorToCa(requestor, tmpCaName);
         caHasRequestors.get(tmpCaName).add(requestor);
+        invalidateRequestorIndex(tmpCaName);
         return true;
     } // method addCmpRequestorToCa
 
+    private void invalidateRequestorIndex(final String caName) {
+        X509Ca ca = x509cas.get(caName);
+        if (ca != null) {
+            ca.invalidateRequestorIndex();
+        }
+    }
+
     @Override
     public CertprofileEntry getCertprofile(final String profileName) {
         return certprofileDbEntries.get(profileName);
@@ -2321,21 +2441,59 @@ public class CaManagerImpl implements CaManager, CmpResponderManager, ScepManage
         return ca.clearPublishQueue(publisherNames);
     } // method clearPublishQueue
 
-    private void shutdownScheduledThreadPoolExecutor() {
-        if (scheduledThreadPoolExecutor == null) {
-            return;
+    private static int getPositiveIntProperty(final Properties props, final String name,
+            final int defaultValue) throws CaMgmtException {
+        String str = props.getProperty(name);
+        if (StringUtil.isBlank(str)) {
+            return defaultValue;
         }
 
-        scheduledThreadPoolExecutor.shutdown();
-        while (!scheduledThreadPoolExecutor.isTerminated()) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException ex) {
-                LOG.error("interrupted: {}", ex.getMessage());
+        int value;
+        try {
+            value = Integer.parseInt(str.trim());
+        } catch (NumberFormatException ex) {
+            throw new CaMgmtException("invalid " + name + " '" + str + "'");
+        }
+
+        if (value < 1) {
+            throw new CaMgmtException(name + " is less than 1");
+        }
+        LOG.info("{}: {}", name, value);
+        return value;
+    }
+
+    private void shutdownJobScheduler() {
+        if (jobScheduler != null) {
+            jobScheduler.shutdown();
+            jobScheduler = null;
+        }
+
+        if (publishQueueExecutor != null) {
+            publishQueueExecutor.shutdown();
+            while (!publishQueueExecutor.isTerminated()) {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ex) {
+                    LOG.error("interrupted: {}", ex.getMessage());
+                }
             }
+            publishQueueExecutor = null;
         }
-        scheduledThreadPoolExecutor = null;
-    } // method shutdownScheduledThreadPoolExecutor
+
+        ExecutorService executor = enrollmentExecutor;
+        if (executor != null) {
+            enrollmentExecutor = null;
+            executor.shutdown();
+        }
+    } // method shutdownJobScheduler
+
+    /**
+     * Returns the executor to generate the certificates of one request in parallel.
+     * @return the executor, or {@code null} if the certificates are generated sequentially.
+     */
+    ExecutorService getEnrollmentExecutor() {
+        return enrollmentExecutor;
+    }
 
     @Override
     public boolean revokeCertificate(final String caName, final BigInteger serialNumber,
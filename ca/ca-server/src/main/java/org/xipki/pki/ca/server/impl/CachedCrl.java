@@ -0,0 +1,155 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.util.Date;
+
+import org.bouncycastle.asn1.x509.CertificateList;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.common.util.StringUtil;
+import org.xipki.commons.security.HashAlgoType;
+
+/**
+ * The current full or delta CRL of a CA, with the DER encoding and the values of the HTTP
+ * cache headers computed once.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CachedCrl {
+
+    private final byte[] encoded;
+
+    private final CertificateList crl;
+
+    private final String etag;
+
+    private final long thisUpdate;
+
+    private final Date nextUpdate;
+
+    private final boolean deltaCrl;
+
+    private volatile long lastChecked;
+
+    /**
+     * Constructor.
+     * @param encoded DER encoded CRL. Must not be {@code null}.
+     * @throws IllegalArgumentException if the encoded is not a valid CRL.
+     */
+    CachedCrl(final byte[] encoded) {
+        this.encoded = ParamUtil.requireNonNull("encoded", encoded);
+        this.crl = CertificateList.getInstance(encoded);
+        this.etag = "\"" + HashAlgoType.SHA1.hexHash(encoded) + "\"";
+        this.thisUpdate = crl.getThisUpdate().getDate().getTime();
+        Time time = crl.getNextUpdate();
+        this.nextUpdate = (time == null) ? null : time.getDate();
+        Extensions extns = crl.getTBSCertList().getExtensions();
+        this.deltaCrl = extns != null && extns.getExtension(Extension.deltaCRLIndicator) != null;
+        this.lastChecked = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the DER encoded CRL. The returned array is shared and must not be modified.
+     * @return the DER encoded CRL.
+     */
+    public byte[] getEncoded() {
+        return encoded;
+    }
+
+    public CertificateList getCrl() {
+        return crl;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Returns the thisUpdate, which is used as Last-Modified.
+     * @return thisUpdate in milliseconds.
+     */
+    public long getThisUpdate() {
+        return thisUpdate;
+    }
+
+    public Date getNextUpdate() {
+        return nextUpdate;
+    }
+
+    public boolean isDeltaCrl() {
+        return deltaCrl;
+    }
+
+    long getLastChecked() {
+        return lastChecked;
+    }
+
+    void setLastChecked(final long lastChecked) {
+        this.lastChecked = lastChecked;
+    }
+
+    /**
+     * Checks the conditional headers of a HTTP request as specified in RFC 7232.
+     *
+     * @param ifNoneMatch value of the header If-None-Match, may be {@code null}.
+     * @param ifModifiedSince value of the header If-Modified-Since in milliseconds, or -1 if
+     *          not present. It is ignored if If-None-Match is present.
+     * @return whether the client has already the current CRL.
+     */
+    public boolean isNotModified(final String ifNoneMatch, final long ifModifiedSince) {
+        if (StringUtil.isNotBlank(ifNoneMatch)) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+
+                if ("*".equals(tag) || etag.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // HTTP dates have the precision of seconds
+        return ifModifiedSince >= 0 && thisUpdate / 1000 <= ifModifiedSince / 1000;
+    }
+
+}
@@ -40,8 +40,11 @@ import java.security.cert.X509Certificate;
 
 import javax.servlet.http.HttpServletRequest;
 
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.DecoderException;
 import org.xipki.commons.common.LruCache;
 import org.xipki.commons.common.util.StringUtil;
+import org.xipki.commons.security.HashAlgoType;
 import org.xipki.commons.security.util.X509Util;
 
 /**
@@ -88,18 +91,29 @@ public class ClientCertCache {
             return null;
         }
 
-        clientCert = clientCerts.get(pemClientCert);
+        byte[] encodedCert;
+        try {
+            encodedCert = Base64.decode(pemClientCert.replace("-----BEGIN CERTIFICATE-----", "")
+                    .replace("-----END CERTIFICATE-----", ""));
+        } catch (DecoderException ex) {
+            throw new IOException("could not decode Certificate", ex);
+        }
+
+        // the same certificate may be forwarded with different line breaks, hence the
+        // fingerprint instead of the PEM string is used as key.
+        String fingerprint = HashAlgoType.SHA1.hexHash(encodedCert);
+        clientCert = clientCerts.get(fingerprint);
         if (clientCert != null) {
             return clientCert;
         }
 
         try {
-            clientCert = X509Util.parsePemEncodedCert(pemClientCert);
+            clientCert = X509Util.parseCert(encodedCert);
         } catch (CertificateException ex) {
             throw new IOException("could not parse Certificate", ex);
         }
 
-        clientCerts.put(pemClientCert, clientCert);
+        clientCerts.put(fingerprint, clientCert);
         return clientCert;
     }
 
@@ -35,6 +35,7 @@
 package org.xipki.pki.ca.server.impl;
 
 import java.security.cert.X509CRL;
+import java.util.List;
 import java.util.Map;
 
 import org.xipki.commons.audit.api.AuditServiceRegister;
@@ -83,6 +84,10 @@ class IdentifiedX509CertPublisher {
         return certPublisher.certificateAdded(certInfo);
     }
 
+    public int certificatesAdded(final List<X509CertificateInfo> certInfos) {
+        return certPublisher.certificatesAdded(certInfos);
+    }
+
     public boolean certificateRevoked(final X509Cert caCert, final X509CertWithDbId cert,
             final String certprofile, final CertRevocationInfo revInfo) {
         return certPublisher.certificateRevoked(caCert, cert, certprofile, revInfo);
@@ -36,14 +36,48 @@ package org.xipki.pki.ca.server.impl;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 /**
+ * Generates random serial numbers. Each thread uses its own {@link SecureRandom} and
+ * fetches the random bytes in blocks, so that concurrent CAs do not contend on one
+ * random generator.
+ *
  * @author Lijun Liao
  * @since 2.0.0
  */
 
 class RandomSerialNumberGenerator {
 
+    private static class RandomBuffer {
+
+        private final SecureRandom random = new SecureRandom();
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int pos = BUFFER_SIZE;
+
+        private void nextBytes(final byte[] bytes) {
+            if (bytes.length > BUFFER_SIZE) {
+                random.nextBytes(bytes);
+                return;
+            }
+
+            if (BUFFER_SIZE - pos < bytes.length) {
+                random.nextBytes(buffer);
+                pos = 0;
+            }
+
+            System.arraycopy(buffer, pos, bytes, 0, bytes.length);
+            // do not keep the consumed random bytes in the memory
+            Arrays.fill(buffer, pos, pos + bytes.length, (byte) 0);
+            pos += bytes.length;
+        }
+
+    } // class RandomBuffer
+
+    private static final int BUFFER_SIZE = 1024;
+
     private static int MASK_1 = 1;
     private static int MASK_2 = 3;
     private static int MASK_3 = 7;
@@ -54,17 +88,15 @@ class RandomSerialNumberGenerator {
 
     private static RandomSerialNumberGenerator instance;
 
-    private final SecureRandom random;
+    private final ThreadLocal<RandomBuffer> randoms = ThreadLocal.withInitial(RandomBuffer::new);
 
     private RandomSerialNumberGenerator() {
-        this.random = new SecureRandom();
     }
 
     public BigInteger nextSerialNumber(int bitLen) {
         byte[] rdnBytes = new byte[(bitLen + 7) / 8];
-        random.nextBytes(rdnBytes);
+        randoms.get().nextBytes(rdnBytes);
         int ci = bitLen % 8;
-
         switch (ci) {
         case 1:
             rdnBytes[0] = (byte) (rdnBytes[0] & MASK_1);
@@ -34,8 +34,7 @@
 
 package org.xipki.pki.ca.server.impl;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.IntBinaryOperator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.xipki.commons.common.util.ParamUtil;
 
@@ -49,6 +48,9 @@ import org.xipki.commons.common.util.ParamUtil;
  *  <li>offset: 10 bits
  *  <li>shard_id: 7 bits
  * </ol>
+ * If more than 1024 IDs are requested within one millisecond, or the system clock goes
+ * backwards, the IDs are taken from the following milliseconds, so that the generated IDs
+ * are strictly increasing.
  *
  * @author Lijun Liao
  * @since 2.0.0
@@ -57,42 +59,36 @@ import org.xipki.commons.common.util.ParamUtil;
 
 public class UniqueIdGenerator {
 
-    private static class OffsetIncrement implements IntBinaryOperator {
+    private static final int OFFSET_BITS = 10;
 
-        @Override
-        public int applyAsInt(int left, int right) {
-            return (left >= right) ? 0 : left + 1;
-        }
-
-    }
-
-    // maximal 10 bits
-    private static final int MAX_OFFSET = 0x3FF;
+    private static final int SHARD_BITS = 7;
 
     private final long epoch; // in milliseconds
 
     private final int shardId; // 7 bits
 
-    private final AtomicInteger offset = new AtomicInteger(0);
-
-    private final IntBinaryOperator accumulatorFunction;
+    /**
+     * The last used (time - epoch) &lt;&lt; 10 | offset.
+     */
+    private final AtomicLong lastTimeOffset = new AtomicLong(0);
 
     public UniqueIdGenerator(final long epoch, final int shardId) {
         this.epoch = ParamUtil.requireMin("epoch", epoch, 0);
         this.shardId = ParamUtil.requireRange("shardId", shardId, 0, 127);
-        this.accumulatorFunction = new OffsetIncrement();
     }
 
     public long nextId() {
-        long now = System.currentTimeMillis();
-        long ret = now - epoch;
-        ret <<= 10;
+        final long now = (System.currentTimeMillis() - epoch) << OFFSET_BITS;
 
-        ret += offset.getAndAccumulate(MAX_OFFSET, accumulatorFunction);
-        ret <<= 7;
+        long prev;
+        long next;
+        do {
+            prev = lastTimeOffset.get();
+            // if the offset is exhausted, next runs into the next millisecond.
+            next = (now > prev) ? now : prev + 1;
+        } while (!lastTimeOffset.compareAndSet(prev, next));
 
-        ret += shardId;
-        return ret;
+        return (next << SHARD_BITS) + shardId;
     }
 
 }
@@ -55,14 +55,16 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SimpleTimeZone;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
@@ -88,13 +90,11 @@ import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
 import org.bouncycastle.asn1.x509.ReasonFlags;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
-import org.bouncycastle.cert.CertIOException;
-import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.CertException;
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.X509v2CRLBuilder;
 import org.bouncycastle.cert.X509v3CertificateBuilder;
-import org.bouncycastle.jce.provider.X509CRLObject;
 import org.bouncycastle.jce.provider.X509CertificateObject;
+import org.bouncycastle.operator.ContentVerifierProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.commons.audit.api.AuditEvent;
@@ -116,10 +116,12 @@ import org.xipki.commons.security.FpIdCalculator;
 import org.xipki.commons.security.KeyUsage;
 import org.xipki.commons.security.ObjectIdentifiers;
 import org.xipki.commons.security.SecurityFactory;
+import org.xipki.commons.security.SignerPoolStatistics;
 import org.xipki.commons.security.X509Cert;
 import org.xipki.commons.security.XiSecurityConstants;
 import org.xipki.commons.security.exception.NoIdleSignerException;
 import org.xipki.commons.security.exception.XiSecurityException;
+import org.xipki.commons.security.util.AlgorithmUtil;
 import org.xipki.commons.security.util.X509Util;
 import org.xipki.pki.ca.api.BadCertTemplateException;
 import org.xipki.pki.ca.api.BadFormatException;
@@ -136,7 +138,9 @@ import org.xipki.pki.ca.api.profile.x509.SpecialX509CertprofileBehavior;
 import org.xipki.pki.ca.api.profile.x509.SubjectInfo;
 import org.xipki.pki.ca.api.profile.x509.X509CertVersion;
 import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
+import org.xipki.pki.ca.server.impl.CaJobScheduler.JobClass;
 import org.xipki.pki.ca.server.impl.cmp.CmpRequestorEntryWrapper;
+import org.xipki.pki.ca.server.impl.cmp.CmpRequestorIndex;
 import org.xipki.pki.ca.server.impl.cmp.CmpRequestorInfo;
 import org.xipki.pki.ca.server.impl.store.CertificateStore;
 import org.xipki.pki.ca.server.impl.store.X509CertWithRevocationInfo;
@@ -145,6 +149,7 @@ import org.xipki.pki.ca.server.mgmt.api.CaHasRequestorEntry;
 import org.xipki.pki.ca.server.mgmt.api.CaMgmtException;
 import org.xipki.pki.ca.server.mgmt.api.CaStatus;
 import org.xipki.pki.ca.server.mgmt.api.ValidityMode;
+import org.xipki.pki.ca.server.mgmt.api.x509.CertVerificationControl;
 import org.xipki.pki.ca.server.mgmt.api.x509.CrlControl;
 import org.xipki.pki.ca.server.mgmt.api.x509.CrlControl.HourMinute;
 import org.xipki.pki.ca.server.mgmt.api.x509.CrlControl.UpdateMode;
@@ -417,8 +422,14 @@ public class X509Ca {
 
     private static final long DAY_IN_MS = MS_PER_MINUTE * MINUTE_PER_DAY;
 
+    private static final long CRL_CACHE_CHECK_INTERVAL_MS = MS_PER_MINUTE;
+
     private static final long MAX_CERT_TIME_MS = 253402300799982L; //9999-12-31-23-59-59
 
+    private static final int PUBLISHQUEUE_PAGE_SIZE = 100;
+
+    private static final int MIN_TEMPLATES_FOR_PARALLEL_ENROLLMENT = 4;
+
     private static final Logger LOG = LoggerFactory.getLogger(X509Ca.class);
 
     private final X509CaInfo caInfo;
@@ -431,13 +442,33 @@ public class X509Ca {
 
     private Boolean tryNssToVerify;
 
+    private final ContentVerifierProvider caVerifierProvider;
+
+    private final CertVerificationControl certVerificationControl;
+
+    private final boolean hsmSigner;
+
+    private final AtomicLong numIssuedCerts = new AtomicLong(0);
+
+    private final AtomicLong numVerifiedCerts = new AtomicLong(0);
+
+    private final AtomicLong numFailedCertVerifications = new AtomicLong(0);
+
     private AtomicBoolean crlGenInProcess = new AtomicBoolean(false);
 
-    private ScheduledFuture<?> crlGenerationService;
+    private final AtomicReference<CachedCrl> currentFullCrl = new AtomicReference<>();
+
+    private final AtomicReference<CachedCrl> currentDeltaCrl = new AtomicReference<>();
+
+    private volatile CmpRequestorIndex requestorIndex;
+
+    private final Object requestorIndexLock = new Object();
+
+    private CaJobScheduler.Job crlGenerationService;
 
-    private ScheduledFuture<?> expiredCertsRemover;
+    private CaJobScheduler.Job expiredCertsRemover;
 
-    private ScheduledFuture<?> suspendedCertsRevoker;
+    private CaJobScheduler.Job suspendedCertsRevoker;
 
     private AuditServiceRegister auditServiceRegister;
 
@@ -466,6 +497,22 @@ public class X509Ca {
 
         X509Cert caCert = caInfo.getCertificate();
 
+        ContentVerifierProvider tmpVerifierProvider = null;
+        try {
+            tmpVerifierProvider = securityFactory.getContentVerifierProvider(caCert.getCert());
+        } catch (InvalidKeyException ex) {
+            LOG.warn("could not create verifier for the public key of CA {}, use JCA instead: {}",
+                    getCaName(), ex.getMessage());
+        }
+        this.caVerifierProvider = tmpVerifierProvider;
+
+        CertVerificationControl tmpControl = caInfo.getCertVerificationControl();
+        this.certVerificationControl = (tmpControl != null) ? tmpControl
+                : new CertVerificationControl(CertVerificationControl.Mode.ALWAYS,
+                        CertVerificationControl.DFLT_SAMPLE_RATE,
+                        CertVerificationControl.DFLT_NEW_SIGNER_CERTS);
+        this.hsmSigner = caInfo.isHsmSigner();
+
         X509CrlSignerEntryWrapper crlSigner = getCrlSigner();
         if (crlSigner != null) {
             // CA signs the CRL
@@ -486,14 +533,21 @@ public class X509Ca {
         }
 
         // CRL generation services
-        this.crlGenerationService = caManager.getScheduledThreadPoolExecutor().scheduleAtFixedRate(
-                new ScheduledCrlGenerationService(), 1, 1, TimeUnit.MINUTES);
-
-        this.expiredCertsRemover = caManager.getScheduledThreadPoolExecutor().scheduleAtFixedRate(
-                new ScheduledExpiredCertsRemover(), 1, 1, TimeUnit.DAYS);
-
-        this.suspendedCertsRevoker = caManager.getScheduledThreadPoolExecutor().scheduleAtFixedRate(
-                new ScheduledSuspendedCertsRevoker(), 30, 60, TimeUnit.MINUTES);
+        // jobs of one CA are not executed concurrently
+        CaJobScheduler scheduler = caManager.getJobScheduler();
+        String caName = getCaName();
+        String jobKey = "CA " + caName;
+        this.crlGenerationService = scheduler.schedule(caName + ": crl-generation",
+                JobClass.CRL, jobKey, new ScheduledCrlGenerationService(),
+                1, 1, TimeUnit.MINUTES);
+
+        this.expiredCertsRemover = scheduler.schedule(caName + ": remove-expired-certs",
+                JobClass.CERTSTORE, jobKey, new ScheduledExpiredCertsRemover(),
+                1, 1, TimeUnit.DAYS);
+
+        this.suspendedCertsRevoker = scheduler.schedule(caName + ": revoke-suspended-certs",
+                JobClass.CERTSTORE, jobKey, new ScheduledSuspendedCertsRevoker(),
+                30, 60, TimeUnit.MINUTES);
     } // constructor
 
     public X509CaInfo getCaInfo() {
@@ -540,11 +594,95 @@ public class X509Ca {
         return certstore.getCnRegexForUser(user);
     }
 
+    /**
+     * Returns the most recent CRL, which is a delta CRL if it has been generated after the
+     * current full CRL.
+     * @return the most recent CRL, or {@code null} if no CRL is available.
+     * @throws OperationException if error occurs.
+     */
     public CertificateList getCurrentCrl()
     throws OperationException {
-        return getCrl(null);
+        CachedCrl crl = getCurrentCachedCrl(false);
+        if (isDeltaCrlConfigured()) {
+            CachedCrl deltaCrl = getCurrentCachedCrl(true);
+            if (deltaCrl != null
+                    && (crl == null || deltaCrl.getThisUpdate() > crl.getThisUpdate())) {
+                crl = deltaCrl;
+            }
+        }
+        return (crl == null) ? null : crl.getCrl();
     }
 
+    /**
+     * Returns the current full or delta CRL from the memory. In slave mode the CRL may be
+     * generated by another CA instance, hence it is revalidated against the database at most
+     * once per minute.
+     * @param deltaCrl whether the delta CRL or the full CRL is returned.
+     * @return the current CRL, or {@code null} if no CRL is available.
+     * @throws OperationException if error occurs.
+     */
+    public CachedCrl getCurrentCachedCrl(final boolean deltaCrl)
+    throws OperationException {
+        final AtomicReference<CachedCrl> cache = deltaCrl ? currentDeltaCrl : currentFullCrl;
+        final CachedCrl cachedCrl = cache.get();
+        CachedCrl crl = cachedCrl;
+        if (crl != null) {
+            if (masterMode) {
+                return crl;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - crl.getLastChecked() < CRL_CACHE_CHECK_INTERVAL_MS) {
+                return crl;
+            }
+
+            long thisUpdate = certstore.getThisUpdateOfCurrentCrl(caInfo.getCertificate(),
+                    deltaCrl);
+            if (thisUpdate == crl.getThisUpdate() / MS_PER_SECOND) {
+                crl.setLastChecked(now);
+                return crl;
+            }
+        }
+
+        String caName = getCaName();
+        LOG.info("     START loadCurrentCrl: ca={}, deltaCRL={}", caName, deltaCrl);
+        byte[] encodedCrl = certstore.getEncodedCurrentCrl(caInfo.getCertificate(), deltaCrl);
+        if (encodedCrl == null) {
+            LOG.info("    FAILED loadCurrentCrl: ca={}, deltaCRL={}", caName, deltaCrl);
+            return null;
+        }
+
+        try {
+            crl = new CachedCrl(encodedCrl);
+        } catch (RuntimeException ex) {
+            LOG.info("    FAILED loadCurrentCrl: ca={}, deltaCRL={}", caName, deltaCrl);
+            throw new OperationException(ErrorCode.SYSTEM_FAILURE, ex);
+        }
+
+        LOG.info("SUCCESSFUL loadCurrentCrl: ca={}, deltaCRL={}, thisUpdate={}", caName,
+                deltaCrl, crl.getCrl().getThisUpdate().getTime());
+        return installLoadedCrl(cache, cachedCrl, crl);
+    } // method getCurrentCachedCrl
+
+    /**
+     * Installs the CRL loaded from the database only if the cache has not been changed since
+     * the load started. Otherwise a CRL published in the meantime would be overwritten by the
+     * older one read before.
+     * @param cache the cache.
+     * @param expected the cached CRL when the load started, may be {@code null}.
+     * @param loaded the loaded CRL.
+     * @return the CRL in the cache after this call.
+     */
+    static CachedCrl installLoadedCrl(final AtomicReference<CachedCrl> cache,
+            final CachedCrl expected, final CachedCrl loaded) {
+        if (cache.compareAndSet(expected, loaded)) {
+            return loaded;
+        }
+
+        CachedCrl current = cache.get();
+        return (current == null) ? loaded : current;
+    } // method installLoadedCrl
+
     public CertificateList getCrl(final BigInteger crlNumber)
     throws OperationException {
         String caName = getCaName();
@@ -684,6 +822,7 @@ public class X509Ca {
         CrlControl crlControl = crlSigner.getCrlControl();
         boolean successful = false;
 
+        X509CrlStreamBuilder crlBuilder = null;
         try {
             ConcurrentContentSigner tmpCrlSigner = crlSigner.getSigner();
             CrlControl control = crlSigner.getCrlControl();
@@ -697,9 +836,11 @@ public class X509Ca {
                         tmpCrlSigner.getCertificate().getSubjectX500Principal().getEncoded());
             }
 
-            X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(crlIssuer, thisUpdate);
-            if (nextUpdate != null) {
-                crlBuilder.setNextUpdate(nextUpdate);
+            // the CRL entries are encoded into a temporary file, not collected in memory
+            try {
+                crlBuilder = new X509CrlStreamBuilder(crlIssuer, thisUpdate, nextUpdate);
+            } catch (IOException ex) {
+                throw new OperationException(ErrorCode.CRL_FAILURE, ex);
             }
 
             final int numEntries = 100;
@@ -761,12 +902,8 @@ public class X509Ca {
                     LOG.debug("added cert ca={} serial={} to CRL", caName, serial);
 
                     if (directCrl || !isFirstCrlEntry) {
-                        if (invalidityTime != null) {
-                            crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode(),
-                                    invalidityTime);
-                        } else {
-                            crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode());
-                        }
+                        addCrlEntry(crlBuilder, serial, revocationTime, reason.getCode(),
+                                invalidityTime);
                         continue;
                     }
 
@@ -784,7 +921,7 @@ public class X509Ca {
                             caInfo.getPublicCaInfo().getX500Subject());
                     extensions.add(ext);
 
-                    crlBuilder.addCRLEntry(serial, revocationTime,
+                    addCrlEntry(crlBuilder, serial, revocationTime,
                             new Extensions(extensions.toArray(new Extension[0])));
                     isFirstCrlEntry = false;
                 } // end for
@@ -835,7 +972,7 @@ public class X509Ca {
                             caInfo.getPublicCaInfo().getX500Subject(), crlIssuer);
                     crlBuilder.addExtension(Extension.freshestCRL, false, cdp);
                 }
-            } catch (CertIOException ex) {
+            } catch (IOException ex) {
                 LogUtil.error(LOG, ex, "crlBuilder.addExtension");
                 throw new OperationException(ErrorCode.INVALID_EXTENSION, ex);
             }
@@ -846,39 +983,58 @@ public class X509Ca {
             ConcurrentContentSigner concurrentSigner = (tmpCrlSigner == null)
                     ? caInfo.getSigner(null) : tmpCrlSigner;
 
-            X509CRLHolder crlHolder;
             try {
-                crlHolder = concurrentSigner.build(crlBuilder);
-            } catch (NoIdleSignerException ex) {
-                throw new OperationException(ErrorCode.SYSTEM_FAILURE, "NoIdleSignerException: "
-                        + ex.getMessage());
-            }
-
-            try {
-                X509CRL crl = new X509CRLObject(crlHolder.toASN1Structure());
+                X509CRL crl = crlBuilder.build(concurrentSigner);
                 caInfo.getCaEntry().setNextCrlNumber(crlNumber.longValue() + 1);
                 caInfo.commitNextCrlNo();
                 publishCrl(crl);
 
                 successful = true;
-                LOG.info("SUCCESSFUL generateCrl: ca={}, crlNumber={}, thisUpdate={}", caName,
-                        crlNumber, crl.getThisUpdate());
+                LOG.info("SUCCESSFUL generateCrl: ca={}, crlNumber={}, thisUpdate={}, entries={}",
+                        caName, crlNumber, crl.getThisUpdate(), crlBuilder.getNumEntries());
 
                 if (!deltaCrl) {
                     // clean up the CRL
                     cleanupCrlsWithoutException(msgId);
                 }
                 return crl;
-            } catch (CRLException ex) {
+            } catch (NoIdleSignerException ex) {
+                throw new OperationException(ErrorCode.SYSTEM_FAILURE, "NoIdleSignerException: "
+                        + ex.getMessage());
+            } catch (CRLException | IOException ex) {
                 throw new OperationException(ErrorCode.CRL_FAILURE, ex);
             }
         } finally {
+            if (crlBuilder != null) {
+                crlBuilder.close();
+            }
+
             if (!successful) {
                 LOG.info("    FAILED generateCrl: ca={}", caName);
             }
         }
     } // method generateCrl
 
+    private static void addCrlEntry(final X509CrlStreamBuilder crlBuilder,
+            final BigInteger serial, final Date revocationTime, final int reason,
+            final Date invalidityTime) throws OperationException {
+        try {
+            crlBuilder.addCrlEntry(serial, revocationTime, reason, invalidityTime);
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.CRL_FAILURE, ex);
+        }
+    }
+
+    private static void addCrlEntry(final X509CrlStreamBuilder crlBuilder,
+            final BigInteger serial, final Date revocationTime, final Extensions extensions)
+    throws OperationException {
+        try {
+            crlBuilder.addCrlEntry(serial, revocationTime, extensions);
+        } catch (IOException ex) {
+            throw new OperationException(ErrorCode.CRL_FAILURE, ex);
+        }
+    }
+
     /**
      * Add XiPKI extension CrlCertSet.
      *
@@ -892,7 +1048,7 @@ public class X509Ca {
      *         }
      * </pre>
      */
-    private void addXipkiCertset(final X509v2CRLBuilder crlBuilder, final boolean deltaCrl,
+    private void addXipkiCertset(final X509CrlStreamBuilder crlBuilder, final boolean deltaCrl,
             final CrlControl control, final X509Cert caCert, final Date notExpireAt,
             final boolean onlyCaCerts, final boolean onlyUserCerts) throws OperationException {
         if (deltaCrl || !control.isXipkiCertsetIncluded()) {
@@ -952,9 +1108,9 @@ public class X509Ca {
         try {
             crlBuilder.addExtension(ObjectIdentifiers.id_xipki_ext_crlCertset, false,
                     new DERSet(vector));
-        } catch (CertIOException ex) {
+        } catch (IOException ex) {
             throw new OperationException(ErrorCode.INVALID_EXTENSION,
-                    "CertIOException: " + ex.getMessage());
+                    "IOException: " + ex.getMessage());
         }
     }
 
@@ -995,6 +1151,15 @@ public class X509Ca {
             return 1;
         }
 
+        return publishToPublishers(certInfo);
+    } // method doPublishCertificate
+
+    /**
+     * Publishes the certificate, which is already saved in the CA certstore, to the publishers.
+     *
+     * @return 0 for published successfully, 2 if could not be published to all publishers.
+     */
+    private int publishToPublishers(final X509CertificateInfo certInfo) {
         for (IdentifiedX509CertPublisher publisher : getPublishers()) {
             if (!publisher.isAsyn()) {
                 boolean successful;
@@ -1022,7 +1187,7 @@ public class X509Ca {
         } // end for
 
         return 0;
-    } // method doPublishCertificate
+    } // method publishToPublishers
 
     public boolean republishCertificates(final List<String> publisherNames, final int numThreads) {
         String caName = getCaName();
@@ -1125,22 +1290,11 @@ public class X509Ca {
         return true;
     } // method clearPublishQueue
 
-    public boolean publishCertsInQueue() {
-        boolean allSuccessful = true;
-        for (IdentifiedX509CertPublisher publisher : getPublishers()) {
-            if (!publishCertsInQueue(publisher)) {
-                allSuccessful = false;
-            }
-        }
-
-        return allSuccessful;
-    }
-
-    private boolean publishCertsInQueue(final IdentifiedX509CertPublisher publisher) {
+    boolean publishCertsInQueue(final IdentifiedX509CertPublisher publisher) {
         ParamUtil.requireNonNull("publisher", publisher);
         X509Cert caCert = caInfo.getCertificate();
 
-        final int numEntries = 500;
+        final int numEntries = PUBLISHQUEUE_PAGE_SIZE;
 
         while (true) {
             List<Long> certIds;
@@ -1155,30 +1309,48 @@ public class X509Ca {
                 break;
             }
 
-            for (Long certId : certIds) {
-                X509CertificateInfo certInfo;
+            Map<Long, X509CertificateInfo> certInfos;
+            try {
+                certInfos = certstore.getCertificateInfosForIds(caCert, certIds, numEntries);
+            } catch (OperationException | CertificateException ex) {
+                LogUtil.error(LOG, ex);
+                return false;
+            }
 
-                try {
-                    certInfo = certstore.getCertificateInfoForId(caCert, certId);
-                } catch (OperationException | CertificateException ex) {
-                    LogUtil.error(LOG, ex);
-                    return false;
+            // entries of certificates which do not exist any more will be removed as well
+            List<Long> processedIds = new ArrayList<>(certIds.size());
+            List<X509CertificateInfo> toPublish = new ArrayList<>(certIds.size());
+            for (Long certId : certIds) {
+                X509CertificateInfo certInfo = certInfos.get(certId);
+                if (certInfo == null) {
+                    LOG.warn("certificate id={} in PUBLISHQUEUE does not exist", certId);
+                    processedIds.add(certId);
+                } else {
+                    toPublish.add(certInfo);
                 }
+            }
 
-                boolean successful = publisher.certificateAdded(certInfo);
-                if (!successful) {
-                    LOG.error("republishing certificate id={} failed", certId);
-                    return false;
-                }
+            int numPublished = toPublish.isEmpty() ? 0 : publisher.certificatesAdded(toPublish);
+            for (int i = 0; i < numPublished; i++) {
+                processedIds.add(toPublish.get(i).getCert().getCertId());
+            }
 
+            if (!processedIds.isEmpty()) {
                 try {
-                    certstore.removeFromPublishQueue(publisher.getName(), certId);
+                    certstore.removeFromPublishQueue(publisher.getName(), processedIds,
+                            numEntries);
                 } catch (OperationException ex) {
-                    LogUtil.warn(LOG, ex, "could not remove republished cert id=" + certId
-                            + " and publisher=" + publisher.getName());
-                    continue;
+                    LogUtil.error(LOG, ex, "could not remove " + processedIds.size()
+                            + " republished certificates for publisher=" + publisher.getName());
+                    return false;
                 }
-            } // end for
+            }
+
+            if (numPublished < toPublish.size()) {
+                LOG.error("republishing certificate id={} failed",
+                        toPublish.get(numPublished).getCert().getCertId());
+                return false;
+            }
         } // end while
 
         return true;
@@ -1190,6 +1362,21 @@ public class X509Ca {
             return false;
         }
 
+        CachedCrl cachedCrl;
+        try {
+            cachedCrl = new CachedCrl(crl.getEncoded());
+        } catch (CRLException | RuntimeException ex) {
+            LogUtil.warn(LOG, ex, "could not cache the new CRL, it will be loaded from database");
+            cachedCrl = null;
+        }
+
+        // the full and delta CRLs are cached separately
+        if (crl.getExtensionValue(Extension.deltaCRLIndicator.getId()) != null) {
+            currentDeltaCrl.set(cachedCrl);
+        } else {
+            currentFullCrl.set(cachedCrl);
+        }
+
         for (IdentifiedX509CertPublisher publisher : getPublishers()) {
             try {
                 publisher.crlAdded(caCert, crl);
@@ -1509,6 +1696,11 @@ public class X509Ca {
         return unrevokedCert;
     } // doUnrevokeCertificate
 
+    private boolean isDeltaCrlConfigured() {
+        X509CrlSignerEntryWrapper crlSigner = getCrlSigner();
+        return crlSigner != null && crlSigner.getCrlControl().getDeltaCrlIntervals() > 0;
+    }
+
     private boolean shouldPublishToDeltaCrlCache() {
         X509CrlSignerEntryWrapper crlSigner = getCrlSigner();
         if (crlSigner == null) {
@@ -1625,80 +1817,129 @@ public class X509Ca {
             final RequestType reqType, final byte[] transactionId, final String msgId)
     throws OperationExceptionWithIndex {
         ParamUtil.requireNonEmpty("certTemplates", certTemplates);
-        final int n = certTemplates.size();
-        List<GrantedCertTemplate> gcts = new ArrayList<>(n);
+        BatchEnrollment<CertTemplateData, GrantedCertTemplate, X509CertificateInfo> enrollment
+                = new BatchEnrollment<CertTemplateData, GrantedCertTemplate,
+                        X509CertificateInfo>() {
 
-        for (int i = 0; i < n; i++) {
-            CertTemplateData certTemplate = certTemplates.get(i);
-            try {
-                GrantedCertTemplate gct = createGrantedCertTemplate(certTemplate, requestedByRa,
-                        requestor, keyUpdate);
-                gcts.add(gct);
-            } catch (OperationException ex) {
-                throw new OperationExceptionWithIndex(i, ex);
+            @Override
+            GrantedCertTemplate grant(final CertTemplateData template)
+            throws OperationException {
+                return createGrantedCertTemplate(template, requestedByRa, requestor, keyUpdate);
             }
-        }
 
-        List<X509CertificateInfo> certInfos = new ArrayList<>(n);
-        OperationExceptionWithIndex exception = null;
-        String caName = getCaName();
+            @Override
+            X509CertificateInfo generate(final GrantedCertTemplate gct,
+                    final boolean deferStore) throws OperationException {
+                return generateAndLogCertificate(gct, requestedByRa, requestor, user, reqType,
+                        transactionId, msgId, deferStore);
+            }
 
-        for (int i = 0; i < n; i++) {
-            if (exception != null) {
-                break;
+            @Override
+            void store(final List<X509CertificateInfo> certInfos) throws OperationException {
+                storeCertificates(certInfos);
             }
-            GrantedCertTemplate gct = gcts.get(i);
-            final String certprofileName = gct.certprofile.getName();
-            final String subjectText = gct.grantedSubjectText;
-            LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'", caName,
-                    certprofileName, subjectText);
 
-            boolean successful = false;
-            try {
-                X509CertificateInfo certInfo = generateCertificate(gct, requestedByRa, requestor,
-                    user, false, reqType, transactionId, msgId);
-                successful = true;
-                certInfos.add(certInfo);
-
-                if (LOG.isInfoEnabled()) {
-                    String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
-                    X509CertWithDbId cert = certInfo.getCert();
-                    LOG.info(
-                        "{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
-                        prefix, caName, certprofileName, cert.getSubject(),
-                        LogUtil.formatCsn(cert.getCert().getSerialNumber()));
-                }
-            } catch (OperationException ex) {
-                exception = new OperationExceptionWithIndex(i, ex);
-            } catch (Throwable th) {
-                exception = new OperationExceptionWithIndex(i,
-                        new OperationException(ErrorCode.SYSTEM_FAILURE, th));
-            } finally {
-                if (!successful) {
-                    LOG.warn("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
-                            caName, certprofileName, subjectText);
-                }
+            @Override
+            void release(final GrantedCertTemplate gct) {
+                publicKeyCertsInProcess.remove(gct.fpPublicKey);
+                subjectCertsInProcess.remove(gct.fpSubject);
+            }
+
+            @Override
+            void revert(final List<X509CertificateInfo> certInfos,
+                    final OperationExceptionWithIndex exception) {
+                revertGeneratedCertificates(certInfos, exception, msgId);
+            }
+
+        };
+
+        // read once, the CA manager may shut down the executor concurrently
+        return enrollment.execute(certTemplates, getEnrollmentExecutor(certTemplates.size()));
+    } // method generateCertificates
+
+    private void storeCertificates(final List<X509CertificateInfo> certInfos)
+    throws OperationException {
+        List<X509CertificateInfo> newCertInfos = new ArrayList<>(certInfos.size());
+        for (X509CertificateInfo certInfo : certInfos) {
+            if (!certInfo.isAlreadyIssued()) {
+                newCertInfos.add(certInfo);
             }
         }
 
-        if (exception != null) {
-            LOG.error("could not generate certificate for request[{}], reverted all generated"
-                    + " certificates", exception.getIndex());
-            // delete generated certificates
-            for (X509CertificateInfo m : certInfos) {
-                BigInteger serial = m.getCert().getCert().getSerialNumber();
-                try {
-                    removeCertificate(serial, msgId);
-                } catch (Throwable thr) {
-                    LogUtil.error(LOG, thr, "could not delete certificate serial=" + serial);
-                }
+        if (newCertInfos.isEmpty()) {
+            return;
+        }
+
+        if (!certstore.addCertificates(newCertInfos)) {
+            throw new OperationException(ErrorCode.SYSTEM_FAILURE,
+                    "could not save certificates");
+        }
+
+        for (X509CertificateInfo certInfo : newCertInfos) {
+            publishToPublishers(certInfo);
+        }
+    } // method storeCertificates
+
+    private X509CertificateInfo generateAndLogCertificate(final GrantedCertTemplate gct,
+            final boolean requestedByRa, final RequestorInfo requestor, final String user,
+            final RequestType reqType, final byte[] transactionId, final String msgId,
+            final boolean batchStore)
+    throws OperationException {
+        String caName = getCaName();
+        final String certprofileName = gct.certprofile.getName();
+        final String subjectText = gct.grantedSubjectText;
+        LOG.info("     START generateCertificate: CA={}, profile={}, subject='{}'", caName,
+                certprofileName, subjectText);
+
+        boolean successful = false;
+        try {
+            X509CertificateInfo certInfo = generateCertificate(gct, requestedByRa, requestor,
+                user, false, reqType, transactionId, msgId, batchStore);
+            successful = true;
+
+            if (LOG.isInfoEnabled()) {
+                String prefix = certInfo.isAlreadyIssued() ? "RETURN_OLD_CERT" : "SUCCESSFUL";
+                X509CertWithDbId cert = certInfo.getCert();
+                LOG.info(
+                    "{} generateCertificate: CA={}, profile={}, subject='{}', serialNumber={}",
+                    prefix, caName, certprofileName, cert.getSubject(),
+                    LogUtil.formatCsn(cert.getCert().getSerialNumber()));
+            }
+            return certInfo;
+        } catch (OperationException ex) {
+            throw ex;
+        } catch (Throwable th) {
+            throw new OperationException(ErrorCode.SYSTEM_FAILURE, th);
+        } finally {
+            if (!successful) {
+                LOG.warn("    FAILED generateCertificate: CA={}, profile={}, subject='{}'",
+                        caName, certprofileName, subjectText);
             }
+        }
+    } // method generateAndLogCertificate
 
-            LogUtil.warn(LOG, exception);
-            throw exception;
+    private ExecutorService getEnrollmentExecutor(final int numTemplates) {
+        if (numTemplates < MIN_TEMPLATES_FOR_PARALLEL_ENROLLMENT) {
+            return null;
         }
 
-        return certInfos;
+        ExecutorService executor = caManager.getEnrollmentExecutor();
+        return (executor == null || executor.isShutdown()) ? null : executor;
+    }
+
+    private void revertGeneratedCertificates(final List<X509CertificateInfo> certInfos,
+            final OperationExceptionWithIndex exception, final String msgId) {
+        LOG.error("could not generate certificate for request[{}], reverted all generated"
+                + " certificates", exception.getIndex());
+        // delete generated certificates
+        for (X509CertificateInfo m : certInfos) {
+            BigInteger serial = m.getCert().getCert().getSerialNumber();
+            try {
+                removeCertificate(serial, msgId);
+            } catch (Throwable thr) {
+                LogUtil.error(LOG, thr, "could not delete certificate serial=" + serial);
+            }
+        }
     }
 
     public X509CertificateInfo generateCertificate(final CertTemplateData certTemplate,
@@ -1713,14 +1954,14 @@ public class X509Ca {
     private X509CertificateInfo generateCertificate(final GrantedCertTemplate gct,
             final boolean requestedByRa, final RequestorInfo requestor, final String user,
             final boolean keyUpdate, final RequestType reqType, final byte[] transactionId,
-            final String msgId)
+            final String msgId, final boolean deferStore)
     throws OperationException {
         AuditEvent event = newPerfAuditEvent(CaAuditConstants.TYPE_gen_cert, msgId);
 
         boolean successful = false;
         try {
             X509CertificateInfo ret = doGenerateCertificate(gct, requestedByRa, requestor, user,
-                    keyUpdate, reqType, transactionId, event);
+                    keyUpdate, reqType, transactionId, event, deferStore);
             successful = (ret != null);
             return ret;
         } finally {
@@ -1731,7 +1972,7 @@ public class X509Ca {
     private X509CertificateInfo doGenerateCertificate(final GrantedCertTemplate gct,
             final boolean requestedByRa, final RequestorInfo requestor, final String user,
             final boolean keyUpdate, final RequestType reqType, final byte[] transactionId,
-            final AuditEvent event)
+            final AuditEvent event, final boolean deferStore)
     throws OperationException {
         ParamUtil.requireNonNull("gct", gct);
 
@@ -1770,6 +2011,8 @@ public class X509Ca {
             }
         }
 
+        // if the saving is deferred, the caller releases the markers after having saved it
+        boolean releaseInProcess = true;
         try {
             X509v3CertificateBuilder certBuilder = new X509v3CertificateBuilder(
                     caInfo.getPublicCaInfo().getX500Subject(), caInfo.nextSerial(),
@@ -1813,12 +2056,19 @@ public class X509Ca {
                     }
                 }
 
-                X509CertificateObject cert = new X509CertificateObject(bcCert);
-                if (!verifySignature(cert)) {
-                    throw new OperationException(ErrorCode.SYSTEM_FAILURE,
-                            "could not verify the signature of generated certificate");
+                boolean verify = certVerificationControl.isVerificationRequired(
+                        numIssuedCerts.incrementAndGet(), hsmSigner);
+                if (verify) {
+                    numVerifiedCerts.incrementAndGet();
+                    if (!verifySignature(certHolder)) {
+                        numFailedCertVerifications.incrementAndGet();
+                        throw new OperationException(ErrorCode.SYSTEM_FAILURE,
+                                "could not verify the signature of generated certificate");
+                    }
                 }
 
+                X509CertificateObject cert = new X509CertificateObject(bcCert);
+
                 X509CertWithDbId certWithMeta = new X509CertWithDbId(cert, encodedCert);
                 ret = new X509CertificateInfo(certWithMeta, caInfo.getCertificate(),
                         gct.grantedPublicKeyData, gct.certprofile.getName());
@@ -1828,7 +2078,9 @@ public class X509Ca {
                 ret.setTransactionId(transactionId);
                 ret.setRequestedSubject(gct.requestedSubject);
 
-                if (doPublishCertificate(ret) == 1) {
+                if (deferStore) {
+                    releaseInProcess = false;
+                } else if (doPublishCertificate(ret) == 1) {
                     throw new OperationException(ErrorCode.SYSTEM_FAILURE,
                             "could not save certificate");
                 }
@@ -1847,8 +2099,10 @@ public class X509Ca {
 
             return ret;
         } finally {
-            publicKeyCertsInProcess.remove(gct.fpPublicKey);
-            subjectCertsInProcess.remove(gct.fpSubject);
+            if (releaseInProcess) {
+                publicKeyCertsInProcess.remove(gct.fpPublicKey);
+                subjectCertsInProcess.remove(gct.fpSubject);
+            }
         }
     } // method doGenerateCertificate
 
@@ -2195,41 +2449,62 @@ public class X509Ca {
             return null;
         }
 
-        Set<CaHasRequestorEntry> requestorEntries =
-                caManager.getCmpRequestorsForCa(caInfo.getName());
-        if (CollectionUtil.isEmpty(requestorEntries)) {
-            return null;
-        }
-
-        for (CaHasRequestorEntry m : requestorEntries) {
-            CmpRequestorEntryWrapper entry = caManager.getCmpRequestorWrapper(m.getRequestorName());
-            if (entry.getCert().getSubjectAsX500Name().equals(requestorSender)) {
-                return new CmpRequestorInfo(m, entry.getCert());
-            }
-        }
-
-        return null;
-    } // method getRequestor
+        return getRequestorIndex().getRequestor(requestorSender);
+    }
 
     public CmpRequestorInfo getRequestor(final X509Certificate requestorCert) {
         if (requestorCert == null) {
             return null;
         }
 
-        Set<CaHasRequestorEntry> requestorEntries =
-                caManager.getCmpRequestorsForCa(caInfo.getName());
-        if (CollectionUtil.isEmpty(requestorEntries)) {
-            return null;
-        }
+        return getRequestorIndex().getRequestor(requestorCert);
+    }
+
+    private CmpRequestorIndex getRequestorIndex() {
+        CmpRequestorIndex index = requestorIndex;
+        if (index != null) {
+            return index;
+        }
+
+        synchronized (requestorIndexLock) {
+            index = requestorIndex;
+            if (index == null) {
+                List<CmpRequestorInfo> requestors = new ArrayList<>();
+                Set<CaHasRequestorEntry> requestorEntries =
+                        caManager.getCmpRequestorsForCa(caInfo.getName());
+                if (CollectionUtil.isNonEmpty(requestorEntries)) {
+                    for (CaHasRequestorEntry m : new ArrayList<>(requestorEntries)) {
+                        CmpRequestorEntryWrapper entry =
+                                caManager.getCmpRequestorWrapper(m.getRequestorName());
+                        if (entry != null) {
+                            requestors.add(new CmpRequestorInfo(m, entry.getCert()));
+                        }
+                    }
+                }
 
-        for (CaHasRequestorEntry m : requestorEntries) {
-            CmpRequestorEntryWrapper entry = caManager.getCmpRequestorWrapper(m.getRequestorName());
-            if (entry.getCert().getCert().equals(requestorCert)) {
-                return new CmpRequestorInfo(m, entry.getCert());
+                index = new CmpRequestorIndex(requestors);
+                requestorIndex = index;
+                LOG.info("built requestor index of CA {} with {} requestors", caInfo.getName(),
+                        index.size());
             }
+            return index;
         }
+    } // method getRequestorIndex
 
-        return null;
+    /**
+     * Discards the requestor index, it will be rebuilt by the next look up. Must be called
+     * after the requestors of this CA or their certificates have been changed.
+     */
+    void invalidateRequestorIndex() {
+        synchronized (requestorIndexLock) {
+            requestorIndex = null;
+        }
+    }
+
+    String getCertVerificationStatus() {
+        return String.format("%s, issued=%d, verified=%d, failed=%d",
+                certVerificationControl, numIssuedCerts.get(), numVerifiedCerts.get(),
+                numFailedCertVerifications.get());
     }
 
     public CaManagerImpl getCaManager() {
@@ -2416,6 +2691,7 @@ public class X509Ca {
 
             HealthCheckResult signerHealth = new HealthCheckResult("Signer");
             signerHealth.setHealthy(caSignerHealthy);
+            addPoolStatistics(signerHealth, signer);
             result.addChildCheck(signerHealth);
         }
 
@@ -2433,6 +2709,7 @@ public class X509Ca {
 
             HealthCheckResult crlSignerHealth = new HealthCheckResult("CRLSigner");
             crlSignerHealth.setHealthy(crlSignerHealthy);
+            addPoolStatistics(crlSignerHealth, crlSigner.getSigner());
             result.addChildCheck(crlSignerHealth);
         }
 
@@ -2450,6 +2727,14 @@ public class X509Ca {
         return result;
     } // method healthCheck
 
+    private static void addPoolStatistics(final HealthCheckResult healthCheckResult,
+            final ConcurrentContentSigner signer) {
+        SignerPoolStatistics stats = signer.getPoolStatistics();
+        if (stats != null) {
+            stats.addTo(healthCheckResult);
+        }
+    }
+
     public void setAuditServiceRegister(final AuditServiceRegister auditServiceRegister) {
         this.auditServiceRegister = ParamUtil.requireNonNull("auditServiceRegister",
                 auditServiceRegister);
@@ -2477,9 +2762,16 @@ public class X509Ca {
         return event;
     }
 
-    private boolean verifySignature(final X509Certificate cert) {
-        ParamUtil.requireNonNull("cert", cert);
+    /**
+     * Verifies the signature of the issued certificate. The TBSCertificate and the signature
+     * are taken from the ASN.1 structure built by the signer, the certificate is not parsed.
+     * @param certHolder the issued certificate.
+     * @return whether the signature is valid.
+     */
+    private boolean verifySignature(final X509CertificateHolder certHolder) {
+        ParamUtil.requireNonNull("certHolder", certHolder);
         PublicKey caPublicKey = caInfo.getCertificate().getCert().getPublicKey();
+        Certificate bcCert = certHolder.toASN1Structure();
         try {
             final String provider = XiSecurityConstants.PROVIDER_NAME_NSS;
 
@@ -2491,9 +2783,10 @@ public class X509Ca {
                     LOG.info("security provider {} is not registered", provider);
                     tryNssToVerify = Boolean.FALSE;
                 } else {
-                    byte[] tbs = cert.getTBSCertificate();
-                    byte[] signatureValue = cert.getSignature();
-                    String sigAlgName = cert.getSigAlgName();
+                    byte[] tbs = bcCert.getTBSCertificate().getEncoded();
+                    byte[] signatureValue = bcCert.getSignature().getOctets();
+                    String sigAlgName = AlgorithmUtil.getSignatureAlgoName(
+                            bcCert.getSignatureAlgorithm());
                     try {
                         Signature verifier = Signature.getInstance(sigAlgName, provider);
                         verifier.initVerify(caPublicKey);
@@ -2511,19 +2804,23 @@ public class X509Ca {
             }
 
             if (tryNssToVerify) {
-                byte[] tbs = cert.getTBSCertificate();
-                byte[] signatureValue = cert.getSignature();
-                String sigAlgName = cert.getSigAlgName();
+                byte[] tbs = bcCert.getTBSCertificate().getEncoded();
+                byte[] signatureValue = bcCert.getSignature().getOctets();
+                String sigAlgName = AlgorithmUtil.getSignatureAlgoName(
+                        bcCert.getSignatureAlgorithm());
                 Signature verifier = Signature.getInstance(sigAlgName, provider);
                 verifier.initVerify(caPublicKey);
                 verifier.update(tbs);
                 return verifier.verify(signatureValue);
+            } else if (caVerifierProvider != null) {
+                return certHolder.isSignatureValid(caVerifierProvider);
             } else {
-                cert.verify(caPublicKey);
+                new X509CertificateObject(bcCert).verify(caPublicKey);
                 return true;
             }
         } catch (SignatureException | InvalidKeyException | CertificateException
-                | NoSuchAlgorithmException | NoSuchProviderException ex) {
+                | NoSuchAlgorithmException | NoSuchProviderException | CertException
+                | IOException ex) {
             LOG.debug("{} while verifying signature: {}", ex.getClass().getName(), ex.getMessage());
             return false;
         }
@@ -2546,24 +2843,19 @@ public class X509Ca {
 
     void shutdown() {
         if (crlGenerationService != null) {
-            crlGenerationService.cancel(false);
+            crlGenerationService.cancel();
             crlGenerationService = null;
         }
 
         if (expiredCertsRemover != null) {
-            expiredCertsRemover.cancel(false);
+            expiredCertsRemover.cancel();
             expiredCertsRemover = null;
         }
 
         if (suspendedCertsRevoker != null) {
-            suspendedCertsRevoker.cancel(false);
+            suspendedCertsRevoker.cancel();
             suspendedCertsRevoker = null;
         }
-
-        ScheduledThreadPoolExecutor executor = caManager.getScheduledThreadPoolExecutor();
-        if (executor != null) {
-            executor.purge();
-        }
     }
 
     private static Extension createReasonExtension(final int reasonCode) {
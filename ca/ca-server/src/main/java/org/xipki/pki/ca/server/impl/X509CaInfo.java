@@ -46,12 +46,14 @@ import java.util.Set;
 
 import org.bouncycastle.asn1.cmp.CMPCertificate;
 import org.bouncycastle.asn1.x509.Certificate;
+import org.xipki.commons.common.ConfPairs;
 import org.xipki.commons.common.util.CollectionUtil;
 import org.xipki.commons.common.util.ParamUtil;
 import org.xipki.commons.security.CertRevocationInfo;
 import org.xipki.commons.security.ConcurrentContentSigner;
 import org.xipki.commons.security.SecurityFactory;
 import org.xipki.commons.security.SignerConf;
+import org.xipki.commons.security.SignerFactoryRegisterImpl;
 import org.xipki.commons.security.X509Cert;
 import org.xipki.commons.security.exception.XiSecurityException;
 import org.xipki.pki.ca.api.OperationException;
@@ -62,6 +64,7 @@ import org.xipki.pki.ca.server.mgmt.api.CaEntry;
 import org.xipki.pki.ca.server.mgmt.api.CaStatus;
 import org.xipki.pki.ca.server.mgmt.api.Permission;
 import org.xipki.pki.ca.server.mgmt.api.ValidityMode;
+import org.xipki.pki.ca.server.mgmt.api.x509.CertVerificationControl;
 import org.xipki.pki.ca.server.mgmt.api.x509.RevokeSuspendedCertsControl;
 import org.xipki.pki.ca.server.mgmt.api.x509.X509CaEntry;
 
@@ -74,6 +77,8 @@ public class X509CaInfo {
 
     private static final long MS_PER_DAY = 24L * 60 * 60 * 1000;
 
+    private static final String TYPE_PKCS11 = "PKCS11";
+
     private final X509CaEntry caEntry;
 
     private long noNewCertificateAfter;
@@ -100,6 +105,8 @@ public class X509CaInfo {
 
     private RevokeSuspendedCertsControl revokeSuspendedCertsControl;
 
+    private CertVerificationControl certVerificationControl;
+
     public X509CaInfo(final X509CaEntry caEntry, final CertificateStore certStore)
     throws OperationException {
         this.caEntry = ParamUtil.requireNonNull("caEntry", caEntry);
@@ -257,6 +264,43 @@ public class X509CaInfo {
         return caEntry.getSignerType();
     }
 
+    /**
+     * Whether the CA key is held in a PKCS#11 device. For the signer of type
+     * {@link SignerFactoryRegisterImpl#TYPE_BALANCED}, this is the case if any backend is of
+     * type PKCS11.
+     * @return whether the CA key is held in a PKCS#11 device.
+     */
+    public boolean isHsmSigner() {
+        String type = caEntry.getSignerType();
+        if (TYPE_PKCS11.equalsIgnoreCase(type)) {
+            return true;
+        }
+
+        if (!SignerFactoryRegisterImpl.TYPE_BALANCED.equalsIgnoreCase(type)) {
+            return false;
+        }
+
+        List<String[]> signerConfs;
+        try {
+            signerConfs = CaEntry.splitCaSignerConfs(caEntry.getSignerConf());
+        } catch (XiSecurityException ex) {
+            // cannot happen for an initialized signer
+            return false;
+        }
+
+        for (String[] m : signerConfs) {
+            ConfPairs pairs = new ConfPairs(m[1]);
+            for (String name : pairs.getNames()) {
+                // backend types are specified by backend.<i>=<type>
+                if (name.startsWith("backend.") && name.indexOf('.', 8) == -1
+                        && TYPE_PKCS11.equalsIgnoreCase(pairs.getValue(name))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    } // method isHsmSigner
+
     @Override
     public String toString() {
         return caEntry.toString(false);
@@ -370,6 +414,8 @@ public class X509CaInfo {
         for (String[] m : signerConfs) {
             String algo = m[0];
             SignerConf signerConf = new SignerConf(m[1]);
+            signerConf.setName((signerConfs.size() == 1) ? caEntry.getName()
+                    : caEntry.getName() + "/" + algo);
             ConcurrentContentSigner signer;
             try {
                 signer = securityFactory.createSigner(caEntry.getSignerType(), signerConf,
@@ -426,4 +472,13 @@ public class X509CaInfo {
         this.revokeSuspendedCertsControl = revokeSuspendedCertsControl;
     }
 
+    public CertVerificationControl getCertVerificationControl() {
+        return certVerificationControl;
+    }
+
+    public void setCertVerificationControl(
+            final CertVerificationControl certVerificationControl) {
+        this.certVerificationControl = certVerificationControl;
+    }
+
 }
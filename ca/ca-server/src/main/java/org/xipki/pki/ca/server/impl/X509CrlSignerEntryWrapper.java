@@ -100,9 +100,10 @@ class X509CrlSignerEntryWrapper {
         dbEntry.setConfFaulty(true);
 
         X509Certificate responderCert = dbEntry.getCertificate();
+        SignerConf signerConf = new SignerConf(dbEntry.getConf());
+        signerConf.setName(dbEntry.getName());
         try {
-            signer = securityFactory.createSigner(dbEntry.getType(),
-                    new SignerConf(dbEntry.getConf()), responderCert);
+            signer = securityFactory.createSigner(dbEntry.getType(), signerConf, responderCert);
         } catch (ObjectCreationException ex1) {
             throw new XiSecurityException("signer without certificate is not allowed");
         }
@@ -0,0 +1,394 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+
+package org.xipki.pki.ca.server.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.math.BigInteger;
+import java.security.cert.CRLException;
+import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Vector;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1InputStream;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.CertificateList;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.jce.provider.X509CRLObject;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.ConcurrentContentSigner;
+import org.xipki.commons.security.exception.NoIdleSignerException;
+
+/**
+ * Builds X.509 CRL v2 whose revokedCertificates are DER-encoded directly into a temporary
+ * file, instead of being kept as ASN.1 objects in memory. The TBSCertList is streamed to
+ * the signer, so that only the final encoded CRL is held in memory.
+ *
+ * <p>The encoding is identical to that of {@link org.bouncycastle.cert.X509v2CRLBuilder}.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class X509CrlStreamBuilder implements Closeable {
+
+    private static final int TAG_SEQUENCE = 0x30;
+
+    private static final byte[] VERSION_V2 = new byte[]{0x02, 0x01, 0x01};
+
+    private static final byte[][] ENCODED_REASON_EXTENSIONS = new byte[11][];
+
+    private final byte[] encodedIssuer;
+
+    private final Date thisUpdate;
+
+    private final Date nextUpdate;
+
+    private final File entriesFile;
+
+    private final OutputStream entriesOut;
+
+    private final ByteArrayOutputStream extensions = new ByteArrayOutputStream();
+
+    private long entriesLength;
+
+    private int numEntries;
+
+    private boolean entriesClosed;
+
+    static {
+        for (int i = 0; i < ENCODED_REASON_EXTENSIONS.length; i++) {
+            if (i == 7) {
+                // 7 is not used
+                continue;
+            }
+
+            try {
+                ENCODED_REASON_EXTENSIONS[i] = new Extension(Extension.reasonCode, false,
+                        CRLReason.lookup(i).getEncoded()).getEncoded();
+            } catch (IOException ex) {
+                throw new ExceptionInInitializerError("could not encode reason " + i);
+            }
+        }
+    }
+
+    X509CrlStreamBuilder(final X500Name issuer, final Date thisUpdate, final Date nextUpdate)
+    throws IOException {
+        ParamUtil.requireNonNull("issuer", issuer);
+        this.thisUpdate = ParamUtil.requireNonNull("thisUpdate", thisUpdate);
+        this.nextUpdate = nextUpdate;
+        this.encodedIssuer = issuer.getEncoded(ASN1Encoding.DER);
+        // the file is deleted in close(), deleteOnExit() would keep its path till JVM exit
+        this.entriesFile = File.createTempFile("xipki-crl-", ".tmp");
+        try {
+            this.entriesOut = new BufferedOutputStream(new FileOutputStream(entriesFile),
+                    64 * 1024);
+        } catch (IOException ex) {
+            entriesFile.delete();
+            throw ex;
+        }
+    }
+
+    int getNumEntries() {
+        return numEntries;
+    }
+
+    void addCrlEntry(final BigInteger serial, final Date revocationTime, final int reason,
+            final Date invalidityTime) throws IOException {
+        byte[] encodedReason = null;
+        if (reason != 0) {
+            if (reason < 0 || reason >= ENCODED_REASON_EXTENSIONS.length
+                    || ENCODED_REASON_EXTENSIONS[reason] == null) {
+                throw new IllegalArgumentException("invalid reason " + reason);
+            }
+            encodedReason = ENCODED_REASON_EXTENSIONS[reason];
+        }
+
+        byte[] encodedInvalidity = null;
+        if (invalidityTime != null) {
+            byte[] value = new ASN1GeneralizedTime(invalidityTime).getEncoded();
+            encodedInvalidity = new Extension(Extension.invalidityDate, false,
+                    new DEROctetString(value)).getEncoded();
+        }
+
+        byte[] encodedExtensions = null;
+        if (encodedReason != null || encodedInvalidity != null) {
+            int len = ((encodedReason == null) ? 0 : encodedReason.length)
+                    + ((encodedInvalidity == null) ? 0 : encodedInvalidity.length);
+            ByteArrayOutputStream bout = new ByteArrayOutputStream(len + 4);
+            writeHeader(bout, TAG_SEQUENCE, len);
+            if (encodedReason != null) {
+                bout.write(encodedReason);
+            }
+            if (encodedInvalidity != null) {
+                bout.write(encodedInvalidity);
+            }
+            encodedExtensions = bout.toByteArray();
+        }
+
+        writeCrlEntry(serial, revocationTime, encodedExtensions);
+    }
+
+    void addCrlEntry(final BigInteger serial, final Date revocationTime,
+            final Extensions extensions) throws IOException {
+        byte[] encodedExtensions = (extensions == null)
+                ? null : extensions.getEncoded(ASN1Encoding.DER);
+        writeCrlEntry(serial, revocationTime, encodedExtensions);
+    }
+
+    private void writeCrlEntry(final BigInteger serial, final Date revocationTime,
+            final byte[] encodedExtensions) throws IOException {
+        ParamUtil.requireNonNull("serial", serial);
+        ParamUtil.requireNonNull("revocationTime", revocationTime);
+        if (entriesClosed) {
+            throw new IllegalStateException("CRL entries could not be added any more");
+        }
+
+        byte[] encodedSerial = new ASN1Integer(serial).getEncoded();
+        byte[] encodedRevTime = new Time(revocationTime).getEncoded(ASN1Encoding.DER);
+        int len = encodedSerial.length + encodedRevTime.length
+                + ((encodedExtensions == null) ? 0 : encodedExtensions.length);
+
+        entriesLength += writeHeader(entriesOut, TAG_SEQUENCE, len) + len;
+        entriesOut.write(encodedSerial);
+        entriesOut.write(encodedRevTime);
+        if (encodedExtensions != null) {
+            entriesOut.write(encodedExtensions);
+        }
+        numEntries++;
+    }
+
+    void addExtension(final ASN1ObjectIdentifier type, final boolean critical,
+            final ASN1Encodable value) throws IOException {
+        ParamUtil.requireNonNull("type", type);
+        ParamUtil.requireNonNull("value", value);
+        byte[] encodedValue = value.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+        extensions.write(new Extension(type, critical, encodedValue).getEncoded());
+    }
+
+    /**
+     * Sign the CRL and return it. The builder can not be used any more after this method
+     * has been called.
+     */
+    X509CRL build(final ConcurrentContentSigner signer)
+    throws NoIdleSignerException, IOException, CRLException {
+        ParamUtil.requireNonNull("signer", signer);
+        if (!entriesClosed) {
+            entriesOut.close();
+            entriesClosed = true;
+        }
+
+        if (entriesFile.length() != entriesLength) {
+            throw new IOException("size of " + entriesFile.getPath() + " != " + entriesLength);
+        }
+
+        byte[] encodedSigAlgId = signer.getAlgorithmIdentifier().getEncoded(ASN1Encoding.DER);
+
+        // version, signature, issuer, thisUpdate, nextUpdate
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(encodedIssuer.length + 100);
+        bout.write(VERSION_V2);
+        bout.write(encodedSigAlgId);
+        bout.write(encodedIssuer);
+        bout.write(new Time(thisUpdate).getEncoded(ASN1Encoding.DER));
+        if (nextUpdate != null) {
+            bout.write(new Time(nextUpdate).getEncoded(ASN1Encoding.DER));
+        }
+        byte[] tbsPrefix = bout.toByteArray();
+
+        // revokedCertificates, omitted if empty
+        bout.reset();
+        if (numEntries > 0) {
+            writeHeader(bout, TAG_SEQUENCE, toInt(entriesLength));
+        }
+        byte[] entriesHeader = bout.toByteArray();
+
+        // crlExtensions [0] EXPLICIT Extensions
+        bout.reset();
+        if (extensions.size() > 0) {
+            int extnsLen = extensions.size();
+            writeHeader(bout, 0xA0, getHeaderLength(extnsLen) + extnsLen);
+            writeHeader(bout, TAG_SEQUENCE, extnsLen);
+            extensions.writeTo(bout);
+        }
+        byte[] tbsSuffix = bout.toByteArray();
+
+        int tbsLen = toInt(tbsPrefix.length + entriesHeader.length + entriesLength
+                + tbsSuffix.length);
+        bout.reset();
+        writeHeader(bout, TAG_SEQUENCE, tbsLen);
+        byte[] tbsHeader = bout.toByteArray();
+
+        byte[] signature;
+        try (InputStream tbsStream = openTbsStream(tbsHeader, tbsPrefix, entriesHeader,
+                tbsSuffix)) {
+            signature = signer.sign(tbsStream);
+        }
+
+        int sigLen = 1 + signature.length;
+        int crlContentLen = toInt((long) tbsHeader.length + tbsLen + encodedSigAlgId.length
+                + getHeaderLength(sigLen) + sigLen);
+        int crlLen = toInt((long) getHeaderLength(crlContentLen) + crlContentLen);
+
+        byte[] encodedCrl = new byte[crlLen];
+        int off = writeHeader(encodedCrl, 0, TAG_SEQUENCE, crlContentLen);
+        try (InputStream tbsStream = openTbsStream(tbsHeader, tbsPrefix, entriesHeader,
+                tbsSuffix)) {
+            int len = tbsHeader.length + tbsLen;
+            new DataInputStream(tbsStream).readFully(encodedCrl, off, len);
+            off += len;
+        }
+
+        System.arraycopy(encodedSigAlgId, 0, encodedCrl, off, encodedSigAlgId.length);
+        off += encodedSigAlgId.length;
+        off = writeHeader(encodedCrl, off, 0x03, sigLen);
+        encodedCrl[off++] = 0; // no unused bits
+        System.arraycopy(signature, 0, encodedCrl, off, signature.length);
+
+        return new EncodedX509CrlObject(encodedCrl);
+    } // method build
+
+    @Override
+    public void close() {
+        try {
+            if (!entriesClosed) {
+                entriesOut.close();
+                entriesClosed = true;
+            }
+        } catch (IOException ex) {
+            // ignore
+        }
+        entriesFile.delete();
+    }
+
+    private InputStream openTbsStream(final byte[] tbsHeader, final byte[] tbsPrefix,
+            final byte[] entriesHeader, final byte[] tbsSuffix) throws IOException {
+        Vector<InputStream> streams = new Vector<>(5);
+        streams.add(new ByteArrayInputStream(tbsHeader));
+        streams.add(new ByteArrayInputStream(tbsPrefix));
+        streams.add(new ByteArrayInputStream(entriesHeader));
+        streams.add(new FileInputStream(entriesFile));
+        streams.add(new ByteArrayInputStream(tbsSuffix));
+        return new SequenceInputStream(streams.elements());
+    }
+
+    private static int toInt(final long len) throws IOException {
+        if (len > Integer.MAX_VALUE) {
+            throw new IOException("CRL too large: " + len + " bytes");
+        }
+        return (int) len;
+    }
+
+    private static int getHeaderLength(final int bodyLen) {
+        if (bodyLen < 0x80) {
+            return 2;
+        } else if (bodyLen < 0x100) {
+            return 3;
+        } else if (bodyLen < 0x10000) {
+            return 4;
+        } else if (bodyLen < 0x1000000) {
+            return 5;
+        } else {
+            return 6;
+        }
+    }
+
+    private static int writeHeader(final OutputStream out, final int tag, final int bodyLen)
+    throws IOException {
+        byte[] header = new byte[6];
+        int len = writeHeader(header, 0, tag, bodyLen);
+        out.write(header, 0, len);
+        return len;
+    }
+
+    private static int writeHeader(final byte[] out, final int offset, final int tag,
+            final int bodyLen) {
+        int off = offset;
+        out[off++] = (byte) tag;
+        int headerLen = getHeaderLength(bodyLen);
+        if (headerLen == 2) {
+            out[off++] = (byte) bodyLen;
+        } else {
+            int numLenBytes = headerLen - 2;
+            out[off++] = (byte) (0x80 | numLenBytes);
+            for (int i = numLenBytes - 1; i >= 0; i--) {
+                out[off++] = (byte) (bodyLen >>> (8 * i));
+            }
+        }
+        return off;
+    }
+
+    /**
+     * {@link X509CRLObject} which returns the original encoded CRL instead of re-encoding it.
+     */
+    private static class EncodedX509CrlObject extends X509CRLObject {
+
+        private final byte[] encoded;
+
+        EncodedX509CrlObject(final byte[] encoded) throws CRLException, IOException {
+            // lazy parsing: the revoked certificates are decoded only on demand
+            super(CertificateList.getInstance(
+                    new ASN1InputStream(encoded, true).readObject()));
+            this.encoded = encoded;
+        }
+
+        @Override
+        public byte[] getEncoded() throws CRLException {
+            return Arrays.copyOf(encoded, encoded.length);
+        }
+
+    } // class EncodedX509CrlObject
+
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl.cmp;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.HashAlgoType;
+
+/**
+ * Immutable index of the requestors of a CA by the SHA-1 fingerprint and subject of their
+ * certificates.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CmpRequestorIndex {
+
+    private final Map<String, CmpRequestorInfo> byFingerprint;
+
+    private final Map<X500Name, CmpRequestorInfo> bySubject;
+
+    /**
+     * Constructor.
+     * @param requestors requestors of the CA. If more than one requestor has the same subject,
+     *          the first one is used for the look up by subject.
+     */
+    public CmpRequestorIndex(final Iterable<CmpRequestorInfo> requestors) {
+        ParamUtil.requireNonNull("requestors", requestors);
+        Map<String, CmpRequestorInfo> tmpByFingerprint = new HashMap<>();
+        Map<X500Name, CmpRequestorInfo> tmpBySubject = new HashMap<>();
+        for (CmpRequestorInfo m : requestors) {
+            tmpByFingerprint.put(HashAlgoType.SHA1.hexHash(m.getCert().getEncodedCert()), m);
+            X500Name subject = m.getCert().getSubjectAsX500Name();
+            if (!tmpBySubject.containsKey(subject)) {
+                tmpBySubject.put(subject, m);
+            }
+        }
+        this.byFingerprint = Collections.unmodifiableMap(tmpByFingerprint);
+        this.bySubject = Collections.unmodifiableMap(tmpBySubject);
+    }
+
+    public CmpRequestorInfo getRequestor(final X500Name subject) {
+        return bySubject.get(subject);
+    }
+
+    public CmpRequestorInfo getRequestor(final X509Certificate cert) {
+        byte[] encoded;
+        try {
+            encoded = cert.getEncoded();
+        } catch (CertificateEncodingException ex) {
+            return null;
+        }
+        return byFingerprint.get(HashAlgoType.SHA1.hexHash(encoded));
+    }
+
+    public int size() {
+        return byFingerprint.size();
+    }
+
+}
@@ -89,8 +89,9 @@ public class CmpResponderEntryWrapper {
 
         X509Certificate responderCert = dbEntry.getCertificate();
         dbEntry.setConfFaulty(true);
-        signer = securityFactory.createSigner(dbEntry.getType(), new SignerConf(dbEntry.getConf()),
-                responderCert);
+        SignerConf signerConf = new SignerConf(dbEntry.getConf());
+        signerConf.setName(dbEntry.getName());
+        signer = securityFactory.createSigner(dbEntry.getType(), signerConf, responderCert);
         if (signer.getCertificate() == null) {
             throw new ObjectCreationException("signer without certificate is not allowed");
         }
@@ -125,6 +125,7 @@ import org.xipki.commons.security.AlgorithmValidator;
 import org.xipki.commons.security.ConcurrentContentSigner;
 import org.xipki.commons.security.CrlReason;
 import org.xipki.commons.security.ObjectIdentifiers;
+import org.xipki.commons.security.SignerPoolStatistics;
 import org.xipki.commons.security.X509Cert;
 import org.xipki.commons.security.XiSecurityConstants;
 import org.xipki.commons.security.util.AlgorithmUtil;
@@ -138,7 +139,9 @@ import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
 import org.xipki.pki.ca.common.cmp.CmpUtf8Pairs;
 import org.xipki.pki.ca.common.cmp.CmpUtil;
 import org.xipki.pki.ca.server.impl.CaAuditConstants;
+import org.xipki.pki.ca.server.impl.CaJobScheduler.JobClass;
 import org.xipki.pki.ca.server.impl.CaManagerImpl;
+import org.xipki.pki.ca.server.impl.CachedCrl;
 import org.xipki.pki.ca.server.impl.CertTemplateData;
 import org.xipki.pki.ca.server.impl.X509Ca;
 import org.xipki.pki.ca.server.impl.store.X509CertWithRevocationInfo;
@@ -208,8 +211,8 @@ public class X509CaCmpResponder extends CmpResponder {
         this.caName = caName;
 
         PendingPoolCleaner pendingPoolCleaner = new PendingPoolCleaner();
-        caManager.getScheduledThreadPoolExecutor().scheduleAtFixedRate(pendingPoolCleaner, 10, 10,
-                TimeUnit.MINUTES);
+        caManager.getJobScheduler().schedule(caName + ": clean-pending-pool", JobClass.DEFAULT,
+                null, pendingPoolCleaner, 10, 10, TimeUnit.MINUTES);
     }
 
     public X509Ca getCa() {
@@ -238,12 +241,17 @@ public class X509CaCmpResponder extends CmpResponder {
 
         boolean healthy = result.isHealthy();
 
-        boolean responderHealthy = caManager.getCmpResponderWrapper(
-                getResponderName()).getSigner().isHealthy();
+        ConcurrentContentSigner responderSigner = caManager.getCmpResponderWrapper(
+                getResponderName()).getSigner();
+        boolean responderHealthy = responderSigner.isHealthy();
         healthy &= responderHealthy;
 
         HealthCheckResult responderHealth = new HealthCheckResult("Responder");
         responderHealth.setHealthy(responderHealthy);
+        SignerPoolStatistics stats = responderSigner.getPoolStatistics();
+        if (stats != null) {
+            stats.addTo(responderHealth);
+        }
         result.addChildCheck(responderHealth);
 
         result.setHealthy(healthy);
@@ -1503,7 +1511,7 @@ public class X509CaCmpResponder extends CmpResponder {
             if (CMPObjectIdentifiers.it_currentCRL.equals(infoType)) {
                 event.addEventType(CaAuditConstants.TYPE_CMP_genm_currentCrl);
                 checkPermission(requestor, Permission.GET_CRL);
-                CertificateList crl = ca.getCurrentCrl();
+                CertificateList crl;
 
                 if (itv.getInfoValue() == null) { // as defined in RFC 4210
                     crl = ca.getCurrentCrl();
@@ -1639,6 +1647,21 @@ public class X509CaCmpResponder extends CmpResponder {
         return (crlNumber == null) ? ca.getCurrentCrl() : ca.getCrl(crlNumber);
     }
 
+    /**
+     * Returns the current full CRL. The delta CRL is not considered.
+     * @since 2.1.0
+     */
+    public CachedCrl getCurrentCachedCrl(final CmpRequestorInfo requestor)
+    throws OperationException {
+        ParamUtil.requireNonNull("requestor", requestor);
+        try {
+            checkPermission(requestor, Permission.GET_CRL);
+        } catch (InsuffientPermissionException ex) {
+            throw new OperationException(ErrorCode.INSUFFICIENT_PERMISSION, ex.getMessage());
+        }
+        return getCa().getCurrentCachedCrl(false);
+    }
+
     /**
      * @since 2.1.0
      */
@@ -37,6 +37,7 @@ package org.xipki.pki.ca.server.impl.ocsp;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509CRL;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -148,6 +149,23 @@ public class OcspCertPublisher extends X509CertPublisher {
         }
     }
 
+    @Override
+    public int certificatesAdded(final List<X509CertificateInfo> certInfos) {
+        if (certInfos.size() > 1) {
+            try {
+                queryExecutor.addCerts(certInfos);
+                return certInfos.size();
+            } catch (Exception ex) {
+                // e.g. some of the certificates are already contained in the database
+                LOG.info("could not save {} certificates in one batch, save them one by one: {}",
+                        certInfos.size(), ex.getMessage());
+                LOG.debug("could not save certificates in one batch", ex);
+            }
+        }
+
+        return super.certificatesAdded(certInfos);
+    }
+
     @Override
     public boolean certificateRevoked(final X509Cert caCert, final X509CertWithDbId cert,
             final String certprofile, final CertRevocationInfo revInfo) {
@@ -64,6 +64,7 @@ import org.xipki.commons.security.util.X509Util;
 import org.xipki.pki.ca.api.OperationException;
 import org.xipki.pki.ca.api.OperationException.ErrorCode;
 import org.xipki.pki.ca.api.X509CertWithDbId;
+import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
 
 /**
  * @author Lijun Liao
@@ -200,21 +201,7 @@ class OcspStoreQueryExecutor {
         }
 
         final String sqlAddCert = revoked ? SQL_ADD_REVOKED_CERT : SQL_ADD_CERT;
-
         long certId = certificate.getCertId();
-        byte[] encodedCert = certificate.getEncodedCert();
-        String b64Cert = Base64.toBase64String(encodedCert);
-        String sha1Fp = HashAlgoType.SHA1.base64Hash(encodedCert);
-        String sha224Fp = HashAlgoType.SHA224.base64Hash(encodedCert);
-        String sha256Fp = HashAlgoType.SHA256.base64Hash(encodedCert);
-        String sha384Fp = HashAlgoType.SHA384.base64Hash(encodedCert);
-        String sha512Fp = HashAlgoType.SHA512.base64Hash(encodedCert);
-
-        long currentTimeSeconds = System.currentTimeMillis() / 1000;
-        X509Certificate cert = certificate.getCert();
-        long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
-        long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
-        String cuttedSubject = X509Util.cutText(certificate.getSubject(), maxX500nameLen);
 
         PreparedStatement[] pss = borrowPreparedStatements(sqlAddCert, SQL_ADD_CRAW, SQL_ADD_CHASH);
         // all statements have the same connection
@@ -222,49 +209,12 @@ class OcspStoreQueryExecutor {
 
         try {
             PreparedStatement psAddcert = pss[0];
-            conn = psAddcert.getConnection();
-
-            // CERT
-            int idx = 2;
-            psAddcert.setLong(idx++, currentTimeSeconds);
-            psAddcert.setString(idx++, serialNumber.toString(16));
-            psAddcert.setLong(idx++, notBeforeSeconds);
-            psAddcert.setLong(idx++, notAfterSeconds);
-            setBoolean(psAddcert, idx++, revoked);
-            psAddcert.setInt(idx++, issuerId);
-            psAddcert.setString(idx++, certprofile);
-
-            if (revoked) {
-                psAddcert.setLong(idx++, revInfo.getRevocationTime().getTime() / 1000);
-                if (revInfo.getInvalidityTime() != null) {
-                    psAddcert.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
-                } else {
-                    psAddcert.setNull(idx++, Types.BIGINT);
-                }
-                int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
-                psAddcert.setInt(idx++, reasonCode);
-            }
-
-            // CRAW
             PreparedStatement psAddRawcert = pss[1];
-
-            idx = 2;
-            psAddRawcert.setString(idx++, cuttedSubject);
-            psAddRawcert.setString(idx++, b64Cert);
-
-            // CHASH
             PreparedStatement psAddCerthash = pss[2];
+            conn = psAddcert.getConnection();
 
-            idx = 2;
-            psAddCerthash.setString(idx++, sha1Fp);
-            psAddCerthash.setString(idx++, sha224Fp);
-            psAddCerthash.setString(idx++, sha256Fp);
-            psAddCerthash.setString(idx++, sha384Fp);
-            psAddCerthash.setString(idx++, sha512Fp);
-
-            psAddcert.setLong(1, certId);
-            psAddCerthash.setLong(1, certId);
-            psAddRawcert.setLong(1, certId);
+            setAddCertParams(psAddcert, psAddRawcert, psAddCerthash, issuerId, certificate,
+                    certprofile, revInfo);
 
             final boolean origAutoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
@@ -317,6 +267,150 @@ class OcspStoreQueryExecutor {
         }
     } // method addOrUpdateCert
 
+    /**
+     * Adds the certificates in one transaction using JDBC batches. In contrast to
+     * {@link #addCert(X509Cert, X509CertWithDbId, String, CertRevocationInfo)}, it does not
+     * check whether the certificates are already contained, the whole transaction fails
+     * in this case.
+     */
+    void addCerts(final List<X509CertificateInfo> certInfos)
+    throws DataAccessException, CertificateEncodingException, OperationException {
+        ParamUtil.requireNonEmpty("certInfos", certInfos);
+
+        PreparedStatement[] pss = borrowPreparedStatements(SQL_ADD_CERT, SQL_ADD_REVOKED_CERT,
+                SQL_ADD_CRAW, SQL_ADD_CHASH);
+        // all statements have the same connection
+        Connection conn = null;
+
+        try {
+            PreparedStatement psAddcert = pss[0];
+            PreparedStatement psAddRevokedCert = pss[1];
+            PreparedStatement psAddRawcert = pss[2];
+            PreparedStatement psAddCerthash = pss[3];
+            conn = psAddcert.getConnection();
+
+            int numRevoked = 0;
+            for (X509CertificateInfo certInfo : certInfos) {
+                CertRevocationInfo revInfo = certInfo.getRevocationInfo();
+                PreparedStatement ps = (revInfo == null) ? psAddcert : psAddRevokedCert;
+                if (revInfo != null) {
+                    numRevoked++;
+                }
+
+                int issuerId = getIssuerId(certInfo.getIssuerCert());
+                setAddCertParams(ps, psAddRawcert, psAddCerthash, issuerId, certInfo.getCert(),
+                        certInfo.getProfileName(), revInfo);
+                ps.addBatch();
+                psAddRawcert.addBatch();
+                psAddCerthash.addBatch();
+            }
+
+            final boolean origAutoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            String sql = null;
+
+            try {
+                if (numRevoked < certInfos.size()) {
+                    sql = SQL_ADD_CERT;
+                    psAddcert.executeBatch();
+                }
+
+                if (numRevoked > 0) {
+                    sql = SQL_ADD_REVOKED_CERT;
+                    psAddRevokedCert.executeBatch();
+                }
+
+                sql = SQL_ADD_CRAW;
+                psAddRawcert.executeBatch();
+
+                sql = SQL_ADD_CHASH;
+                psAddCerthash.executeBatch();
+
+                sql = "(commit add certs to OCSP)";
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                LOG.error("datasource {} could not add {} certificates: {}",
+                        datasource.getDatasourceName(), certInfos.size(), ex.getMessage());
+                throw datasource.translate(sql, ex);
+            } finally {
+                conn.setAutoCommit(origAutoCommit);
+            }
+        } catch (SQLException ex) {
+            throw datasource.translate(null, ex);
+        } finally {
+            for (PreparedStatement ps : pss) {
+                try {
+                    ps.close();
+                } catch (Throwable th) {
+                    LOG.warn("could not close PreparedStatement", th);
+                }
+            }
+
+            if (conn != null) {
+                datasource.returnConnection(conn);
+            }
+        }
+    } // method addCerts
+
+    private void setAddCertParams(final PreparedStatement psAddcert,
+            final PreparedStatement psAddRawcert, final PreparedStatement psAddCerthash,
+            final int issuerId, final X509CertWithDbId certificate, final String certprofile,
+            final CertRevocationInfo revInfo) throws SQLException {
+        boolean revoked = (revInfo != null);
+        long certId = certificate.getCertId();
+        byte[] encodedCert = certificate.getEncodedCert();
+        String b64Cert = Base64.toBase64String(encodedCert);
+        String sha1Fp = HashAlgoType.SHA1.base64Hash(encodedCert);
+        String sha224Fp = HashAlgoType.SHA224.base64Hash(encodedCert);
+        String sha256Fp = HashAlgoType.SHA256.base64Hash(encodedCert);
+        String sha384Fp = HashAlgoType.SHA384.base64Hash(encodedCert);
+        String sha512Fp = HashAlgoType.SHA512.base64Hash(encodedCert);
+
+        long currentTimeSeconds = System.currentTimeMillis() / 1000;
+        X509Certificate cert = certificate.getCert();
+        long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
+        long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
+        String cuttedSubject = X509Util.cutText(certificate.getSubject(), maxX500nameLen);
+
+        // CERT
+        int idx = 1;
+        psAddcert.setLong(idx++, certId);
+        psAddcert.setLong(idx++, currentTimeSeconds);
+        psAddcert.setString(idx++, cert.getSerialNumber().toString(16));
+        psAddcert.setLong(idx++, notBeforeSeconds);
+        psAddcert.setLong(idx++, notAfterSeconds);
+        setBoolean(psAddcert, idx++, revoked);
+        psAddcert.setInt(idx++, issuerId);
+        psAddcert.setString(idx++, certprofile);
+
+        if (revoked) {
+            psAddcert.setLong(idx++, revInfo.getRevocationTime().getTime() / 1000);
+            if (revInfo.getInvalidityTime() != null) {
+                psAddcert.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
+            } else {
+                psAddcert.setNull(idx++, Types.BIGINT);
+            }
+            int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
+            psAddcert.setInt(idx++, reasonCode);
+        }
+
+        // CRAW
+        idx = 1;
+        psAddRawcert.setLong(idx++, certId);
+        psAddRawcert.setString(idx++, cuttedSubject);
+        psAddRawcert.setString(idx++, b64Cert);
+
+        // CHASH
+        idx = 1;
+        psAddCerthash.setLong(idx++, certId);
+        psAddCerthash.setString(idx++, sha1Fp);
+        psAddCerthash.setString(idx++, sha224Fp);
+        psAddCerthash.setString(idx++, sha256Fp);
+        psAddCerthash.setString(idx++, sha384Fp);
+        psAddCerthash.setString(idx++, sha512Fp);
+    } // method setAddCertParams
+
     private void updateRegisteredCert(final long registeredCertId, final CertRevocationInfo revInfo)
     throws CertificateEncodingException, DataAccessException {
         boolean revoked = (revInfo != null);
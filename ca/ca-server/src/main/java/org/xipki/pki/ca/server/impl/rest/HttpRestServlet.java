@@ -67,6 +67,7 @@ import org.xipki.pki.ca.api.OperationException.ErrorCode;
 import org.xipki.pki.ca.api.RequestType;
 import org.xipki.pki.ca.api.RestfulAPIConstants;
 import org.xipki.pki.ca.server.impl.CaAuditConstants;
+import org.xipki.pki.ca.server.impl.CachedCrl;
 import org.xipki.pki.ca.server.impl.ClientCertCache;
 import org.xipki.pki.ca.server.impl.HttpRespAuditException;
 import org.xipki.pki.ca.server.impl.cmp.CmpRequestorInfo;
@@ -83,6 +84,16 @@ public class HttpRestServlet extends HttpServlet {
 
     private static final long serialVersionUID = 1L;
 
+    private static final String HEADER_ETAG = "ETag";
+
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    private static final String HEADER_EXPIRES = "Expires";
+
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
     private CmpResponderManager responderManager;
 
     private AuditServiceRegister auditServiceRegister;
@@ -189,6 +200,7 @@ public class HttpRestServlet extends HttpServlet {
 
             String respCt = null;
             byte[] respBytes = null;
+            boolean notModified = false;
 
             if (RestfulAPIConstants.CMD_cacert.equalsIgnoreCase(command)) {
                 respCt = RestfulAPIConstants.CT_pkix_cert;
@@ -286,16 +298,41 @@ public class HttpRestServlet extends HttpServlet {
                     }
                 }
 
-                CertificateList crl = responder.getCrl(requestor, crlNumber);
-                if (crl == null) {
-                    String message = "could not get CRL";
-                    LOG.warn(message);
-                    throw new HttpRespAuditException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
-                            null, message, AuditLevel.INFO, AuditStatus.FAILED);
-                }
+                if (crlNumber == null) {
+                    CachedCrl crl = responder.getCurrentCachedCrl(requestor);
+                    if (crl == null) {
+                        String message = "could not get CRL";
+                        LOG.warn(message);
+                        throw new HttpRespAuditException(
+                                HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                null, message, AuditLevel.INFO, AuditStatus.FAILED);
+                    }
 
-                respCt = RestfulAPIConstants.CT_pkix_crl;
-                respBytes = crl.getEncoded();
+                    response.setHeader(HEADER_ETAG, crl.getEtag());
+                    response.setDateHeader(HEADER_LAST_MODIFIED, crl.getThisUpdate());
+                    if (crl.getNextUpdate() != null) {
+                        response.setDateHeader(HEADER_EXPIRES, crl.getNextUpdate().getTime());
+                    }
+
+                    notModified = crl.isNotModified(request.getHeader(HEADER_IF_NONE_MATCH),
+                            getIfModifiedSince(request));
+                    if (!notModified) {
+                        respCt = RestfulAPIConstants.CT_pkix_crl;
+                        respBytes = crl.getEncoded();
+                    }
+                } else {
+                    CertificateList crl = responder.getCrl(requestor, crlNumber);
+                    if (crl == null) {
+                        String message = "could not get CRL";
+                        LOG.warn(message);
+                        throw new HttpRespAuditException(
+                                HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                                null, message, AuditLevel.INFO, AuditStatus.FAILED);
+                    }
+
+                    respCt = RestfulAPIConstants.CT_pkix_crl;
+                    respBytes = crl.getEncoded();
+                }
             } else if (RestfulAPIConstants.CMD_new_crl.equalsIgnoreCase(command)) {
                 X509CRL crl = responder.generateCrlOnDemand(requestor, RequestType.REST, msgId);
                 if (crl == null) {
@@ -314,7 +351,8 @@ public class HttpRestServlet extends HttpServlet {
                         AuditLevel.INFO, AuditStatus.FAILED);
             }
 
-            response.setStatus(HttpServletResponse.SC_OK);
+            response.setStatus(notModified ? HttpServletResponse.SC_NOT_MODIFIED
+                    : HttpServletResponse.SC_OK);
             response.setHeader(RestfulAPIConstants.HEADER_PKISTATUS,
                     RestfulAPIConstants.PKISTATUS_accepted);
 
@@ -482,4 +520,13 @@ public class HttpRestServlet extends HttpServlet {
         return new BigInteger(tmpStr);
     }
 
+    private static long getIfModifiedSince(final HttpServletRequest request) {
+        try {
+            return request.getDateHeader(HEADER_IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException ex) {
+            // invalid date is ignored as specified in RFC 7232
+            return -1;
+        }
+    }
+
 }
@@ -0,0 +1,168 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.datasource.springframework.dao.DataAccessException;
+import org.xipki.pki.ca.api.OperationException;
+import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
+
+/**
+ * Group commit of certificates added by concurrent requests. The thread that obtains the
+ * commit lock adds all certificates queued so far in one transaction; the other threads
+ * wait for the lock and find their certificates already committed.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class CertGroupCommitter {
+
+    /**
+     * Adds certificates to the certstore in one transaction, either all or none of them.
+     */
+    interface CertsAdder {
+
+        void addCerts(List<X509CertificateInfo> certInfos)
+        throws DataAccessException, OperationException;
+
+    } // interface CertsAdder
+
+    private static final class PendingCert {
+
+        private final X509CertificateInfo certInfo;
+
+        // guarded by commitLock
+        private boolean done;
+
+        // guarded by commitLock
+        private Exception exception;
+
+        PendingCert(final X509CertificateInfo certInfo) {
+            this.certInfo = certInfo;
+        }
+
+    } // class PendingCert
+
+    private static final Logger LOG = LoggerFactory.getLogger(CertGroupCommitter.class);
+
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private final CertsAdder certsAdder;
+
+    private final ConcurrentLinkedQueue<PendingCert> queue = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock commitLock = new ReentrantLock();
+
+    CertGroupCommitter(final CertsAdder certsAdder) {
+        this.certsAdder = ParamUtil.requireNonNull("certsAdder", certsAdder);
+    }
+
+    void addCert(final X509CertificateInfo certInfo)
+    throws DataAccessException, OperationException {
+        ParamUtil.requireNonNull("certInfo", certInfo);
+
+        PendingCert pending = new PendingCert(certInfo);
+        queue.offer(pending);
+
+        Exception exception;
+        commitLock.lock();
+        try {
+            while (!pending.done) {
+                List<PendingCert> batch = new ArrayList<>(Math.min(MAX_BATCH_SIZE, 16));
+                PendingCert pc;
+                while (batch.size() < MAX_BATCH_SIZE && (pc = queue.poll()) != null) {
+                    batch.add(pc);
+                }
+                commit(batch);
+            }
+            exception = pending.exception;
+        } finally {
+            commitLock.unlock();
+        }
+
+        if (exception instanceof DataAccessException) {
+            throw (DataAccessException) exception;
+        } else if (exception instanceof OperationException) {
+            throw (OperationException) exception;
+        } else if (exception != null) {
+            throw (RuntimeException) exception;
+        }
+    } // method addCert
+
+    private void commit(final List<PendingCert> batch) {
+        List<X509CertificateInfo> certInfos = new ArrayList<>(batch.size());
+        for (PendingCert pc : batch) {
+            certInfos.add(pc.certInfo);
+        }
+
+        try {
+            certsAdder.addCerts(certInfos);
+            for (PendingCert pc : batch) {
+                pc.done = true;
+            }
+            LOG.debug("group commit of {} certificates", batch.size());
+            return;
+        } catch (DataAccessException | OperationException | RuntimeException ex) {
+            if (batch.size() == 1) {
+                PendingCert pc = batch.get(0);
+                pc.exception = ex;
+                pc.done = true;
+                return;
+            }
+            LOG.warn("group commit of {} certificates failed, add them one by one: {}",
+                    batch.size(), ex.getMessage());
+        }
+
+        // a failed certificate must not affect the others of the group
+        for (PendingCert pc : batch) {
+            try {
+                certsAdder.addCerts(Collections.singletonList(pc.certInfo));
+            } catch (DataAccessException | OperationException | RuntimeException ex) {
+                pc.exception = ex;
+            }
+            pc.done = true;
+        }
+    } // method commit
+
+}
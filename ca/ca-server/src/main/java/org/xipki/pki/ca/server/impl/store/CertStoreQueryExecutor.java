@@ -85,7 +85,6 @@ import org.xipki.commons.security.X509Cert;
 import org.xipki.commons.security.util.X509Util;
 import org.xipki.pki.ca.api.OperationException;
 import org.xipki.pki.ca.api.OperationException.ErrorCode;
-import org.xipki.pki.ca.api.RequestType;
 import org.xipki.pki.ca.api.RequestorInfo;
 import org.xipki.pki.ca.api.X509CertWithDbId;
 import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
@@ -143,6 +142,9 @@ class CertStoreQueryExecutor {
         private static final String SQL_MAX_THISUPDAATE_CRL =
                 "SELECT MAX(THISUPDATE) FROM CRL WHERE CA_ID=?";
 
+        private static final String SQL_MAX_THISUPDAATE_CRL_OF_TYPE =
+                "SELECT MAX(THISUPDATE) FROM CRL WHERE CA_ID=? AND DELTACRL=?";
+
         private static final String SQL_ADD_CRL =
                 "INSERT INTO CRL (ID,CA_ID,CRL_NO,THISUPDATE,NEXTUPDATE,DELTACRL,BASECRL_NO,CRL)"
                 + " VALUES (?,?,?,?,?,?,?,?)";
@@ -224,10 +226,16 @@ class CertStoreQueryExecutor {
 
         private final String sqlCrlWithNo;
 
+        private final String sqlCrlOfType;
+
         private final DataSourceWrapper datasource;
 
         private final LruCache<Integer, String> cacheSqlCidFromPublishQueue = new LruCache<>(5);
 
+        private final LruCache<Integer, String> cacheSqlCertsForIds = new LruCache<>(5);
+
+        private final LruCache<Integer, String> cacheSqlRemovePublishQueue = new LruCache<>(5);
+
         private final LruCache<Integer, String> cacheSqlExpiredSerials = new LruCache<>(5);
 
         private final LruCache<Integer, String> cacheSqlSuspendedSerials = new LruCache<>(5);
@@ -281,6 +289,8 @@ class CertStoreQueryExecutor {
                     "THISUPDATE,CRL FROM CRL WHERE CA_ID=?", 1, "THISUPDATE DESC");
             this.sqlCrlWithNo = datasource.buildSelectFirstSql(
                     "THISUPDATE,CRL FROM CRL WHERE CA_ID=? AND CRL_NO=?", 1, "THISUPDATE DESC");
+            this.sqlCrlOfType = datasource.buildSelectFirstSql(
+                    "THISUPDATE,CRL FROM CRL WHERE CA_ID=? AND DELTACRL=?", 1, "THISUPDATE DESC");
         } // constructor
 
         String getSqlCidFromPublishQueue(final int numEntries) {
@@ -293,6 +303,38 @@ class CertStoreQueryExecutor {
             return sql;
         }
 
+        String getSqlCertsForIds(final int numEntries) {
+            String sql = cacheSqlCertsForIds.get(numEntries);
+            if (sql == null) {
+                sql = "SELECT ID,PID,REV,RR,RT,RIT,CERT FROM CERT INNER JOIN CRAW"
+                        + " ON CRAW.CID=CERT.ID WHERE CERT.ID IN ("
+                        + buildPlaceholders(numEntries) + ")";
+                cacheSqlCertsForIds.put(numEntries, sql);
+            }
+            return sql;
+        }
+
+        String getSqlRemovePublishQueue(final int numEntries) {
+            String sql = cacheSqlRemovePublishQueue.get(numEntries);
+            if (sql == null) {
+                sql = "DELETE FROM PUBLISHQUEUE WHERE PID=? AND CID IN ("
+                        + buildPlaceholders(numEntries) + ")";
+                cacheSqlRemovePublishQueue.put(numEntries, sql);
+            }
+            return sql;
+        }
+
+        private static String buildPlaceholders(final int num) {
+            StringBuilder sb = new StringBuilder(2 * num);
+            for (int i = 0; i < num; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('?');
+            }
+            return sb.toString();
+        }
+
         String getSqlExpiredSerials(final int numEntries) {
             String sql = cacheSqlExpiredSerials.get(numEntries);
             if (sql == null) {
@@ -459,90 +501,38 @@ class CertStoreQueryExecutor {
         }
     } // method initNameIdStore
 
-    void addCert(final X509Cert issuer, final X509CertWithDbId certificate,
-            final byte[] encodedSubjectPublicKey, final String certprofileName,
-            final RequestorInfo requestor, final String user, final RequestType reqType,
-            final byte[] transactionId, final X500Name reqSubject)
+    void addCert(final X509CertificateInfo certInfo)
     throws DataAccessException, OperationException {
-        ParamUtil.requireNonNull("certificate", certificate);
-        ParamUtil.requireNonNull("certprofileName", certprofileName);
-
-        long certId = idGenerator.nextId();
-        int caId = getCaId(issuer);
-        X509Certificate cert = certificate.getCert();
-        // the profile name of self signed CA certificate may not be contained in table CS_PROFILE
-        if (cert.getIssuerDN().equals(cert.getSubjectDN())) {
-            addCertprofileName(certprofileName);
-        }
-        int certprofileId = getCertprofileId(certprofileName);
-        Integer requestorId = (requestor == null) ? null : getRequestorId(requestor.getName());
-
-        long fpPk = FpIdCalculator.hash(encodedSubjectPublicKey);
-        String subjectText = X509Util.cutText(certificate.getSubject(), maxX500nameLen);
-        long fpSubject = X509Util.fpCanonicalizedName(cert.getSubjectX500Principal());
-
-        String reqSubjectText = null;
-        Long fpReqSubject = null;
-        if (reqSubject != null) {
-            fpReqSubject = X509Util.fpCanonicalizedName(reqSubject);
-            if (fpSubject == fpReqSubject) {
-                fpReqSubject = null;
-            } else {
-                reqSubjectText = X509Util.cutX500Name(CaUtil.sortX509Name(reqSubject),
-                        maxX500nameLen);
-            }
-        }
+        ParamUtil.requireNonNull("certInfo", certInfo);
+        addCerts(Collections.singletonList(certInfo));
+    } // method addCert
 
-        String b64FpCert = base64Fp(certificate.getEncodedCert());
-        String b64Cert = Base64.toBase64String(certificate.getEncodedCert());
-        String tid = (transactionId == null) ? null : Base64.toBase64String(transactionId);
+    /**
+     * Adds the certificates with batched statements in one transaction. Either all or none
+     * of the certificates are added.
+     */
+    void addCerts(final List<X509CertificateInfo> certInfos)
+    throws DataAccessException, OperationException {
+        ParamUtil.requireNonEmpty("certInfos", certInfos);
 
-        long currentTimeSeconds = System.currentTimeMillis() / 1000;
-        BigInteger serialNumber = cert.getSerialNumber();
-        long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
-        long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
+        final int n = certInfos.size();
+        long[] certIds = new long[n];
 
         Connection conn = null;
         PreparedStatement[] pss = borrowPreparedStatements(SQLs.SQL_ADD_CERT, SQLs.SQL_ADD_CRAW);
 
         try {
             PreparedStatement psAddcert = pss[0];
+            PreparedStatement psAddRawcert = pss[1];
             // all statements have the same connection
             conn = psAddcert.getConnection();
 
-            // cert
-            int idx = 2;
-            psAddcert.setInt(idx++, CertArt.X509PKC.getCode());
-            psAddcert.setLong(idx++, currentTimeSeconds);
-            psAddcert.setString(idx++, serialNumber.toString(16));
-            psAddcert.setString(idx++, subjectText);
-            psAddcert.setLong(idx++, fpSubject);
-            setLong(psAddcert, idx++, fpReqSubject);
-            psAddcert.setLong(idx++, notBeforeSeconds);
-            psAddcert.setLong(idx++, notAfterSeconds);
-            setBoolean(psAddcert, idx++, false);
-            psAddcert.setInt(idx++, certprofileId);
-            psAddcert.setInt(idx++, caId);
-            setInt(psAddcert, idx++, requestorId);
-            psAddcert.setString(idx++, user);
-            psAddcert.setLong(idx++, fpPk);
-            boolean isEeCert = cert.getBasicConstraints() == -1;
-            psAddcert.setInt(idx++, isEeCert ? 1 : 0);
-            psAddcert.setInt(idx++, reqType.getCode());
-            psAddcert.setString(idx++, tid);
-
-            // rawcert
-            PreparedStatement psAddRawcert = pss[1];
-
-            idx = 2;
-            psAddRawcert.setString(idx++, b64FpCert);
-            psAddRawcert.setString(idx++, reqSubjectText);
-            psAddRawcert.setString(idx++, b64Cert);
-
-            certificate.setCertId(certId);
-
-            psAddcert.setLong(1, certId);
-            psAddRawcert.setLong(1, certId);
+            for (int i = 0; i < n; i++) {
+                certIds[i] = idGenerator.nextId();
+                setAddCertParams(psAddcert, psAddRawcert, certInfos.get(i), certIds[i]);
+                psAddcert.addBatch();
+                psAddRawcert.addBatch();
+            }
 
             final boolean origAutoCommit = conn.getAutoCommit();
             conn.setAutoCommit(false);
@@ -550,22 +540,24 @@ class CertStoreQueryExecutor {
             String sql = null;
             try {
                 sql = SQLs.SQL_ADD_CERT;
-                psAddcert.executeUpdate();
+                psAddcert.executeBatch();
 
                 sql = SQLs.SQL_ADD_CRAW;
-                psAddRawcert.executeUpdate();
+                psAddRawcert.executeBatch();
 
                 sql = "(commit add cert to CA certstore)";
                 conn.commit();
             } catch (Throwable th) {
                 conn.rollback();
                 // more secure
-                datasource.deleteFromTable(null, "CRAW", "CID", certId);
-                datasource.deleteFromTable(null, "CERT", "ID", certId);
+                for (long certId : certIds) {
+                    datasource.deleteFromTable(null, "CRAW", "CID", certId);
+                    datasource.deleteFromTable(null, "CERT", "ID", certId);
+                }
 
                 if (th instanceof SQLException) {
-                    LOG.error("datasource {} could not add certificate with id {}: {}",
-                        datasource.getDatasourceName(), certId, th.getMessage());
+                    LOG.error("datasource {} could not add {} certificate(s) with first id {}: {}",
+                        datasource.getDatasourceName(), n, certIds[0], th.getMessage());
                     throw datasource.translate(sql, (SQLException) th);
                 } else {
                     throw new OperationException(ErrorCode.SYSTEM_FAILURE, th);
@@ -586,7 +578,83 @@ class CertStoreQueryExecutor {
                 }
             }
         }
-    } // method addCert
+    } // method addCerts
+
+    private void setAddCertParams(final PreparedStatement psAddcert,
+            final PreparedStatement psAddRawcert, final X509CertificateInfo certInfo,
+            final long certId) throws SQLException, DataAccessException, OperationException {
+        X509CertWithDbId certificate = certInfo.getCert();
+        String certprofileName = ParamUtil.requireNonNull("certInfo.profileName",
+                certInfo.getProfileName());
+        RequestorInfo requestor = certInfo.getRequestor();
+        X500Name reqSubject = certInfo.getRequestedSubject();
+        byte[] transactionId = certInfo.getTransactionId();
+
+        int caId = getCaId(certInfo.getIssuerCert());
+        X509Certificate cert = certificate.getCert();
+        // the profile name of self signed CA certificate may not be contained in table CS_PROFILE
+        if (cert.getIssuerDN().equals(cert.getSubjectDN())) {
+            addCertprofileName(certprofileName);
+        }
+        int certprofileId = getCertprofileId(certprofileName);
+        Integer requestorId = (requestor == null) ? null : getRequestorId(requestor.getName());
+
+        long fpPk = FpIdCalculator.hash(certInfo.getSubjectPublicKey());
+        String subjectText = X509Util.cutText(certificate.getSubject(), maxX500nameLen);
+        long fpSubject = X509Util.fpCanonicalizedName(cert.getSubjectX500Principal());
+
+        String reqSubjectText = null;
+        Long fpReqSubject = null;
+        if (reqSubject != null) {
+            fpReqSubject = X509Util.fpCanonicalizedName(reqSubject);
+            if (fpSubject == fpReqSubject) {
+                fpReqSubject = null;
+            } else {
+                reqSubjectText = X509Util.cutX500Name(CaUtil.sortX509Name(reqSubject),
+                        maxX500nameLen);
+            }
+        }
+
+        String b64FpCert = base64Fp(certificate.getEncodedCert());
+        String b64Cert = Base64.toBase64String(certificate.getEncodedCert());
+        String tid = (transactionId == null) ? null : Base64.toBase64String(transactionId);
+
+        long currentTimeSeconds = System.currentTimeMillis() / 1000;
+        BigInteger serialNumber = cert.getSerialNumber();
+        long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
+        long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
+
+        // cert
+        int idx = 1;
+        psAddcert.setLong(idx++, certId);
+        psAddcert.setInt(idx++, CertArt.X509PKC.getCode());
+        psAddcert.setLong(idx++, currentTimeSeconds);
+        psAddcert.setString(idx++, serialNumber.toString(16));
+        psAddcert.setString(idx++, subjectText);
+        psAddcert.setLong(idx++, fpSubject);
+        setLong(psAddcert, idx++, fpReqSubject);
+        psAddcert.setLong(idx++, notBeforeSeconds);
+        psAddcert.setLong(idx++, notAfterSeconds);
+        setBoolean(psAddcert, idx++, false);
+        psAddcert.setInt(idx++, certprofileId);
+        psAddcert.setInt(idx++, caId);
+        setInt(psAddcert, idx++, requestorId);
+        psAddcert.setString(idx++, certInfo.getUser());
+        psAddcert.setLong(idx++, fpPk);
+        boolean isEeCert = cert.getBasicConstraints() == -1;
+        psAddcert.setInt(idx++, isEeCert ? 1 : 0);
+        psAddcert.setInt(idx++, certInfo.getReqType().getCode());
+        psAddcert.setString(idx++, tid);
+
+        // rawcert
+        idx = 1;
+        psAddRawcert.setLong(idx++, certId);
+        psAddRawcert.setString(idx++, b64FpCert);
+        psAddRawcert.setString(idx++, reqSubjectText);
+        psAddRawcert.setString(idx++, b64Cert);
+
+        certificate.setCertId(certId);
+    } // method setAddCertParams
 
     void addToPublishQueue(final String publisherName, final long certId, final X509Cert caCert)
     throws DataAccessException, OperationException {
@@ -629,6 +697,49 @@ class CertStoreQueryExecutor {
         }
     }
 
+    /**
+     * Removes the given entries from the PUBLISHQUEUE in one statement.
+     *
+     * @param publisherName name of the publisher
+     * @param certIds IDs of the certificates, at most {@code pageSize}
+     * @param pageSize number of entries in the statement. Shorter lists are filled with the
+     *          last ID, so that all calls use the same statement.
+     */
+    void removeFromPublishQueue(final String publisherName, final List<Long> certIds,
+            final int pageSize)
+    throws DataAccessException {
+        ParamUtil.requireNonBlank("publisherName", publisherName);
+        ParamUtil.requireNonEmpty("certIds", certIds);
+        ParamUtil.requireRange("certIds.size()", certIds.size(), 1, pageSize);
+
+        final String sql = sqls.getSqlRemovePublishQueue(pageSize);
+        PreparedStatement ps = borrowPreparedStatement(sql);
+        try {
+            int publisherId = getPublisherId(publisherName);
+            int idx = 1;
+            ps.setInt(idx++, publisherId);
+            setIdsInList(ps, idx, certIds, pageSize);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            throw datasource.translate(sql, ex);
+        } finally {
+            releaseDbResources(ps, null);
+        }
+    }
+
+    private static void setIdsInList(final PreparedStatement ps, final int startIndex,
+            final List<Long> ids, final int pageSize) throws SQLException {
+        int idx = startIndex;
+        for (Long id : ids) {
+            ps.setLong(idx++, id);
+        }
+
+        long lastId = ids.get(ids.size() - 1);
+        for (int i = ids.size(); i < pageSize; i++) {
+            ps.setLong(idx++, lastId);
+        }
+    }
+
     long getMaxIdOfDeltaCrlCache(final X509Cert caCert)
     throws OperationException, DataAccessException {
         ParamUtil.requireNonNull("caCert", caCert);
@@ -748,6 +859,29 @@ class CertStoreQueryExecutor {
         }
     }
 
+    Long getThisUpdateOfCurrentCrl(final X509Cert caCert, final boolean deltaCrl)
+    throws DataAccessException, OperationException {
+        ParamUtil.requireNonNull("caCert", caCert);
+
+        final String sql = SQLs.SQL_MAX_THISUPDAATE_CRL_OF_TYPE;
+        ResultSet rs = null;
+        PreparedStatement ps = borrowPreparedStatement(sql);
+        try {
+            int idx = 1;
+            ps.setInt(idx++, getCaId(caCert));
+            setBoolean(ps, idx++, deltaCrl);
+            rs = ps.executeQuery();
+            if (!rs.next()) {
+                return 0L;
+            }
+            return rs.getLong(1);
+        } catch (SQLException ex) {
+            throw datasource.translate(sql, ex);
+        } finally {
+            releaseDbResources(ps, rs);
+        }
+    }
+
     boolean hasCrl(final X509Cert caCert) throws DataAccessException {
         ParamUtil.requireNonNull("caCert", caCert);
 
@@ -1294,9 +1428,23 @@ class CertStoreQueryExecutor {
     byte[] getEncodedCrl(final X509Cert caCert, final BigInteger crlNumber)
     throws DataAccessException, OperationException {
         ParamUtil.requireNonNull("caCert", caCert);
+        String sql = (crlNumber == null) ? sqls.sqlCrl : sqls.sqlCrlWithNo;
+        return getEncodedCrl(caCert, sql, crlNumber, null);
+    }
+
+    /**
+     * Returns the latest full or delta CRL.
+     */
+    byte[] getEncodedCurrentCrl(final X509Cert caCert, final boolean deltaCrl)
+    throws DataAccessException, OperationException {
+        ParamUtil.requireNonNull("caCert", caCert);
+        return getEncodedCrl(caCert, sqls.sqlCrlOfType, null, deltaCrl);
+    }
 
+    private byte[] getEncodedCrl(final X509Cert caCert, final String sql,
+            final BigInteger crlNumber, final Boolean deltaCrl)
+    throws DataAccessException, OperationException {
         int caId = getCaId(caCert);
-        String sql = (crlNumber == null) ? sqls.sqlCrl : sqls.sqlCrlWithNo;
         ResultSet rs = null;
         PreparedStatement ps = borrowPreparedStatement(sql);
 
@@ -1307,6 +1455,9 @@ class CertStoreQueryExecutor {
             if (crlNumber != null) {
                 ps.setLong(idx++, crlNumber.longValue());
             }
+            if (deltaCrl != null) {
+                setBoolean(ps, idx++, deltaCrl.booleanValue());
+            }
             rs = ps.executeQuery();
             long currentThisUpdate = 0;
             // iterate all entries to make sure that the latest CRL will be returned
@@ -1417,6 +1568,64 @@ class CertStoreQueryExecutor {
             releaseDbResources(ps, rs);
         }
 
+        return buildCertInfo(caCert, certId, b64Cert, certprofileId, revoked, revReason,
+                revTime, revInvTime);
+    } // method getCertForId
+
+    /**
+     * Retrieves the certificates with given IDs in one query.
+     *
+     * @param caCert certificate of the CA
+     * @param certIds IDs of the certificates, at most {@code pageSize}
+     * @param pageSize number of IDs in the query. Shorter lists are filled with the last ID,
+     *          so that all calls use the same statement.
+     * @return map of the certificate ID to the certificate. Unknown IDs are not contained.
+     */
+    Map<Long, X509CertificateInfo> getCertsForIds(final X509Cert caCert,
+            final List<Long> certIds, final int pageSize)
+    throws DataAccessException, OperationException, CertificateException {
+        ParamUtil.requireNonNull("caCert", caCert);
+        ParamUtil.requireNonEmpty("certIds", certIds);
+        ParamUtil.requireRange("certIds.size()", certIds.size(), 1, pageSize);
+
+        final String sql = sqls.getSqlCertsForIds(pageSize);
+
+        Map<Long, X509CertificateInfo> ret = new HashMap<>(certIds.size() * 4 / 3 + 1);
+        ResultSet rs = null;
+        PreparedStatement ps = borrowPreparedStatement(sql);
+        try {
+            setIdsInList(ps, 1, certIds, pageSize);
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                long certId = rs.getLong("ID");
+                boolean revoked = rs.getBoolean("REV");
+                int revReason = 0;
+                long revTime = 0;
+                long revInvTime = 0;
+                if (revoked) {
+                    revReason = rs.getInt("RR");
+                    revTime = rs.getLong("RT");
+                    revInvTime = rs.getLong("RIT");
+                }
+
+                X509CertificateInfo certInfo = buildCertInfo(caCert, certId,
+                        rs.getString("CERT"), rs.getInt("PID"), revoked, revReason, revTime,
+                        revInvTime);
+                ret.put(certId, certInfo);
+            }
+        } catch (SQLException ex) {
+            throw datasource.translate(sql, ex);
+        } finally {
+            releaseDbResources(ps, rs);
+        }
+
+        return ret;
+    } // method getCertsForIds
+
+    private X509CertificateInfo buildCertInfo(final X509Cert caCert, final long certId,
+            final String b64Cert, final int certprofileId, final boolean revoked,
+            final int revReason, final long revTime, final long revInvTime)
+    throws OperationException, CertificateException {
         try {
             byte[] encodedCert = Base64.decode(b64Cert);
             X509Certificate cert = X509Util.parseCert(encodedCert);
@@ -1437,7 +1646,7 @@ class CertStoreQueryExecutor {
         } catch (IOException ex) {
             throw new OperationException(ErrorCode.SYSTEM_FAILURE, ex);
         }
-    } // method getCertForId
+    } // method buildCertInfo
 
     X509CertWithDbId getCertForId(final long certId)
     throws DataAccessException, OperationException {
@@ -40,6 +40,7 @@ import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -78,19 +79,33 @@ public class CertificateStore {
 
     private final CertStoreQueryExecutor queryExecutor;
 
+    private final CertGroupCommitter groupCommitter;
+
     public CertificateStore(final DataSourceWrapper datasource,
             final UniqueIdGenerator idGenerator) throws DataAccessException {
+        this(datasource, idGenerator, false);
+    }
+
+    /**
+     * @param groupCommit
+     *          whether certificates added by concurrent requests are committed together.
+     */
+    public CertificateStore(final DataSourceWrapper datasource,
+            final UniqueIdGenerator idGenerator, final boolean groupCommit)
+    throws DataAccessException {
         ParamUtil.requireNonNull("datasource", datasource);
         this.queryExecutor = new CertStoreQueryExecutor(datasource, idGenerator);
+        this.groupCommitter = groupCommit ? new CertGroupCommitter(queryExecutor::addCerts) : null;
     }
 
     public boolean addCertificate(final X509CertificateInfo certInfo) {
         ParamUtil.requireNonNull("certInfo", certInfo);
         try {
-            queryExecutor.addCert(certInfo.getIssuerCert(), certInfo.getCert(),
-                    certInfo.getSubjectPublicKey(), certInfo.getProfileName(),
-                    certInfo.getRequestor(), certInfo.getUser(), certInfo.getReqType(),
-                    certInfo.getTransactionId(), certInfo.getRequestedSubject());
+            if (groupCommitter != null) {
+                groupCommitter.addCert(certInfo);
+            } else {
+                queryExecutor.addCert(certInfo);
+            }
         } catch (Exception ex) {
             LOG.error("could not save certificate {}: {}. Message: {}",
                     new Object[]{certInfo.getCert().getSubject(),
@@ -103,6 +118,26 @@ public class CertificateStore {
         return true;
     }
 
+    /**
+     * Adds the certificates in one transaction.
+     *
+     * @return whether all certificates have been added. If {@code false}, none of them has
+     *     been added.
+     */
+    public boolean addCertificates(final List<X509CertificateInfo> certInfos) {
+        ParamUtil.requireNonEmpty("certInfos", certInfos);
+        try {
+            queryExecutor.addCerts(certInfos);
+        } catch (Exception ex) {
+            LOG.error("could not save {} certificates, first subject {}. Message: {}",
+                    certInfos.size(), certInfos.get(0).getCert().getSubject(), ex.getMessage());
+            LOG.debug("error", ex);
+            return false;
+        }
+
+        return true;
+    }
+
     public void addToPublishQueue(final String publisherName, final long certId,
             final X509Cert caCert) throws OperationException {
         try {
@@ -129,6 +164,19 @@ public class CertificateStore {
         }
     }
 
+    public void removeFromPublishQueue(final String publisherName, final List<Long> certIds,
+            final int pageSize) throws OperationException {
+        try {
+            queryExecutor.removeFromPublishQueue(publisherName, certIds, pageSize);
+        } catch (DataAccessException ex) {
+            LOG.debug("DataAccessException", ex);
+            throw new OperationException(ErrorCode.DATABASE_FAILURE, ex.getMessage());
+        } catch (RuntimeException ex) {
+            LOG.debug("RuntimeException", ex);
+            throw new OperationException(ErrorCode.SYSTEM_FAILURE, ex.getMessage());
+        }
+    }
+
     public void clearPublishQueue(final X509Cert caCert, final String publisherName)
     throws OperationException {
         try {
@@ -313,6 +361,30 @@ public class CertificateStore {
         }
     }
 
+    public long getThisUpdateOfCurrentCrl(final X509Cert caCert, final boolean deltaCrl)
+    throws OperationException {
+        try {
+            return queryExecutor.getThisUpdateOfCurrentCrl(caCert, deltaCrl);
+        } catch (DataAccessException ex) {
+            LOG.debug("DataAccessException", ex);
+            throw new OperationException(ErrorCode.DATABASE_FAILURE, ex.getMessage());
+        } catch (RuntimeException ex) {
+            LOG.debug("RuntimeException", ex);
+            throw new OperationException(ErrorCode.SYSTEM_FAILURE, ex.getMessage());
+        }
+    }
+
+    public byte[] getEncodedCurrentCrl(final X509Cert caCert, final boolean deltaCrl) {
+        try {
+            return queryExecutor.getEncodedCurrentCrl(caCert, deltaCrl);
+        } catch (Exception ex) {
+            LOG.error("could not get CRL ca={}: error message: {}", caCert.getSubject(),
+                    ex.getMessage());
+            LOG.debug("Exception", ex);
+            return null;
+        }
+    }
+
     public byte[] getEncodedCrl(final X509Cert caCert, final BigInteger crlNumber) {
         try {
             return queryExecutor.getEncodedCrl(caCert, crlNumber);
@@ -614,6 +686,20 @@ public class CertificateStore {
         }
     }
 
+    public Map<Long, X509CertificateInfo> getCertificateInfosForIds(final X509Cert caCert,
+            final List<Long> certIds, final int pageSize)
+    throws OperationException, CertificateException {
+        try {
+            return queryExecutor.getCertsForIds(caCert, certIds, pageSize);
+        } catch (DataAccessException ex) {
+            LOG.debug("DataAccessException", ex);
+            throw new OperationException(ErrorCode.DATABASE_FAILURE, ex.getMessage());
+        } catch (RuntimeException ex) {
+            LOG.debug("RuntimeException", ex);
+            throw new OperationException(ErrorCode.SYSTEM_FAILURE, ex.getMessage());
+        }
+    }
+
     public X509CertWithDbId getCertForId(final long certId) throws OperationException {
         try {
             return queryExecutor.getCertForId(certId);
@@ -0,0 +1,230 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.pki.ca.api.OperationException;
+import org.xipki.pki.ca.api.OperationException.ErrorCode;
+
+/**
+ * Tests of the parallel enrollment of several certificates of one request.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class BatchEnrollmentTest {
+
+    private static final int NUM_TEMPLATES = 8;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        StubEnrollment enrollment = new StubEnrollment();
+        List<String> certs = enrollment.execute(templates(NUM_TEMPLATES), executor);
+
+        Assert.assertEquals(expectedCerts(NUM_TEMPLATES), certs);
+        Assert.assertEquals("stored batches", 1, enrollment.storedBatches.size());
+        Assert.assertEquals(expectedCerts(NUM_TEMPLATES), enrollment.storedBatches.get(0));
+        Assert.assertTrue("in-process markers released", enrollment.inProcess.isEmpty());
+    }
+
+    @Test
+    public void testParallelGrantFailure() throws Exception {
+        StubEnrollment enrollment = new StubEnrollment();
+        enrollment.failingGrant = 3;
+        assertFailure(enrollment, 3);
+        Assert.assertEquals("generated", 0, enrollment.numGenerated);
+    }
+
+    @Test
+    public void testParallelGenerationFailure() throws Exception {
+        StubEnrollment enrollment = new StubEnrollment();
+        enrollment.failingGeneration = 5;
+        assertFailure(enrollment, 5);
+        Assert.assertTrue("stored", enrollment.storedBatches.isEmpty());
+        Assert.assertEquals("generated", NUM_TEMPLATES, enrollment.numGenerated);
+    }
+
+    @Test
+    public void testStoreFailure() throws Exception {
+        StubEnrollment enrollment = new StubEnrollment();
+        enrollment.failStore = true;
+        assertFailure(enrollment, 0);
+    }
+
+    @Test
+    public void testRejectedExecution() throws Exception {
+        executor.shutdown();
+        StubEnrollment enrollment = new StubEnrollment();
+        List<String> certs = enrollment.execute(templates(NUM_TEMPLATES), executor);
+
+        Assert.assertEquals(expectedCerts(NUM_TEMPLATES), certs);
+        Assert.assertEquals("stored batches", 1, enrollment.storedBatches.size());
+        Assert.assertTrue("in-process markers released", enrollment.inProcess.isEmpty());
+    }
+
+    @Test
+    public void testSingleTemplate() throws Exception {
+        StubEnrollment enrollment = new StubEnrollment();
+        List<String> certs = enrollment.execute(templates(1), null);
+
+        Assert.assertEquals(expectedCerts(1), certs);
+        Assert.assertTrue("stored", enrollment.storedBatches.isEmpty());
+        Assert.assertTrue("in-process markers released", enrollment.inProcess.isEmpty());
+    }
+
+    private void assertFailure(final StubEnrollment enrollment, final int expectedIndex) {
+        try {
+            enrollment.execute(templates(NUM_TEMPLATES), executor);
+            Assert.fail("OperationExceptionWithIndex expected");
+        } catch (OperationExceptionWithIndex ex) {
+            Assert.assertEquals("index", expectedIndex, ex.getIndex());
+        }
+        Assert.assertTrue("in-process markers released", enrollment.inProcess.isEmpty());
+        Assert.assertEquals("reverted", 0, enrollment.numReverted);
+    }
+
+    private static List<Integer> templates(final int num) {
+        List<Integer> templates = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            templates.add(i);
+        }
+        return templates;
+    }
+
+    private static List<String> expectedCerts(final int num) {
+        List<String> certs = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            certs.add("cert-" + i);
+        }
+        return certs;
+    }
+
+    private static class StubEnrollment extends BatchEnrollment<Integer, Integer, String> {
+
+        private final Set<Integer> inProcess = new ConcurrentSkipListSet<>();
+
+        private final List<List<String>> storedBatches =
+                Collections.synchronizedList(new ArrayList<List<String>>());
+
+        private volatile int numGenerated;
+
+        private volatile int numReverted;
+
+        private int failingGrant = -1;
+
+        private int failingGeneration = -1;
+
+        private boolean failStore;
+
+        @Override
+        Integer grant(final Integer template) throws OperationException {
+            if (template == failingGrant) {
+                throw new OperationException(ErrorCode.BAD_CERT_TEMPLATE, "grant " + template);
+            }
+            return template;
+        }
+
+        @Override
+        String generate(final Integer granted, final boolean deferStore)
+        throws OperationException {
+            synchronized (this) {
+                numGenerated++;
+            }
+            inProcess.add(granted);
+            try {
+                // let later templates finish before the earlier ones
+                Thread.sleep(5 * (NUM_TEMPLATES - granted));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (granted == failingGeneration) {
+                inProcess.remove(granted);
+                throw new OperationException(ErrorCode.SYSTEM_FAILURE, "generate " + granted);
+            }
+
+            if (!deferStore) {
+                inProcess.remove(granted);
+            }
+            return "cert-" + granted;
+        }
+
+        @Override
+        void store(final List<String> certs) throws OperationException {
+            Assert.assertEquals("markers during store", certs.size(), inProcess.size());
+            if (failStore) {
+                throw new OperationException(ErrorCode.SYSTEM_FAILURE, "store");
+            }
+            storedBatches.add(Arrays.asList(certs.toArray(new String[0])));
+        }
+
+        @Override
+        void release(final Integer granted) {
+            inProcess.remove(granted);
+        }
+
+        @Override
+        void revert(final List<String> certs, final OperationExceptionWithIndex exception) {
+            numReverted++;
+        }
+
+    } // class StubEnrollment
+
+}
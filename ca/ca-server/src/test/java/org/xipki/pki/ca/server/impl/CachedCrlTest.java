@@ -0,0 +1,135 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLNumber;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests of the current CRL cache of {@link X509Ca}.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CachedCrlTest {
+
+    private static final X500Name ISSUER = new X500Name("CN=CRL Test CA,O=xipki,C=DE");
+
+    private static ContentSigner signer;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+        kpGen.initialize(1024);
+        KeyPair keypair = kpGen.generateKeyPair();
+        signer = new JcaContentSignerBuilder("SHA256withRSA").build(keypair.getPrivate());
+    }
+
+    @Test
+    public void testCachedValues() throws Exception {
+        Date thisUpdate = new Date(1483228800000L);
+        Date nextUpdate = new Date(thisUpdate.getTime() + 86400000L);
+        byte[] encoded = newCrl(thisUpdate, nextUpdate);
+        CachedCrl crl = new CachedCrl(encoded);
+
+        Assert.assertEquals("thisUpdate", thisUpdate.getTime(), crl.getThisUpdate());
+        Assert.assertEquals("nextUpdate", nextUpdate, crl.getNextUpdate());
+        Assert.assertArrayEquals("encoded", encoded, crl.getEncoded());
+        Assert.assertEquals("etag", crl.getEtag(), new CachedCrl(encoded).getEtag());
+        Assert.assertFalse("etag of different CRLs",
+                crl.getEtag().equals(new CachedCrl(newCrl(nextUpdate, null)).getEtag()));
+    }
+
+    @Test
+    public void testDeltaCrl() throws Exception {
+        Date thisUpdate = new Date(1483228800000L);
+        Assert.assertFalse("full CRL", new CachedCrl(newCrl(thisUpdate, null)).isDeltaCrl());
+
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(ISSUER, thisUpdate);
+        builder.addExtension(Extension.deltaCRLIndicator, true, new CRLNumber(BigInteger.ONE));
+        CachedCrl deltaCrl = new CachedCrl(builder.build(signer).getEncoded());
+        Assert.assertTrue("delta CRL", deltaCrl.isDeltaCrl());
+    }
+
+    @Test
+    public void testLoadedCrlInstalledIfCacheUnchanged() throws Exception {
+        CachedCrl old = new CachedCrl(newCrl(new Date(1483228800000L), null));
+        CachedCrl loaded = new CachedCrl(newCrl(new Date(1483315200000L), null));
+        AtomicReference<CachedCrl> cache = new AtomicReference<>(old);
+
+        Assert.assertSame(loaded, X509Ca.installLoadedCrl(cache, old, loaded));
+        Assert.assertSame(loaded, cache.get());
+
+        cache.set(null);
+        Assert.assertSame(loaded, X509Ca.installLoadedCrl(cache, null, loaded));
+        Assert.assertSame(loaded, cache.get());
+    }
+
+    @Test
+    public void testPublishedCrlNotOverwrittenByStaleLoad() throws Exception {
+        // loader read the cache (empty) and then the database, meanwhile a new CRL is published
+        CachedCrl stale = new CachedCrl(newCrl(new Date(1483228800000L), null));
+        CachedCrl published = new CachedCrl(newCrl(new Date(1483315200000L), null));
+        AtomicReference<CachedCrl> cache = new AtomicReference<>();
+        cache.set(published);
+
+        Assert.assertSame(published, X509Ca.installLoadedCrl(cache, null, stale));
+        Assert.assertSame(published, cache.get());
+    }
+
+    private static byte[] newCrl(final Date thisUpdate, final Date nextUpdate)
+    throws Exception {
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(ISSUER, thisUpdate);
+        if (nextUpdate != null) {
+            builder.setNextUpdate(nextUpdate);
+        }
+        return builder.build(signer).getEncoded();
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Checks the uniqueness of the generated IDs and serial numbers under concurrent access.
+ * The throughput benchmark is ignored in the build, since its output depends on the machine;
+ * remove the {@code @Ignore} to run it.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class IdGeneratorConcurrencyTest {
+
+    private static final int THREADS = 64;
+
+    private static final int ROUNDS = 10000;
+
+    private static final int BENCHMARK_ROUNDS = 100000;
+
+    @Test
+    public void testUniqueIdGenerator() throws InterruptedException {
+        UniqueIdGenerator idGen = new UniqueIdGenerator(1483228800000L, 5);
+        Set<Long> ids = ConcurrentHashMap.newKeySet(THREADS * ROUNDS);
+        AtomicBoolean ordered = new AtomicBoolean(true);
+
+        run((index) -> {
+            long last = -1;
+            for (int i = 0; i < ROUNDS; i++) {
+                long id = idGen.nextId();
+                if (id <= last) {
+                    ordered.set(false);
+                }
+                last = id;
+                ids.add(id);
+            }
+        });
+
+        Assert.assertTrue("IDs are not increasing", ordered.get());
+        Assert.assertEquals("duplicated IDs", THREADS * ROUNDS, ids.size());
+    }
+
+    @Test
+    public void testRandomSerialNumberGenerator() throws InterruptedException {
+        RandomSerialNumberGenerator snGen = RandomSerialNumberGenerator.getInstance();
+        Set<BigInteger> serials = ConcurrentHashMap.newKeySet(THREADS * ROUNDS);
+        AtomicBoolean validLength = new AtomicBoolean(true);
+
+        run((index) -> {
+            for (int i = 0; i < ROUNDS; i++) {
+                BigInteger sn = snGen.nextSerialNumber(159);
+                if (sn.bitLength() > 159) {
+                    validLength.set(false);
+                }
+                serials.add(sn);
+            }
+        });
+
+        Assert.assertTrue("serial number too long", validLength.get());
+        Assert.assertEquals("duplicated serial numbers", THREADS * ROUNDS, serials.size());
+    }
+
+    @Ignore
+    @Test
+    public void benchmarkThroughput() throws InterruptedException {
+        UniqueIdGenerator idGen = new UniqueIdGenerator(1483228800000L, 5);
+        long duration = run((index) -> {
+            for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+                idGen.nextId();
+            }
+        });
+        printThroughput("UniqueIdGenerator.nextId", duration);
+
+        RandomSerialNumberGenerator snGen = RandomSerialNumberGenerator.getInstance();
+        duration = run((index) -> {
+            for (int i = 0; i < BENCHMARK_ROUNDS; i++) {
+                snGen.nextSerialNumber(159);
+            }
+        });
+        printThroughput("RandomSerialNumberGenerator.nextSerialNumber", duration);
+    }
+
+    private static void printThroughput(final String name, final long durationNanos) {
+        System.out.println(name + ": " + THREADS + " threads, "
+                + (THREADS * (long) BENCHMARK_ROUNDS * 1000_000_000L / durationNanos)
+                + " calls/s");
+    }
+
+    /**
+     * Runs the task in {@link #THREADS} threads.
+     * @return the duration in nanoseconds.
+     */
+    private static long run(final IntConsumer task) throws InterruptedException {
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            threads[i] = new Thread(() -> task.accept(index));
+        }
+
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - start;
+    }
+
+}
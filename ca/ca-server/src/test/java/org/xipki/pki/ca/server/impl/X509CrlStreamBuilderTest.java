@@ -0,0 +1,202 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509CRL;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.commons.security.ConcurrentContentSigner;
+import org.xipki.commons.security.DefaultConcurrentContentSigner;
+
+/**
+ * Checks that {@link X509CrlStreamBuilder} produces the same encoding as
+ * {@link X509v2CRLBuilder}. RSA PKCS#1 v1.5 signatures are deterministic, hence the complete
+ * CRLs are compared.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class X509CrlStreamBuilderTest {
+
+    private static final X500Name ISSUER = new X500Name("CN=CRL Test CA,O=xipki,C=DE");
+
+    private static final Date THIS_UPDATE = new Date(1483228800000L);
+
+    private static final Date NEXT_UPDATE = new Date(1483228800000L + 86400000L);
+
+    private static ContentSigner bcSigner;
+
+    private static ConcurrentContentSigner signer;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+        kpGen.initialize(2048);
+        KeyPair keypair = kpGen.generateKeyPair();
+        bcSigner = new JcaContentSignerBuilder("SHA256withRSA").build(keypair.getPrivate());
+        signer = new DefaultConcurrentContentSigner(Arrays.asList(
+                new JcaContentSignerBuilder("SHA256withRSA").build(keypair.getPrivate())));
+    }
+
+    @Test
+    public void testEmptyCrl() throws Exception {
+        X509CrlStreamBuilder builder = new X509CrlStreamBuilder(ISSUER, THIS_UPDATE,
+                NEXT_UPDATE);
+        X509v2CRLBuilder bcBuilder = new X509v2CRLBuilder(ISSUER, THIS_UPDATE);
+        bcBuilder.setNextUpdate(NEXT_UPDATE);
+        assertSameEncoding(builder, bcBuilder);
+    }
+
+    @Test
+    public void testEmptyCrlWithoutNextUpdate() throws Exception {
+        X509CrlStreamBuilder builder = new X509CrlStreamBuilder(ISSUER, THIS_UPDATE, null);
+        X509v2CRLBuilder bcBuilder = new X509v2CRLBuilder(ISSUER, THIS_UPDATE);
+        assertSameEncoding(builder, bcBuilder);
+    }
+
+    @Test
+    public void testRevokedEntries() throws Exception {
+        X509CrlStreamBuilder builder = new X509CrlStreamBuilder(ISSUER, THIS_UPDATE,
+                NEXT_UPDATE);
+        X509v2CRLBuilder bcBuilder = new X509v2CRLBuilder(ISSUER, THIS_UPDATE);
+        bcBuilder.setNextUpdate(NEXT_UPDATE);
+
+        // enough entries to need a multi-byte length
+        for (int i = 0; i < 2000; i++) {
+            BigInteger serial = BigInteger.valueOf(i).shiftLeft(i % 150).add(BigInteger.ONE);
+            Date revTime = new Date(THIS_UPDATE.getTime() - i * 1000L);
+            // reason 7 is not defined
+            int reason = (i % 11 == 7) ? 0 : i % 11;
+            Date invalidityTime = (i % 3 == 0) ? null : new Date(revTime.getTime() - 60000L);
+            builder.addCrlEntry(serial, revTime, reason, invalidityTime);
+            if (invalidityTime == null) {
+                bcBuilder.addCRLEntry(serial, revTime, reason);
+            } else {
+                bcBuilder.addCRLEntry(serial, revTime, reason, invalidityTime);
+            }
+        }
+
+        // entry with given extensions and revocation time after 2049 (GeneralizedTime)
+        ExtensionsGenerator extnGen = new ExtensionsGenerator();
+        extnGen.addExtension(Extension.reasonCode, false,
+                CRLReason.lookup(CRLReason.keyCompromise));
+        Date lateRevTime = new Date(2556057600000L);
+        builder.addCrlEntry(BigInteger.valueOf(Long.MAX_VALUE), lateRevTime,
+                extnGen.generate());
+        bcBuilder.addCRLEntry(BigInteger.valueOf(Long.MAX_VALUE), lateRevTime,
+                extnGen.generate());
+
+        addExtensions(builder, bcBuilder);
+        assertSameEncoding(builder, bcBuilder);
+    }
+
+    @Test
+    public void testExtensionsOnly() throws Exception {
+        X509CrlStreamBuilder builder = new X509CrlStreamBuilder(ISSUER, THIS_UPDATE,
+                NEXT_UPDATE);
+        X509v2CRLBuilder bcBuilder = new X509v2CRLBuilder(ISSUER, THIS_UPDATE);
+        bcBuilder.setNextUpdate(NEXT_UPDATE);
+        addExtensions(builder, bcBuilder);
+        assertSameEncoding(builder, bcBuilder);
+    }
+
+    @Test
+    public void testTemporaryFileDeleted() throws Exception {
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+        int numBefore = countTempFiles(tmpDir);
+
+        X509CrlStreamBuilder builder = new X509CrlStreamBuilder(ISSUER, THIS_UPDATE,
+                NEXT_UPDATE);
+        Assert.assertEquals("temporary CRL file", numBefore + 1, countTempFiles(tmpDir));
+        builder.addCrlEntry(BigInteger.ONE, THIS_UPDATE, 0, null);
+        builder.build(signer);
+        builder.close();
+
+        Assert.assertEquals("temporary CRL file not deleted", numBefore,
+                countTempFiles(tmpDir));
+    }
+
+    private static int countTempFiles(final File dir) {
+        File[] files = dir.listFiles((parent, name) -> name.startsWith("xipki-crl-"));
+        return (files == null) ? 0 : files.length;
+    }
+
+    private static void addExtensions(final X509CrlStreamBuilder builder,
+            final X509v2CRLBuilder bcBuilder) throws Exception {
+        ASN1ObjectIdentifier[] types = {Extension.cRLNumber, Extension.issuingDistributionPoint};
+        ASN1Integer crlNumber = new ASN1Integer(123456789L);
+        IssuingDistributionPoint idp = new IssuingDistributionPoint(null, true, false, null,
+                false, false);
+
+        builder.addExtension(types[0], false, crlNumber);
+        bcBuilder.addExtension(types[0], false, crlNumber);
+        builder.addExtension(types[1], true, idp);
+        bcBuilder.addExtension(types[1], true, idp);
+    }
+
+    private static void assertSameEncoding(final X509CrlStreamBuilder builder,
+            final X509v2CRLBuilder bcBuilder) throws Exception {
+        X509CRL crl;
+        try {
+            crl = builder.build(signer);
+        } finally {
+            builder.close();
+        }
+
+        X509CRLHolder expected = bcBuilder.build(bcSigner);
+        Assert.assertArrayEquals("encoded CRL", expected.getEncoded(), crl.getEncoded());
+    }
+
+}
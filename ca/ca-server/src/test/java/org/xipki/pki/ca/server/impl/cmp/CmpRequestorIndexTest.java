@@ -0,0 +1,122 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl.cmp;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.pki.ca.api.X509CertWithDbId;
+import org.xipki.pki.ca.server.mgmt.api.CaHasRequestorEntry;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CmpRequestorIndexTest {
+
+    private static KeyPair keypair;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+        kpGen.initialize(1024);
+        keypair = kpGen.generateKeyPair();
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        CmpRequestorInfo ra1 = newRequestor("ra1", "CN=RA1,O=xipki", 1);
+        CmpRequestorInfo ra2 = newRequestor("ra2", "CN=RA2,O=xipki", 2);
+        CmpRequestorIndex index = new CmpRequestorIndex(Arrays.asList(ra1, ra2));
+
+        Assert.assertEquals("size", 2, index.size());
+        Assert.assertSame(ra1, index.getRequestor(new X500Name("CN=RA1,O=xipki")));
+        Assert.assertSame(ra2, index.getRequestor(new X500Name("CN=RA2,O=xipki")));
+        Assert.assertNull(index.getRequestor(new X500Name("CN=RA3,O=xipki")));
+
+        // lookup by a certificate instance other than the registered one
+        X509Certificate cert1 = new JcaX509CertificateConverter().getCertificate(
+                new X509CertificateHolder(ra1.getCert().getCert().getEncoded()));
+        Assert.assertSame(ra1, index.getRequestor(cert1));
+        Assert.assertSame(ra2, index.getRequestor(ra2.getCert().getCert()));
+    }
+
+    @Test
+    public void testCertificateWithSameSubject() throws Exception {
+        CmpRequestorInfo ra1 = newRequestor("ra1", "CN=RA,O=xipki", 1);
+        CmpRequestorInfo ra2 = newRequestor("ra2", "CN=RA,O=xipki", 2);
+        CmpRequestorInfo unknown = newRequestor("ra3", "CN=RA,O=xipki", 3);
+        CmpRequestorIndex index = new CmpRequestorIndex(Arrays.asList(ra1, ra2));
+
+        // certificates are distinguished by the fingerprint
+        Assert.assertSame(ra1, index.getRequestor(ra1.getCert().getCert()));
+        Assert.assertSame(ra2, index.getRequestor(ra2.getCert().getCert()));
+        Assert.assertNull(index.getRequestor(unknown.getCert().getCert()));
+
+        // the first requestor is used for the lookup by subject
+        Assert.assertSame(ra1, index.getRequestor(new X500Name("CN=RA,O=xipki")));
+    }
+
+    private static CmpRequestorInfo newRequestor(final String name, final String subject,
+            final long serial) throws Exception {
+        X500Name x500Subject = new X500Name(subject);
+        Date notBefore = new Date(1483228800000L);
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(x500Subject,
+                BigInteger.valueOf(serial), notBefore,
+                new Date(notBefore.getTime() + 365L * 86400000L), x500Subject,
+                keypair.getPublic());
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA")
+                .build(keypair.getPrivate());
+        X509Certificate cert = new JcaX509CertificateConverter().getCertificate(
+                builder.build(signer));
+        return new CmpRequestorInfo(new CaHasRequestorEntry(name), new X509CertWithDbId(cert));
+    }
+
+}
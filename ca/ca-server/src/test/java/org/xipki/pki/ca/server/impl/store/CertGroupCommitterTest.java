@@ -0,0 +1,252 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ca.server.impl.store;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.commons.security.X509Cert;
+import org.xipki.commons.security.util.X509Util;
+import org.xipki.pki.ca.api.OperationException;
+import org.xipki.pki.ca.api.OperationException.ErrorCode;
+import org.xipki.pki.ca.api.X509CertWithDbId;
+import org.xipki.pki.ca.api.publisher.x509.X509CertificateInfo;
+
+/**
+ * Tests of the group commit of certificates added by concurrent requests.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CertGroupCommitterTest {
+
+    /**
+     * Adds the certificates all or none, fails if any of them is a duplicate.
+     */
+    private static class StubCertsAdder implements CertGroupCommitter.CertsAdder {
+
+        private final Set<X509CertificateInfo> duplicates;
+
+        private final Set<X509CertificateInfo> stored =
+                Collections.synchronizedSet(new HashSet<X509CertificateInfo>());
+
+        private final List<Integer> batchSizes =
+                Collections.synchronizedList(new ArrayList<Integer>());
+
+        private final CountDownLatch firstCallReleased;
+
+        StubCertsAdder(final Set<X509CertificateInfo> duplicates,
+                final CountDownLatch firstCallReleased) {
+            this.duplicates = duplicates;
+            this.firstCallReleased = firstCallReleased;
+        }
+
+        @Override
+        public void addCerts(final List<X509CertificateInfo> certInfos)
+        throws OperationException {
+            boolean first = batchSizes.isEmpty();
+            batchSizes.add(certInfos.size());
+            if (first && firstCallReleased != null) {
+                try {
+                    firstCallReleased.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            for (X509CertificateInfo certInfo : certInfos) {
+                if (duplicates.contains(certInfo)) {
+                    throw new OperationException(ErrorCode.ALREADY_ISSUED, "duplicate");
+                }
+            }
+            for (X509CertificateInfo certInfo : certInfos) {
+                if (!stored.add(certInfo)) {
+                    throw new OperationException(ErrorCode.SYSTEM_FAILURE, "added twice");
+                }
+            }
+        }
+
+    } // class StubCertsAdder
+
+    private static X509Certificate cert;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+        kpGen.initialize(1024);
+        KeyPair keypair = kpGen.generateKeyPair();
+        X500Name subject = new X500Name("CN=group commit test");
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject,
+                BigInteger.ONE, new Date(), new Date(System.currentTimeMillis() + 86400000L),
+                subject, keypair.getPublic());
+        cert = X509Util.parseCert(builder.build(
+                new JcaContentSignerBuilder("SHA256withRSA").build(keypair.getPrivate()))
+                .getEncoded());
+    }
+
+    @Test
+    public void testConcurrentSubmitters() throws Exception {
+        final int n = 32;
+        List<X509CertificateInfo> certInfos = newCertInfos(n);
+        Set<X509CertificateInfo> duplicates = new HashSet<>();
+        for (int i = 0; i < n; i += 5) {
+            duplicates.add(certInfos.get(i));
+        }
+
+        StubCertsAdder adder = new StubCertsAdder(duplicates, null);
+        CertGroupCommitter committer = new CertGroupCommitter(adder);
+        Exception[] results = addConcurrently(committer, certInfos);
+
+        for (int i = 0; i < n; i++) {
+            X509CertificateInfo certInfo = certInfos.get(i);
+            if (duplicates.contains(certInfo)) {
+                Assert.assertTrue("exception of certificate " + i,
+                        results[i] instanceof OperationException);
+                Assert.assertFalse("stored certificate " + i, adder.stored.contains(certInfo));
+            } else {
+                Assert.assertNull("exception of certificate " + i, results[i]);
+                Assert.assertTrue("stored certificate " + i, adder.stored.contains(certInfo));
+            }
+        }
+        Assert.assertEquals("stored certificates", n - duplicates.size(), adder.stored.size());
+    }
+
+    @Test
+    public void testFallbackToSingleInserts() throws Exception {
+        List<X509CertificateInfo> certInfos = newCertInfos(5);
+        X509CertificateInfo duplicate = certInfos.get(2);
+
+        // the first commit blocks until the other certificates are queued
+        CountDownLatch firstCallReleased = new CountDownLatch(1);
+        StubCertsAdder adder = new StubCertsAdder(Collections.singleton(duplicate),
+                firstCallReleased);
+        CertGroupCommitter committer = new CertGroupCommitter(adder);
+
+        Exception[] results = new Exception[certInfos.size()];
+        List<Thread> threads = new ArrayList<>(certInfos.size());
+        threads.add(startAddThread(committer, certInfos, 0, results));
+        while (adder.batchSizes.isEmpty()) {
+            Thread.sleep(1);
+        }
+
+        for (int i = 1; i < certInfos.size(); i++) {
+            threads.add(startAddThread(committer, certInfos, i, results));
+        }
+
+        // the other threads have queued their certificates and wait for the commit lock
+        for (int i = 1; i < threads.size(); i++) {
+            Thread thread = threads.get(i);
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+        firstCallReleased.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // 1 for the first certificate, 1 for the group of 4, 4 single inserts
+        Assert.assertEquals("batch sizes", Arrays.asList(1, 4, 1, 1, 1, 1),
+                adder.batchSizes);
+        for (int i = 0; i < certInfos.size(); i++) {
+            if (i == 2) {
+                Assert.assertTrue("exception of duplicate",
+                        results[i] instanceof OperationException);
+            } else {
+                Assert.assertNull("exception of certificate " + i, results[i]);
+                Assert.assertTrue("stored certificate " + i,
+                        adder.stored.contains(certInfos.get(i)));
+            }
+        }
+        Assert.assertFalse("stored duplicate", adder.stored.contains(duplicate));
+    }
+
+    private static Exception[] addConcurrently(final CertGroupCommitter committer,
+            final List<X509CertificateInfo> certInfos) throws InterruptedException {
+        Exception[] results = new Exception[certInfos.size()];
+        List<Thread> threads = new ArrayList<>(certInfos.size());
+        for (int i = 0; i < certInfos.size(); i++) {
+            threads.add(startAddThread(committer, certInfos, i, results));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return results;
+    }
+
+    private static Thread startAddThread(final CertGroupCommitter committer,
+            final List<X509CertificateInfo> certInfos, final int index,
+            final Exception[] results) {
+        Thread thread = new Thread(() -> {
+            try {
+                committer.addCert(certInfos.get(index));
+            } catch (Exception ex) {
+                results[index] = ex;
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static List<X509CertificateInfo> newCertInfos(final int num) throws Exception {
+        List<X509CertificateInfo> certInfos = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            certInfos.add(new X509CertificateInfo(new X509CertWithDbId(cert), new X509Cert(cert),
+                    new byte[]{(byte) i}, "profile"));
+        }
+        return certInfos;
+    }
+
+}
@@ -66,7 +66,9 @@ public abstract class AuditService {
             }
             break;
         default:
-            LOG.info("AuditEvent {}", createMessage(event));
+            if (LOG.isInfoEnabled()) {
+                LOG.info("AuditEvent {}", createMessage(event));
+            }
             break;
         } // end switch
 
@@ -85,7 +87,9 @@ public abstract class AuditService {
             }
             break;
         default:
-            LOG.info("PciAuditEvent {} | {}", al.getAlignedText(), msg);
+            if (LOG.isInfoEnabled()) {
+                LOG.info("PciAuditEvent {} | {}", al.getAlignedText(), msg);
+            }
             break;
         } // end switch
 
@@ -36,9 +36,15 @@ package org.xipki.commons.audit.syslog.impl;
 
 import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 
@@ -91,6 +97,27 @@ public class SyslogAuditServiceImpl extends AuditService {
      */
     public static final String DFLT_MESSAGE_FORMAT = "rfc_5424";
 
+    /**
+     * The default capacity of the queue in asynchronous mode.
+     */
+    public static final int DFLT_QUEUE_SIZE = 10000;
+
+    /**
+     * The default maximal number of events the writer takes from the queue at once in
+     * asynchronous mode.
+     */
+    public static final int DFLT_DRAIN_SIZE = 100;
+
+    /**
+     * The default overflow policy in asynchronous mode.
+     */
+    public static final String DFLT_OVERFLOW_POLICY = "block";
+
+    /**
+     * The default interval in seconds between two logs of the statistics in asynchronous mode.
+     */
+    public static final int DFLT_STATS_INTERVAL = 300;
+
     private static final Logger LOG = LoggerFactory.getLogger(SyslogAuditServiceImpl.class);
 
     /**
@@ -120,6 +147,90 @@ public class SyslogAuditServiceImpl extends AuditService {
 
     private boolean initialized;
 
+    private boolean async;
+
+    private int queueSize = DFLT_QUEUE_SIZE;
+
+    private int drainSize = DFLT_DRAIN_SIZE;
+
+    private String overflowPolicy = DFLT_OVERFLOW_POLICY;
+
+    private boolean dropOnOverflow;
+
+    private int statsInterval = DFLT_STATS_INTERVAL;
+
+    /**
+     * Bounded queue between the request threads and the writer, contains
+     * {@link AuditEvent} and {@link PciAuditEvent}.
+     */
+    private BlockingQueue<Object> queue;
+
+    private Thread writer;
+
+    private volatile boolean stopped;
+
+    private final AtomicLong droppedCount = new AtomicLong(0);
+
+    private final AtomicLong writtenCount = new AtomicLong(0);
+
+    private final AtomicLong failedCount = new AtomicLong(0);
+
+    private final AtomicInteger maxBacklog = new AtomicInteger(0);
+
+    private class AuditWriter implements Runnable {
+
+        @Override
+        public void run() {
+            List<Object> events = new ArrayList<>(drainSize);
+            final long statsIntervalMs = statsInterval * 1000L;
+            long lastStatsLog = System.currentTimeMillis();
+            long lastWrittenCount = 0;
+            long lastDroppedCount = 0;
+            while (true) {
+                if (statsIntervalMs > 0) {
+                    long now = System.currentTimeMillis();
+                    if (now - lastStatsLog >= statsIntervalMs) {
+                        lastStatsLog = now;
+                        long written = writtenCount.get();
+                        long dropped = droppedCount.get();
+                        if (written != lastWrittenCount || dropped != lastDroppedCount) {
+                            logStatistics();
+                            lastWrittenCount = written;
+                            lastDroppedCount = dropped;
+                        }
+                    }
+                }
+
+                try {
+                    Object first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        if (stopped) {
+                            // queue is empty
+                            break;
+                        }
+                        continue;
+                    }
+
+                    events.add(first);
+                    queue.drainTo(events, drainSize - 1);
+                    // the syslog client sends each event in its own message
+                    for (Object event : events) {
+                        sendQueuedEvent(event);
+                    }
+                } catch (InterruptedException ex) {
+                    LOG.info("audit writer interrupted, {} events not written", queue.size());
+                    break;
+                } catch (Throwable th) {
+                    LOG.error("error while writing audit events: {}", th.getMessage());
+                    LOG.debug("error while writing audit events", th);
+                } finally {
+                    events.clear();
+                }
+            }
+        }
+
+    } // class AuditWriter
+
     public SyslogAuditServiceImpl() {
     }
 
@@ -130,6 +241,104 @@ public class SyslogAuditServiceImpl extends AuditService {
             return;
         }
 
+        if (async) {
+            enqueue(event);
+        } else {
+            sendEvent(event);
+        }
+    }
+
+    @Override
+    public void doLogEvent(@Nonnull final PciAuditEvent event) {
+        if (!initialized) {
+            LOG.error("Syslog audit not initialiazed");
+            return;
+        }
+
+        if (async) {
+            enqueue(event);
+        } else {
+            sendEvent(event);
+        }
+    }
+
+    private void enqueue(final Object event) {
+        if (stopped) {
+            // the writer is stopped or stopping, write the event in the calling thread
+            sendQueuedEvent(event);
+            return;
+        }
+
+        if (dropOnOverflow) {
+            if (!queue.offer(event)) {
+                long dropped = droppedCount.incrementAndGet();
+                if (dropped == 1 || dropped % 1000 == 0) {
+                    LOG.warn("audit queue is full, dropped {} events so far", dropped);
+                }
+                return;
+            }
+        } else {
+            try {
+                // wait for free space, but only as long as the writer is running
+                while (!queue.offer(event, 100, TimeUnit.MILLISECONDS)) {
+                    if (stopped) {
+                        sendQueuedEvent(event);
+                        return;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                droppedCount.incrementAndGet();
+                LOG.warn("interrupted while waiting for space in the audit queue, event dropped");
+                return;
+            }
+        }
+
+        if (stopped && queue.remove(event)) {
+            // the writer may have finished before the event was queued
+            sendQueuedEvent(event);
+            return;
+        }
+
+        int backlog = queue.size();
+        int max = maxBacklog.get();
+        while (backlog > max && !maxBacklog.compareAndSet(max, backlog)) {
+            max = maxBacklog.get();
+        }
+    }
+
+    private void sendQueuedEvent(final Object event) {
+        boolean sent;
+        try {
+            sent = (event instanceof AuditEvent) ? sendEvent((AuditEvent) event)
+                    : sendEvent((PciAuditEvent) event);
+        } catch (RuntimeException ex) {
+            logSendFailure(ex);
+            sent = false;
+        }
+
+        if (sent) {
+            writtenCount.incrementAndGet();
+        } else {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private void logSendFailure(final Exception ex) {
+        long failed = failedCount.incrementAndGet();
+        if (failed == 1 || failed % 1000 == 0) {
+            LOG.error("Could not send syslog message, {} failures so far: {}", failed,
+                    ex.getMessage());
+        }
+        LOG.debug("Could not send syslog message", ex);
+    }
+
+    private void logStatistics() {
+        LOG.info("asynchronous audit: backlog={}, maxBacklog={}, written={}, dropped={}",
+                getBacklog(), maxBacklog.get(), writtenCount.get(), droppedCount.get());
+    }
+
+    private boolean sendEvent(final AuditEvent event) {
         CharArrayWriter sb = new CharArrayWriter(150);
         if (notEmpty(prefix)) {
             sb.append(prefix);
@@ -159,7 +368,7 @@ public class SyslogAuditServiceImpl extends AuditService {
         if (n > maxMessageLength) {
             LOG.warn("syslog message exceeds the maximal allowed length: {} > {}, ignore it",
                     n, maxMessageLength);
-            return;
+            return false;
         }
 
         SyslogMessage sm = new SyslogMessage();
@@ -180,25 +389,20 @@ public class SyslogAuditServiceImpl extends AuditService {
 
         try {
             syslog.sendMessage(sm);
+            return true;
         } catch (IOException ex) {
-            LOG.error("Could not send syslog message: {}", ex.getMessage());
-            LOG.debug("Could not send syslog message", ex);
-        }
-    } // method logEvent(AuditEvent)
-
-    @Override
-    public void doLogEvent(@Nonnull final PciAuditEvent event) {
-        if (!initialized) {
-            LOG.error("Syslog audit not initialiazed");
-            return;
+            logSendFailure(ex);
+            return false;
         }
+    } // method sendEvent(AuditEvent)
 
+    private boolean sendEvent(final PciAuditEvent event) {
         CharArrayWriter msg = event.toCharArrayWriter(prefix);
         final int n = msg.size();
         if (n > maxMessageLength) {
             LOG.warn("syslog message exceeds the maximal allowed length: {} > {}, ignore it",
                     n, maxMessageLength);
-            return;
+            return false;
         }
 
         SyslogMessage sm = new SyslogMessage();
@@ -212,11 +416,12 @@ public class SyslogAuditServiceImpl extends AuditService {
 
         try {
             syslog.sendMessage(sm);
+            return true;
         } catch (IOException ex) {
-            LOG.error("Could not send syslog message: {}", ex.getMessage());
-            LOG.debug("Could not send syslog message", ex);
+            logSendFailure(ex);
+            return false;
         }
-    } // method logEvent(PCIAuditEvent)
+    } // method sendEvent(PCIAuditEvent)
 
     public void init() {
         if (initialized) {
@@ -276,6 +481,23 @@ public class SyslogAuditServiceImpl extends AuditService {
 
         syslog.setDefaultFacility(sysFacility);
 
+        if (async) {
+            if ("drop".equalsIgnoreCase(overflowPolicy)) {
+                dropOnOverflow = true;
+            } else if (!"block".equalsIgnoreCase(overflowPolicy)) {
+                LOG.warn("invalid overflowPolicy '{}', use the default one '{}'",
+                        overflowPolicy, DFLT_OVERFLOW_POLICY);
+            }
+
+            queue = new ArrayBlockingQueue<>(queueSize);
+            stopped = false;
+            writer = new Thread(new AuditWriter(), "syslog-audit-writer");
+            writer.setDaemon(true);
+            writer.start();
+            LOG.info("asynchronous audit: queueSize={}, drainSize={}, overflowPolicy={}",
+                    queueSize, drainSize, dropOnOverflow ? "drop" : "block");
+        }
+
         // after we're finished set initialized to true
         this.initialized = true;
         LOG.info("Initialized: {}", SyslogAuditServiceImpl.class);
@@ -283,9 +505,60 @@ public class SyslogAuditServiceImpl extends AuditService {
 
     public void destroy() {
         LOG.info("destroying: {}", SyslogAuditServiceImpl.class);
+        if (writer != null) {
+            // the writer stops after it has written all queued events
+            stopped = true;
+            try {
+                writer.join(10000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (writer.isAlive()) {
+                writer.interrupt();
+            }
+            writer = null;
+
+            // events queued after the writer has finished
+            Object event;
+            while ((event = queue.poll()) != null) {
+                sendQueuedEvent(event);
+            }
+            logStatistics();
+        }
         LOG.info("destroyed: {}", SyslogAuditServiceImpl.class);
     }
 
+    /**
+     * Returns the number of events waiting to be written, 0 in synchronous mode.
+     */
+    public int getBacklog() {
+        return (queue == null) ? 0 : queue.size();
+    }
+
+    /**
+     * Returns the largest backlog observed so far.
+     */
+    public int getMaxBacklog() {
+        return maxBacklog.get();
+    }
+
+    /**
+     * Returns the number of events dropped in asynchronous mode, because the queue was full or
+     * the event could not be sent.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns the number of events successfully written in asynchronous mode, including those
+     * written by the calling thread after {@link #destroy()}.
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
     public void setFacility(final String facility) {
         this.facility = facility;
     }
@@ -333,6 +606,35 @@ public class SyslogAuditServiceImpl extends AuditService {
         this.ssl = ssl;
     }
 
+    public void setAsync(final boolean async) {
+        this.async = async;
+    }
+
+    public void setQueueSize(final int queueSize) {
+        this.queueSize = (queueSize <= 0) ? DFLT_QUEUE_SIZE : queueSize;
+    }
+
+    /**
+     * Sets the maximal number of events the writer takes from the queue at once in asynchronous
+     * mode. Each event is still sent in its own syslog message.
+     */
+    public void setDrainSize(final int drainSize) {
+        this.drainSize = (drainSize <= 0) ? DFLT_DRAIN_SIZE : drainSize;
+    }
+
+    /**
+     * Sets the interval in seconds between two logs of the statistics (backlog, written and
+     * dropped events) in asynchronous mode. 0 deactivates the periodic log.
+     */
+    public void setStatsInterval(final int statsInterval) {
+        this.statsInterval = statsInterval;
+    }
+
+    public void setOverflowPolicy(final String overflowPolicy) {
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy,
+                "overflowPolicy must not be null");
+    }
+
     private static boolean notEmpty(final String text) {
         return text != null && !text.isEmpty();
     }
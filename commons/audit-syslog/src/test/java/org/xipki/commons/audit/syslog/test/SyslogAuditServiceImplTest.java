@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.audit.syslog.test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.commons.audit.api.AuditEvent;
+import org.xipki.commons.audit.api.AuditLevel;
+import org.xipki.commons.audit.api.AuditStatus;
+import org.xipki.commons.audit.syslog.impl.SyslogAuditServiceImpl;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class SyslogAuditServiceImplTest {
+
+    private DatagramSocket syslogServer;
+
+    @Before
+    public void startSyslogServer() throws Exception {
+        syslogServer = new DatagramSocket(0);
+        syslogServer.setSoTimeout(5000);
+    }
+
+    @After
+    public void stopSyslogServer() {
+        syslogServer.close();
+    }
+
+    @Test(timeout = 30000)
+    public void testLogAfterDestroy() throws Exception {
+        SyslogAuditServiceImpl service = newAsyncService("block", 2);
+        for (int i = 0; i < 5; i++) {
+            service.logEvent(newEvent(i));
+        }
+        service.destroy();
+
+        // neither blocks nor loses the events
+        for (int i = 5; i < 10; i++) {
+            service.logEvent(newEvent(i));
+        }
+
+        Assert.assertEquals("received messages", 10, receiveMessages(10));
+        Assert.assertEquals("written", 10, service.getWrittenCount());
+        Assert.assertEquals("dropped", 0, service.getDroppedCount());
+        Assert.assertEquals("backlog", 0, service.getBacklog());
+    }
+
+    @Test(timeout = 30000)
+    public void testAsyncWrite() throws Exception {
+        SyslogAuditServiceImpl service = newAsyncService("drop", 10);
+        try {
+            for (int i = 0; i < 5; i++) {
+                service.logEvent(newEvent(i));
+            }
+            Assert.assertEquals("received messages", 5, receiveMessages(5));
+        } finally {
+            service.destroy();
+        }
+        Assert.assertEquals("written", 5, service.getWrittenCount());
+    }
+
+    @Test(timeout = 30000)
+    public void testSendFailures() throws Exception {
+        // nothing listens on the port
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        SyslogAuditServiceImpl service = new SyslogAuditServiceImpl();
+        service.setHost("127.0.0.1");
+        service.setPort(port);
+        service.setProtocol("tcp");
+        service.setWriteRetries(1);
+        service.setAsync(true);
+        service.setDrainSize(10);
+        service.init();
+        try {
+            for (int i = 0; i < 5; i++) {
+                service.logEvent(newEvent(i));
+            }
+        } finally {
+            service.destroy();
+        }
+
+        Assert.assertEquals("written", 0, service.getWrittenCount());
+        Assert.assertEquals("dropped", 5, service.getDroppedCount());
+    }
+
+    private SyslogAuditServiceImpl newAsyncService(final String overflowPolicy,
+            final int queueSize) {
+        SyslogAuditServiceImpl service = new SyslogAuditServiceImpl();
+        service.setHost("127.0.0.1");
+        service.setPort(syslogServer.getLocalPort());
+        service.setProtocol("udp");
+        service.setAsync(true);
+        service.setQueueSize(queueSize);
+        service.setDrainSize(1);
+        service.setOverflowPolicy(overflowPolicy);
+        service.init();
+        return service;
+    }
+
+    private int receiveMessages(final int expected) throws Exception {
+        byte[] buffer = new byte[2048];
+        int num = 0;
+        try {
+            while (num < expected) {
+                syslogServer.receive(new DatagramPacket(buffer, buffer.length));
+                num++;
+            }
+        } catch (SocketTimeoutException ex) {
+            // fewer messages than expected
+        }
+        return num;
+    }
+
+    private static AuditEvent newEvent(final int index) {
+        AuditEvent event = new AuditEvent(new Date());
+        event.setApplicationName("test");
+        event.setName("event-" + index);
+        event.setLevel(AuditLevel.INFO);
+        event.setStatus(AuditStatus.SUCCESSFUL);
+        return event;
+    }
+
+}
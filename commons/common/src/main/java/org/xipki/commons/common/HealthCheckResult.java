@@ -72,6 +72,12 @@ public class HealthCheckResult {
         this.healthy = healthy;
     }
 
+    public void putStatus(final String statusName, final Object statusValue) {
+        ParamUtil.requireNonBlank("statusName", statusName);
+        ParamUtil.requireNonNull("statusValue", statusValue);
+        this.statuses.put(statusName, statusValue);
+    }
+
     public void clearStatuses() {
         this.statuses.clear();
     }
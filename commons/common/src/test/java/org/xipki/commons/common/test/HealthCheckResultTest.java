@@ -158,6 +158,37 @@ public class HealthCheckResultTest {
         check(result, noPrettyJson, prettyJson);
     }
 
+    @Test
+    public void test6() {
+        HealthCheckResult result = new HealthCheckResult("mycheck-positive");
+        result.setHealthy(true);
+
+        HealthCheckResult childCheck = new HealthCheckResult("childcheck");
+        childCheck.setHealthy(true);
+        childCheck.putStatus("pool.inUse", 2);
+        result.addChildCheck(childCheck);
+
+        String noPrettyJson = "{\"healthy\":true,\"checks\":{\"childcheck\":{\"healthy\":true,"
+                + "\"pool.inUse\":2}}}";
+
+        String prettyJson = "{\n"
+                + "    \"healthy\":true,\n"
+                + "    \"checks\":{\n"
+                + "        \"childcheck\":{\n"
+                + "            \"healthy\":true,\n"
+                + "            \"pool.inUse\":2\n"
+                + "        }\n"
+                + "    }\n"
+                + "}";
+        check(result, noPrettyJson, prettyJson);
+
+        // statuses are not parsed, but must not break the parsing of the checks
+        HealthCheckResult parsed = HealthCheckResult.getInstanceFromJsonMessage("default",
+                noPrettyJson);
+        Assert.assertEquals("{\"healthy\":true,\"checks\":{\"childcheck\":{\"healthy\":true}}}",
+                parsed.toJsonMessage(false));
+    }
+
     private static void check(final HealthCheckResult result, final String expNoPrettyJson,
             final String expPrettyJson) {
         Assert.assertEquals("non-pretty JSON", expNoPrettyJson, result.toJsonMessage(false));
@@ -0,0 +1,378 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+
+package org.xipki.commons.remotep11.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ServerSocketFactory;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLServerSocketFactory;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.DERNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.exception.BadAsn1ObjectException;
+import org.xipki.commons.security.exception.P11TokenException;
+import org.xipki.commons.security.pkcs11.P11CryptService;
+import org.xipki.commons.security.pkcs11.proxy.P11ProxyConstants;
+import org.xipki.commons.security.pkcs11.proxy.P11ProxyFrame;
+import org.xipki.commons.security.pkcs11.proxy.ServerCaps;
+
+/**
+ * Server of the binary transport (see {@link P11ProxyFrame}). Each connection is served by
+ * one reader thread, the requests are processed by a shared pool of workers, so that many
+ * requests of one connection can be processed concurrently. The number of concurrent
+ * connections is limited, further connections are closed directly after being accepted.
+ *
+ * <p>If TLS is activated, the key and trust stores are configured via the standard system
+ * properties javax.net.ssl.*.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class BinaryProxyServer {
+
+    private class ConnectionHandler implements Runnable {
+
+        private final Socket socket;
+
+        private final DataOutputStream out;
+
+        ConnectionHandler(final Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        @Override
+        public void run() {
+            String peer = socket.getRemoteSocketAddress().toString();
+            LOG.info("accepted connection from {}", peer);
+            try {
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream()));
+                while (!closed) {
+                    final P11ProxyFrame request = P11ProxyFrame.readRequest(in);
+                    try {
+                        workers.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                writeResponse(processRequest(request));
+                            }
+                        });
+                    } catch (RejectedExecutionException ex) {
+                        // the queue is full, the server is overloaded
+                        LOG.warn("rejected request {} from {}", request.getRequestId(), peer);
+                        writeResponse(P11ProxyFrame.newErrorResponse(request.getRequestId(),
+                                "SYSTEM_FAILURE"));
+                    }
+                }
+            } catch (EOFException ex) {
+                LOG.info("connection closed by {}", peer);
+            } catch (IOException ex) {
+                if (!closed) {
+                    LogUtil.warn(LOG, ex, "error while reading from " + peer);
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void writeResponse(final P11ProxyFrame response) {
+            try {
+                synchronized (out) {
+                    response.write(out);
+                    out.flush();
+                }
+            } catch (IOException ex) {
+                LogUtil.warn(LOG, ex, "could not write response");
+                close();
+            }
+        }
+
+        void close() {
+            if (connections.remove(this)) {
+                connectionPermits.release();
+            }
+            closeSocket(socket);
+        }
+
+    } // class ConnectionHandler
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryProxyServer.class);
+
+    private final Set<ConnectionHandler> connections = ConcurrentHashMap.newKeySet();
+
+    private LocalP11CryptServicePool localP11CryptServicePool;
+
+    private int port;
+
+    private boolean tls = true;
+
+    private boolean needClientAuth = true;
+
+    private int numWorkers = 20;
+
+    private int queueSize = 1000;
+
+    private int maxConnections = 100;
+
+    private Semaphore connectionPermits;
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService workers;
+
+    private volatile boolean closed;
+
+    public BinaryProxyServer() {
+    }
+
+    public void setLocalP11CryptServicePool(
+            final LocalP11CryptServicePool localP11CryptServicePool) {
+        this.localP11CryptServicePool = localP11CryptServicePool;
+    }
+
+    /**
+     * Sets the port to listen on. Non-positive value deactivates the binary transport.
+     */
+    public void setPort(final int port) {
+        this.port = port;
+    }
+
+    public void setTls(final boolean tls) {
+        this.tls = tls;
+    }
+
+    public void setNeedClientAuth(final boolean needClientAuth) {
+        this.needClientAuth = needClientAuth;
+    }
+
+    public void setNumWorkers(final int numWorkers) {
+        this.numWorkers = ParamUtil.requireMin("numWorkers", numWorkers, 1);
+    }
+
+    /**
+     * Sets the maximal number of requests waiting for a worker. Further requests are rejected
+     * with the error SYSTEM_FAILURE.
+     */
+    public void setQueueSize(final int queueSize) {
+        this.queueSize = ParamUtil.requireMin("queueSize", queueSize, 1);
+    }
+
+    /**
+     * Sets the maximal number of concurrent connections. Further connections are closed.
+     */
+    public void setMaxConnections(final int maxConnections) {
+        this.maxConnections = ParamUtil.requireMin("maxConnections", maxConnections, 1);
+    }
+
+    public void init() throws IOException {
+        if (port <= 0) {
+            LOG.info("binary transport is deactivated");
+            return;
+        }
+
+        ParamUtil.requireNonNull("localP11CryptServicePool", localP11CryptServicePool);
+        connectionPermits = new Semaphore(maxConnections);
+
+        ServerSocketFactory factory = tls ? SSLServerSocketFactory.getDefault()
+                : ServerSocketFactory.getDefault();
+        serverSocket = factory.createServerSocket(port);
+        if (serverSocket instanceof SSLServerSocket) {
+            ((SSLServerSocket) serverSocket).setNeedClientAuth(needClientAuth);
+        }
+
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "p11proxy-worker-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+
+        // bounded queue, so that requests are rejected if the server is overloaded
+        workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), threadFactory);
+
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "p11proxy-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("binary transport listens on port {} (TLS: {})", port, tls);
+    } // method init
+
+    public void shutdown() {
+        closed = true;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                LOG.warn("could not close server socket: {}", ex.getMessage());
+            }
+            serverSocket = null;
+        }
+
+        for (ConnectionHandler conn : connections) {
+            conn.close();
+        }
+
+        if (workers != null) {
+            workers.shutdownNow();
+            workers = null;
+        }
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException ex) {
+                if (!closed) {
+                    LogUtil.error(LOG, ex, "could not accept connection");
+                }
+                return;
+            } catch (IOException ex) {
+                LogUtil.error(LOG, ex, "could not accept connection");
+                continue;
+            }
+
+            if (!connectionPermits.tryAcquire()) {
+                LOG.warn("rejected connection from {}, already {} connections",
+                        socket.getRemoteSocketAddress(), maxConnections);
+                closeSocket(socket);
+                continue;
+            }
+
+            try {
+                socket.setTcpNoDelay(true);
+                ConnectionHandler conn = new ConnectionHandler(socket);
+                connections.add(conn);
+                Thread thread = new Thread(conn, "p11proxy-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException ex) {
+                LogUtil.error(LOG, ex, "could not serve connection");
+                connectionPermits.release();
+                closeSocket(socket);
+            }
+        }
+    } // method acceptConnections
+
+    private static void closeSocket(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOG.debug("could not close socket: {}", ex.getMessage());
+        }
+    }
+
+    private P11ProxyFrame processRequest(final P11ProxyFrame request) {
+        final int requestId = request.getRequestId();
+        final int action = request.getCode();
+        try {
+            P11CryptService p11CryptService =
+                    localP11CryptServicePool.getP11CryptService(request.getModuleName());
+            if (p11CryptService == null) {
+                return P11ProxyFrame.newErrorResponse(requestId,
+                        "unknown module " + request.getModuleName());
+            }
+
+            if (P11ProxyConstants.ACTION_getServerCaps == action) {
+                boolean readOnly = p11CryptService.getModule().isReadOnly();
+                ServerCaps caps = new ServerCaps(readOnly, CmpResponder.getVersions());
+                return P11ProxyFrame.newResponse(requestId,
+                        caps.getCaps().getBytes(StandardCharsets.UTF_8));
+            }
+
+            if (!CmpResponder.getVersions().contains(request.getVersion())) {
+                return P11ProxyFrame.newErrorResponse(requestId,
+                        "unsupported version " + request.getVersion());
+            }
+
+            byte[] content = request.getPayload();
+            ASN1Encodable reqValue = (content.length == 0) ? DERNull.INSTANCE
+                    : ASN1Primitive.fromByteArray(content);
+            ASN1Encodable respValue = P11ActionProcessor.process(p11CryptService, action,
+                    reqValue);
+            byte[] payload = (respValue == null) ? null
+                    : respValue.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+            return P11ProxyFrame.newResponse(requestId, payload);
+        } catch (BadAsn1ObjectException ex) {
+            LogUtil.error(LOG, ex, "could not process request " + requestId);
+            return P11ProxyFrame.newErrorResponse(requestId, ex.getMessage());
+        } catch (P11TokenException ex) {
+            LogUtil.error(LOG, ex, "could not process request " + requestId);
+            return P11ProxyFrame.newErrorResponse(requestId, P11ActionProcessor.formatError(ex));
+        } catch (Throwable th) {
+            LogUtil.error(LOG, th, "could not process request " + requestId);
+            return P11ProxyFrame.newErrorResponse(requestId, "SYSTEM_FAILURE");
+        }
+    } // method processRequest
+
+}
@@ -35,10 +35,12 @@
 package org.xipki.commons.security;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.Date;
+import java.util.List;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -71,6 +73,11 @@ import org.xipki.commons.security.exception.XiSecurityException;
 
 public interface ConcurrentContentSigner {
 
+    /**
+     * Returns the name, e.g. the name of the signer in the configuration, as specified by
+     * {@link SignerConf#setName(String)} at creation. The name is used in the log messages and in
+     * the {@link SignerPoolStatistics}.
+     */
     String getName();
 
     AlgorithmIdentifier getAlgorithmIdentifier();
@@ -121,8 +128,30 @@ public interface ConcurrentContentSigner {
 
     byte[] sign(@Nonnull byte[] data) throws NoIdleSignerException, IOException;
 
+    /**
+     * Sign the data read from the stream till its end. The data is passed to the signer in
+     * chunks, so that very large data (e.g. CRL) need not be held in memory.
+     * @param data the data to be signed. It will not be closed by this method.
+     * @return the signature.
+     */
+    byte[] sign(@Nonnull InputStream data) throws NoIdleSignerException, IOException;
+
+    /**
+     * Sign each of the given messages.
+     * @param data the messages to be signed.
+     * @return the signatures, in the order of the messages.
+     */
+    List<byte[]> signBatch(@Nonnull List<byte[]> data) throws NoIdleSignerException, IOException;
+
     boolean isHealthy();
 
+    /**
+     * Returns the statistics of the pool of signers.
+     * @return the statistics, {@code null} if the signer has no pool.
+     */
+    @Nullable
+    SignerPoolStatistics getPoolStatistics();
+
     void shutdown();
 
 }
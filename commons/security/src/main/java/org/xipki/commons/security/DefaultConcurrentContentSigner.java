@@ -35,17 +35,29 @@
 package org.xipki.commons.security;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.bouncycastle.asn1.crmf.POPOSigningKey;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
@@ -80,22 +92,54 @@ import org.xipki.commons.security.exception.XiSecurityException;
 
 public class DefaultConcurrentContentSigner implements ConcurrentContentSigner {
 
+    private static final class PooledSigner {
+
+        private final ContentSigner signer;
+
+        private final AtomicBoolean borrowed = new AtomicBoolean(false);
+
+        PooledSigner(final ContentSigner signer) {
+            this.signer = signer;
+        }
+
+    } // class PooledSigner
+
     private static final Logger LOG = LoggerFactory.getLogger(DefaultConcurrentContentSigner.class);
 
     private static final AtomicInteger NAME_INDEX = new AtomicInteger(1);
 
     private static int defaultSignServiceTimeout = 10000; // 10 seconds
 
+    // minimal number of messages signed by one signer in signBatch
+    private static final int MIN_BATCH_CHUNK_SIZE = 8;
+
     private final String name;
 
     private final AlgorithmIdentifier algorithmIdentifier;
 
-    private final BlockingDeque<ContentSigner> idleSigners = new LinkedBlockingDeque<>();
+    private final ConcurrentLinkedQueue<PooledSigner> idleSigners =
+            new ConcurrentLinkedQueue<>();
+
+    // number of permits equals always the number of signers in idleSigners
+    private final Semaphore idlePermits;
+
+    private final int poolSize;
+
+    private final AtomicInteger inUseCount = new AtomicInteger(0);
 
-    private final BlockingDeque<ContentSigner> busySigners = new LinkedBlockingDeque<>();
+    private final LongAdder borrowCount = new LongAdder();
+
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder waitTimeNanos = new LongAdder();
 
     private final PrivateKey privateKey;
 
+    // signs the chunks of signBatch in parallel, created on demand
+    private volatile ExecutorService batchExecutor;
+
     private PublicKey publicKey;
 
     private X509Certificate[] certificateChain;
@@ -123,57 +167,108 @@ public class DefaultConcurrentContentSigner implements ConcurrentContentSigner {
 
     public DefaultConcurrentContentSigner(final List<ContentSigner> signers,
             final PrivateKey privateKey) {
+        this(null, signers, privateKey);
+    }
+
+    /**
+     * @param name name of the signer, {@code null} to generate one.
+     * @param signers the underlying signers.
+     * @param privateKey the private key, may be {@code null}.
+     */
+    public DefaultConcurrentContentSigner(final String name, final List<ContentSigner> signers,
+            final PrivateKey privateKey) {
         ParamUtil.requireNonEmpty("signers", signers);
 
         this.algorithmIdentifier = signers.get(0).getAlgorithmIdentifier();
         for (ContentSigner signer : signers) {
-            idleSigners.addLast(signer);
+            idleSigners.offer(new PooledSigner(signer));
         }
+        this.poolSize = signers.size();
+        this.idlePermits = new Semaphore(poolSize);
 
         this.privateKey = privateKey;
-        this.name = "defaultSigner-" + NAME_INDEX.getAndIncrement();
+        this.name = (name == null) ? "defaultSigner-" + NAME_INDEX.getAndIncrement() : name;
     }
 
+    @Override
     public String getName() {
         return name;
     }
 
-    private ContentSigner borrowContentSigner() throws NoIdleSignerException {
-        return borrowContentSigner(defaultSignServiceTimeout);
+    @Override
+    public SignerPoolStatistics getPoolStatistics() {
+        return new SignerPoolStatistics(name, poolSize, inUseCount.get(), borrowCount.sum(),
+                exhaustedCount.sum(), timeoutCount.sum(), waitTimeNanos.sum());
+    }
+
+    private PooledSigner borrowSigner() throws NoIdleSignerException {
+        return borrowSigner(defaultSignServiceTimeout);
     }
 
     /**
      * @param timeout timeout in milliseconds, 0 for infinitely.
      */
-    private ContentSigner borrowContentSigner(final int soTimeout) throws NoIdleSignerException {
-        ContentSigner signer = null;
-        try {
-            signer = (soTimeout == 0) ? idleSigners.takeFirst()
-                    : idleSigners.pollFirst(soTimeout, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
-        }
+    private PooledSigner borrowSigner(final int soTimeout) throws NoIdleSignerException {
+        // fast path: a CAS on the semaphore, no locking
+        if (!idlePermits.tryAcquire()) {
+            // pool exhausted, wait for a signer to be returned
+            exhaustedCount.increment();
+            boolean acquired = false;
+            long start = System.nanoTime();
+            try {
+                if (soTimeout == 0) {
+                    idlePermits.acquire();
+                    acquired = true;
+                } else {
+                    acquired = idlePermits.tryAcquire(soTimeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waitTimeNanos.add(System.nanoTime() - start);
+            }
 
-        if (signer == null) {
-            throw new NoIdleSignerException("no idle signer available");
+            if (!acquired) {
+                timeoutCount.increment();
+                // counted in the pool statistics, logging each timeout would flood the log
+                LOG.debug("no idle signer available in {}", name);
+                throw new NoIdleSignerException("no idle signer available");
+            }
         }
 
-        busySigners.addLast(signer);
+        return takeIdleSigner();
+    }
+
+    /**
+     * @return an idle signer, or {@code null} if the pool is exhausted.
+     */
+    private PooledSigner tryBorrowSigner() {
+        return idlePermits.tryAcquire() ? takeIdleSigner() : null;
+    }
+
+    private PooledSigner takeIdleSigner() {
+        // a permit guarantees an idle signer in the queue
+        PooledSigner signer = idleSigners.poll();
+        signer.borrowed.set(true);
+        inUseCount.incrementAndGet();
+        borrowCount.increment();
         return signer;
     }
 
-    private void returnContentSigner(final ContentSigner signer) {
+    private void returnSigner(final PooledSigner signer) {
         ParamUtil.requireNonNull("signer", signer);
 
-        boolean isBusySigner = busySigners.remove(signer);
-        if (isBusySigner) {
-            idleSigners.addLast(signer);
-        } else {
+        if (!signer.borrowed.compareAndSet(true, false)) {
             final String msg =
                     "signer has not been borrowed before or has been returned more than once: "
-                    + signer;
+                    + signer.signer;
             LOG.error(msg);
             throw new IllegalStateException(msg);
         }
+
+        inUseCount.decrementAndGet();
+        idleSigners.offer(signer);
+        idlePermits.release();
     }
 
     @Override
@@ -245,19 +340,19 @@ public class DefaultConcurrentContentSigner implements ConcurrentContentSigner {
 
     @Override
     public boolean isHealthy() {
-        ContentSigner signer = null;
+        PooledSigner signer = null;
         try {
-            signer = borrowContentSigner();
-            OutputStream stream = signer.getOutputStream();
+            signer = borrowSigner();
+            OutputStream stream = signer.signer.getOutputStream();
             stream.write(new byte[]{1, 2, 3, 4});
-            byte[] signature = signer.getSignature();
+            byte[] signature = signer.signer.getSignature();
             return signature != null && signature.length > 0;
         } catch (Exception ex) {
             LogUtil.error(LOG, ex);
             return false;
         } finally {
             if (signer != null) {
-                returnContentSigner(signer);
+                returnSigner(signer);
             }
         }
     }
@@ -269,59 +364,63 @@ public class DefaultConcurrentContentSigner implements ConcurrentContentSigner {
 
     @Override
     public void shutdown() {
+        ExecutorService executor = batchExecutor;
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     @Override
     public POPOSigningKey build(final ProofOfPossessionSigningKeyBuilder builder)
     throws NoIdleSignerException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner);
+            return builder.build(signer.signer);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
     @Override
     public ProtectedPKIMessage build(final ProtectedPKIMessageBuilder builder)
     throws NoIdleSignerException, CMPException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner);
+            return builder.build(signer.signer);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
     @Override
     public X509CRLHolder build(final X509v2CRLBuilder builder) throws NoIdleSignerException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner);
+            return builder.build(signer.signer);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
     @Override
     public X509CertificateHolder build(final X509v3CertificateBuilder builder)
     throws NoIdleSignerException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner);
+            return builder.build(signer.signer);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
     @Override
     public OCSPReq build(final OCSPReqBuilder builder, final X509CertificateHolder[] chain)
     throws NoIdleSignerException, OCSPException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner, chain);
+            return builder.build(signer.signer, chain);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
@@ -329,34 +428,193 @@ public class DefaultConcurrentContentSigner implements ConcurrentContentSigner {
     public BasicOCSPResp build(final BasicOCSPRespBuilder builder,
             final X509CertificateHolder[] chain, final Date producedAt)
     throws NoIdleSignerException, OCSPException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner, chain, producedAt);
+            return builder.build(signer.signer, chain, producedAt);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
     @Override
     public PKCS10CertificationRequest build(final PKCS10CertificationRequestBuilder builder)
     throws NoIdleSignerException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            return builder.build(contentSigner);
+            return builder.build(signer.signer);
         } finally {
-            returnContentSigner(contentSigner);
+            returnSigner(signer);
         }
     }
 
     @Override
     public byte[] sign(final byte[] data) throws NoIdleSignerException, IOException {
-        ContentSigner contentSigner = borrowContentSigner();
+        PooledSigner signer = borrowSigner();
         try {
-            OutputStream signatureStream = contentSigner.getOutputStream();
+            OutputStream signatureStream = signer.signer.getOutputStream();
             signatureStream.write(data);
-            return contentSigner.getSignature();
+            return signer.signer.getSignature();
+        } finally {
+            returnSigner(signer);
+        }
+    }
+
+    @Override
+    public byte[] sign(final InputStream data) throws NoIdleSignerException, IOException {
+        ParamUtil.requireNonNull("data", data);
+        PooledSigner signer = borrowSigner();
+        try {
+            OutputStream signatureStream = signer.signer.getOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = data.read(buffer)) != -1) {
+                signatureStream.write(buffer, 0, read);
+            }
+            return signer.signer.getSignature();
+        } finally {
+            returnSigner(signer);
+        }
+    }
+
+    @Override
+    public List<byte[]> signBatch(final List<byte[]> data)
+    throws NoIdleSignerException, IOException {
+        ParamUtil.requireNonNull("data", data);
+        final int n = data.size();
+        final List<PooledSigner> signers = new ArrayList<>();
+        signers.add(borrowSigner());
+        try {
+            ContentSigner firstSigner = signers.get(0).signer;
+            if (firstSigner instanceof BatchContentSigner) {
+                try {
+                    return ((BatchContentSigner) firstSigner).signBatch(data);
+                } catch (XiSecurityException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            }
+
+            // take further idle signers, without waiting, to sign the messages in parallel
+            int maxSigners = n / MIN_BATCH_CHUNK_SIZE;
+            while (signers.size() < maxSigners) {
+                PooledSigner signer = tryBorrowSigner();
+                if (signer == null) {
+                    break;
+                }
+                signers.add(signer);
+            }
+
+            final byte[][] signatures = new byte[n][];
+            final int numSigners = signers.size();
+            if (numSigners == 1) {
+                signRange(firstSigner, data, 0, n, signatures);
+            } else {
+                signInParallel(signers, data, signatures);
+            }
+            return Arrays.asList(signatures);
         } finally {
-            returnContentSigner(contentSigner);
+            for (PooledSigner signer : signers) {
+                returnSigner(signer);
+            }
+        }
+    } // method signBatch
+
+    /**
+     * Signs the i-th chunk of the messages with the i-th signer. The first chunk is signed in
+     * the calling thread, the others in the batch executor. Returns after all chunks have been
+     * processed, since the signers are returned to the pool afterwards.
+     */
+    private void signInParallel(final List<PooledSigner> signers, final List<byte[]> data,
+            final byte[][] signatures) throws IOException {
+        final int n = data.size();
+        final int numSigners = signers.size();
+        ExecutorService executor = getBatchExecutor();
+        List<Future<?>> futures = new ArrayList<>(numSigners - 1);
+        for (int i = 1; i < numSigners; i++) {
+            final ContentSigner signer = signers.get(i).signer;
+            final int from = (int) ((long) n * i / numSigners);
+            final int to = (int) ((long) n * (i + 1) / numSigners);
+            Callable<Void> task = () -> {
+                signRange(signer, data, from, to, signatures);
+                return null;
+            };
+
+            Future<?> future;
+            try {
+                future = executor.submit(task);
+            } catch (RejectedExecutionException ex) {
+                // the signer is being shut down
+                FutureTask<Void> inlineTask = new FutureTask<>(task);
+                inlineTask.run();
+                future = inlineTask;
+            }
+            futures.add(future);
+        }
+
+        Throwable error = null;
+        try {
+            signRange(signers.get(0).signer, data, 0, (int) ((long) n / numSigners), signatures);
+        } catch (IOException | RuntimeException ex) {
+            error = ex;
+        }
+
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (error == null) {
+                        error = ex.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        } else if (error != null) {
+            throw new IOException(error.getMessage(), error);
+        }
+    } // method signInParallel
+
+    private ExecutorService getBatchExecutor() {
+        ExecutorService executor = batchExecutor;
+        if (executor != null) {
+            return executor;
+        }
+
+        synchronized (this) {
+            if (batchExecutor == null) {
+                // at most poolSize - 1 chunks are signed outside the calling threads
+                final AtomicInteger threadIndex = new AtomicInteger(1);
+                batchExecutor = Executors.newFixedThreadPool(poolSize - 1, (runnable) -> {
+                    Thread thread = new Thread(runnable,
+                            name + "-batch-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return batchExecutor;
+        }
+    }
+
+    private static void signRange(final ContentSigner signer, final List<byte[]> data,
+            final int from, final int to, final byte[][] signatures) throws IOException {
+        for (int i = from; i < to; i++) {
+            signer.getOutputStream().write(data.get(i));
+            signatures[i] = signer.getSignature();
         }
     }
 
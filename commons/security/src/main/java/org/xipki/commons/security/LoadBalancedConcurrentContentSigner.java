@@ -0,0 +1,540 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bouncycastle.asn1.crmf.POPOSigningKey;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.cmp.CMPException;
+import org.bouncycastle.cert.cmp.ProtectedPKIMessage;
+import org.bouncycastle.cert.cmp.ProtectedPKIMessageBuilder;
+import org.bouncycastle.cert.crmf.ProofOfPossessionSigningKeyBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.OCSPException;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.PKCS10CertificationRequestBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.password.PasswordResolver;
+import org.xipki.commons.security.exception.NoIdleSignerException;
+import org.xipki.commons.security.exception.XiSecurityException;
+
+/**
+ * {@link ConcurrentContentSigner} which fronts several signers with the same key, e.g. on
+ * different HSMs. Each operation is dispatched to the healthy backend with the fewest
+ * operations in progress. A backend is ejected after {@code maxErrors} consecutive errors,
+ * and probed again with a real operation after {@code probeInterval} milliseconds.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class LoadBalancedConcurrentContentSigner implements ConcurrentContentSigner {
+
+    private interface SignerOperation<T, E extends Exception> {
+
+        T execute(ConcurrentContentSigner signer) throws NoIdleSignerException, E;
+
+    } // interface SignerOperation
+
+    /**
+     * Remembers whether reading the caller's stream failed, so that such a failure is not
+     * counted as error of the backend.
+     */
+    private static final class ReadErrorTrackingInputStream extends FilterInputStream {
+
+        private volatile boolean readError;
+
+        ReadErrorTrackingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException | RuntimeException ex) {
+                readError = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read(final byte[] buf, final int off, final int len) throws IOException {
+            try {
+                return super.read(buf, off, len);
+            } catch (IOException | RuntimeException ex) {
+                readError = true;
+                throw ex;
+            }
+        }
+
+        @Override
+        public long skip(final long num) throws IOException {
+            try {
+                return super.skip(num);
+            } catch (IOException | RuntimeException ex) {
+                readError = true;
+                throw ex;
+            }
+        }
+
+    } // class ReadErrorTrackingInputStream
+
+    private static final class Backend {
+
+        private final ConcurrentContentSigner signer;
+
+        private final AtomicInteger inFlight = new AtomicInteger(0);
+
+        private final AtomicInteger consecutiveErrors = new AtomicInteger(0);
+
+        // only one thread probes an ejected backend
+        private final AtomicBoolean probing = new AtomicBoolean(false);
+
+        private final LongAdder operationCount = new LongAdder();
+
+        private final LongAdder errorCount = new LongAdder();
+
+        private volatile boolean ejected;
+
+        private volatile long ejectedAt;
+
+        Backend(final ConcurrentContentSigner signer) {
+            this.signer = signer;
+        }
+
+    } // class Backend
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(LoadBalancedConcurrentContentSigner.class);
+
+    private static final AtomicInteger NAME_INDEX = new AtomicInteger(1);
+
+    private final String name;
+
+    private final List<Backend> backends;
+
+    private final int maxErrors;
+
+    private final long probeIntervalNanos;
+
+    private final AtomicInteger nextIndex = new AtomicInteger(0);
+
+    private X509Certificate[] certificateChain;
+
+    private PublicKey publicKey;
+
+    /**
+     * @param signers the backends, all with the same key and signature algorithm.
+     * @param maxErrors number of consecutive errors after which a backend is ejected.
+     * @param probeInterval time in milliseconds after which an ejected backend is probed.
+     */
+    public LoadBalancedConcurrentContentSigner(final List<ConcurrentContentSigner> signers,
+            final int maxErrors, final long probeInterval) {
+        this(null, signers, maxErrors, probeInterval);
+    }
+
+    /**
+     * @param name name of the signer, {@code null} to generate one.
+     * @param signers the backends, all with the same key and signature algorithm.
+     * @param maxErrors number of consecutive errors after which a backend is ejected.
+     * @param probeInterval time in milliseconds after which an ejected backend is probed.
+     */
+    public LoadBalancedConcurrentContentSigner(final String name,
+            final List<ConcurrentContentSigner> signers, final int maxErrors,
+            final long probeInterval) {
+        ParamUtil.requireNonEmpty("signers", signers);
+        this.maxErrors = ParamUtil.requireMin("maxErrors", maxErrors, 1);
+        this.probeIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+                ParamUtil.requireMin("probeInterval", probeInterval, 0));
+
+        AlgorithmIdentifier algId = signers.get(0).getAlgorithmIdentifier();
+        PublicKey pubKey = signers.get(0).getPublicKey();
+        List<Backend> tmpBackends = new ArrayList<>(signers.size());
+        for (ConcurrentContentSigner signer : signers) {
+            if (!algId.equals(signer.getAlgorithmIdentifier())) {
+                throw new IllegalArgumentException(
+                        "signers do not have the same signature algorithm");
+            }
+
+            PublicKey signerPubKey = signer.getPublicKey();
+            if (pubKey == null) {
+                pubKey = signerPubKey;
+            } else if (signerPubKey != null
+                    && !Arrays.equals(pubKey.getEncoded(), signerPubKey.getEncoded())) {
+                // keys from different providers are not equal even with the same value
+                throw new IllegalArgumentException("signers do not have the same public key");
+            }
+            tmpBackends.add(new Backend(signer));
+        }
+
+        this.backends = tmpBackends;
+        this.publicKey = pubKey;
+        this.name = (name == null) ? "loadBalancedSigner-" + NAME_INDEX.getAndIncrement()
+                : name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public AlgorithmIdentifier getAlgorithmIdentifier() {
+        return backends.get(0).signer.getAlgorithmIdentifier();
+    }
+
+    @Override
+    public PrivateKey getPrivateKey() {
+        return null;
+    }
+
+    @Override
+    public void setPublicKey(final PublicKey publicKey) {
+        this.publicKey = publicKey;
+        for (Backend backend : backends) {
+            backend.signer.setPublicKey(publicKey);
+        }
+    }
+
+    @Override
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    @Override
+    public X509Certificate getCertificate() {
+        return (certificateChain != null && certificateChain.length > 0)
+                ? certificateChain[0] : null;
+    }
+
+    @Override
+    public X509CertificateHolder getCertificateAsBcObject() {
+        return backends.get(0).signer.getCertificateAsBcObject();
+    }
+
+    @Override
+    public void setCertificateChain(final X509Certificate[] certificateChain) {
+        for (Backend backend : backends) {
+            backend.signer.setCertificateChain(certificateChain);
+        }
+
+        if (certificateChain == null || certificateChain.length == 0) {
+            this.certificateChain = null;
+        } else {
+            this.certificateChain = certificateChain;
+            this.publicKey = certificateChain[0].getPublicKey();
+        }
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain() {
+        return certificateChain;
+    }
+
+    @Override
+    public X509CertificateHolder[] getCertificateChainAsBcObjects() {
+        return backends.get(0).signer.getCertificateChainAsBcObjects();
+    }
+
+    @Override
+    public void initialize(final String conf, final PasswordResolver passwordResolver)
+    throws XiSecurityException {
+    }
+
+    @Override
+    public POPOSigningKey build(final ProofOfPossessionSigningKeyBuilder builder)
+    throws NoIdleSignerException {
+        return execute(signer -> signer.build(builder), true);
+    }
+
+    @Override
+    public ProtectedPKIMessage build(final ProtectedPKIMessageBuilder builder)
+    throws NoIdleSignerException, CMPException {
+        return execute(signer -> signer.build(builder), true);
+    }
+
+    @Override
+    public X509CRLHolder build(final X509v2CRLBuilder builder) throws NoIdleSignerException {
+        return execute(signer -> signer.build(builder), true);
+    }
+
+    @Override
+    public X509CertificateHolder build(final X509v3CertificateBuilder builder)
+    throws NoIdleSignerException {
+        return execute(signer -> signer.build(builder), true);
+    }
+
+    @Override
+    public OCSPReq build(final OCSPReqBuilder builder, final X509CertificateHolder[] chain)
+    throws NoIdleSignerException, OCSPException {
+        return execute(signer -> signer.build(builder, chain), true);
+    }
+
+    @Override
+    public BasicOCSPResp build(final BasicOCSPRespBuilder builder,
+            final X509CertificateHolder[] chain, final Date producedAt)
+    throws NoIdleSignerException, OCSPException {
+        return execute(signer -> signer.build(builder, chain, producedAt), true);
+    }
+
+    @Override
+    public PKCS10CertificationRequest build(final PKCS10CertificationRequestBuilder builder)
+    throws NoIdleSignerException {
+        return execute(signer -> signer.build(builder), true);
+    }
+
+    @Override
+    public byte[] sign(final byte[] data) throws NoIdleSignerException, IOException {
+        return execute(signer -> signer.sign(data), true);
+    }
+
+    @Override
+    public byte[] sign(final InputStream data) throws NoIdleSignerException, IOException {
+        ParamUtil.requireNonNull("data", data);
+        ReadErrorTrackingInputStream trackingData = new ReadErrorTrackingInputStream(data);
+        // the stream cannot be read again, hence no failover
+        return execute(signer -> signer.sign(trackingData), false, trackingData);
+    }
+
+    @Override
+    public List<byte[]> signBatch(final List<byte[]> data)
+    throws NoIdleSignerException, IOException {
+        return execute(signer -> signer.signBatch(data), true);
+    }
+
+    @Override
+    public boolean isHealthy() {
+        boolean healthy = false;
+        for (Backend backend : backends) {
+            if (backend.signer.isHealthy()) {
+                if (backend.ejected) {
+                    reinstate(backend);
+                }
+                healthy = true;
+            } else {
+                LOG.warn("backend {} of signer {} is not healthy", backend.signer.getName(),
+                        name);
+            }
+        }
+        return healthy;
+    }
+
+    /**
+     * Returns the sum of the statistics of all backends.
+     */
+    @Override
+    public SignerPoolStatistics getPoolStatistics() {
+        int poolSize = 0;
+        int inUse = 0;
+        long borrowCount = 0;
+        long exhaustedCount = 0;
+        long timeoutCount = 0;
+        long waitTimeNanos = 0;
+        boolean pooled = false;
+        for (Backend backend : backends) {
+            SignerPoolStatistics stats = backend.signer.getPoolStatistics();
+            if (stats == null) {
+                continue;
+            }
+
+            pooled = true;
+            poolSize += stats.getPoolSize();
+            inUse += stats.getInUse();
+            borrowCount += stats.getBorrowCount();
+            exhaustedCount += stats.getExhaustedCount();
+            timeoutCount += stats.getTimeoutCount();
+            waitTimeNanos += stats.getWaitTimeNanos();
+        }
+
+        return pooled ? new SignerPoolStatistics(name, poolSize, inUse, borrowCount,
+                exhaustedCount, timeoutCount, waitTimeNanos) : null;
+    }
+
+    @Override
+    public void shutdown() {
+        for (Backend backend : backends) {
+            backend.signer.shutdown();
+        }
+    }
+
+    private <T, E extends Exception> T execute(final SignerOperation<T, E> operation,
+            final boolean failover) throws NoIdleSignerException, E {
+        return execute(operation, failover, null);
+    }
+
+    /**
+     * @param input the caller's input, {@code null} if the data are not read from a stream.
+     *          Errors while reading it are not counted as errors of the backend.
+     */
+    private <T, E extends Exception> T execute(final SignerOperation<T, E> operation,
+            final boolean failover, final ReadErrorTrackingInputStream input)
+    throws NoIdleSignerException, E {
+        final int n = backends.size();
+        List<Backend> tried = new ArrayList<>(1);
+        while (true) {
+            Backend backend = selectBackend(tried);
+            tried.add(backend);
+            boolean isLastTry = !failover || tried.size() == n;
+
+            backend.inFlight.incrementAndGet();
+            try {
+                T result = operation.execute(backend.signer);
+                onSuccess(backend);
+                return result;
+            } catch (NoIdleSignerException ex) {
+                // the backend is busy, but not broken. If this was the probe of an ejected
+                // backend, allow the next probe
+                if (backend.ejected) {
+                    backend.probing.set(false);
+                }
+                if (isLastTry) {
+                    throw ex;
+                }
+            } catch (Exception ex) {
+                if (input != null && input.readError) {
+                    // caused by the caller's input, the backend is not broken
+                    if (backend.ejected) {
+                        backend.probing.set(false);
+                    }
+                    throw ex;
+                }
+
+                onError(backend, ex);
+                if (isLastTry) {
+                    throw ex;
+                }
+            } finally {
+                backend.inFlight.decrementAndGet();
+            }
+        }
+    } // method execute
+
+    /**
+     * Selects among the backends not tried yet the healthy one with the fewest operations in
+     * progress. An ejected backend is selected if its probe interval has elapsed, or if no
+     * healthy backend is available.
+     */
+    private Backend selectBackend(final List<Backend> excluded) {
+        final int n = backends.size();
+        // start at a rotating index, so that the load is spread among equally loaded backends
+        final int start = (nextIndex.getAndIncrement() & Integer.MAX_VALUE) % n;
+
+        Backend best = null;
+        Backend bestEjected = null;
+        for (int i = 0; i < n; i++) {
+            Backend backend = backends.get((start + i) % n);
+            if (excluded.contains(backend)) {
+                continue;
+            }
+
+            if (backend.ejected) {
+                if (System.nanoTime() - backend.ejectedAt >= probeIntervalNanos
+                        && backend.probing.compareAndSet(false, true)) {
+                    LOG.info("probe ejected backend {} of signer {}", backend.signer.getName(),
+                            name);
+                    return backend;
+                }
+
+                if (bestEjected == null || backend.ejectedAt < bestEjected.ejectedAt) {
+                    bestEjected = backend;
+                }
+            } else if (best == null || backend.inFlight.get() < best.inFlight.get()) {
+                best = backend;
+            }
+        }
+
+        return (best != null) ? best : bestEjected;
+    }
+
+    private void onSuccess(final Backend backend) {
+        backend.operationCount.increment();
+        backend.consecutiveErrors.set(0);
+        if (backend.ejected) {
+            reinstate(backend);
+        }
+    }
+
+    private void onError(final Backend backend, final Exception ex) {
+        backend.operationCount.increment();
+        backend.errorCount.increment();
+        LogUtil.warn(LOG, ex, "error in backend " + backend.signer.getName() + " of signer "
+                + name);
+
+        if (backend.ejected) {
+            // failed probe
+            backend.ejectedAt = System.nanoTime();
+            backend.probing.set(false);
+        } else if (backend.consecutiveErrors.incrementAndGet() >= maxErrors) {
+            backend.ejectedAt = System.nanoTime();
+            backend.ejected = true;
+            LOG.error("ejected backend {} of signer {} after {} consecutive errors "
+                    + "({} operations, {} errors)", backend.signer.getName(), name, maxErrors,
+                    backend.operationCount.sum(), backend.errorCount.sum());
+        }
+    }
+
+    private void reinstate(final Backend backend) {
+        backend.consecutiveErrors.set(0);
+        backend.ejected = false;
+        backend.probing.set(false);
+        LOG.info("reinstated backend {} of signer {}", backend.signer.getName(), name);
+    }
+
+}
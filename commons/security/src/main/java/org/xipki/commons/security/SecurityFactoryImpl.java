@@ -51,12 +51,13 @@ import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bouncycastle.asn1.pkcs.CertificationRequest;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.crypto.RuntimeCryptoException;
 import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
 import org.bouncycastle.operator.ContentVerifierProvider;
@@ -67,6 +68,7 @@ import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.bouncycastle.pkcs.PKCSException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.LruCache;
 import org.xipki.commons.common.ObjectCreationException;
 import org.xipki.commons.common.util.LogUtil;
 import org.xipki.commons.common.util.ParamUtil;
@@ -93,7 +95,17 @@ public class SecurityFactoryImpl extends AbstractSecurityFactory {
             XipkiDigestAlgorithmIdentifierFinder.INSTANCE;
 
     private static final Map<String, BcContentVerifierProviderBuilder> VERIFIER_PROVIDER_BUILDER
-        = new HashMap<>();
+        = new ConcurrentHashMap<>();
+
+    private static final int DFLT_VERIFIER_PROVIDER_CACHE_SIZE = 100;
+
+    /**
+     * Cache of the verifier providers of the public keys contained in certificates, keyed by
+     * the SHA-256 fingerprint of the SubjectPublicKeyInfo. The providers are stateless, each
+     * ContentVerifier is created per call and is therefore confined to the calling thread.
+     */
+    private final LruCache<String, ContentVerifierProvider> verifierProviderCache =
+            new LruCache<>(DFLT_VERIFIER_PROVIDER_CACHE_SIZE);
 
     private int defaultSignerParallelism = 32;
 
@@ -163,6 +175,41 @@ public class SecurityFactoryImpl extends AbstractSecurityFactory {
         }
     }
 
+    @Override
+    public ContentVerifierProvider getContentVerifierProvider(final X509Certificate cert)
+    throws InvalidKeyException {
+        ParamUtil.requireNonNull("cert", cert);
+        PublicKey publicKey = cert.getPublicKey();
+        String fingerprint = HashAlgoType.SHA256.hexHash(publicKey.getEncoded());
+        ContentVerifierProvider cvp = verifierProviderCache.get(fingerprint);
+        if (cvp == null) {
+            cvp = getContentVerifierProvider(publicKey);
+            verifierProviderCache.put(fingerprint, cvp);
+        }
+        return cvp;
+    }
+
+    @Override
+    public ContentVerifierProvider getContentVerifierProvider(final X509CertificateHolder cert)
+    throws InvalidKeyException {
+        ParamUtil.requireNonNull("cert", cert);
+        SubjectPublicKeyInfo publicKeyInfo = cert.getSubjectPublicKeyInfo();
+        String fingerprint;
+        try {
+            fingerprint = HashAlgoType.SHA256.hexHash(publicKeyInfo.getEncoded());
+        } catch (IOException ex) {
+            throw new InvalidKeyException("could not encode SubjectPublicKeyInfo: "
+                    + ex.getMessage(), ex);
+        }
+
+        ContentVerifierProvider cvp = verifierProviderCache.get(fingerprint);
+        if (cvp == null) {
+            cvp = getContentVerifierProvider(generatePublicKey(publicKeyInfo));
+            verifierProviderCache.put(fingerprint, cvp);
+        }
+        return cvp;
+    }
+
     @Override
     public PublicKey generatePublicKey(final SubjectPublicKeyInfo subjectPublicKeyInfo)
     throws InvalidKeyException {
@@ -219,6 +266,11 @@ public class SecurityFactoryImpl extends AbstractSecurityFactory {
                 defaultSignerParallelism, 1);
     }
 
+    public void setVerifierProviderCacheSize(final int verifierProviderCacheSize) {
+        verifierProviderCache.resize(ParamUtil.requireMin("verifierProviderCacheSize",
+                verifierProviderCacheSize, 1));
+    }
+
     public void setSignerFactoryRegister(final SignerFactoryRegister signerFactoryRegister) {
         this.signerFactoryRegister = signerFactoryRegister;
     }
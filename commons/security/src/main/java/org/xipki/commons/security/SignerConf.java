@@ -57,6 +57,8 @@ public class SignerConf {
 
     private final SignatureAlgoControl signatureAlgoControl;
 
+    private String name;
+
     public SignerConf(final String conf) {
         this.hashAlgo = null;
         this.signatureAlgoControl = null;
@@ -78,6 +80,18 @@ public class SignerConf {
         }
     }
 
+    /**
+     * Sets the name of the signer to be created, e.g. the name in the configuration. The name
+     * is not part of the configuration string.
+     */
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
     public HashAlgoType getHashAlgo() {
         return hashAlgo;
     }
@@ -41,6 +41,8 @@ import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 import javax.crypto.NoSuchPaddingException;
@@ -51,8 +53,10 @@ import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.ConfPairs;
 import org.xipki.commons.common.ObjectCreationException;
 import org.xipki.commons.common.util.IoUtil;
+import org.xipki.commons.common.util.LogUtil;
 import org.xipki.commons.common.util.ParamUtil;
 import org.xipki.commons.common.util.StringUtil;
 import org.xipki.commons.password.PasswordResolver;
@@ -79,6 +83,16 @@ public class SignerFactoryRegisterImpl implements SignerFactoryRegister {
 
     private static final Logger LOG = LoggerFactory.getLogger(SignerFactoryRegisterImpl.class);
 
+    /**
+     * Type of the signer which balances the load over several backends with the same key.
+     * The backend i (i = 1, 2, ...) is configured by the entry {@code backend.<i>=<type>} and
+     * the entries {@code backend.<i>.<name>=<value>}. All other entries, except
+     * {@code max-errors} and {@code probe-interval}, are shared by all backends.
+     */
+    public static final String TYPE_BALANCED = "BALANCED";
+
+    private static final String BACKEND_PREFIX = "backend.";
+
     private P11CryptServiceFactory p11CryptServiceFactory;
 
     private ConcurrentLinkedDeque<SignerFactory> services =
@@ -130,6 +144,10 @@ public class SignerFactoryRegisterImpl implements SignerFactoryRegister {
             return newPkcs11Signer(securityFactory, type, conf, certificateChain);
         }
 
+        if (TYPE_BALANCED.equalsIgnoreCase(type)) {
+            return newBalancedSigner(securityFactory, conf, certificateChain);
+        }
+
         for (SignerFactory service : services) {
             if (service.canCreateSigner(type)) {
                 return service.newSigner(type, conf, certificateChain);
@@ -205,7 +223,7 @@ public class SignerFactoryRegisterImpl implements SignerFactoryRegister {
                 signatureAlgId = AlgorithmUtil.getSigAlgId(pubKey, conf);
             }
 
-            return signerBuilder.createSigner(signatureAlgId, parallelism,
+            return signerBuilder.createSigner(conf.getName(), signatureAlgId, parallelism,
                     securityFactory.getRandom4Sign());
         } catch (NoSuchAlgorithmException | OperatorCreationException | NoSuchPaddingException
                 | XiSecurityException ex) {
@@ -293,10 +311,109 @@ public class SignerFactoryRegisterImpl implements SignerFactoryRegister {
 
             P11ContentSignerBuilder signerBuilder = new P11ContentSignerBuilder(p11Service,
                     securityFactory, entityId, certificateChain);
-            return signerBuilder.createSigner(signatureAlgId, parallelism);
+            return signerBuilder.createSigner(conf.getName(), signatureAlgId, parallelism);
         } catch (P11TokenException | NoSuchAlgorithmException | XiSecurityException ex) {
             throw new ObjectCreationException(ex.getMessage(), ex);
         }
     }
 
+    private ConcurrentContentSigner newBalancedSigner(final SecurityFactory securityFactory,
+            final SignerConf conf, final X509Certificate[] certificateChain)
+    throws ObjectCreationException {
+        ConfPairs pairs = new ConfPairs(conf.getConf());
+        int maxErrors = getIntConfValue(pairs, "max-errors", 3);
+        int probeInterval = getIntConfValue(pairs, "probe-interval", 30000);
+        pairs.removePair("max-errors");
+        pairs.removePair("probe-interval");
+
+        ConfPairs sharedPairs = new ConfPairs();
+        for (String name : pairs.getNames()) {
+            if (!name.startsWith(BACKEND_PREFIX)) {
+                sharedPairs.putPair(name, pairs.getValue(name));
+            }
+        }
+
+        List<ConcurrentContentSigner> backends = new LinkedList<>();
+        try {
+            for (int i = 1; ; i++) {
+                String backendType = pairs.getValue(BACKEND_PREFIX + i);
+                if (backendType == null) {
+                    break;
+                }
+
+                if (TYPE_BALANCED.equalsIgnoreCase(backendType)) {
+                    throw new ObjectCreationException("backend of type " + TYPE_BALANCED
+                            + " is not allowed");
+                }
+
+                String prefix = BACKEND_PREFIX + i + ".";
+                ConfPairs backendPairs = new ConfPairs();
+                for (String name : sharedPairs.getNames()) {
+                    backendPairs.putPair(name, sharedPairs.getValue(name));
+                }
+                for (String name : pairs.getNames()) {
+                    if (name.startsWith(prefix)) {
+                        backendPairs.putPair(name.substring(prefix.length()),
+                                pairs.getValue(name));
+                    }
+                }
+
+                SignerConf backendConf = (conf.getHashAlgo() == null)
+                        ? new SignerConf(backendPairs.getEncoded())
+                        : new SignerConf(backendPairs.getEncoded(), conf.getHashAlgo(),
+                                conf.getSignatureAlgoControl());
+                if (conf.getName() != null) {
+                    backendConf.setName(conf.getName() + "-backend" + i);
+                }
+                backends.add(newSigner(securityFactory, backendType, backendConf,
+                        certificateChain));
+            }
+
+            if (backends.isEmpty()) {
+                throw new ObjectCreationException("no backend is specified");
+            }
+
+            try {
+                ConcurrentContentSigner signer = new LoadBalancedConcurrentContentSigner(
+                        conf.getName(), backends, maxErrors, probeInterval);
+                if (certificateChain != null) {
+                    signer.setCertificateChain(certificateChain);
+                }
+                return signer;
+            } catch (IllegalArgumentException ex) {
+                throw new ObjectCreationException(ex.getMessage(), ex);
+            }
+        } catch (ObjectCreationException | RuntimeException ex) {
+            // shutdown the backends created so far
+            for (ConcurrentContentSigner backend : backends) {
+                try {
+                    backend.shutdown();
+                } catch (RuntimeException ex2) {
+                    LogUtil.warn(LOG, ex2, "could not shutdown backend " + backend.getName());
+                }
+            }
+            throw ex;
+        }
+    } // method newBalancedSigner
+
+    private static int getIntConfValue(final ConfPairs pairs, final String name,
+            final int defaultValue) throws ObjectCreationException {
+        String str = pairs.getValue(name);
+        if (str == null) {
+            return defaultValue;
+        }
+
+        int value;
+        try {
+            value = Integer.parseInt(str);
+        } catch (NumberFormatException ex) {
+            throw new ObjectCreationException("invalid " + name + " " + str);
+        }
+
+        if (value < 0) {
+            throw new ObjectCreationException("invalid " + name + " " + str);
+        }
+        return value;
+    }
+
 }
@@ -0,0 +1,146 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security;
+
+import org.xipki.commons.common.HealthCheckResult;
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * Snapshot of the usage of the signer pool of a {@link ConcurrentContentSigner}.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class SignerPoolStatistics {
+
+    private final String name;
+
+    private final int poolSize;
+
+    private final int inUse;
+
+    private final long borrowCount;
+
+    private final long exhaustedCount;
+
+    private final long timeoutCount;
+
+    private final long waitTimeNanos;
+
+    public SignerPoolStatistics(final String name, final int poolSize, final int inUse,
+            final long borrowCount, final long exhaustedCount, final long timeoutCount,
+            final long waitTimeNanos) {
+        this.name = ParamUtil.requireNonBlank("name", name);
+        this.poolSize = poolSize;
+        this.inUse = inUse;
+        this.borrowCount = borrowCount;
+        this.exhaustedCount = exhaustedCount;
+        this.timeoutCount = timeoutCount;
+        this.waitTimeNanos = waitTimeNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the number of signers borrowed at the moment of the snapshot.
+     */
+    public int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * Returns the number of successful borrows.
+     */
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * Returns how often no idle signer was available, and the caller had to wait.
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount;
+    }
+
+    /**
+     * Returns how often no signer became available within the timeout.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * Returns the accumulated time, in nanoseconds, callers spent waiting for a signer.
+     */
+    public long getWaitTimeNanos() {
+        return waitTimeNanos;
+    }
+
+    /**
+     * Adds the statistics as statuses, prefixed by the name, to the health check result.
+     * @param healthCheckResult the health check result. Must not be {@code null}.
+     */
+    public void addTo(final HealthCheckResult healthCheckResult) {
+        ParamUtil.requireNonNull("healthCheckResult", healthCheckResult);
+        String prefix = name + ".";
+        healthCheckResult.putStatus(prefix + "poolSize", poolSize);
+        healthCheckResult.putStatus(prefix + "inUse", inUse);
+        healthCheckResult.putStatus(prefix + "borrowed", borrowCount);
+        healthCheckResult.putStatus(prefix + "exhausted", exhaustedCount);
+        healthCheckResult.putStatus(prefix + "timeouts", timeoutCount);
+        healthCheckResult.putStatus(prefix + "waitTimeMs", waitTimeNanos / 1000000);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(200);
+        sb.append("signer pool ").append(name);
+        sb.append(": size=").append(poolSize);
+        sb.append(", inUse=").append(inUse);
+        sb.append(", borrowed=").append(borrowCount);
+        sb.append(", exhausted=").append(exhaustedCount);
+        sb.append(", timeouts=").append(timeoutCount);
+        sb.append(", waitTime=").append(waitTimeNanos / 1000000).append(" ms");
+        return sb.toString();
+    }
+
+}
@@ -657,11 +657,21 @@ public abstract class AbstractP11Slot implements P11Slot {
             }
         }
 
+        P11SessionPoolStatistics poolStatistics = getSessionPoolStatistics();
+        if (poolStatistics != null) {
+            sb.append("\t").append(poolStatistics).append("\n");
+        }
+
         if (sb.length() > 0) {
             stream.write(sb.toString().getBytes());
         }
     }
 
+    @Override
+    public P11SessionPoolStatistics getSessionPoolStatistics() {
+        return null;
+    }
+
     protected void assertWritable(final String operationName) throws P11PermissionException {
         if (readOnly) {
             throw new P11PermissionException("Operation " + operationName + " is not permitted");
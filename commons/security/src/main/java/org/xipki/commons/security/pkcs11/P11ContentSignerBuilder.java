@@ -127,6 +127,15 @@ public class P11ContentSignerBuilder {
 
     public ConcurrentContentSigner createSigner(final AlgorithmIdentifier signatureAlgId,
             final int parallelism) throws XiSecurityException, P11TokenException {
+        return createSigner(null, signatureAlgId, parallelism);
+    }
+
+    /**
+     * @param name name of the signer, {@code null} to generate one.
+     */
+    public ConcurrentContentSigner createSigner(final String name,
+            final AlgorithmIdentifier signatureAlgId, final int parallelism)
+    throws XiSecurityException, P11TokenException {
         ParamUtil.requireMin("parallelism", parallelism, 1);
 
         if (publicKey instanceof RSAPublicKey) {
@@ -168,7 +177,7 @@ public class P11ContentSignerBuilder {
 
         PrivateKey privateKey = new P11PrivateKey(cryptService, identityId);
         DefaultConcurrentContentSigner concurrentSigner =
-                new DefaultConcurrentContentSigner(signers, privateKey);
+                new DefaultConcurrentContentSigner(name, signers, privateKey);
         if (certificateChain != null) {
             concurrentSigner.setCertificateChain(certificateChain);
         } else {
@@ -35,8 +35,11 @@
 package org.xipki.commons.security.pkcs11;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.asn1.bsi.BSIObjectIdentifiers;
@@ -45,11 +48,11 @@ import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.RuntimeCryptoException;
-import org.bouncycastle.operator.ContentSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.commons.common.util.LogUtil;
 import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.BatchContentSigner;
 import org.xipki.commons.security.HashAlgoType;
 import org.xipki.commons.security.exception.P11TokenException;
 import org.xipki.commons.security.exception.XiSecurityException;
@@ -60,7 +63,7 @@ import org.xipki.commons.security.util.SignerUtil;
  * @since 2.0.0
  */
 //CHECKSTYLE:SKIP
-class P11ECDSAContentSigner implements ContentSigner {
+class P11ECDSAContentSigner implements BatchContentSigner {
 
     private static final Logger LOG = LoggerFactory.getLogger(P11ECDSAContentSigner.class);
 
@@ -169,7 +172,43 @@ class P11ECDSAContentSigner implements ContentSigner {
         }
     }
 
+    @Override
+    public List<byte[]> signBatch(final List<byte[]> data) throws XiSecurityException {
+        ParamUtil.requireNonNull("data", data);
+        List<byte[]> dataToSign = new ArrayList<>(data.size());
+        try {
+            for (byte[] message : data) {
+                getOutputStream().write(message);
+                dataToSign.add(getDataToSign());
+            }
+        } catch (IOException ex) {
+            throw new XiSecurityException("IOException: " + ex.getMessage(), ex);
+        }
+
+        List<byte[]> plainSignatures;
+        try {
+            plainSignatures = cryptService.getIdentity(identityId).signBatch(mechanism, null,
+                    dataToSign);
+        } catch (P11TokenException ex) {
+            throw new XiSecurityException("P11TokenException: " + ex.getMessage(), ex);
+        }
+
+        if (plain) {
+            return plainSignatures;
+        }
+
+        List<byte[]> signatures = new ArrayList<>(plainSignatures.size());
+        for (byte[] plainSignature : plainSignatures) {
+            signatures.add(SignerUtil.convertPlainDSASigToX962(plainSignature));
+        }
+        return signatures;
+    }
+
     private byte[] getPlainSignature() throws XiSecurityException, P11TokenException {
+        return cryptService.getIdentity(identityId).sign(mechanism, null, getDataToSign());
+    }
+
+    private byte[] getDataToSign() {
         byte[] dataToSign;
         if (outputStream instanceof ByteArrayOutputStream) {
             dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
@@ -178,7 +217,7 @@ class P11ECDSAContentSigner implements ContentSigner {
             dataToSign = ((DigestOutputStream) outputStream).digest();
             ((DigestOutputStream) outputStream).reset();
         }
-
-        return cryptService.getIdentity(identityId).sign(mechanism, null, dataToSign);
+        return dataToSign;
     }
+
 }
@@ -39,16 +39,24 @@ import java.security.cert.X509Certificate;
 import java.security.interfaces.DSAPublicKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.bouncycastle.crypto.Digest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.HashAlgoType;
 import org.xipki.commons.security.exception.P11TokenException;
 import org.xipki.commons.security.exception.P11UnsupportedMechanismException;
 import org.xipki.commons.security.exception.XiSecurityException;
+import org.xipki.commons.security.util.SignerUtil;
 
 /**
  * @author Lijun Liao
@@ -59,6 +67,14 @@ public abstract class P11Identity implements Comparable<P11Identity> {
 
     private static final Logger LOG = LoggerFactory.getLogger(P11Identity.class);
 
+    private static final Map<Long, HashAlgoType> hashMechHashAlgoMap = new HashMap<>();
+
+    private static final Map<Long, Long> hashMechRawMechMap = new HashMap<>();
+
+    // digests are not thread-safe, each thread reuses its own ones
+    private static final ThreadLocal<Map<HashAlgoType, Digest>> digests =
+            ThreadLocal.withInitial(() -> new EnumMap<>(HashAlgoType.class));
+
     protected final P11Slot slot;
 
     protected final P11EntityIdentifier identityId;
@@ -69,6 +85,47 @@ public abstract class P11Identity implements Comparable<P11Identity> {
 
     protected X509Certificate[] certificateChain;
 
+    static {
+        addHashMechanism(P11Constants.CKM_SHA1_RSA_PKCS, HashAlgoType.SHA1,
+                P11Constants.CKM_RSA_PKCS);
+        addHashMechanism(P11Constants.CKM_SHA224_RSA_PKCS, HashAlgoType.SHA224,
+                P11Constants.CKM_RSA_PKCS);
+        addHashMechanism(P11Constants.CKM_SHA256_RSA_PKCS, HashAlgoType.SHA256,
+                P11Constants.CKM_RSA_PKCS);
+        addHashMechanism(P11Constants.CKM_SHA384_RSA_PKCS, HashAlgoType.SHA384,
+                P11Constants.CKM_RSA_PKCS);
+        addHashMechanism(P11Constants.CKM_SHA512_RSA_PKCS, HashAlgoType.SHA512,
+                P11Constants.CKM_RSA_PKCS);
+
+        addHashMechanism(P11Constants.CKM_SHA1_RSA_PKCS_PSS, HashAlgoType.SHA1,
+                P11Constants.CKM_RSA_PKCS_PSS);
+        addHashMechanism(P11Constants.CKM_SHA224_RSA_PKCS_PSS, HashAlgoType.SHA224,
+                P11Constants.CKM_RSA_PKCS_PSS);
+        addHashMechanism(P11Constants.CKM_SHA256_RSA_PKCS_PSS, HashAlgoType.SHA256,
+                P11Constants.CKM_RSA_PKCS_PSS);
+        addHashMechanism(P11Constants.CKM_SHA384_RSA_PKCS_PSS, HashAlgoType.SHA384,
+                P11Constants.CKM_RSA_PKCS_PSS);
+        addHashMechanism(P11Constants.CKM_SHA512_RSA_PKCS_PSS, HashAlgoType.SHA512,
+                P11Constants.CKM_RSA_PKCS_PSS);
+
+        addHashMechanism(P11Constants.CKM_DSA_SHA1, HashAlgoType.SHA1, P11Constants.CKM_DSA);
+        addHashMechanism(P11Constants.CKM_DSA_SHA224, HashAlgoType.SHA224, P11Constants.CKM_DSA);
+        addHashMechanism(P11Constants.CKM_DSA_SHA256, HashAlgoType.SHA256, P11Constants.CKM_DSA);
+        addHashMechanism(P11Constants.CKM_DSA_SHA384, HashAlgoType.SHA384, P11Constants.CKM_DSA);
+        addHashMechanism(P11Constants.CKM_DSA_SHA512, HashAlgoType.SHA512, P11Constants.CKM_DSA);
+
+        addHashMechanism(P11Constants.CKM_ECDSA_SHA1, HashAlgoType.SHA1,
+                P11Constants.CKM_ECDSA);
+        addHashMechanism(P11Constants.CKM_ECDSA_SHA224, HashAlgoType.SHA224,
+                P11Constants.CKM_ECDSA);
+        addHashMechanism(P11Constants.CKM_ECDSA_SHA256, HashAlgoType.SHA256,
+                P11Constants.CKM_ECDSA);
+        addHashMechanism(P11Constants.CKM_ECDSA_SHA384, HashAlgoType.SHA384,
+                P11Constants.CKM_ECDSA);
+        addHashMechanism(P11Constants.CKM_ECDSA_SHA512, HashAlgoType.SHA512,
+                P11Constants.CKM_ECDSA);
+    }
+
     public P11Identity(final P11Slot slot, final P11EntityIdentifier identityId,
             final PublicKey publicKey, final X509Certificate[] certificateChain) {
         this.slot = ParamUtil.requireNonNull("slot", slot);
@@ -98,9 +155,21 @@ public abstract class P11Identity implements Comparable<P11Identity> {
         }
     } // constructor
 
+    /**
+     * Sign the content. If a hash-and-sign mechanism is given, and the slot supports the
+     * corresponding raw mechanism, the digest is computed on the host and only the digest is
+     * sent to the token. To let the token compute the digest, exclude the raw mechanism via
+     * the mechanism filter of the module.
+     */
     public byte[] sign(final long mechanism, final P11Params parameters, final byte[] content)
     throws P11TokenException, XiSecurityException {
         ParamUtil.requireNonNull("content", content);
+        Long rawMechanism = getRawMechanism(mechanism, parameters);
+        if (rawMechanism != null) {
+            long rawMech = rawMechanism.longValue();
+            return sign(rawMech, parameters, hashOnHost(mechanism, rawMech, content));
+        }
+
         slot.assertMechanismSupported(mechanism);
         if (!supportsMechanism(mechanism, parameters)) {
             throw new P11UnsupportedMechanismException(mechanism, identityId);
@@ -114,6 +183,106 @@ public abstract class P11Identity implements Comparable<P11Identity> {
     protected abstract byte[] doSign(final long mechanism, @Nullable final P11Params parameters,
             @Nonnull final byte[] content) throws P11TokenException, XiSecurityException;
 
+    /**
+     * Sign each of the given contents with the same mechanism and parameters.
+     * @return the signatures, in the order of the contents.
+     */
+    public List<byte[]> signBatch(final long mechanism, final P11Params parameters,
+            final List<byte[]> contents) throws P11TokenException, XiSecurityException {
+        ParamUtil.requireNonNull("contents", contents);
+        for (byte[] content : contents) {
+            ParamUtil.requireNonNull("content", content);
+        }
+
+        Long rawMechanism = getRawMechanism(mechanism, parameters);
+        if (rawMechanism != null) {
+            long rawMech = rawMechanism.longValue();
+            List<byte[]> hashedContents = new ArrayList<>(contents.size());
+            for (byte[] content : contents) {
+                hashedContents.add(hashOnHost(mechanism, rawMech, content));
+            }
+            return signBatch(rawMech, parameters, hashedContents);
+        }
+
+        slot.assertMechanismSupported(mechanism);
+        if (!supportsMechanism(mechanism, parameters)) {
+            throw new P11UnsupportedMechanismException(mechanism, identityId);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("sign {} contents with mechanism {}", contents.size(),
+                    P11Constants.getMechanismDesc(mechanism));
+        }
+        return doSignBatch(mechanism, parameters, contents);
+    }
+
+    /**
+     * Sign each of the given contents. The default implementation calls
+     * {@link #doSign(long, P11Params, byte[])} for each content, and should be overwritten if
+     * the token can sign several contents more efficiently.
+     */
+    protected List<byte[]> doSignBatch(final long mechanism, @Nullable final P11Params parameters,
+            @Nonnull final List<byte[]> contents) throws P11TokenException, XiSecurityException {
+        List<byte[]> signatures = new ArrayList<>(contents.size());
+        for (byte[] content : contents) {
+            signatures.add(doSign(mechanism, parameters, content));
+        }
+        return signatures;
+    }
+
+    /**
+     * Returns the raw mechanism to be used with the digest computed on the host instead of
+     * the given hash-and-sign mechanism, or {@code null} if there is no such one.
+     */
+    private Long getRawMechanism(final long mechanism, final P11Params parameters) {
+        Long rawMechanism = hashMechRawMechMap.get(mechanism);
+        if (rawMechanism == null) {
+            return null;
+        }
+
+        if (slot.supportsMechanism(rawMechanism) && supportsMechanism(rawMechanism, parameters)) {
+            return rawMechanism;
+        }
+
+        if (rawMechanism == P11Constants.CKM_RSA_PKCS
+                && slot.supportsMechanism(P11Constants.CKM_RSA_X_509)) {
+            return P11Constants.CKM_RSA_X_509;
+        }
+        return null;
+    }
+
+    private byte[] hashOnHost(final long mechanism, final long rawMechanism,
+            final byte[] content) throws XiSecurityException {
+        HashAlgoType hashAlgo = hashMechHashAlgoMap.get(mechanism);
+        Digest digest = digests.get().get(hashAlgo);
+        if (digest == null) {
+            digest = hashAlgo.createDigest();
+            digests.get().put(hashAlgo, digest);
+        }
+
+        digest.update(content, 0, content.length);
+        byte[] hashValue = new byte[digest.getDigestSize()];
+        digest.doFinal(hashValue, 0);
+
+        if (rawMechanism == P11Constants.CKM_RSA_PKCS) {
+            byte[] prefix = SignerUtil.getDigestPkcsPrefix(hashAlgo);
+            byte[] digestInfo = new byte[prefix.length + hashValue.length];
+            System.arraycopy(prefix, 0, digestInfo, 0, prefix.length);
+            System.arraycopy(hashValue, 0, digestInfo, prefix.length, hashValue.length);
+            return digestInfo;
+        } else if (rawMechanism == P11Constants.CKM_RSA_X_509) {
+            return SignerUtil.EMSA_PKCS1_v1_5_encoding(hashValue, signatureKeyBitLength,
+                    hashAlgo);
+        } else {
+            return hashValue;
+        }
+    }
+
+    private static void addHashMechanism(final long hashMechanism, final HashAlgoType hashAlgo,
+            final long rawMechanism) {
+        hashMechHashAlgoMap.put(hashMechanism, hashAlgo);
+        hashMechRawMechMap.put(hashMechanism, rawMechanism);
+    }
+
     public P11EntityIdentifier getIdentityId() {
         return identityId;
     }
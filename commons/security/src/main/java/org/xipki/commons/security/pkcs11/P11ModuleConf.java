@@ -80,6 +80,10 @@ public class P11ModuleConf {
 
     private final int maxMessageSize;
 
+    private final int minSessionCount;
+
+    private final int newSessionTimeout;
+
     private final long userType;
 
     public P11ModuleConf(final ModuleType moduleType, final PasswordResolver passwordResolver)
@@ -93,6 +97,17 @@ public class P11ModuleConf {
             throw new InvalidConfException("invalid maxMessageSize (< 128): " + maxMessageSize);
         }
 
+        this.minSessionCount = moduleType.getMinSessionCount().intValue();
+        if (minSessionCount < 1) {
+            throw new InvalidConfException("invalid minSessionCount (< 1): " + minSessionCount);
+        }
+
+        this.newSessionTimeout = moduleType.getNewSessionTimeout().intValue();
+        if (newSessionTimeout < 0) {
+            throw new InvalidConfException("invalid newSessionTimeout (< 0): "
+                    + newSessionTimeout);
+        }
+
         // Mechanism filter
         mechanismFilter = new P11MechanismFilter();
         MechanismSetsType mechsList = moduleType.getMechanismSets();
@@ -187,6 +202,14 @@ public class P11ModuleConf {
         return maxMessageSize;
     }
 
+    public int getMinSessionCount() {
+        return minSessionCount;
+    }
+
+    public int getNewSessionTimeout() {
+        return newSessionTimeout;
+    }
+
     public boolean isReadOnly() {
         return readOnly;
     }
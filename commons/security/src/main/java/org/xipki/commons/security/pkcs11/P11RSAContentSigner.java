@@ -35,8 +35,11 @@
 package org.xipki.commons.security.pkcs11;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
@@ -44,11 +47,11 @@ import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.RuntimeCryptoException;
-import org.bouncycastle.operator.ContentSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.commons.common.util.LogUtil;
 import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.BatchContentSigner;
 import org.xipki.commons.security.HashAlgoType;
 import org.xipki.commons.security.exception.P11TokenException;
 import org.xipki.commons.security.exception.XiSecurityException;
@@ -59,7 +62,7 @@ import org.xipki.commons.security.util.SignerUtil;
  * @since 2.0.0
  */
 //CHECKSTYLE:SKIP
-class P11RSAContentSigner implements ContentSigner {
+class P11RSAContentSigner implements BatchContentSigner {
 
     private static final Logger LOG = LoggerFactory.getLogger(P11RSAContentSigner.class);
 
@@ -183,6 +186,35 @@ class P11RSAContentSigner implements ContentSigner {
 
     @Override
     public byte[] getSignature() {
+        try {
+            return cryptService.getIdentity(identityId).sign(mechanism, null, getDataToSign());
+        } catch (XiSecurityException | P11TokenException ex) {
+            LogUtil.error(LOG, ex, "could not sign");
+            throw new RuntimeCryptoException("SignerException: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public List<byte[]> signBatch(final List<byte[]> data) throws XiSecurityException {
+        ParamUtil.requireNonNull("data", data);
+        List<byte[]> dataToSign = new ArrayList<>(data.size());
+        try {
+            for (byte[] message : data) {
+                getOutputStream().write(message);
+                dataToSign.add(getDataToSign());
+            }
+        } catch (IOException ex) {
+            throw new XiSecurityException("IOException: " + ex.getMessage(), ex);
+        }
+
+        try {
+            return cryptService.getIdentity(identityId).signBatch(mechanism, null, dataToSign);
+        } catch (P11TokenException ex) {
+            throw new XiSecurityException("P11TokenException: " + ex.getMessage(), ex);
+        }
+    }
+
+    private byte[] getDataToSign() throws XiSecurityException {
         byte[] dataToSign;
         if (outputStream instanceof ByteArrayOutputStream) {
             dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
@@ -195,16 +227,10 @@ class P11RSAContentSigner implements ContentSigner {
             System.arraycopy(hashValue, 0, dataToSign, digestPkcsPrefix.length, hashValue.length);
         }
 
-        try {
-            if (mechanism == P11Constants.CKM_RSA_X_509) {
-                dataToSign = SignerUtil.EMSA_PKCS1_v1_5_encoding(dataToSign, modulusBitLen);
-            }
-
-            return cryptService.getIdentity(identityId).sign(mechanism, null, dataToSign);
-        } catch (XiSecurityException | P11TokenException ex) {
-            LogUtil.error(LOG, ex, "could not sign");
-            throw new RuntimeCryptoException("SignerException: " + ex.getMessage());
+        if (mechanism == P11Constants.CKM_RSA_X_509) {
+            dataToSign = SignerUtil.EMSA_PKCS1_v1_5_encoding(dataToSign, modulusBitLen);
         }
+        return dataToSign;
     }
 
 }
@@ -39,6 +39,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
@@ -51,11 +53,11 @@ import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.RuntimeCryptoException;
 import org.bouncycastle.crypto.params.ParametersWithRandom;
 import org.bouncycastle.crypto.signers.PSSSigner;
-import org.bouncycastle.operator.ContentSigner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.commons.common.util.LogUtil;
 import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.BatchContentSigner;
 import org.xipki.commons.security.HashAlgoType;
 import org.xipki.commons.security.exception.P11TokenException;
 import org.xipki.commons.security.exception.XiSecurityException;
@@ -66,7 +68,7 @@ import org.xipki.commons.security.util.SignerUtil;
  * @since 2.0.0
  */
 // CHECKSTYLE:SKIP
-class P11RSAPSSContentSigner implements ContentSigner {
+class P11RSAPSSContentSigner implements BatchContentSigner {
     // CHECKSTYLE:SKIP
     private static class PSSSignerOutputStream extends OutputStream {
 
@@ -238,15 +240,9 @@ class P11RSAPSSContentSigner implements ContentSigner {
             }
         }
 
-        byte[] dataToSign;
-        if (outputStream instanceof ByteArrayOutputStream) {
-            dataToSign = ((ByteArrayOutputStream) outputStream).toByteArray();
-        } else {
-            dataToSign = ((DigestOutputStream) outputStream).digest();
-        }
-
         try {
-            return cryptService.getIdentity(identityId).sign(mechanism, parameters, dataToSign);
+            return cryptService.getIdentity(identityId).sign(mechanism, parameters,
+                    getDataToSign());
         } catch (XiSecurityException | P11TokenException ex) {
             LogUtil.warn(LOG, ex, "could not sign");
             throw new RuntimeCryptoException("SignerException: " + ex.getMessage());
@@ -254,4 +250,42 @@ class P11RSAPSSContentSigner implements ContentSigner {
 
     }
 
+    @Override
+    public List<byte[]> signBatch(final List<byte[]> data) throws XiSecurityException {
+        ParamUtil.requireNonNull("data", data);
+        List<byte[]> dataToSign = new ArrayList<>(data.size());
+        try {
+            for (byte[] message : data) {
+                getOutputStream().write(message);
+                if (outputStream instanceof PSSSignerOutputStream) {
+                    // the PSS encoding is done here, only the raw RSA operation is on the token
+                    dataToSign.add(((PSSSignerOutputStream) outputStream).generateSignature());
+                } else {
+                    dataToSign.add(getDataToSign());
+                }
+            }
+        } catch (IOException | CryptoException ex) {
+            throw new XiSecurityException(ex.getClass().getName() + ": " + ex.getMessage(), ex);
+        }
+
+        if (outputStream instanceof PSSSignerOutputStream) {
+            return dataToSign;
+        }
+
+        try {
+            return cryptService.getIdentity(identityId).signBatch(mechanism, parameters,
+                    dataToSign);
+        } catch (P11TokenException ex) {
+            throw new XiSecurityException("P11TokenException: " + ex.getMessage(), ex);
+        }
+    }
+
+    private byte[] getDataToSign() {
+        if (outputStream instanceof ByteArrayOutputStream) {
+            return ((ByteArrayOutputStream) outputStream).toByteArray();
+        } else {
+            return ((DigestOutputStream) outputStream).digest();
+        }
+    }
+
 }
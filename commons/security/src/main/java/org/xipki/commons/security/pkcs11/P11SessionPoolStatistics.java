@@ -0,0 +1,164 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security.pkcs11;
+
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * Snapshot of the usage of the session pool of a {@link P11Slot}.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class P11SessionPoolStatistics {
+
+    private final String name;
+
+    private final int maxSize;
+
+    private final int size;
+
+    private final int inUse;
+
+    private final long borrowCount;
+
+    private final long affinityHitCount;
+
+    private final long exhaustedCount;
+
+    private final long timeoutCount;
+
+    private final long evictedCount;
+
+    private final long waitTimeNanos;
+
+    public P11SessionPoolStatistics(final String name, final int maxSize, final int size,
+            final int inUse, final long borrowCount, final long affinityHitCount,
+            final long exhaustedCount, final long timeoutCount, final long evictedCount,
+            final long waitTimeNanos) {
+        this.name = ParamUtil.requireNonBlank("name", name);
+        this.maxSize = maxSize;
+        this.size = size;
+        this.inUse = inUse;
+        this.borrowCount = borrowCount;
+        this.affinityHitCount = affinityHitCount;
+        this.exhaustedCount = exhaustedCount;
+        this.timeoutCount = timeoutCount;
+        this.evictedCount = evictedCount;
+        this.waitTimeNanos = waitTimeNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of open sessions at the moment of the snapshot.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of sessions borrowed at the moment of the snapshot.
+     */
+    public int getInUse() {
+        return inUse;
+    }
+
+    /**
+     * Returns the number of successful borrows.
+     */
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * Returns how often a thread got the session it had used last time.
+     */
+    public long getAffinityHitCount() {
+        return affinityHitCount;
+    }
+
+    /**
+     * Returns how often no idle session was available, and the caller had to wait.
+     */
+    public long getExhaustedCount() {
+        return exhaustedCount;
+    }
+
+    /**
+     * Returns how often no session became available within the timeout.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * Returns the number of sessions closed because they were broken.
+     */
+    public long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Returns the accumulated time, in nanoseconds, callers spent waiting for a session.
+     */
+    public long getWaitTimeNanos() {
+        return waitTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(200);
+        sb.append("session pool ").append(name);
+        sb.append(": maxSize=").append(maxSize);
+        sb.append(", size=").append(size);
+        sb.append(", inUse=").append(inUse);
+        sb.append(", borrowed=").append(borrowCount);
+        sb.append(", affinityHits=").append(affinityHitCount);
+        sb.append(", exhausted=").append(exhaustedCount);
+        sb.append(", timeouts=").append(timeoutCount);
+        sb.append(", evicted=").append(evictedCount);
+        sb.append(", waitTime=").append(waitTimeNanos / 1000000).append(" ms");
+        return sb.toString();
+    }
+
+}
@@ -125,6 +125,13 @@ public interface P11Slot {
     X509Certificate exportCert(@Nonnull P11ObjectIdentifier objectId)
     throws P11TokenException, XiSecurityException;
 
+    /**
+     * Returns the usage statistics of the session pool.
+     * @return the statistics, or {@code null} if the slot does not pool sessions.
+     */
+    @Nullable
+    P11SessionPoolStatistics getSessionPoolStatistics();
+
     void showDetails(@Nonnull OutputStream stream, boolean verbose)
     throws P11TokenException, XiSecurityException, IOException;
 
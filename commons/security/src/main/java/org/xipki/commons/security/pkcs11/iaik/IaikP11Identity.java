@@ -39,6 +39,7 @@ import java.security.cert.X509Certificate;
 import java.security.interfaces.DSAPublicKey;
 import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.List;
 
 import org.xipki.commons.common.util.ParamUtil;
 import org.xipki.commons.security.exception.P11TokenException;
@@ -86,6 +87,12 @@ class IaikP11Identity extends P11Identity {
         return ((IaikP11Slot) slot).sign(mechanism, parameters, content, this);
     }
 
+    @Override
+    protected List<byte[]> doSignBatch(final long mechanism, final P11Params parameters,
+            final List<byte[]> contents) throws P11TokenException {
+        return ((IaikP11Slot) slot).signBatch(mechanism, parameters, contents, this);
+    }
+
     PrivateKey getPrivateKey() {
         return privateKey;
     }
@@ -117,7 +117,8 @@ public class IaikP11Module extends AbstractP11Module {
             }
             P11Slot p11Slot = new IaikP11Slot(moduleConf.getName(), slotId, slot,
                     moduleConf.isReadOnly(), moduleConf.getUserType(), pwd,
-                    moduleConf.getMaxMessageSize(), moduleConf.getP11MechanismFilter());
+                    moduleConf.getMaxMessageSize(), moduleConf.getMinSessionCount(),
+                    moduleConf.getNewSessionTimeout(), moduleConf.getP11MechanismFilter());
 
             slots.add(p11Slot);
         }
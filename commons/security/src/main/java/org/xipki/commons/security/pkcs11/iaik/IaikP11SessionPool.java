@@ -0,0 +1,389 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security.pkcs11.iaik;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.exception.P11TokenException;
+import org.xipki.commons.security.pkcs11.P11SessionPoolStatistics;
+
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+/**
+ * Pool of the read-only sessions of a {@link IaikP11Slot}.
+ * <p/>
+ * A thread gets preferably the session it used last time. Sessions reported as broken by the
+ * token are closed when they are returned, and replaced by new ones on demand.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class IaikP11SessionPool {
+
+    interface SessionOpener {
+
+        /**
+         * Opens a new session which is ready to be used, e.g. logged in.
+         */
+        Session openSession() throws P11TokenException;
+
+    } // interface SessionOpener
+
+    private static final class PooledSession {
+
+        private final Session session;
+
+        // true if the session is not borrowed
+        private final AtomicBoolean idle = new AtomicBoolean(false);
+
+        // true if the session is in the queue idleSessions
+        private final AtomicBoolean queued = new AtomicBoolean(false);
+
+        private volatile boolean broken;
+
+        PooledSession(final Session session) {
+            this.session = session;
+        }
+
+    } // class PooledSession
+
+    private static final Logger LOG = LoggerFactory.getLogger(IaikP11SessionPool.class);
+
+    // maximal time to wait for an idle session before checking whether a new one can be opened
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+
+    private final int maxSize;
+
+    private final long timeoutNanos;
+
+    private final SessionOpener opener;
+
+    private final ConcurrentHashMap<Session, PooledSession> sessions = new ConcurrentHashMap<>();
+
+    // may contain sessions already borrowed via the thread affinity, they are skipped by poll
+    private final LinkedBlockingQueue<PooledSession> idleSessions = new LinkedBlockingQueue<>();
+
+    private final ThreadLocal<PooledSession> lastSession = new ThreadLocal<>();
+
+    // number of open sessions, including the ones being opened
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    private final AtomicInteger inUseCount = new AtomicInteger(0);
+
+    private final LongAdder borrowCount = new LongAdder();
+
+    private final LongAdder affinityHitCount = new LongAdder();
+
+    private final LongAdder exhaustedCount = new LongAdder();
+
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private final LongAdder evictedCount = new LongAdder();
+
+    private final LongAdder waitTimeNanos = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * @param timeout maximal time in milliseconds to wait for an idle session.
+     */
+    IaikP11SessionPool(final String name, final int maxSize, final long timeout,
+            final SessionOpener opener) {
+        this.name = ParamUtil.requireNonBlank("name", name);
+        this.maxSize = ParamUtil.requireMin("maxSize", maxSize, 1);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(ParamUtil.requireMin("timeout",
+                timeout, 0));
+        this.opener = ParamUtil.requireNonNull("opener", opener);
+    }
+
+    /**
+     * Adds the given session to the pool, and opens further sessions till the pool contains
+     * {@code minSize} sessions.
+     */
+    void init(final Session firstSession, final int minSize) {
+        ParamUtil.requireNonNull("firstSession", firstSession);
+        size.incrementAndGet();
+        addIdle(new PooledSession(firstSession));
+
+        int min = Math.min(minSize, maxSize);
+        while (size.get() < min) {
+            PooledSession session;
+            try {
+                session = tryOpen();
+            } catch (P11TokenException ex) {
+                LogUtil.warn(LOG, ex, "could not pre-open session in pool " + name);
+                break;
+            }
+
+            if (session == null) {
+                break;
+            }
+            addIdle(session);
+        }
+        LOG.info("opened {} sessions in pool {}", size.get(), name);
+    }
+
+    Session borrowSession() throws P11TokenException {
+        if (closed) {
+            throw new P11TokenException("session pool " + name + " is closed");
+        }
+
+        PooledSession session = lastSession.get();
+        if (session != null && !session.broken && session.idle.compareAndSet(true, false)) {
+            affinityHitCount.increment();
+        } else {
+            session = pollIdle();
+            if (session == null) {
+                session = tryOpen();
+                if (session == null) {
+                    session = waitForIdle();
+                }
+            }
+            lastSession.set(session);
+        }
+
+        inUseCount.incrementAndGet();
+        borrowCount.increment();
+        return session.session;
+    }
+
+    void returnSession(final Session session) {
+        if (session == null) {
+            return;
+        }
+
+        if (closed) {
+            closeSession(session);
+            return;
+        }
+
+        PooledSession pooled = sessions.get(session);
+        if (pooled == null || pooled.idle.get()) {
+            final String msg =
+                    "session has not been borrowed before or has been returned more than once: "
+                    + session;
+            LOG.error(msg);
+            throw new IllegalStateException(msg);
+        }
+
+        inUseCount.decrementAndGet();
+        if (pooled.broken) {
+            destroy(pooled);
+        } else {
+            addIdle(pooled);
+        }
+    }
+
+    /**
+     * Marks the session as broken if the exception indicates so. If the token has been removed
+     * or logged out, all sessions are marked as broken.
+     */
+    void checkError(final Session session, final TokenException ex) {
+        if (!(ex instanceof PKCS11Exception)) {
+            return;
+        }
+
+        long code = ((PKCS11Exception) ex).getErrorCode();
+        if (code == PKCS11Constants.CKR_SESSION_HANDLE_INVALID
+                || code == PKCS11Constants.CKR_SESSION_CLOSED
+                || code == PKCS11Constants.CKR_DEVICE_ERROR) {
+            PooledSession pooled = sessions.get(session);
+            if (pooled != null) {
+                LOG.warn("session {} in pool {} is broken: {}", session.getSessionHandle(),
+                        name, ex.getMessage());
+                pooled.broken = true;
+            }
+        } else if (code == PKCS11Constants.CKR_DEVICE_REMOVED
+                || code == PKCS11Constants.CKR_TOKEN_NOT_PRESENT
+                || code == PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+            LOG.warn("all sessions in pool {} are broken: {}", name, ex.getMessage());
+            evictAll();
+        }
+    }
+
+    void close() {
+        closed = true;
+        for (PooledSession session : sessions.values()) {
+            if (session.idle.compareAndSet(true, false)) {
+                closeSession(session.session);
+            }
+        }
+        sessions.clear();
+        idleSessions.clear();
+        size.set(0);
+    }
+
+    P11SessionPoolStatistics getStatistics() {
+        return new P11SessionPoolStatistics(name, maxSize, size.get(), inUseCount.get(),
+                borrowCount.sum(), affinityHitCount.sum(), exhaustedCount.sum(),
+                timeoutCount.sum(), evictedCount.sum(), waitTimeNanos.sum());
+    }
+
+    private void addIdle(final PooledSession session) {
+        sessions.put(session.session, session);
+        session.idle.set(true);
+        // an entry still in the queue has been borrowed via the thread affinity, no need to
+        // add it again.
+        if (session.queued.compareAndSet(false, true)) {
+            idleSessions.offer(session);
+        }
+    }
+
+    private PooledSession pollIdle() {
+        PooledSession session;
+        while ((session = idleSessions.poll()) != null) {
+            if (claim(session)) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    private boolean claim(final PooledSession session) {
+        session.queued.set(false);
+        if (!session.idle.compareAndSet(true, false)) {
+            return false;
+        }
+
+        if (session.broken) {
+            destroy(session);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return a newly opened session, or {@code null} if the pool has reached its maximal size.
+     */
+    private PooledSession tryOpen() throws P11TokenException {
+        while (true) {
+            int num = size.get();
+            if (num >= maxSize) {
+                return null;
+            }
+
+            if (size.compareAndSet(num, num + 1)) {
+                break;
+            }
+        }
+
+        Session session;
+        try {
+            session = opener.openSession();
+        } catch (P11TokenException | RuntimeException ex) {
+            size.decrementAndGet();
+            throw ex;
+        }
+
+        PooledSession pooled = new PooledSession(session);
+        sessions.put(session, pooled);
+        return pooled;
+    }
+
+    private PooledSession waitForIdle() throws P11TokenException {
+        exhaustedCount.increment();
+        final long start = System.nanoTime();
+        final long deadline = start + timeoutNanos;
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                PooledSession session = idleSessions.poll(Math.min(remaining, WAIT_SLICE_NANOS),
+                        TimeUnit.NANOSECONDS);
+                if (session == null) {
+                    // a broken session may have been closed meanwhile
+                    session = tryOpen();
+                    if (session != null) {
+                        return session;
+                    }
+                } else if (claim(session)) {
+                    return session;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waitTimeNanos.add(System.nanoTime() - start);
+        }
+
+        timeoutCount.increment();
+        LOG.warn("no idle session available in pool {}", name);
+        throw new P11TokenException("no idle session");
+    } // method waitForIdle
+
+    private void evictAll() {
+        for (PooledSession session : sessions.values()) {
+            session.broken = true;
+            // borrowed sessions will be closed when returned
+            if (session.idle.compareAndSet(true, false)) {
+                destroy(session);
+            }
+        }
+    }
+
+    private void destroy(final PooledSession session) {
+        if (sessions.remove(session.session) == null) {
+            return;
+        }
+
+        size.decrementAndGet();
+        evictedCount.increment();
+        closeSession(session.session);
+    }
+
+    private void closeSession(final Session session) {
+        try {
+            session.closeSession();
+        } catch (Throwable th) {
+            LogUtil.warn(LOG, th, "could not close session " + session.getSessionHandle()
+                    + " in pool " + name);
+        }
+    }
+
+}
@@ -46,10 +46,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 
@@ -75,6 +71,7 @@ import org.xipki.commons.security.pkcs11.P11MechanismFilter;
 import org.xipki.commons.security.pkcs11.P11ObjectIdentifier;
 import org.xipki.commons.security.pkcs11.P11Params;
 import org.xipki.commons.security.pkcs11.P11RSAPkcsPssParams;
+import org.xipki.commons.security.pkcs11.P11SessionPoolStatistics;
 import org.xipki.commons.security.pkcs11.P11SlotIdentifier;
 import org.xipki.commons.security.pkcs11.P11SlotRefreshResult;
 import org.xipki.commons.security.util.KeyUtil;
@@ -122,15 +119,7 @@ class IaikP11Slot extends AbstractP11Slot {
 
     private List<char[]> password;
 
-    private int maxSessionCount;
-
-    private long timeOutWaitNewSession = 10000; // maximal wait for 10 second
-
-    private final AtomicLong countSessions = new AtomicLong(0);
-
-    private final BlockingDeque<Session> idleSessions = new LinkedBlockingDeque<>();
-
-    private final BlockingDeque<Session> busySessions = new LinkedBlockingDeque<>();
+    private final IaikP11SessionPool sessionPool;
 
     private boolean writableSessionInUse;
 
@@ -138,7 +127,8 @@ class IaikP11Slot extends AbstractP11Slot {
 
     IaikP11Slot(final String moduleName, final P11SlotIdentifier slotId, final Slot slot,
             final boolean readOnly, final long userType, final List<char[]> password,
-            final int maxMessageSize, final P11MechanismFilter mechanismFilter)
+            final int maxMessageSize, final int minSessionCount, final int newSessionTimeout,
+            final P11MechanismFilter mechanismFilter)
     throws P11TokenException {
         super(moduleName, slotId, readOnly, mechanismFilter);
         this.slot = ParamUtil.requireNonNull("slot", slot);
@@ -183,10 +173,13 @@ class IaikP11Slot extends AbstractP11Slot {
             // 2 sessions as buffer, they may be used elsewhere.
             maxSessionCount2 = (maxSessionCount2 < 3) ? 1 : maxSessionCount2 - 2;
         }
-        this.maxSessionCount = (int) maxSessionCount2;
-        LOG.info("maxSessionCount: {}", this.maxSessionCount);
+        int maxSessionCount = (int) maxSessionCount2;
+        LOG.info("maxSessionCount: {}", maxSessionCount);
 
-        idleSessions.addLast(session);
+        String poolName = moduleName + "-slot-" + slotId.getId();
+        this.sessionPool = new IaikP11SessionPool(poolName, maxSessionCount, newSessionTimeout,
+                this::openLoggedInSession);
+        this.sessionPool.init(session, minSessionCount);
         refresh();
     } // constructor
 
@@ -260,10 +253,6 @@ class IaikP11Slot extends AbstractP11Slot {
                 if (writableSession != null) {
                     writableSession.closeSession();
                 }
-
-                for (Session session : idleSessions) {
-                    session.closeSession();
-                }
             } catch (Throwable th) {
                 LogUtil.error(LOG, th, "could not slot.getToken().closeAllSessions()");
             }
@@ -271,9 +260,15 @@ class IaikP11Slot extends AbstractP11Slot {
             slot = null;
         }
 
-        // clear the session pool
-        idleSessions.clear();
-        countSessions.lazySet(0);
+        if (sessionPool != null) {
+            LOG.info("{}", sessionPool.getStatistics());
+            sessionPool.close();
+        }
+    }
+
+    @Override
+    public P11SessionPoolStatistics getSessionPoolStatistics() {
+        return sessionPool.getStatistics();
     }
 
     private void analyseSingleKey(final PrivateKey privKey,
@@ -336,13 +331,62 @@ class IaikP11Slot extends AbstractP11Slot {
             }
 
             return session.signFinal(identity.getExpectedSignatureLen());
-        } catch (TokenException e) {
-            throw new P11TokenException(e);
+        } catch (TokenException ex) {
+            sessionPool.checkError(session, ex);
+            throw new P11TokenException(ex);
         } finally {
             returnIdleSession(session);
         }
     }
 
+    /**
+     * Sign all contents within one borrowed session.
+     */
+    List<byte[]> signBatch(final long mechanism, final P11Params parameters,
+            final List<byte[]> contents, final IaikP11Identity identity)
+    throws P11TokenException {
+        ParamUtil.requireNonNull("contents", contents);
+        assertMechanismSupported(mechanism);
+
+        PrivateKey signingKey = identity.getPrivateKey();
+        Mechanism mechanismObj = getMechanism(mechanism, parameters);
+        if (LOG.isTraceEnabled()) {
+            LOG.debug("sign {} contents with private key:\n{}", contents.size(), signingKey);
+        }
+
+        Session session = borrowIdleSession();
+        if (session == null) {
+            throw new P11TokenException("no idle session available");
+        }
+
+        List<byte[]> signatures = new ArrayList<>(contents.size());
+        try {
+            synchronized (session) {
+                for (byte[] content : contents) {
+                    session.signInit(mechanismObj, signingKey);
+                    int len = content.length;
+                    if (len <= maxMessageSize) {
+                        signatures.add(session.sign(content));
+                        continue;
+                    }
+
+                    for (int i = 0; i < len; i += maxMessageSize) {
+                        int blockLen = Math.min(maxMessageSize, len - i);
+                        session.signUpdate(content, i, blockLen);
+                    }
+                    signatures.add(session.signFinal(identity.getExpectedSignatureLen()));
+                }
+            }
+        } catch (TokenException ex) {
+            sessionPool.checkError(session, ex);
+            throw new P11TokenException(ex.getMessage(), ex);
+        } finally {
+            returnIdleSession(session);
+        }
+
+        return signatures;
+    } // method signBatch
+
     private byte[] singleSign(final long mechanism, final P11Params parameters,
             final byte[] content, final IaikP11Identity identity) throws P11TokenException {
         PrivateKey signingKey = identity.getPrivateKey();
@@ -363,6 +407,7 @@ class IaikP11Slot extends AbstractP11Slot {
                 signature = session.sign(content);
             }
         } catch (TokenException ex) {
+            sessionPool.checkError(session, ex);
             throw new P11TokenException(ex.getMessage(), ex);
         } finally {
             returnIdleSession(session);
@@ -401,50 +446,30 @@ class IaikP11Slot extends AbstractP11Slot {
         } catch (TokenException ex) {
             throw new P11TokenException(ex.getMessage(), ex);
         }
-        countSessions.incrementAndGet();
         return session;
     }
 
-    private Session borrowIdleSession() throws P11TokenException {
-        Session session = null;
-        if (countSessions.get() < maxSessionCount) {
-            session = idleSessions.poll();
-            if (session == null) {
-                // create new session
-                session = openSession(false);
-            }
-        }
-
-        if (session == null) {
+    private Session openLoggedInSession() throws P11TokenException {
+        Session session = openSession(false);
+        try {
+            login(session);
+        } catch (P11TokenException ex) {
             try {
-                session = idleSessions.poll(timeOutWaitNewSession, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
+                session.closeSession();
+            } catch (TokenException ex2) {
+                LogUtil.warn(LOG, ex2, "could not close session");
             }
+            throw ex;
         }
-
-        if (session == null) {
-            throw new P11TokenException("no idle session");
-        }
-        busySessions.addLast(session);
-        login(session);
         return session;
     }
 
-    private void returnIdleSession(final Session session) {
-        if (session == null) {
-            return;
-        }
+    private Session borrowIdleSession() throws P11TokenException {
+        return sessionPool.borrowSession();
+    }
 
-        boolean isBusySession = busySessions.remove(session);
-        if (isBusySession) {
-            idleSessions.addLast(session);
-        } else {
-            final String msg =
-                    "session has not been borrowed before or has been returned more than once: "
-                    + session;
-            LOG.error(msg);
-            throw new IllegalStateException(msg);
-        }
+    private void returnIdleSession(final Session session) {
+        sessionPool.returnSession(session);
     }
 
     private void firstLogin(final Session session, final List<char[]> password)
@@ -0,0 +1,140 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+
+package org.xipki.commons.security.pkcs11.proxy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Object;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.exception.BadAsn1ObjectException;
+
+/**
+ *
+ * <pre>
+ * SignBatchTemplate ::= SEQUENCE {
+ *     entityId       EntityIdentifier,
+ *     mechanism      Mechanism,
+ *     messages       SEQUENCE OF OCTET STRING
+ *     }
+ * </pre>
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class Asn1SignBatchTemplate extends ASN1Object {
+
+    private final Asn1P11EntityIdentifier identityId;
+
+    private final Asn1Mechanism mechanism;
+
+    private final List<byte[]> messages;
+
+    private Asn1SignBatchTemplate(final ASN1Sequence seq) throws BadAsn1ObjectException {
+        Asn1Util.requireRange(seq, 3, 3);
+        int idx = 0;
+        this.identityId = Asn1P11EntityIdentifier.getInstance(seq.getObjectAt(idx++));
+        this.mechanism = Asn1Mechanism.getInstance(seq.getObjectAt(idx++));
+        ASN1Sequence messagesSeq = Asn1Util.getSequence(seq.getObjectAt(idx++));
+        final int n = messagesSeq.size();
+        List<byte[]> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(Asn1Util.getOctetStringBytes(messagesSeq.getObjectAt(i)));
+        }
+        this.messages = Collections.unmodifiableList(list);
+    }
+
+    public Asn1SignBatchTemplate(final Asn1P11EntityIdentifier identityId, final long mechanism,
+            final Asn1P11Params parameter, final List<byte[]> messages) {
+        this.identityId = ParamUtil.requireNonNull("identityId", identityId);
+        this.messages = ParamUtil.requireNonEmpty("messages", messages);
+        this.mechanism = new Asn1Mechanism(mechanism, parameter);
+    }
+
+    public static Asn1SignBatchTemplate getInstance(final Object obj)
+    throws BadAsn1ObjectException {
+        if (obj == null || obj instanceof Asn1SignBatchTemplate) {
+            return (Asn1SignBatchTemplate) obj;
+        }
+
+        try {
+            if (obj instanceof ASN1Sequence) {
+                return new Asn1SignBatchTemplate((ASN1Sequence) obj);
+            } else if (obj instanceof byte[]) {
+                return getInstance(ASN1Primitive.fromByteArray((byte[]) obj));
+            } else {
+                throw new BadAsn1ObjectException("unknown object: " + obj.getClass().getName());
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            throw new BadAsn1ObjectException("unable to parse encoded object: " + ex.getMessage(),
+                    ex);
+        }
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive() {
+        ASN1EncodableVector msgVector = new ASN1EncodableVector();
+        for (byte[] message : messages) {
+            msgVector.add(new DEROctetString(message));
+        }
+
+        ASN1EncodableVector vector = new ASN1EncodableVector();
+        vector.add(identityId);
+        vector.add(mechanism);
+        vector.add(new DERSequence(msgVector));
+        return new DERSequence(vector);
+    }
+
+    public List<byte[]> getMessages() {
+        return messages;
+    }
+
+    public Asn1P11EntityIdentifier getIdentityId() {
+        return identityId;
+    }
+
+    public Asn1Mechanism getMechanism() {
+        return mechanism;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+
+package org.xipki.commons.security.pkcs11.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * Client side of the binary transport to the PKCS#11 proxy server. Requests are sent over a
+ * small pool of persistent connections, each of which may carry many requests in flight.
+ * Broken connections are re-established on the next request. A request without response
+ * within the timeout fails alone, the connection is kept for the other requests.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class BinaryP11ProxyTransport {
+
+    private class Connection implements Runnable {
+
+        private final Socket socket;
+
+        private final DataOutputStream out;
+
+        private final DataInputStream in;
+
+        private final Map<Integer, CompletableFuture<P11ProxyFrame>> pendingRequests =
+                new ConcurrentHashMap<>();
+
+        private volatile boolean closed;
+
+        Connection() throws IOException {
+            Socket tmpSocket = new Socket();
+            try {
+                tmpSocket.setTcpNoDelay(true);
+                tmpSocket.setKeepAlive(true);
+                tmpSocket.connect(new InetSocketAddress(host, port), timeout);
+                if (tls) {
+                    tmpSocket = startTls(tmpSocket);
+                }
+                this.out = new DataOutputStream(
+                        new BufferedOutputStream(tmpSocket.getOutputStream()));
+                this.in = new DataInputStream(
+                        new BufferedInputStream(tmpSocket.getInputStream()));
+            } catch (IOException ex) {
+                tmpSocket.close();
+                throw ex;
+            }
+            this.socket = tmpSocket;
+
+            Thread reader = new Thread(this, "p11proxy-" + host + ":" + port);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        P11ProxyFrame send(final P11ProxyFrame request) throws IOException {
+            CompletableFuture<P11ProxyFrame> future = new CompletableFuture<>();
+            int requestId = request.getRequestId();
+            pendingRequests.put(requestId, future);
+            try {
+                if (closed) {
+                    throw new IOException("connection closed");
+                }
+
+                synchronized (out) {
+                    request.write(out);
+                    out.flush();
+                }
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for the response");
+            } catch (TimeoutException ex) {
+                // only this request fails, a late response is discarded by the reader
+                throw new IOException("no response received within " + timeout + " ms");
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                throw (cause instanceof IOException) ? (IOException) cause
+                        : new IOException(cause.getMessage(), cause);
+            } catch (IOException ex) {
+                close(ex);
+                throw ex;
+            } finally {
+                pendingRequests.remove(requestId);
+            }
+        } // method send
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    P11ProxyFrame response = P11ProxyFrame.readResponse(in);
+                    CompletableFuture<P11ProxyFrame> future =
+                            pendingRequests.remove(response.getRequestId());
+                    if (future == null) {
+                        LOG.debug("discarded response for unknown or timed-out request {}",
+                                response.getRequestId());
+                    } else {
+                        future.complete(response);
+                    }
+                }
+            } catch (IOException ex) {
+                if (!closed) {
+                    LogUtil.warn(LOG, ex, "connection to " + host + ":" + port + " broken");
+                }
+                close(ex);
+            }
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        int getNumPendingRequests() {
+            return pendingRequests.size();
+        }
+
+        void close(final IOException cause) {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                LOG.debug("could not close socket: {}", ex.getMessage());
+            }
+
+            for (CompletableFuture<P11ProxyFrame> future : pendingRequests.values()) {
+                future.completeExceptionally(cause);
+            }
+        }
+
+    } // class Connection
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryP11ProxyTransport.class);
+
+    private final String host;
+
+    private final int port;
+
+    private final boolean tls;
+
+    private final int timeout;
+
+    private final AtomicReferenceArray<Connection> connections;
+
+    private final AtomicInteger nextConnection = new AtomicInteger(0);
+
+    private final AtomicInteger nextRequestId = new AtomicInteger(0);
+
+    private volatile boolean closed;
+
+    BinaryP11ProxyTransport(final String host, final int port, final boolean tls,
+            final int numConnections, final int timeout) {
+        this.host = ParamUtil.requireNonBlank("host", host);
+        this.port = ParamUtil.requireRange("port", port, 1, 65535);
+        this.tls = tls;
+        this.timeout = ParamUtil.requireMin("timeout", timeout, 1);
+        ParamUtil.requireMin("numConnections", numConnections, 1);
+        this.connections = new AtomicReferenceArray<>(numConnections);
+    }
+
+    P11ProxyFrame send(final int version, final int action, final String moduleName,
+            final byte[] content) throws IOException {
+        if (closed) {
+            throw new IOException("transport closed");
+        }
+
+        P11ProxyFrame request = P11ProxyFrame.newRequest(nextRequestId.incrementAndGet(),
+                version, action, moduleName, content);
+        return getConnection().send(request);
+    }
+
+    void close() {
+        closed = true;
+        synchronized (connections) {
+            for (int i = 0; i < connections.length(); i++) {
+                Connection conn = connections.getAndSet(i, null);
+                if (conn != null) {
+                    conn.close(new IOException("transport closed"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Layers TLS over the connected socket, with verification of the server host name as in
+     * HTTPS.
+     */
+    private Socket startTls(final Socket plainSocket) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                .createSocket(plainSocket, host, port, true);
+        SSLParameters params = sslSocket.getSSLParameters();
+        params.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(params);
+
+        // handshake before any frame is sent
+        sslSocket.setSoTimeout(timeout);
+        sslSocket.startHandshake();
+        sslSocket.setSoTimeout(0);
+        return sslSocket;
+    }
+
+    int getNumPendingRequests() {
+        int num = 0;
+        for (int i = 0; i < connections.length(); i++) {
+            Connection conn = connections.get(i);
+            if (conn != null) {
+                num += conn.getNumPendingRequests();
+            }
+        }
+        return num;
+    }
+
+    private Connection getConnection() throws IOException {
+        int idx = (nextConnection.getAndIncrement() & 0x7FFFFFFF) % connections.length();
+        Connection conn = connections.get(idx);
+        if (conn != null && !conn.isClosed()) {
+            return conn;
+        }
+
+        synchronized (connections) {
+            if (closed) {
+                throw new IOException("transport closed");
+            }
+
+            conn = connections.get(idx);
+            if (conn == null || conn.isClosed()) {
+                conn = new Connection();
+                connections.set(idx, conn);
+                LOG.info("connected to PKCS#11 proxy {}:{}", host, port);
+            }
+            return conn;
+        }
+    }
+
+}
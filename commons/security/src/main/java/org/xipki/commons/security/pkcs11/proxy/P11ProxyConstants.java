@@ -61,6 +61,11 @@ public class P11ProxyConstants {
 
     public static final String ERROR_P11_TOKENERROR = "P11_TOKEN_ERROR";
 
+    /**
+     * Only used by the binary transport, the response contains the encoded {@link ServerCaps}.
+     */
+    public static final int ACTION_getServerCaps = 0;
+
     public static final int ACTION_getPublicKey = 1;
 
     public static final int ACTION_getCertificate = 2;
@@ -75,6 +80,8 @@ public class P11ProxyConstants {
 
     public static final int ACTION_sign = 20;
 
+    public static final int ACTION_signBatch = 21;
+
     public static final int ACTION_genKeypair_RSA = 30;
 
     public static final int ACTION_genKeypair_DSA = 31;
@@ -0,0 +1,199 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+
+package org.xipki.commons.security.pkcs11.proxy;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * Frame of the binary transport between the PKCS#11 proxy client and server.
+ *
+ * <pre>
+ * Request  ::= length(int32) requestId(int32) version(int8) action(int16)
+ *              moduleNameLen(int16) moduleName(UTF-8) content(DER, may be empty)
+ * Response ::= length(int32) requestId(int32) status(int8) payload
+ * </pre>
+ * All integers are big-endian, and length counts the bytes after the length field.
+ * The payload of a successful response contains the DER-encoded response value (may be
+ * empty), that of a failed response the UTF-8 encoded error, which is formatted as the
+ * failure info of the CMP transport.
+ *
+ * <p>Since every frame carries a request identifier, several requests can be in flight on
+ * one connection, and the responses may arrive in any order.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public final class P11ProxyFrame {
+
+    public static final int STATUS_OK = 0;
+
+    public static final int STATUS_ERROR = 1;
+
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int requestId;
+
+    private final int version;
+
+    private final int code;
+
+    private final String moduleName;
+
+    private final byte[] payload;
+
+    private P11ProxyFrame(final int requestId, final int version, final int code,
+            final String moduleName, final byte[] payload) {
+        this.requestId = requestId;
+        this.version = version;
+        this.code = code;
+        this.moduleName = moduleName;
+        this.payload = (payload == null) ? EMPTY : payload;
+    }
+
+    public static P11ProxyFrame newRequest(final int requestId, final int version,
+            final int action, final String moduleName, final byte[] content) {
+        ParamUtil.requireRange("version", version, 0, 0xFF);
+        ParamUtil.requireRange("action", action, 0, 0xFFFF);
+        ParamUtil.requireNonNull("moduleName", moduleName);
+        return new P11ProxyFrame(requestId, version, action, moduleName, content);
+    }
+
+    public static P11ProxyFrame newResponse(final int requestId, final byte[] payload) {
+        return new P11ProxyFrame(requestId, 0, STATUS_OK, null, payload);
+    }
+
+    public static P11ProxyFrame newErrorResponse(final int requestId, final String error) {
+        ParamUtil.requireNonNull("error", error);
+        return new P11ProxyFrame(requestId, 0, STATUS_ERROR, null,
+                error.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the action for request, and the status for response.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public String getModuleName() {
+        return moduleName;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public String getError() {
+        return (code == STATUS_ERROR) ? new String(payload, StandardCharsets.UTF_8) : null;
+    }
+
+    public boolean isRequest() {
+        return moduleName != null;
+    }
+
+    public void write(final DataOutputStream out) throws IOException {
+        ParamUtil.requireNonNull("out", out);
+        if (isRequest()) {
+            byte[] encodedModuleName = moduleName.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(4 + 1 + 2 + 2 + encodedModuleName.length + payload.length);
+            out.writeInt(requestId);
+            out.writeByte(version);
+            out.writeShort(code);
+            out.writeShort(encodedModuleName.length);
+            out.write(encodedModuleName);
+        } else {
+            out.writeInt(4 + 1 + payload.length);
+            out.writeInt(requestId);
+            out.writeByte(code);
+        }
+        out.write(payload);
+    }
+
+    public static P11ProxyFrame readRequest(final DataInputStream in) throws IOException {
+        ParamUtil.requireNonNull("in", in);
+        int len = readLength(in, 9);
+        int requestId = in.readInt();
+        int version = in.readUnsignedByte();
+        int action = in.readUnsignedShort();
+        int moduleNameLen = in.readUnsignedShort();
+        int contentLen = len - 9 - moduleNameLen;
+        if (contentLen < 0) {
+            throw new IOException("invalid length of module name: " + moduleNameLen);
+        }
+
+        byte[] encodedModuleName = new byte[moduleNameLen];
+        in.readFully(encodedModuleName);
+        byte[] content = new byte[contentLen];
+        in.readFully(content);
+        return new P11ProxyFrame(requestId, version, action,
+                new String(encodedModuleName, StandardCharsets.UTF_8), content);
+    }
+
+    public static P11ProxyFrame readResponse(final DataInputStream in) throws IOException {
+        ParamUtil.requireNonNull("in", in);
+        int len = readLength(in, 5);
+        int requestId = in.readInt();
+        int status = in.readUnsignedByte();
+        byte[] payload = new byte[len - 5];
+        in.readFully(payload);
+        return new P11ProxyFrame(requestId, 0, status, null, payload);
+    }
+
+    private static int readLength(final DataInputStream in, final int minLen) throws IOException {
+        int len = in.readInt();
+        if (len < minLen || len > MAX_FRAME_SIZE) {
+            throw new IOException("invalid frame length " + len);
+        }
+        return len;
+    }
+
+}
@@ -36,10 +36,14 @@ package org.xipki.commons.security.pkcs11.proxy;
 
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DEROctetString;
+import org.xipki.commons.security.exception.BadAsn1ObjectException;
 import org.xipki.commons.security.exception.P11TokenException;
 import org.xipki.commons.security.pkcs11.P11EntityIdentifier;
 import org.xipki.commons.security.pkcs11.P11Identity;
@@ -83,4 +87,40 @@ class ProxyP11Identity extends P11Identity {
         return (octetString == null) ? null : octetString.getOctets();
     }
 
+    @Override
+    protected List<byte[]> doSignBatch(final long mechanism, final P11Params parameters,
+            final List<byte[]> contents) throws P11TokenException {
+        if (contents.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+
+        Asn1P11EntityIdentifier asn1EntityId = new Asn1P11EntityIdentifier(identityId);
+        Asn1P11Params p11Param = null;
+        if (parameters instanceof P11RSAPkcsPssParams) {
+            p11Param = new Asn1P11Params(
+                    new Asn1RSAPkcsPssParams((P11RSAPkcsPssParams) parameters));
+        }
+        Asn1SignBatchTemplate signTemplate = new Asn1SignBatchTemplate(asn1EntityId, mechanism,
+                p11Param, contents);
+        // all contents are signed in one round trip
+        ASN1Encodable result = ((ProxyP11Slot) slot).getModule().send(
+                P11ProxyConstants.ACTION_signBatch, signTemplate);
+
+        try {
+            ASN1Sequence seq = Asn1Util.getSequence(result);
+            if (seq.size() != contents.size()) {
+                throw new P11TokenException("expected " + contents.size() + " signatures, but got "
+                        + seq.size());
+            }
+
+            List<byte[]> signatures = new ArrayList<>(seq.size());
+            for (int i = 0; i < seq.size(); i++) {
+                signatures.add(Asn1Util.getOctetStringBytes(seq.getObjectAt(i)));
+            }
+            return signatures;
+        } catch (BadAsn1ObjectException ex) {
+            throw new P11TokenException("the returned result is not SEQUENCE OF OCTET STRING", ex);
+        }
+    }
+
 }
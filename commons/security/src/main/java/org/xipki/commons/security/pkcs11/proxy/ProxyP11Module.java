@@ -40,6 +40,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Date;
 import java.util.HashSet;
@@ -49,8 +51,10 @@ import java.util.Set;
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Encoding;
 import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DERNull;
 import org.bouncycastle.asn1.DEROctetString;
@@ -116,6 +120,13 @@ public class ProxyP11Module extends AbstractP11Module {
 
     private boolean readOnly;
 
+    /**
+     * Binary transport, used if the URL has the scheme tcp or tls, otherwise {@code null}.
+     */
+    private BinaryP11ProxyTransport binaryTransport;
+
+    private String remoteModuleName;
+
     private ProxyP11Module(final P11ModuleConf moduleConf) throws P11TokenException {
         super(moduleConf);
 
@@ -127,6 +138,13 @@ public class ProxyP11Module extends AbstractP11Module {
 
         ConfPairs confPairs = new ConfPairs(modulePath.substring(PREFIX.length()));
         String urlStr = confPairs.getValue("url");
+        if (StringUtil.startsWithIgnoreCase(urlStr, "tcp://")
+                || StringUtil.startsWithIgnoreCase(urlStr, "tls://")) {
+            initBinaryTransport(urlStr, confPairs);
+            refresh();
+            return;
+        }
+
         try {
             serverUrl = new URL(urlStr);
         } catch (MalformedURLException ex) {
@@ -142,6 +160,35 @@ public class ProxyP11Module extends AbstractP11Module {
         refresh();
     }
 
+    private void initBinaryTransport(final String urlStr, final ConfPairs confPairs) {
+        URI uri;
+        try {
+            uri = new URI(urlStr);
+        } catch (URISyntaxException ex) {
+            throw new IllegalArgumentException("invalid url: " + urlStr);
+        }
+
+        if (uri.getHost() == null || uri.getPort() == -1) {
+            throw new IllegalArgumentException("host and port are not specified in url: "
+                    + urlStr);
+        }
+
+        String path = uri.getPath();
+        if (path != null && path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        remoteModuleName = StringUtil.isBlank(path) ? "default" : path;
+
+        String str = confPairs.getValue("connections");
+        int connections = (str == null) ? 4 : Integer.parseInt(str);
+        str = confPairs.getValue("timeout");
+        int timeout = (str == null) ? 30000 : Integer.parseInt(str);
+
+        boolean tls = "tls".equalsIgnoreCase(uri.getScheme());
+        binaryTransport = new BinaryP11ProxyTransport(uri.getHost(), uri.getPort(), tls,
+                connections, timeout);
+    }
+
     public static P11Module getInstance(final P11ModuleConf moduleConf) throws P11TokenException {
         ParamUtil.requireNonNull("moduleConf", moduleConf);
         return new ProxyP11Module(moduleConf);
@@ -207,6 +254,10 @@ public class ProxyP11Module extends AbstractP11Module {
                 LogUtil.error(LOG, th, "could not close PKCS#11 slot " + slotId);
             }
         }
+
+        if (binaryTransport != null) {
+            binaryTransport.close();
+        }
     }
 
     byte[] send(final byte[] request) throws IOException {
@@ -265,6 +316,10 @@ public class ProxyP11Module extends AbstractP11Module {
     } // method send
 
     ASN1Encodable send(final int action, final ASN1Encodable content) throws P11TokenException {
+        if (binaryTransport != null) {
+            return sendBinary(action, content);
+        }
+
         ASN1EncodableVector vec = new ASN1EncodableVector();
         vec.add(new ASN1Integer(version));
         vec.add(new ASN1Integer(action));
@@ -314,6 +369,44 @@ public class ProxyP11Module extends AbstractP11Module {
         return extractItvInfoValue(action, response);
     } // method send
 
+    private ASN1Encodable sendBinary(final int action, final ASN1Encodable content)
+    throws P11TokenException {
+        byte[] payload;
+        try {
+            byte[] encodedContent = (content == null) ? null
+                    : content.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+            payload = sendBinaryRequest(action, encodedContent);
+        } catch (IOException ex) {
+            throw new P11TokenException("could not send the request: " + ex.getMessage(), ex);
+        }
+
+        if (payload.length == 0) {
+            return null;
+        }
+
+        try {
+            return ASN1Primitive.fromByteArray(payload);
+        } catch (IOException ex) {
+            final String msg = "could not decode the received response";
+            LOG.error(msg + ": {}", Hex.toHexString(payload));
+            throw new P11TokenException(msg + ": " + ex.getMessage(), ex);
+        }
+    } // method sendBinary
+
+    private byte[] sendBinaryRequest(final int action, final byte[] content)
+    throws IOException, P11TokenException {
+        P11ProxyFrame response = binaryTransport.send(version, action, remoteModuleName,
+                content);
+        if (response.getCode() == P11ProxyFrame.STATUS_OK) {
+            return response.getPayload();
+        }
+
+        String failureInfo = response.getError();
+        P11TokenException ex = buildP11TokenException(failureInfo);
+        throw (ex != null) ? ex : new P11TokenException("server answered with ERROR: "
+                + failureInfo);
+    }
+
     private PKIHeader buildPkiHeader(final ASN1OctetString tid) {
         PKIHeaderBuilder hdrBuilder = new PKIHeaderBuilder(PKIHeader.CMP_2000, sender, recipient);
         hdrBuilder.setMessageTime(new ASN1GeneralizedTime(new Date()));
@@ -332,6 +425,15 @@ public class ProxyP11Module extends AbstractP11Module {
 
     private ServerCaps getServerCaps() throws P11TokenException {
         byte[] respBytes;
+        if (binaryTransport != null) {
+            try {
+                respBytes = sendBinaryRequest(P11ProxyConstants.ACTION_getServerCaps, null);
+            } catch (IOException ex) {
+                throw new P11TokenException(ex.getMessage(), ex);
+            }
+            return new ServerCaps(respBytes);
+        }
+
         try {
             HttpURLConnection conn = IoUtil.openHttpConn(getCapsUrl);
             conn.setRequestMethod("GET");
@@ -366,26 +468,9 @@ public class ProxyP11Module extends AbstractP11Module {
                         + CmpFailureUtil.formatPkiStatusInfo(statusInfo));
             }
 
-            if (failureInfo.startsWith(P11ProxyConstants.ERROR_P11_TOKENERROR)) {
-                ConfPairs pairs = new ConfPairs(failureInfo);
-                String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_P11_TOKENERROR);
-                throw new P11TokenException(errorMesage);
-            } else if (failureInfo.startsWith(P11ProxyConstants.ERROR_UNKNOWN_ENTITY)) {
-                ConfPairs pairs = new ConfPairs(failureInfo);
-                String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_UNKNOWN_ENTITY);
-                throw new P11UnknownEntityException(errorMesage);
-            } else if (failureInfo.startsWith(P11ProxyConstants.ERROR_UNSUPPORTED_MECHANISM)) {
-                ConfPairs pairs = new ConfPairs(failureInfo);
-                String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_UNSUPPORTED_MECHANISM);
-                throw new P11UnsupportedMechanismException(errorMesage);
-            } else if (failureInfo.startsWith(P11ProxyConstants.ERROR_DUPLICATE_ENTITY)) {
-                ConfPairs pairs = new ConfPairs(failureInfo);
-                String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_UNSUPPORTED_MECHANISM);
-                throw new P11DuplicateEntityException(errorMesage);
-            } else {
-                throw new P11TokenException("server answered with ERROR: "
-                        + CmpFailureUtil.formatPkiStatusInfo(statusInfo));
-            }
+            P11TokenException ex = buildP11TokenException(failureInfo);
+            throw (ex != null) ? ex : new P11TokenException("server answered with ERROR: "
+                    + CmpFailureUtil.formatPkiStatusInfo(statusInfo));
         } else if (PKIBody.TYPE_GEN_REP != bodyType) {
             throw new P11TokenException("unknown PKI body type " + bodyType
                     + " instead the expected [" + PKIBody.TYPE_GEN_REP + ", "
@@ -437,6 +522,28 @@ public class ProxyP11Module extends AbstractP11Module {
         }
     } // method extractItvInfoValue
 
+    private static P11TokenException buildP11TokenException(final String failureInfo) {
+        if (failureInfo.startsWith(P11ProxyConstants.ERROR_P11_TOKENERROR)) {
+            ConfPairs pairs = new ConfPairs(failureInfo);
+            String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_P11_TOKENERROR);
+            return new P11TokenException(errorMesage);
+        } else if (failureInfo.startsWith(P11ProxyConstants.ERROR_UNKNOWN_ENTITY)) {
+            ConfPairs pairs = new ConfPairs(failureInfo);
+            String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_UNKNOWN_ENTITY);
+            return new P11UnknownEntityException(errorMesage);
+        } else if (failureInfo.startsWith(P11ProxyConstants.ERROR_UNSUPPORTED_MECHANISM)) {
+            ConfPairs pairs = new ConfPairs(failureInfo);
+            String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_UNSUPPORTED_MECHANISM);
+            return new P11UnsupportedMechanismException(errorMesage);
+        } else if (failureInfo.startsWith(P11ProxyConstants.ERROR_DUPLICATE_ENTITY)) {
+            ConfPairs pairs = new ConfPairs(failureInfo);
+            String errorMesage = pairs.getValue(P11ProxyConstants.ERROR_DUPLICATE_ENTITY);
+            return new P11DuplicateEntityException(errorMesage);
+        } else {
+            return null;
+        }
+    }
+
     private void checkResponseCode(final HttpURLConnection conn) throws P11TokenException {
         ParamUtil.requireNonNull("conn", conn);
         try {
@@ -67,12 +67,15 @@ import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.Signer;
 import org.bouncycastle.crypto.params.AsymmetricKeyParameter;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.bouncycastle.crypto.signers.DSADigestSigner;
 import org.bouncycastle.crypto.signers.DSASigner;
 import org.bouncycastle.crypto.signers.ECDSASigner;
 import org.bouncycastle.crypto.signers.RSADigestSigner;
 import org.bouncycastle.jcajce.provider.asymmetric.dsa.DSAUtil;
 import org.bouncycastle.jcajce.provider.asymmetric.util.ECUtil;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointUtil;
 import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.OperatorCreationException;
 import org.bouncycastle.operator.bc.BcContentSignerBuilder;
@@ -208,6 +211,13 @@ public class SoftTokenContentSignerBuilder {
 
     private static final Logger LOG = LoggerFactory.getLogger(SoftTokenContentSignerBuilder.class);
 
+    /**
+     * Width of the fixed-base comb table of the curve generator. BouncyCastle uses 5 (6 for
+     * curves above 257 bits) by default, 8 requires 256 points and reduces the number of
+     * point operations to compute k*G by about 40%.
+     */
+    private static final int EC_BASE_POINT_COMB_WIDTH = 8;
+
     private final PrivateKey key;
 
     private final PublicKey publicKey;
@@ -292,6 +302,16 @@ public class SoftTokenContentSignerBuilder {
 
     public ConcurrentContentSigner createSigner(final AlgorithmIdentifier signatureAlgId,
             final int parallelism, final SecureRandom random)
+    throws OperatorCreationException, NoSuchPaddingException {
+        return createSigner(null, signatureAlgId, parallelism, random);
+    }
+
+    /**
+     * @param name name of the signer, {@code null} to generate one.
+     */
+    public ConcurrentContentSigner createSigner(final String name,
+            final AlgorithmIdentifier signatureAlgId, final int parallelism,
+            final SecureRandom random)
     throws OperatorCreationException, NoSuchPaddingException {
         ParamUtil.requireNonNull("signatureAlgId", signatureAlgId);
         ParamUtil.requireMin("parallelism", parallelism, 1);
@@ -378,6 +398,7 @@ public class SoftTokenContentSignerBuilder {
                             AlgorithmUtil.isDSAPlainSigAlg(signatureAlgId));
                 } else if (key instanceof ECPrivateKey) {
                     keyparam = ECUtil.generatePrivateKeyParameter(key);
+                    precomputeBasePoint((ECPrivateKeyParameters) keyparam);
                     signerBuilder = new ECDSAContentSignerBuilder(signatureAlgId,
                             AlgorithmUtil.isDSAPlainSigAlg(signatureAlgId));
                 } else {
@@ -400,7 +421,8 @@ public class SoftTokenContentSignerBuilder {
             }
         }
 
-        ConcurrentContentSigner concurrentSigner = new DefaultConcurrentContentSigner(signers, key);
+        ConcurrentContentSigner concurrentSigner = new DefaultConcurrentContentSigner(name,
+                signers, key);
         if (certificateChain != null) {
             concurrentSigner.setCertificateChain(certificateChain);
         } else {
@@ -409,6 +431,16 @@ public class SoftTokenContentSignerBuilder {
         return concurrentSigner;
     } // createSigner
 
+    private static void precomputeBasePoint(final ECPrivateKeyParameters keyparam) {
+        // the table is cached in the generator point which is shared by all signers of this
+        // key, and is used by the FixedPointCombMultiplier of ECDSASigner.
+        ECPoint basePoint = keyparam.getParameters().getG();
+        long start = System.currentTimeMillis();
+        FixedPointUtil.precompute(basePoint, EC_BASE_POINT_COMB_WIDTH);
+        LOG.debug("precomputed fixed-base table of the EC generator (width {}) in {} ms",
+                EC_BASE_POINT_COMB_WIDTH, System.currentTimeMillis() - start);
+    }
+
     public X509Certificate getCert() {
         return (certificateChain != null && certificateChain.length > 0)
                 ? certificateChain[0] : null;
@@ -0,0 +1,280 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security.pkcs11.iaik;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.commons.security.exception.P11TokenException;
+import org.xipki.commons.security.pkcs11.P11SessionPoolStatistics;
+
+import iaik.pkcs.pkcs11.Module;
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.Slot;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class IaikP11SessionPoolTest {
+
+    private static final class StubSession extends Session {
+
+        private final AtomicInteger numOpen;
+
+        private volatile boolean closed;
+
+        StubSession(final Token token, final long handle, final AtomicInteger numOpen) {
+            super(token, handle);
+            this.numOpen = numOpen;
+        }
+
+        @Override
+        public void closeSession() {
+            if (!closed) {
+                closed = true;
+                numOpen.decrementAndGet();
+            }
+        }
+
+    } // class StubSession
+
+    private static final class StubOpener implements IaikP11SessionPool.SessionOpener {
+
+        private final Token token = new Token(new Slot(new Module("stub") { }, 1) { }) { };
+
+        private final AtomicLong nextHandle = new AtomicLong(1);
+
+        private final AtomicInteger numOpen = new AtomicInteger(0);
+
+        private final AtomicInteger maxOpen = new AtomicInteger(0);
+
+        private final List<StubSession> opened = new ArrayList<>();
+
+        @Override
+        public synchronized Session openSession() throws P11TokenException {
+            StubSession session = new StubSession(token, nextHandle.getAndIncrement(), numOpen);
+            opened.add(session);
+            int num = numOpen.incrementAndGet();
+            maxOpen.set(Math.max(maxOpen.get(), num));
+            return session;
+        }
+
+    } // class StubOpener
+
+    @Test
+    public void testThreadAffinity() throws Exception {
+        StubOpener opener = new StubOpener();
+        IaikP11SessionPool pool = newPool(opener, 4, 1000, 2);
+
+        Session session = pool.borrowSession();
+        pool.returnSession(session);
+        for (int i = 0; i < 10; i++) {
+            Session session2 = pool.borrowSession();
+            Assert.assertSame(session, session2);
+            pool.returnSession(session2);
+        }
+
+        P11SessionPoolStatistics stats = pool.getStatistics();
+        Assert.assertEquals(11, stats.getBorrowCount());
+        Assert.assertEquals(10, stats.getAffinityHitCount());
+        Assert.assertEquals(0, stats.getInUse());
+        Assert.assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    public void testExhaustedAndTimeout() throws Exception {
+        StubOpener opener = new StubOpener();
+        IaikP11SessionPool pool = newPool(opener, 2, 200, 1);
+
+        Session s1 = pool.borrowSession();
+        Session s2 = pool.borrowSession();
+        Assert.assertNotSame(s1, s2);
+
+        long start = System.currentTimeMillis();
+        try {
+            pool.borrowSession();
+            Assert.fail("P11TokenException expected");
+        } catch (P11TokenException ex) {
+            // expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start >= 190);
+
+        P11SessionPoolStatistics stats = pool.getStatistics();
+        Assert.assertEquals(2, stats.getSize());
+        Assert.assertEquals(2, stats.getInUse());
+        Assert.assertEquals(1, stats.getExhaustedCount());
+        Assert.assertEquals(1, stats.getTimeoutCount());
+        Assert.assertEquals(2, opener.opened.size());
+
+        // a waiting thread gets the returned session
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Session> future = executor.submit(() -> pool.borrowSession());
+            Thread.sleep(50);
+            pool.returnSession(s1);
+            Assert.assertSame(s1, future.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBrokenSession() throws Exception {
+        StubOpener opener = new StubOpener();
+        IaikP11SessionPool pool = newPool(opener, 2, 1000, 1);
+
+        StubSession session = (StubSession) pool.borrowSession();
+        pool.checkError(session,
+                new PKCS11Exception(PKCS11Constants.CKR_SESSION_HANDLE_INVALID));
+        // the session is closed when returned, not while in use
+        Assert.assertFalse(session.closed);
+        pool.returnSession(session);
+        Assert.assertTrue(session.closed);
+
+        // other errors do not break the session
+        Session session2 = pool.borrowSession();
+        Assert.assertNotSame(session, session2);
+        pool.checkError(session2, new PKCS11Exception(PKCS11Constants.CKR_KEY_HANDLE_INVALID));
+        pool.returnSession(session2);
+        Assert.assertSame(session2, pool.borrowSession());
+
+        P11SessionPoolStatistics stats = pool.getStatistics();
+        Assert.assertEquals(1, stats.getEvictedCount());
+        Assert.assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    public void testTokenRemoved() throws Exception {
+        StubOpener opener = new StubOpener();
+        IaikP11SessionPool pool = newPool(opener, 3, 1000, 3);
+        Assert.assertEquals(3, opener.opened.size());
+
+        StubSession borrowed = (StubSession) pool.borrowSession();
+        pool.checkError(borrowed, new PKCS11Exception(PKCS11Constants.CKR_DEVICE_REMOVED));
+
+        // idle sessions are closed at once, the borrowed one when returned
+        for (StubSession session : opener.opened) {
+            Assert.assertEquals(session != borrowed, session.closed);
+        }
+        pool.returnSession(borrowed);
+        Assert.assertTrue(borrowed.closed);
+        Assert.assertEquals(0, pool.getStatistics().getSize());
+
+        // new sessions are opened on demand
+        Session session = pool.borrowSession();
+        Assert.assertFalse(((StubSession) session).closed);
+        Assert.assertEquals(4, opener.opened.size());
+        pool.returnSession(session);
+        Assert.assertEquals(3, pool.getStatistics().getEvictedCount());
+    }
+
+    @Test
+    public void testReturnTwice() throws Exception {
+        IaikP11SessionPool pool = newPool(new StubOpener(), 2, 1000, 1);
+        Session session = pool.borrowSession();
+        pool.returnSession(session);
+        try {
+            pool.returnSession(session);
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testConcurrentBorrow() throws Exception {
+        final int maxSize = 4;
+        final StubOpener opener = new StubOpener();
+        final IaikP11SessionPool pool = newPool(opener, maxSize, 10000, 1);
+        final Set<Session> inUse = ConcurrentHashMap.newKeySet();
+        final AtomicInteger doubleBorrowed = new AtomicInteger(0);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 500; j++) {
+                        Session session = pool.borrowSession();
+                        if (!inUse.add(session)) {
+                            doubleBorrowed.incrementAndGet();
+                        }
+                        Thread.yield();
+                        inUse.remove(session);
+                        pool.returnSession(session);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals("session borrowed by two threads", 0, doubleBorrowed.get());
+        Assert.assertTrue("opened sessions: " + opener.maxOpen.get(),
+                opener.maxOpen.get() <= maxSize);
+
+        P11SessionPoolStatistics stats = pool.getStatistics();
+        Assert.assertEquals(16 * 500, stats.getBorrowCount());
+        Assert.assertEquals(0, stats.getInUse());
+        Assert.assertEquals(0, stats.getTimeoutCount());
+    }
+
+    private static IaikP11SessionPool newPool(final StubOpener opener, final int maxSize,
+            final long timeout, final int minSize) throws P11TokenException {
+        IaikP11SessionPool pool = new IaikP11SessionPool("test", maxSize, timeout, opener);
+        pool.init(opener.openSession(), minSize);
+        return pool;
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security.pkcs11.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class BinaryP11ProxyTransportTest {
+
+    /**
+     * Server which answers with the payload of the request, after collecting
+     * {@code batchSize} requests in reverse order. If {@code silent} is set, no response
+     * is sent.
+     */
+    private static final class StubServer implements Runnable {
+
+        private final ServerSocket serverSocket;
+
+        private final int batchSize;
+
+        private final AtomicInteger numConnections = new AtomicInteger(0);
+
+        private final CountDownLatch connectionClosed = new CountDownLatch(1);
+
+        private volatile boolean silent;
+
+        StubServer(final int batchSize) throws IOException {
+            this.serverSocket = new ServerSocket(0);
+            this.batchSize = batchSize;
+            Thread thread = new Thread(this, "stub-p11proxy");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    numConnections.incrementAndGet();
+                    serve(socket);
+                } catch (IOException ex) {
+                    // connection closed
+                }
+                connectionClosed.countDown();
+            }
+        }
+
+        private void serve(final Socket socket) throws IOException {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            while (true) {
+                List<P11ProxyFrame> requests = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    requests.add(P11ProxyFrame.readRequest(in));
+                }
+
+                if (silent) {
+                    continue;
+                }
+
+                for (int i = requests.size() - 1; i >= 0; i--) {
+                    P11ProxyFrame request = requests.get(i);
+                    P11ProxyFrame.newResponse(request.getRequestId(), request.getPayload())
+                            .write(out);
+                }
+                out.flush();
+            }
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+    } // class StubServer
+
+    private StubServer server;
+
+    private BinaryP11ProxyTransport transport;
+
+    @After
+    public void tearDown() throws Exception {
+        if (transport != null) {
+            transport.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testResponsesOutOfOrder() throws Exception {
+        final int numRequests = 8;
+        server = new StubServer(numRequests);
+        transport = new BinaryP11ProxyTransport("localhost", server.getPort(), false, 1, 10000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numRequests);
+        try {
+            List<Future<P11ProxyFrame>> futures = new ArrayList<>(numRequests);
+            for (int i = 0; i < numRequests; i++) {
+                final byte[] content = new byte[]{(byte) i};
+                futures.add(executor.submit(() -> transport.send(2, 1, "default", content)));
+            }
+
+            for (int i = 0; i < numRequests; i++) {
+                P11ProxyFrame response = futures.get(i).get(10, TimeUnit.SECONDS);
+                Assert.assertArrayEquals("payload", new byte[]{(byte) i}, response.getPayload());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("pending requests", 0, transport.getNumPendingRequests());
+        Assert.assertEquals("connections", 1, server.numConnections.get());
+    }
+
+    @Test
+    public void testConnectionKeptOnTimeout() throws Exception {
+        server = new StubServer(1);
+        server.silent = true;
+        transport = new BinaryP11ProxyTransport("localhost", server.getPort(), false, 1, 200);
+
+        try {
+            transport.send(2, 1, "default", new byte[]{1});
+            Assert.fail("no timeout");
+        } catch (IOException ex) {
+            // expected
+        }
+
+        Assert.assertEquals("pending requests", 0, transport.getNumPendingRequests());
+
+        // the next request is sent over the same connection
+        server.silent = false;
+        P11ProxyFrame response = transport.send(2, 1, "default", new byte[]{2});
+        Assert.assertArrayEquals("payload", new byte[]{2}, response.getPayload());
+        Assert.assertEquals("connections", 1, server.numConnections.get());
+        Assert.assertEquals("connection closed", 1, server.connectionClosed.getCount());
+    }
+
+}
@@ -40,6 +40,8 @@ import java.security.SecureRandom;
 import java.security.Security;
 import java.security.Signature;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -79,10 +81,13 @@ public abstract class Pkcs12RSATest {
     }
 
     private ConcurrentContentSigner getSigner() throws Exception {
-        if (signer != null) {
-            return signer;
+        if (signer == null) {
+            signer = createSigner(1);
         }
+        return signer;
+    }
 
+    private ConcurrentContentSigner createSigner(final int parallelism) throws Exception {
         String certFile = getCertificateFile();
         X509Certificate cert = X509Util.parseCert(certFile);
 
@@ -90,8 +95,7 @@ public abstract class Pkcs12RSATest {
         char[] password = getPassword().toCharArray();
         SoftTokenContentSignerBuilder builder = new SoftTokenContentSignerBuilder("PKCS12", ks,
                 password, null, password, new X509Certificate[]{cert});
-        signer = builder.createSigner(getSignatureAlgorithm(), 1, new SecureRandom());
-        return signer;
+        return builder.createSigner(getSignatureAlgorithm(), parallelism, new SecureRandom());
     }
 
     @Test
@@ -106,6 +110,31 @@ public abstract class Pkcs12RSATest {
         Assert.assertTrue("Signature invalid", signatureValid);
     }
 
+    @Test
+    public void testSignBatch() throws Exception {
+        final int n = 50;
+        List<byte[]> data = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            data.add(new byte[]{(byte) i, 1, 2, 3});
+        }
+
+        // large enough to sign the messages with several signers in parallel
+        ConcurrentContentSigner batchSigner = createSigner(4);
+        try {
+            List<byte[]> signatures = batchSigner.signBatch(data);
+            Assert.assertEquals("number of signatures", n, signatures.size());
+            X509Certificate cert = batchSigner.getCertificate();
+            for (int i = 0; i < n; i++) {
+                Assert.assertTrue("signature " + i + " invalid",
+                        verify(data.get(i), signatures.get(i), cert));
+                Assert.assertFalse("signature " + i + " at wrong position",
+                        verify(data.get((i + 1) % n), signatures.get(i), cert));
+            }
+        } finally {
+            batchSigner.shutdown();
+        }
+    }
+
     protected byte[] sign(final byte[] data) throws Exception {
         return getSigner().sign(data);
     }
@@ -0,0 +1,272 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.commons.security.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.commons.security.ConcurrentContentSigner;
+import org.xipki.commons.security.LoadBalancedConcurrentContentSigner;
+import org.xipki.commons.security.exception.NoIdleSignerException;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class LoadBalancedConcurrentContentSignerTest {
+
+    private enum Mode {
+        OK,
+        ERROR,
+        BUSY
+    }
+
+    private static final class StubBackend implements InvocationHandler {
+
+        private final String name;
+
+        private final PublicKey publicKey;
+
+        private final AtomicInteger signCount = new AtomicInteger(0);
+
+        private volatile Mode mode = Mode.OK;
+
+        private volatile boolean shutdown;
+
+        StubBackend(final String name, final PublicKey publicKey) {
+            this.name = name;
+            this.publicKey = publicKey;
+        }
+
+        ConcurrentContentSigner newProxy() {
+            return (ConcurrentContentSigner) Proxy.newProxyInstance(
+                    ConcurrentContentSigner.class.getClassLoader(),
+                    new Class<?>[]{ConcurrentContentSigner.class}, this);
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+        throws Throwable {
+            switch (method.getName()) {
+            case "getName":
+                return name;
+            case "getAlgorithmIdentifier":
+                return ALGID;
+            case "getPublicKey":
+                return publicKey;
+            case "isHealthy":
+                return mode == Mode.OK;
+            case "shutdown":
+                shutdown = true;
+                return null;
+            case "sign":
+                signCount.incrementAndGet();
+                if (args[0] instanceof InputStream) {
+                    InputStream in = (InputStream) args[0];
+                    while (in.read() != -1) {
+                        // consume the data
+                    }
+                }
+
+                if (mode == Mode.ERROR) {
+                    throw new IOException("error in " + name);
+                } else if (mode == Mode.BUSY) {
+                    throw new NoIdleSignerException("no idle signer in " + name);
+                }
+                return new byte[]{1};
+            default:
+                return null;
+            }
+        }
+
+    } // class StubBackend
+
+    private static final AlgorithmIdentifier ALGID =
+            new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption);
+
+    private static final byte[] DATA = new byte[]{1, 2, 3};
+
+    @Test
+    public void testFailover() throws Exception {
+        StubBackend backend1 = new StubBackend("backend1", null);
+        StubBackend backend2 = new StubBackend("backend2", null);
+        ConcurrentContentSigner signer = new LoadBalancedConcurrentContentSigner(
+                Arrays.asList(backend1.newProxy(), backend2.newProxy()), 2, 60000);
+
+        backend1.mode = Mode.ERROR;
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(signer.sign(DATA));
+        }
+
+        // backend1 is ejected after 2 errors and not probed within the probe interval
+        Assert.assertEquals("operations in backend1", 2, backend1.signCount.get());
+        Assert.assertEquals("operations in backend2", 10, backend2.signCount.get());
+    }
+
+    @Test
+    public void testProbeAfterNoIdleSigner() throws Exception {
+        StubBackend backend1 = new StubBackend("backend1", null);
+        StubBackend backend2 = new StubBackend("backend2", null);
+        ConcurrentContentSigner signer = new LoadBalancedConcurrentContentSigner(
+                Arrays.asList(backend1.newProxy(), backend2.newProxy()), 1, 0);
+
+        // eject backend1
+        backend1.mode = Mode.ERROR;
+        for (int i = 0; i < 2; i++) {
+            signer.sign(DATA);
+        }
+
+        // the probe of backend1 finds no idle signer
+        backend1.mode = Mode.BUSY;
+        for (int i = 0; i < 2; i++) {
+            signer.sign(DATA);
+        }
+        int probeCount = backend1.signCount.get();
+
+        // further probes must take place, so that the recovered backend1 is reinstated
+        backend1.mode = Mode.OK;
+        for (int i = 0; i < 4; i++) {
+            signer.sign(DATA);
+        }
+        Assert.assertTrue("backend1 is not probed again", backend1.signCount.get() > probeCount);
+    }
+
+    @Test
+    public void testInputStreamErrorNotCounted() throws Exception {
+        StubBackend backend1 = new StubBackend("backend1", null);
+        StubBackend backend2 = new StubBackend("backend2", null);
+        ConcurrentContentSigner signer = new LoadBalancedConcurrentContentSigner(
+                Arrays.asList(backend1.newProxy(), backend2.newProxy()), 1, 60000);
+
+        for (int i = 0; i < 4; i++) {
+            InputStream failingStream = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("broken input");
+                }
+            };
+
+            try {
+                signer.sign(failingStream);
+                Assert.fail("IOException expected");
+            } catch (IOException ex) {
+                Assert.assertEquals("broken input", ex.getMessage());
+            }
+        }
+
+        // none of the backends is ejected
+        int count1 = backend1.signCount.get();
+        int count2 = backend2.signCount.get();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(signer.sign(new ByteArrayInputStream(DATA)));
+        }
+        Assert.assertTrue("backend1 ejected", backend1.signCount.get() > count1);
+        Assert.assertTrue("backend2 ejected", backend2.signCount.get() > count2);
+
+        // errors of the backend are still counted
+        backend1.mode = Mode.ERROR;
+        for (int i = 0; i < 4; i++) {
+            try {
+                signer.sign(new ByteArrayInputStream(DATA));
+            } catch (IOException ex) {
+                Assert.assertEquals("error in backend1", ex.getMessage());
+            }
+        }
+        count1 = backend1.signCount.get();
+        for (int i = 0; i < 4; i++) {
+            signer.sign(new ByteArrayInputStream(DATA));
+        }
+        Assert.assertEquals("operations in ejected backend1", count1, backend1.signCount.get());
+    }
+
+    @Test
+    public void testPublicKeysComparedByEncoding() throws Exception {
+        byte[] encoded = new byte[]{0x30, 0x03, 0x02, 0x01, 0x01};
+        StubBackend backend1 = new StubBackend("backend1", new StubPublicKey(encoded));
+        StubBackend backend2 = new StubBackend("backend2", new StubPublicKey(encoded.clone()));
+        new LoadBalancedConcurrentContentSigner(
+                Arrays.asList(backend1.newProxy(), backend2.newProxy()), 1, 0);
+
+        StubBackend backend3 = new StubBackend("backend3",
+                new StubPublicKey(new byte[]{0x30, 0x03, 0x02, 0x01, 0x02}));
+        try {
+            new LoadBalancedConcurrentContentSigner(
+                    Arrays.asList(backend1.newProxy(), backend3.newProxy()), 1, 0);
+            Assert.fail("signers with different public keys accepted");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    private static final class StubPublicKey implements PublicKey {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] encoded;
+
+        StubPublicKey(final byte[] encoded) {
+            this.encoded = encoded;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "RSA";
+        }
+
+        @Override
+        public String getFormat() {
+            return "X.509";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return encoded.clone();
+        }
+
+    } // class StubPublicKey
+
+}
@@ -35,7 +35,9 @@
 package org.xipki.pki.ocsp.api;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.Nonnull;
@@ -87,6 +89,27 @@ public abstract class OcspStore {
             @Nullable HashAlgoType certHashAlg, @Nullable CertprofileOption certprofileOption)
     throws OcspStoreException;
 
+    /**
+     * Returns the status of several certificates of the same issuer, in the order of the given
+     * serial numbers. The default implementation calls
+     * {@link #getCertStatus(Date, HashAlgoType, byte[], byte[], BigInteger, boolean,
+     * HashAlgoType, CertprofileOption)} for each serial number. Stores that can retrieve
+     * several entries at once should overwrite this method.
+     */
+    public List<CertStatusInfo> getCertStatuses(@Nonnull Date time,
+            @Nonnull HashAlgoType hashAlgo, @Nonnull byte[] issuerNameHash,
+            @Nonnull byte[] issuerKeyHash, @Nonnull List<BigInteger> serialNumbers,
+            boolean includeCertHash, @Nullable HashAlgoType certHashAlg,
+            @Nullable CertprofileOption certprofileOption) throws OcspStoreException {
+        ParamUtil.requireNonNull("serialNumbers", serialNumbers);
+        List<CertStatusInfo> ret = new ArrayList<>(serialNumbers.size());
+        for (BigInteger serialNumber : serialNumbers) {
+            ret.add(getCertStatus(time, hashAlgo, issuerNameHash, issuerKeyHash, serialNumber,
+                    includeCertHash, certHashAlg, certprofileOption));
+        }
+        return ret;
+    }
+
     public abstract void init(@Nullable String conf, @Nullable DataSourceWrapper datasource,
             @Nonnull Set<HashAlgoType> certHashAlgos) throws OcspStoreException;
 
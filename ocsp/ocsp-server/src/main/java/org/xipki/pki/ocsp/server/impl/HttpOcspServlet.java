@@ -34,10 +34,10 @@
 
 package org.xipki.pki.ocsp.server.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Date;
 
 import javax.servlet.ServletException;
@@ -45,11 +45,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.bouncycastle.asn1.ASN1OutputStream;
-import org.bouncycastle.asn1.ASN1StreamParser;
 import org.bouncycastle.asn1.ocsp.OCSPRequest;
 import org.bouncycastle.cert.ocsp.OCSPReq;
-import org.bouncycastle.cert.ocsp.OCSPResp;
 import org.bouncycastle.util.encoders.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -155,7 +152,7 @@ public class HttpOcspServlet extends HttpServlet {
                 return;
             }
 
-            InputStream requestStream;
+            byte[] encodedRequest;
             if (getMethod) {
                 String relativeUri = respAndUri.getRelativeUri();
 
@@ -170,7 +167,43 @@ public class HttpOcspServlet extends HttpServlet {
                     return;
                 }
 
-                requestStream = new ByteArrayInputStream(Base64.decode(relativeUri));
+                encodedRequest = Base64.decode(relativeUri);
+                ResponseCache responseCache = responder.getResponseCache();
+                PregeneratedResponseStore pregeneratedStore =
+                        responder.getPregeneratedResponseStore();
+                if (responseCache != null || pregeneratedStore != null) {
+                    // only responses to requests that passed all checks are cached
+                    ResponseCache.CertIdKey certIdKey =
+                            ResponseCache.getCertIdKey(encodedRequest);
+                    ResponseCache.CachedResponse cachedResp = null;
+                    if (certIdKey != null) {
+                        if (pregeneratedStore != null) {
+                            cachedResp = pregeneratedStore.get(certIdKey);
+                        }
+                        if (cachedResp == null && responseCache != null) {
+                            cachedResp = responseCache.get(certIdKey);
+                        }
+                    }
+
+                    if (cachedResp != null) {
+                        if (event != null && cachedResp.getSerialNumber() != null) {
+                            // no per-CertID event is logged for cached responses
+                            event.addEventData(OcspAuditConstants.NAME_serial,
+                                    cachedResp.getSerialNumber());
+                            event.addEventData(OcspAuditConstants.NAME_status,
+                                    cachedResp.getCertStatus());
+                        }
+
+                        byte[] encodedOcspResp = cachedResp.getEncodedResponse();
+                        response.setContentType(HttpOcspServlet.CT_RESPONSE);
+                        response.setStatus(HttpServletResponse.SC_OK);
+                        setCacheHeaders(response, responder, cachedResp.getThisUpdate(),
+                                cachedResp.getNextUpdate(), cachedResp.getEtag());
+                        response.setContentLength(encodedOcspResp.length);
+                        response.getOutputStream().write(encodedOcspResp);
+                        return;
+                    }
+                }
             } else {
                 // accept only "application/ocsp-request" as content type
                 if (!CT_REQUEST.equalsIgnoreCase(request.getContentType())) {
@@ -183,7 +216,11 @@ public class HttpOcspServlet extends HttpServlet {
                 }
 
                 // request too long
-                if (request.getContentLength() > responder.getRequestOption().getMaxRequestSize()) {
+                int maxRequestSize = responder.getRequestOption().getMaxRequestSize();
+                encodedRequest = (request.getContentLength() > maxRequestSize) ? null
+                        : readRequest(request.getInputStream(), request.getContentLength(),
+                                maxRequestSize);
+                if (encodedRequest == null) {
                     response.setContentLength(0);
                     response.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
 
@@ -191,14 +228,12 @@ public class HttpOcspServlet extends HttpServlet {
                     auditMessage = "request too large";
                     return;
                 } // if (CT_REQUEST)
-
-                requestStream = request.getInputStream();
             } // end if (getMethod)
 
             OCSPRequest ocspRequest;
             try {
-                ASN1StreamParser parser = new ASN1StreamParser(requestStream);
-                ocspRequest = OCSPRequest.getInstance(parser.readObject());
+                // decode directly from the byte array, the length is known
+                ocspRequest = OCSPRequest.getInstance(encodedRequest);
             } catch (Exception ex) {
                 response.setContentLength(0);
                 response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
@@ -225,60 +260,22 @@ public class HttpOcspServlet extends HttpServlet {
                 auditLevel = AuditLevel.ERROR;
                 auditStatus = AuditStatus.FAILED;
             } else {
-                OCSPResp resp = ocspRespWithCacheInfo.getResponse();
-                byte[] encodedOcspResp = null;
+                byte[] encodedOcspResp = ocspRespWithCacheInfo.getEncodedResponse();
                 response.setStatus(HttpServletResponse.SC_OK);
 
                 ResponseCacheInfo cacheInfo = ocspRespWithCacheInfo.getCacheInfo();
                 if (getMethod && cacheInfo != null) {
-                    encodedOcspResp = resp.getEncoded();
-                    long now = System.currentTimeMillis();
-                    // RFC 5019 6.2: Date: The date and time at which the OCSP server generated
-                    // the HTTP response.
-                    response.setDateHeader("Date", now);
-                    // RFC 5019 6.2: Last-Modified: date and time at which the OCSP responder
-                    // last modified the response.
-                    response.setDateHeader("Last-Modified", cacheInfo.getThisUpdate());
-                    // RFC 5019 6.2: Expires: This date and time will be the same as the
-                    // nextUpdate time-stamp in the OCSP
-                    // response itself.
-                    // This is overridden by max-age on HTTP/1.1 compatible components
-                    if (cacheInfo.getNextUpdate() != null) {
-                        response.setDateHeader("Expires", cacheInfo.getNextUpdate());
-                    }
                     // RFC 5019 6.2: This profile RECOMMENDS that the ETag value be the ASCII
                     // HEX representation of the SHA1 hash of the OCSPResponse structure.
-                    response.setHeader("ETag",
-                            new StringBuilder(42).append('\\')
-                                .append(HashAlgoType.SHA1.hexHash(encodedOcspResp))
-                                .append('\\')
-                            .toString());
-
-                    // Max age must be in seconds in the cache-control header
-                    long maxAge;
-                    if (responder.getResponseOption().getCacheMaxAge() != null) {
-                        maxAge = responder.getResponseOption().getCacheMaxAge().longValue();
-                    } else {
-                        maxAge = OcspServer.DFLT_CACHE_MAX_AGE;
-                    }
-
-                    if (cacheInfo.getNextUpdate() != null) {
-                        maxAge = Math.min(maxAge,
-                                (cacheInfo.getNextUpdate() - cacheInfo.getThisUpdate()) / 1000);
-                    }
-
-                    response.setHeader("Cache-Control",
-                            new StringBuilder(55).append("max-age=").append(maxAge)
-                                .append(",public,no-transform,must-revalidate").toString());
+                    String etag = new StringBuilder(42).append('\\')
+                            .append(HashAlgoType.SHA1.hexHash(encodedOcspResp))
+                            .append('\\').toString();
+                    setCacheHeaders(response, responder, cacheInfo.getThisUpdate(),
+                            cacheInfo.getNextUpdate(), etag);
                 } // end if (getMethod && cacheInfo != null)
 
-                if (encodedOcspResp != null) {
-                    response.getOutputStream().write(encodedOcspResp);
-                } else {
-                    ASN1OutputStream asn1Out = new ASN1OutputStream(response.getOutputStream());
-                    asn1Out.writeObject(resp.toASN1Structure());
-                    asn1Out.flush();
-                }
+                response.setContentLength(encodedOcspResp.length);
+                response.getOutputStream().write(encodedOcspResp);
             } // end if (ocspRespWithCacheInfo)
         } catch (EOFException ex) {
             LogUtil.warn(LOG, ex, "Connection reset by peer");
@@ -324,6 +321,83 @@ public class HttpOcspServlet extends HttpServlet {
         } // end external try
     } // method processRequest
 
+    /**
+     * Reads the request body.
+     *
+     * @return the request body, or {@code null} if it is longer than {@code maxSize}.
+     */
+    private static byte[] readRequest(final InputStream in, final int contentLength,
+            final int maxSize) throws IOException {
+        if (contentLength > 0) {
+            byte[] buf = new byte[contentLength];
+            int off = 0;
+            while (off < contentLength) {
+                int read = in.read(buf, off, contentLength - off);
+                if (read == -1) {
+                    throw new EOFException("unexpected end of the request body");
+                }
+                off += read;
+            }
+            return buf;
+        }
+
+        // length is not known in advance, e.g. chunked transfer encoding
+        byte[] buf = new byte[Math.min(maxSize + 1, 1024)];
+        int len = 0;
+        while (true) {
+            if (len == buf.length) {
+                if (len > maxSize) {
+                    return null;
+                }
+                buf = Arrays.copyOf(buf, Math.min(maxSize + 1, 2 * len));
+            }
+
+            int read = in.read(buf, len, buf.length - len);
+            if (read == -1) {
+                break;
+            }
+            len += read;
+        }
+
+        return (len > maxSize) ? null : Arrays.copyOf(buf, len);
+    } // method readRequest
+
+    private static void setCacheHeaders(final HttpServletResponse response,
+            final Responder responder, final long thisUpdate, final Long nextUpdate,
+            final String etag) {
+        long now = System.currentTimeMillis();
+        // RFC 5019 6.2: Date: The date and time at which the OCSP server generated
+        // the HTTP response.
+        response.setDateHeader("Date", now);
+        // RFC 5019 6.2: Last-Modified: date and time at which the OCSP responder
+        // last modified the response.
+        response.setDateHeader("Last-Modified", thisUpdate);
+        // RFC 5019 6.2: Expires: This date and time will be the same as the
+        // nextUpdate time-stamp in the OCSP
+        // response itself.
+        // This is overridden by max-age on HTTP/1.1 compatible components
+        if (nextUpdate != null) {
+            response.setDateHeader("Expires", nextUpdate);
+        }
+        response.setHeader("ETag", etag);
+
+        // Max age must be in seconds in the cache-control header
+        long maxAge;
+        if (responder.getResponseOption().getCacheMaxAge() != null) {
+            maxAge = responder.getResponseOption().getCacheMaxAge().longValue();
+        } else {
+            maxAge = OcspServer.DFLT_CACHE_MAX_AGE;
+        }
+
+        if (nextUpdate != null) {
+            maxAge = Math.min(maxAge, (nextUpdate - thisUpdate) / 1000);
+        }
+
+        response.setHeader("Cache-Control",
+                new StringBuilder(55).append("max-age=").append(maxAge)
+                    .append(",public,no-transform,must-revalidate").toString());
+    } // method setCacheHeaders
+
     public void setAuditServiceRegister(final AuditServiceRegister auditServiceRegister) {
         this.auditServiceRegister = ParamUtil.requireNonNull("auditServiceRegister",
                 auditServiceRegister);
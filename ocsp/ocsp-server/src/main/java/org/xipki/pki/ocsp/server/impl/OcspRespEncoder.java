@@ -0,0 +1,400 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.ConcurrentContentSigner;
+import org.xipki.commons.security.exception.NoIdleSignerException;
+
+/**
+ * Encodes the OCSPResponse directly in DER, without building the intermediate ASN.1
+ * objects. The constant blocks (responderID, signatureAlgorithm and certs) are encoded
+ * once by {@link ResponderSigner} and copied into each response.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+final class OcspRespEncoder {
+
+    /**
+     * CertStatus good: [0] IMPLICIT NULL.
+     */
+    static final byte[] CERT_STATUS_GOOD = new byte[]{(byte) 0x80, 0x00};
+
+    /**
+     * CertStatus unknown: [2] IMPLICIT UnknownInfo (NULL).
+     */
+    static final byte[] CERT_STATUS_UNKNOWN = new byte[]{(byte) 0x82, 0x00};
+
+    private static final int TAG_SEQUENCE = 0x30;
+
+    private static final int TAG_OCTET_STRING = 0x04;
+
+    private static final int TAG_BIT_STRING = 0x03;
+
+    private static final int TAG_GENERALIZED_TIME = 0x18;
+
+    private static final int TAG_CONTEXT0 = 0xA0;
+
+    private static final int TAG_CONTEXT1 = 0xA1;
+
+    // encoded GeneralizedTime YYYYMMDDHHMMSSZ
+    private static final int GENERALIZED_TIME_LEN = 17;
+
+    // id-pkix-ocsp-basic
+    private static final byte[] OID_PKIX_OCSP_BASIC = new byte[]{
+        0x06, 0x09, 0x2B, 0x06, 0x01, 0x05, 0x05, 0x07, 0x30, 0x01, 0x01};
+
+    private final byte[] encodedResponderId;
+
+    private final List<byte[]> singleResponses = new ArrayList<>(1);
+
+    private int singleResponsesLen;
+
+    private byte[] responseExtensions;
+
+    OcspRespEncoder(final byte[] encodedResponderId) {
+        this.encodedResponderId = ParamUtil.requireNonNull("encodedResponderId",
+                encodedResponderId);
+    }
+
+    /**
+     * Adds a SingleResponse.
+     *
+     * @param encodedCertId
+     *          encoded CertID. Must not be {@code null}.
+     * @param encodedCertStatus
+     *          encoded CertStatus. Must not be {@code null}.
+     * @param thisUpdate
+     *          thisUpdate. Must not be {@code null}.
+     * @param nextUpdate
+     *          nextUpdate. Could be {@code null}.
+     * @param encodedExtensions
+     *          encoded Extensions, as returned by {@link #encodeExtensions(List)}. Could be
+     *          {@code null}.
+     */
+    void addSingleResponse(final byte[] encodedCertId, final byte[] encodedCertStatus,
+            final Date thisUpdate, final Date nextUpdate, final byte[] encodedExtensions) {
+        ParamUtil.requireNonNull("encodedCertId", encodedCertId);
+        ParamUtil.requireNonNull("encodedCertStatus", encodedCertStatus);
+        ParamUtil.requireNonNull("thisUpdate", thisUpdate);
+
+        int bodyLen = encodedCertId.length + encodedCertStatus.length + GENERALIZED_TIME_LEN;
+        if (nextUpdate != null) {
+            bodyLen += 2 + GENERALIZED_TIME_LEN;
+        }
+        if (encodedExtensions != null) {
+            bodyLen += getTlvLen(encodedExtensions.length);
+        }
+
+        byte[] buf = new byte[getTlvLen(bodyLen)];
+        int off = writeHeader(TAG_SEQUENCE, bodyLen, buf, 0);
+        off = copy(encodedCertId, buf, off);
+        off = copy(encodedCertStatus, buf, off);
+        off = writeGeneralizedTime(thisUpdate.getTime(), buf, off);
+        if (nextUpdate != null) {
+            off = writeHeader(TAG_CONTEXT0, GENERALIZED_TIME_LEN, buf, off);
+            off = writeGeneralizedTime(nextUpdate.getTime(), buf, off);
+        }
+        if (encodedExtensions != null) {
+            off = writeHeader(TAG_CONTEXT1, encodedExtensions.length, buf, off);
+            off = copy(encodedExtensions, buf, off);
+        }
+
+        singleResponses.add(buf);
+        singleResponsesLen += buf.length;
+    } // method addSingleResponse
+
+    /**
+     * Sets the responseExtensions.
+     *
+     * @param encodedExtensions
+     *          encoded Extensions, as returned by {@link #encodeExtensions(List)}. Could be
+     *          {@code null}.
+     */
+    void setResponseExtensions(final byte[] encodedExtensions) {
+        this.responseExtensions = encodedExtensions;
+    }
+
+    /**
+     * Signs the ResponseData and returns the encoded OCSPResponse.
+     *
+     * @param signer
+     *          signer to sign the ResponseData. Must not be {@code null}.
+     * @param encodedSigAlgId
+     *          encoded signature algorithm of the signer. Must not be {@code null}.
+     * @param encodedCerts
+     *          encoded [0] EXPLICIT certs, as returned by
+     *          {@link #encodeCerts(X509CertificateHolder[])}. Could be {@code null}.
+     * @param producedAt
+     *          producedAt. Must not be {@code null}.
+     * @return the encoded OCSPResponse
+     */
+    byte[] build(final ConcurrentContentSigner signer, final byte[] encodedSigAlgId,
+            final byte[] encodedCerts, final Date producedAt)
+    throws NoIdleSignerException, IOException {
+        ParamUtil.requireNonNull("signer", signer);
+        ParamUtil.requireNonNull("encodedSigAlgId", encodedSigAlgId);
+        ParamUtil.requireNonNull("producedAt", producedAt);
+
+        // ResponseData ::= SEQUENCE { responderID, producedAt, responses, [1] extensions }
+        int tbsBodyLen = encodedResponderId.length + GENERALIZED_TIME_LEN
+                + getTlvLen(singleResponsesLen);
+        if (responseExtensions != null) {
+            tbsBodyLen += getTlvLen(responseExtensions.length);
+        }
+
+        byte[] tbs = new byte[getTlvLen(tbsBodyLen)];
+        int off = writeHeader(TAG_SEQUENCE, tbsBodyLen, tbs, 0);
+        off = copy(encodedResponderId, tbs, off);
+        off = writeGeneralizedTime(producedAt.getTime(), tbs, off);
+        off = writeHeader(TAG_SEQUENCE, singleResponsesLen, tbs, off);
+        for (byte[] singleResponse : singleResponses) {
+            off = copy(singleResponse, tbs, off);
+        }
+        if (responseExtensions != null) {
+            off = writeHeader(TAG_CONTEXT1, responseExtensions.length, tbs, off);
+            off = copy(responseExtensions, tbs, off);
+        }
+
+        byte[] signature = signer.sign(tbs);
+
+        // BasicOCSPResponse ::= SEQUENCE { tbsResponseData, signatureAlgorithm, signature,
+        //                                  [0] EXPLICIT certs }
+        int sigBitStringBodyLen = 1 + signature.length;
+        int basicBodyLen = tbs.length + encodedSigAlgId.length + getTlvLen(sigBitStringBodyLen);
+        if (encodedCerts != null) {
+            basicBodyLen += encodedCerts.length;
+        }
+        int basicLen = getTlvLen(basicBodyLen);
+
+        // ResponseBytes ::= SEQUENCE { responseType, response OCTET STRING }
+        int respBytesBodyLen = OID_PKIX_OCSP_BASIC.length + getTlvLen(basicLen);
+        int respBytesLen = getTlvLen(respBytesBodyLen);
+
+        // OCSPResponse ::= SEQUENCE { responseStatus, [0] EXPLICIT responseBytes }
+        int ocspRespBodyLen = 3 + getTlvLen(respBytesLen);
+        byte[] out = new byte[getTlvLen(ocspRespBodyLen)];
+
+        off = writeHeader(TAG_SEQUENCE, ocspRespBodyLen, out, 0);
+        // ENUMERATED successful (0)
+        out[off++] = 0x0A;
+        out[off++] = 0x01;
+        out[off++] = (byte) OcspResponseStatus.successful.getStatus();
+        off = writeHeader(TAG_CONTEXT0, respBytesLen, out, off);
+        off = writeHeader(TAG_SEQUENCE, respBytesBodyLen, out, off);
+        off = copy(OID_PKIX_OCSP_BASIC, out, off);
+        off = writeHeader(TAG_OCTET_STRING, basicLen, out, off);
+        off = writeHeader(TAG_SEQUENCE, basicBodyLen, out, off);
+        off = copy(tbs, out, off);
+        off = copy(encodedSigAlgId, out, off);
+        off = writeHeader(TAG_BIT_STRING, sigBitStringBodyLen, out, off);
+        // no unused bits
+        out[off++] = 0;
+        off = copy(signature, out, off);
+        if (encodedCerts != null) {
+            off = copy(encodedCerts, out, off);
+        }
+
+        return out;
+    } // method build
+
+    /**
+     * Returns the encoded OCSPResponse without responseBytes.
+     */
+    static byte[] encodeUnsuccessfulResponse(final OcspResponseStatus status) {
+        ParamUtil.requireNonNull("status", status);
+        return new byte[]{TAG_SEQUENCE, 0x03, 0x0A, 0x01, (byte) status.getStatus()};
+    }
+
+    /**
+     * Returns the encoded CertStatus revoked: [1] IMPLICIT RevokedInfo.
+     *
+     * @param revocationTime
+     *          revocation time. Must not be {@code null}.
+     * @param reason
+     *          CRL reason. Could be {@code null}.
+     */
+    static byte[] encodeRevokedStatus(final Date revocationTime, final Integer reason) {
+        ParamUtil.requireNonNull("revocationTime", revocationTime);
+        // [0] EXPLICIT CRLReason (ENUMERATED)
+        int bodyLen = GENERALIZED_TIME_LEN + ((reason == null) ? 0 : 5);
+        byte[] buf = new byte[2 + bodyLen];
+        int off = writeHeader(TAG_CONTEXT1, bodyLen, buf, 0);
+        off = writeGeneralizedTime(revocationTime.getTime(), buf, off);
+        if (reason != null) {
+            buf[off++] = (byte) TAG_CONTEXT0;
+            buf[off++] = 0x03;
+            buf[off++] = 0x0A;
+            buf[off++] = 0x01;
+            buf[off++] = reason.byteValue();
+        }
+        return buf;
+    }
+
+    /**
+     * Returns the encoded Extensions (SEQUENCE OF Extension).
+     */
+    static byte[] encodeExtensions(final List<Extension> extensions) throws IOException {
+        ParamUtil.requireNonEmpty("extensions", extensions);
+
+        final int n = extensions.size();
+        byte[][] encodedExtns = new byte[n][];
+        int bodyLen = 0;
+        for (int i = 0; i < n; i++) {
+            encodedExtns[i] = extensions.get(i).getEncoded(ASN1Encoding.DER);
+            bodyLen += encodedExtns[i].length;
+        }
+
+        byte[] buf = new byte[getTlvLen(bodyLen)];
+        int off = writeHeader(TAG_SEQUENCE, bodyLen, buf, 0);
+        for (byte[] encodedExtn : encodedExtns) {
+            off = copy(encodedExtn, buf, off);
+        }
+        return buf;
+    }
+
+    /**
+     * Returns the encoded [0] EXPLICIT SEQUENCE OF Certificate.
+     */
+    static byte[] encodeCerts(final X509CertificateHolder[] certs) throws IOException {
+        ParamUtil.requireNonNull("certs", certs);
+
+        byte[][] encodedCerts = new byte[certs.length][];
+        int seqBodyLen = 0;
+        for (int i = 0; i < certs.length; i++) {
+            encodedCerts[i] = certs[i].getEncoded();
+            seqBodyLen += encodedCerts[i].length;
+        }
+
+        int seqLen = getTlvLen(seqBodyLen);
+        byte[] buf = new byte[getTlvLen(seqLen)];
+        int off = writeHeader(TAG_CONTEXT0, seqLen, buf, 0);
+        off = writeHeader(TAG_SEQUENCE, seqBodyLen, buf, off);
+        for (byte[] encodedCert : encodedCerts) {
+            off = copy(encodedCert, buf, off);
+        }
+        return buf;
+    }
+
+    private static int copy(final byte[] src, final byte[] dest, final int off) {
+        System.arraycopy(src, 0, dest, off, src.length);
+        return off + src.length;
+    }
+
+    private static int getTlvLen(final int bodyLen) {
+        return 1 + getLenOfLength(bodyLen) + bodyLen;
+    }
+
+    private static int getLenOfLength(final int len) {
+        if (len < 0x80) {
+            return 1;
+        } else if (len < 0x100) {
+            return 2;
+        } else if (len < 0x10000) {
+            return 3;
+        } else if (len < 0x1000000) {
+            return 4;
+        } else {
+            return 5;
+        }
+    }
+
+    private static int writeHeader(final int tag, final int len, final byte[] out,
+            final int off) {
+        int idx = off;
+        out[idx++] = (byte) tag;
+        int lenOfLen = getLenOfLength(len);
+        if (lenOfLen == 1) {
+            out[idx++] = (byte) len;
+        } else {
+            out[idx++] = (byte) (0x80 | (lenOfLen - 1));
+            for (int i = lenOfLen - 2; i >= 0; i--) {
+                out[idx++] = (byte) (len >>> (8 * i));
+            }
+        }
+        return idx;
+    }
+
+    /**
+     * Writes the GeneralizedTime in the form YYYYMMDDHHMMSSZ, as required by RFC 5280 4.1.2.5.2.
+     */
+    private static int writeGeneralizedTime(final long timeInMs, final byte[] out,
+            final int off) {
+        long secs = Math.floorDiv(timeInMs, 1000L);
+        long days = Math.floorDiv(secs, 86400L);
+        int secOfDay = (int) (secs - days * 86400L);
+
+        // convert days since 1970-01-01 to year, month and day
+        long zday = days + 719468;
+        long era = Math.floorDiv(zday, 146097L);
+        long doe = zday - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) ((mp < 10) ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + ((month <= 2) ? 1 : 0));
+
+        int idx = off;
+        out[idx++] = TAG_GENERALIZED_TIME;
+        out[idx++] = 15;
+        idx = write2Digits(year / 100, out, idx);
+        idx = write2Digits(year % 100, out, idx);
+        idx = write2Digits(month, out, idx);
+        idx = write2Digits(day, out, idx);
+        idx = write2Digits(secOfDay / 3600, out, idx);
+        idx = write2Digits((secOfDay / 60) % 60, out, idx);
+        idx = write2Digits(secOfDay % 60, out, idx);
+        out[idx++] = 'Z';
+        return idx;
+    }
+
+    private static int write2Digits(final int value, final byte[] out, final int off) {
+        out[off] = (byte) ('0' + value / 10);
+        out[off + 1] = (byte) ('0' + value % 10);
+        return off + 2;
+    }
+
+}
@@ -34,7 +34,7 @@
 
 package org.xipki.pki.ocsp.server.impl;
 
-import org.bouncycastle.cert.ocsp.OCSPResp;
+import java.math.BigInteger;
 
 /**
  * @author Lijun Liao
@@ -49,6 +49,10 @@ class OcspRespWithCacheInfo {
 
         private Long nextUpdate;
 
+        private BigInteger serialNumber;
+
+        private String certStatus;
+
         ResponseCacheInfo(final long thisUpdate) {
             this.thisUpdate = thisUpdate;
         }
@@ -65,19 +69,43 @@ class OcspRespWithCacheInfo {
             return nextUpdate;
         }
 
+        public void setCertStatus(final BigInteger serialNumber, final String certStatus) {
+            this.serialNumber = serialNumber;
+            this.certStatus = certStatus;
+        }
+
+        /**
+         * Returns the serial number of the only CertID, {@code null} if the response
+         * contains more than one SingleResponse.
+         */
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        /**
+         * Returns the audit text of the status of the only CertID, {@code null} if the
+         * response contains more than one SingleResponse.
+         */
+        public String getCertStatus() {
+            return certStatus;
+        }
+
     } // class ResponseCacheInfo
 
-    private final OCSPResp response;
+    private final byte[] encodedResponse;
 
     private final ResponseCacheInfo cacheInfo;
 
-    OcspRespWithCacheInfo(final OCSPResp response, final ResponseCacheInfo cacheInfo) {
-        this.response = response;
+    OcspRespWithCacheInfo(final byte[] encodedResponse, final ResponseCacheInfo cacheInfo) {
+        this.encodedResponse = encodedResponse;
         this.cacheInfo = cacheInfo;
     }
 
-    public OCSPResp getResponse() {
-        return response;
+    /**
+     * Returns the DER encoded OCSPResponse.
+     */
+    public byte[] getEncodedResponse() {
+        return encodedResponse;
     }
 
     public ResponseCacheInfo getCacheInfo() {
@@ -40,6 +40,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
 import java.net.URLDecoder;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -53,10 +54,12 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.http.HttpServletRequest;
@@ -66,6 +69,7 @@ import javax.xml.bind.Unmarshaller;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
+import org.bouncycastle.asn1.ASN1Encoding;
 import org.bouncycastle.asn1.ASN1GeneralizedTime;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.ASN1Sequence;
@@ -73,24 +77,13 @@ import org.bouncycastle.asn1.DERNull;
 import org.bouncycastle.asn1.isismtt.ISISMTTObjectIdentifiers;
 import org.bouncycastle.asn1.isismtt.ocsp.CertHash;
 import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
-import org.bouncycastle.asn1.ocsp.OCSPResponse;
-import org.bouncycastle.asn1.ocsp.RevokedInfo;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.asn1.x509.Extension;
-import org.bouncycastle.asn1.x509.Extensions;
 import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.ocsp.BasicOCSPResp;
-import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
 import org.bouncycastle.cert.ocsp.CertificateID;
-import org.bouncycastle.cert.ocsp.CertificateStatus;
 import org.bouncycastle.cert.ocsp.OCSPException;
 import org.bouncycastle.cert.ocsp.OCSPReq;
-import org.bouncycastle.cert.ocsp.OCSPResp;
-import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
 import org.bouncycastle.cert.ocsp.Req;
-import org.bouncycastle.cert.ocsp.RespID;
-import org.bouncycastle.cert.ocsp.RevokedStatus;
-import org.bouncycastle.cert.ocsp.UnknownStatus;
 import org.bouncycastle.jce.provider.X509CertificateObject;
 import org.bouncycastle.operator.ContentVerifierProvider;
 import org.bouncycastle.util.encoders.Hex;
@@ -123,6 +116,7 @@ import org.xipki.commons.security.HashAlgoType;
 import org.xipki.commons.security.ObjectIdentifiers;
 import org.xipki.commons.security.SecurityFactory;
 import org.xipki.commons.security.SignerConf;
+import org.xipki.commons.security.SignerPoolStatistics;
 import org.xipki.commons.security.exception.NoIdleSignerException;
 import org.xipki.commons.security.util.X509Util;
 import org.xipki.pki.ocsp.api.CertStatus;
@@ -193,6 +187,8 @@ public class OcspServer {
         boolean includeExtendedRevokeExtension;
         long cacheThisUpdate;
         long cacheNextUpdate;
+        BigInteger cacheSerialNumber;
+        String cacheCertStatus;
 
         public OcspRespControl() {
             includeExtendedRevokeExtension = false;
@@ -201,6 +197,23 @@ public class OcspServer {
         }
     }
 
+    private static class CertStatusLookup {
+
+        private final CertStatusInfo certStatusInfo;
+
+        private final OcspStore answeredStore;
+
+        private final boolean exceptionOccurs;
+
+        CertStatusLookup(CertStatusInfo certStatusInfo, OcspStore answeredStore,
+                boolean exceptionOccurs) {
+            this.certStatusInfo = certStatusInfo;
+            this.answeredStore = answeredStore;
+            this.exceptionOccurs = exceptionOccurs;
+        }
+
+    } // class CertStatusLookup
+
     public static final long DFLT_CACHE_MAX_AGE = 60; // 1 minute
 
     private static final Logger LOG = LoggerFactory.getLogger(OcspServer.class);
@@ -235,6 +248,8 @@ public class OcspServer {
 
     private AtomicBoolean initialized = new AtomicBoolean(false);
 
+    private ScheduledThreadPoolExecutor pregenerateExecutor;
+
     public OcspServer() {
         this.datasourceFactory = new DataSourceFactory();
     }
@@ -639,10 +654,42 @@ public class OcspServer {
                     certprofileOption, signers.get(option.getSignerName()), statusStores);
             responders.put(name, responder);
         } // end for
+
+        // pre-generation of responses
+        for (String name : responders.keySet()) {
+            Responder responder = responders.get(name);
+            if (!responder.getResponseOption().isPregenerateResponses()) {
+                continue;
+            }
+
+            PregeneratedResponseStore responseStore = responder.getPregeneratedResponseStore();
+            if (responseStore == null) {
+                LOG.warn("responder {}: cacheMaxAge is 0, ignore pregenerate", name);
+                continue;
+            }
+
+            if (pregenerateExecutor == null) {
+                pregenerateExecutor = new ScheduledThreadPoolExecutor(1);
+            }
+
+            // responses are refreshed after half of their lifetime
+            long period = Math.max(1, Math.min(60, responseStore.getMaxAgeMs() / 4000));
+            // pre-generated responses are not put in the response cache
+            pregenerateExecutor.scheduleWithFixedDelay(
+                    new ResponsePregenerator(name, responder.getStores(), responseStore,
+                            (req) -> answer(responder, req, true, false, null),
+                            responder.getResponseOption().getPregenerateRate(), period),
+                    0, period, TimeUnit.SECONDS);
+        }
     } // method doInit
 
     public void shutdown() {
         LOG.info("stopped OCSP Responder");
+        if (pregenerateExecutor != null) {
+            pregenerateExecutor.shutdownNow();
+            pregenerateExecutor = null;
+        }
+
         for (OcspStore store : stores.values()) {
             try {
                 store.shutdown();
@@ -656,6 +703,17 @@ public class OcspServer {
 
     public OcspRespWithCacheInfo answer(final Responder responder, final OCSPReq request,
             final boolean viaGet, final AuditEvent event) {
+        return answer(responder, request, viaGet, true, event);
+    }
+
+    /**
+     * Answers the request.
+     *
+     * @param useResponseCache
+     *          Whether a cacheable response is put in the response cache of the responder.
+     */
+    OcspRespWithCacheInfo answer(final Responder responder, final OCSPReq request,
+            final boolean viaGet, final boolean useResponseCache, final AuditEvent event) {
         ParamUtil.requireNonNull("responder", responder);
         ParamUtil.requireNonNull("request", request);
 
@@ -700,8 +758,8 @@ public class OcspServer {
                 }
             }
 
-            RespID respId = signer.getResponder(repOpt.isResponderIdByName());
-            BasicOCSPRespBuilder basicOcspBuilder = new BasicOCSPRespBuilder(respId);
+            OcspRespEncoder respEncoder = new OcspRespEncoder(
+                    signer.getEncodedResponderId(repOpt.isResponderIdByName()));
             ASN1ObjectIdentifier extensionType = OCSPObjectIdentifiers.id_pkix_ocsp_nonce;
             criticalExtensionOids.remove(extensionType);
             Extension nonceExtn = request.getExtension(extensionType);
@@ -729,7 +787,15 @@ public class OcspServer {
                 return createUnsuccessfulOcspResp(OcspResponseStatus.malformedRequest);
             }
 
+            // look up the status of several certificates of the same issuer at once
+            CertStatusLookup[] prefetched = (requestsSize > 1)
+                    ? lookupCertStatuses(requestList, responder, reqOpt, repOpt) : null;
+
+            byte[][] encodedCertIds = new byte[requestsSize][];
             for (int i = 0; i < requestsSize; i++) {
+                encodedCertIds[i] = requestList[i].getCertID().toASN1Primitive().getEncoded(
+                        ASN1Encoding.DER);
+
                 AuditEvent singleEvent = null;
                 if (event != null) {
                     singleEvent = new AuditEvent(new Date());
@@ -740,8 +806,9 @@ public class OcspServer {
 
                 OcspRespWithCacheInfo ocspResp = null;
                 try {
-                    ocspResp = processCertReq(requestList[i], basicOcspBuilder, responder, reqOpt,
-                            repOpt, repControl, singleEvent);
+                    ocspResp = processCertReq(requestList[i], encodedCertIds[i],
+                            (prefetched == null) ? null : prefetched[i], respEncoder,
+                            responder, reqOpt, repOpt, repControl, singleEvent);
                 } finally {
                     if (singleEvent != null) {
                         singleEvent.finish();
@@ -761,8 +828,8 @@ public class OcspServer {
             }
 
             if (CollectionUtil.isNonEmpty(responseExtensions)) {
-                basicOcspBuilder.setResponseExtensions(
-                        new Extensions(responseExtensions.toArray(new Extension[0])));
+                respEncoder.setResponseExtensions(
+                        OcspRespEncoder.encodeExtensions(responseExtensions));
             }
 
             ConcurrentContentSigner concurrentSigner = null;
@@ -784,48 +851,51 @@ public class OcspServer {
                 concurrentSigner = signer.getFirstSigner();
             }
 
-            X509CertificateHolder[] certsInResp;
+            byte[] encodedCerts;
             EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
             if (certsMode == null || certsMode == EmbedCertsMode.SIGNER) {
-                certsInResp = new X509CertificateHolder[]{signer.getBcCertificate()};
+                encodedCerts = signer.getEncodedCertsSigner();
             } else if (certsMode == EmbedCertsMode.SIGNER_AND_CA) {
-                certsInResp = signer.getBcCertificateChain();
+                encodedCerts = signer.getEncodedCertsSignerAndCa();
             } else {
                 // NONE
-                certsInResp = null;
+                encodedCerts = null;
             }
 
-            BasicOCSPResp basicOcspResp;
+            byte[] encodedOcspResp;
             try {
-                basicOcspResp = concurrentSigner.build(basicOcspBuilder, certsInResp, new Date());
+                encodedOcspResp = respEncoder.build(concurrentSigner,
+                        signer.getEncodedSigAlgId(concurrentSigner), encodedCerts, new Date());
             } catch (NoIdleSignerException ex) {
                 return createUnsuccessfulOcspResp(OcspResponseStatus.tryLater);
-            } catch (OCSPException ex) {
-                LogUtil.error(LOG, ex, "answer() basicOcspBuilder.build");
+            } catch (IOException ex) {
+                LogUtil.error(LOG, ex, "answer() respEncoder.build");
                 fillAuditEvent(event, AuditLevel.ERROR, AuditStatus.FAILED,
-                        "BasicOCSPRespBuilder.build() with OCSPException");
+                        "OcspRespEncoder.build() with IOException");
                 return createUnsuccessfulOcspResp(OcspResponseStatus.internalError);
             }
 
-            OCSPRespBuilder ocspRespBuilder = new OCSPRespBuilder();
-            try {
-                OCSPResp ocspResp = ocspRespBuilder.build(
-                        OcspResponseStatus.successful.getStatus(), basicOcspResp);
+            if (repControl.couldCacheInfo) {
+                ResponseCacheInfo cacheInfo = new ResponseCacheInfo(repControl.cacheThisUpdate);
+                if (repControl.cacheNextUpdate != Long.MAX_VALUE) {
+                    cacheInfo.setNextUpdate(repControl.cacheNextUpdate);
+                }
+                if (requestsSize == 1) {
+                    cacheInfo.setCertStatus(repControl.cacheSerialNumber,
+                            repControl.cacheCertStatus);
+                }
 
-                if (repControl.couldCacheInfo) {
-                    ResponseCacheInfo cacheInfo = new ResponseCacheInfo(repControl.cacheThisUpdate);
-                    if (repControl.cacheNextUpdate != Long.MAX_VALUE) {
-                        cacheInfo.setNextUpdate(repControl.cacheNextUpdate);
-                    }
-                    return new OcspRespWithCacheInfo(ocspResp, cacheInfo);
-                } else {
-                    return new OcspRespWithCacheInfo(ocspResp, null);
+                ResponseCache responseCache = useResponseCache
+                        ? responder.getResponseCache() : null;
+                if (responseCache != null && requestsSize == 1 && !request.isSigned()
+                        && !request.hasExtensions()
+                        && requestList[0].getSingleRequestExtensions() == null) {
+                    responseCache.put(new ResponseCache.CertIdKey(encodedCertIds[0]),
+                            encodedOcspResp, cacheInfo);
                 }
-            } catch (OCSPException ex) {
-                LogUtil.error(LOG, ex, "answer() ocspRespBuilder.build");
-                fillAuditEvent(event, AuditLevel.ERROR, AuditStatus.FAILED,
-                        "OCSPRespBuilder.build() with OCSPException");
-                return createUnsuccessfulOcspResp(OcspResponseStatus.internalError);
+                return new OcspRespWithCacheInfo(encodedOcspResp, cacheInfo);
+            } else {
+                return new OcspRespWithCacheInfo(encodedOcspResp, null);
             }
         } catch (Throwable th) {
             LogUtil.error(LOG, th);
@@ -834,9 +904,96 @@ public class OcspServer {
         }
     } // method ask
 
-    private OcspRespWithCacheInfo processCertReq(Req req, BasicOCSPRespBuilder builder,
-            Responder responder, RequestOption reqOpt, ResponseOption repOpt,
-            OcspRespControl repControl, AuditEvent event) throws IOException {
+    /**
+     * Groups the requests by CertID.hashAlgorithm, issuerNameHash and issuerKeyHash, and
+     * retrieves the status of all certificates of a group with one call per store. Requests
+     * with unknown or not allowed hash algorithm are not prefetched, they are rejected by
+     * {@link #processCertReq}.
+     */
+    private static CertStatusLookup[] lookupCertStatuses(Req[] requestList,
+            Responder responder, RequestOption reqOpt, ResponseOption repOpt) {
+        final int size = requestList.length;
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            CertificateID certId = requestList[i].getCertID();
+            HashAlgoType hashAlgo = HashAlgoType.getHashAlgoType(certId.getHashAlgOID().getId());
+            if (hashAlgo == null || !reqOpt.allows(hashAlgo)) {
+                continue;
+            }
+
+            String key = hashAlgo.name() + ":" + Hex.toHexString(certId.getIssuerNameHash())
+                    + ":" + Hex.toHexString(certId.getIssuerKeyHash());
+            List<Integer> indexes = groups.get(key);
+            if (indexes == null) {
+                indexes = new ArrayList<>(size);
+                groups.put(key, indexes);
+            }
+            indexes.add(i);
+        }
+
+        CertStatusLookup[] lookups = new CertStatusLookup[size];
+        CertStatusInfo[] lastInfos = new CertStatusInfo[size];
+        Date now = new Date();
+
+        for (List<Integer> indexes : groups.values()) {
+            CertificateID firstCertId = requestList[indexes.get(0)].getCertID();
+            HashAlgoType hashAlgo = HashAlgoType.getHashAlgoType(
+                    firstCertId.getHashAlgOID().getId());
+            byte[] issuerNameHash = firstCertId.getIssuerNameHash();
+            byte[] issuerKeyHash = firstCertId.getIssuerKeyHash();
+
+            List<Integer> pending = indexes;
+            boolean exceptionOccurs = false;
+            for (OcspStore store : responder.getStores()) {
+                if (pending.isEmpty()) {
+                    break;
+                }
+
+                List<BigInteger> serialNumbers = new ArrayList<>(pending.size());
+                for (Integer idx : pending) {
+                    serialNumbers.add(requestList[idx].getCertID().getSerialNumber());
+                }
+
+                List<CertStatusInfo> infos;
+                try {
+                    infos = store.getCertStatuses(now, hashAlgo, issuerNameHash, issuerKeyHash,
+                            serialNumbers, repOpt.isIncludeCerthash(), repOpt.getCertHashAlgo(),
+                            responder.getCertprofileOption());
+                } catch (OcspStoreException ex) {
+                    exceptionOccurs = true;
+                    LogUtil.error(LOG, ex,
+                            "getCertStatuses() of CertStatusStore " + store.getName());
+                    continue;
+                }
+
+                List<Integer> stillPending = new ArrayList<>(pending.size());
+                for (int j = 0; j < pending.size(); j++) {
+                    int idx = pending.get(j);
+                    CertStatusInfo info = infos.get(j);
+                    if (info != null && info.getCertStatus() != CertStatus.ISSUER_UNKNOWN) {
+                        lookups[idx] = new CertStatusLookup(info, store, exceptionOccurs);
+                    } else {
+                        if (info != null) {
+                            lastInfos[idx] = info;
+                        }
+                        stillPending.add(idx);
+                    }
+                }
+                pending = stillPending;
+            } // end for
+
+            for (Integer idx : pending) {
+                lookups[idx] = new CertStatusLookup(lastInfos[idx], null, exceptionOccurs);
+            }
+        } // end for
+
+        return lookups;
+    } // method lookupCertStatuses
+
+    private OcspRespWithCacheInfo processCertReq(Req req, byte[] encodedCertId,
+            CertStatusLookup prefetched, OcspRespEncoder respEncoder, Responder responder,
+            RequestOption reqOpt, ResponseOption repOpt, OcspRespControl repControl,
+            AuditEvent event) throws IOException {
         CertificateID certId = req.getCertID();
         String certIdHashAlgo = certId.getHashAlgOID().getId();
         HashAlgoType reqHashAlgo = HashAlgoType.getHashAlgoType(certIdHashAlgo);
@@ -864,23 +1021,30 @@ public class OcspServer {
         OcspStore answeredStore = null;
         boolean exceptionOccurs = false;
 
-        Date now = new Date();
-        for (OcspStore store : responder.getStores()) {
-            try {
-                certStatusInfo = store.getCertStatus(now, reqHashAlgo, certId.getIssuerNameHash(),
-                        certId.getIssuerKeyHash(), certId.getSerialNumber(),
-                        repOpt.isIncludeCerthash(), repOpt.getCertHashAlgo(),
-                        responder.getCertprofileOption());
-                if (certStatusInfo != null
-                        && certStatusInfo.getCertStatus() != CertStatus.ISSUER_UNKNOWN) {
-                    answeredStore = store;
-                    break;
-                }
-            } catch (OcspStoreException ex) {
-                exceptionOccurs = true;
-                LogUtil.error(LOG, ex, "getCertStatus() of CertStatusStore " + store.getName());
-            } // end try
-        } // end for
+        if (prefetched != null) {
+            certStatusInfo = prefetched.certStatusInfo;
+            answeredStore = prefetched.answeredStore;
+            exceptionOccurs = prefetched.exceptionOccurs;
+        } else {
+            Date now = new Date();
+            for (OcspStore store : responder.getStores()) {
+                try {
+                    certStatusInfo = store.getCertStatus(now, reqHashAlgo,
+                            certId.getIssuerNameHash(), certId.getIssuerKeyHash(),
+                            certId.getSerialNumber(), repOpt.isIncludeCerthash(),
+                            repOpt.getCertHashAlgo(), responder.getCertprofileOption());
+                    if (certStatusInfo != null
+                            && certStatusInfo.getCertStatus() != CertStatus.ISSUER_UNKNOWN) {
+                        answeredStore = store;
+                        break;
+                    }
+                } catch (OcspStoreException ex) {
+                    exceptionOccurs = true;
+                    LogUtil.error(LOG, ex,
+                            "getCertStatus() of CertStatusStore " + store.getName());
+                } // end try
+            } // end for
+        }
 
         if (certStatusInfo == null) {
             if (exceptionOccurs) {
@@ -945,48 +1109,50 @@ public class OcspServer {
         }
         Date nextUpdate = certStatusInfo.getNextUpdate();
 
-        List<Extension> extensions = new LinkedList<>();
-        boolean unknownAsRevoked = false;
-        CertificateStatus bcCertStatus = null;
+        List<Extension> extensions = null;
+        byte[] encodedCertStatus;
+        String certStatusText;
         switch (certStatusInfo.getCertStatus()) {
         case GOOD:
-            bcCertStatus = null;
+            encodedCertStatus = OcspRespEncoder.CERT_STATUS_GOOD;
+            certStatusText = "good";
             break;
 
         case ISSUER_UNKNOWN:
             repControl.couldCacheInfo = false;
-            bcCertStatus = new UnknownStatus();
+            encodedCertStatus = OcspRespEncoder.CERT_STATUS_UNKNOWN;
+            certStatusText = "unknown";
             break;
 
         case UNKNOWN:
         case IGNORE:
             repControl.couldCacheInfo = false;
             if (responder.getResponderOption().getMode() == OcspMode.RFC2560) {
-                bcCertStatus = new UnknownStatus();
+                encodedCertStatus = OcspRespEncoder.CERT_STATUS_UNKNOWN;
+                certStatusText = "unknown";
             } else { // (ocspMode == OCSPMode.RFC6960)
-                unknownAsRevoked = true;
                 repControl.includeExtendedRevokeExtension = true;
-                bcCertStatus = new RevokedStatus(new Date(0L),
+                encodedCertStatus = OcspRespEncoder.encodeRevokedStatus(new Date(0L),
                         CrlReason.CERTIFICATE_HOLD.getCode());
+                certStatusText = "unknown_as_revoked";
             }
             break;
         case REVOKED:
             CertRevocationInfo revInfo = certStatusInfo.getRevocationInfo();
-            ASN1GeneralizedTime revTime = new ASN1GeneralizedTime(
-                    revInfo.getRevocationTime());
-            org.bouncycastle.asn1.x509.CRLReason tmpReason = null;
+            Integer tmpReason = null;
             if (repOpt.isIncludeRevReason()) {
-                tmpReason = org.bouncycastle.asn1.x509.CRLReason.lookup(
-                        revInfo.getReason().getCode());
+                tmpReason = revInfo.getReason().getCode();
             }
-            RevokedInfo tmpRevInfo = new RevokedInfo(revTime, tmpReason);
-            bcCertStatus = new RevokedStatus(tmpRevInfo);
+            encodedCertStatus = OcspRespEncoder.encodeRevokedStatus(
+                    revInfo.getRevocationTime(), tmpReason);
+            certStatusText = "revoked";
 
             Date invalidityDate = revInfo.getInvalidityTime();
             if (repOpt.isIncludeInvalidityDate() && invalidityDate != null
                     && !invalidityDate.equals(revInfo.getRevocationTime())) {
                 Extension extension = new Extension(Extension.invalidityDate,
                         false, new ASN1GeneralizedTime(invalidityDate).getEncoded());
+                extensions = new ArrayList<>(3);
                 extensions.add(extension);
             }
             break;
@@ -1017,26 +1183,21 @@ public class OcspServer {
                     ISISMTTObjectIdentifiers.id_isismtt_at_certHash,
                     false, encodedCertHash);
 
+            if (extensions == null) {
+                extensions = new ArrayList<>(2);
+            }
             extensions.add(extension);
         } // end if(certHash != null)
 
         if (certStatusInfo.getArchiveCutOff() != null) {
             Extension extension = new Extension(OCSPObjectIdentifiers.id_pkix_ocsp_archive_cutoff,
                     false, new ASN1GeneralizedTime(certStatusInfo.getArchiveCutOff()).getEncoded());
+            if (extensions == null) {
+                extensions = new ArrayList<>(1);
+            }
             extensions.add(extension);
         }
 
-        String certStatusText;
-        if (bcCertStatus instanceof UnknownStatus) {
-            certStatusText = "unknown";
-        } else if (bcCertStatus instanceof RevokedStatus) {
-            certStatusText = unknownAsRevoked ? "unknown_as_revoked" : "revoked";
-        } else if (bcCertStatus == null) {
-            certStatusText = "good";
-        } else {
-            certStatusText = "should-not-happen";
-        }
-
         if (event != null) {
             event.setLevel(AuditLevel.INFO);
             event.setStatus(AuditStatus.SUCCESSFUL);
@@ -1061,16 +1222,19 @@ public class OcspServer {
             LOG.debug(sb.toString());
         }
 
-        Extensions extns = null;
+        byte[] encodedExtensions = null;
         if (CollectionUtil.isNonEmpty(extensions)) {
-            extns = new Extensions(extensions.toArray(new Extension[0]));
+            encodedExtensions = OcspRespEncoder.encodeExtensions(extensions);
         }
 
-        builder.addResponse(certId, bcCertStatus, thisUpdate, nextUpdate, extns);
+        respEncoder.addSingleResponse(encodedCertId, encodedCertStatus, thisUpdate, nextUpdate,
+                encodedExtensions);
         repControl.cacheThisUpdate = Math.max(repControl.cacheThisUpdate, thisUpdate.getTime());
         if (nextUpdate != null) {
             repControl.cacheNextUpdate = Math.min(repControl.cacheNextUpdate, nextUpdate.getTime());
         }
+        repControl.cacheSerialNumber = certId.getSerialNumber();
+        repControl.cacheCertStatus = certStatusText;
 
         return null;
     }
@@ -1094,6 +1258,12 @@ public class OcspServer {
 
         HealthCheckResult signerHealth = new HealthCheckResult("Signer");
         signerHealth.setHealthy(signerHealthy);
+        for (ConcurrentContentSigner signer : responder.getSigner().getSigners()) {
+            SignerPoolStatistics stats = signer.getPoolStatistics();
+            if (stats != null) {
+                stats.addTo(signerHealth);
+            }
+        }
         result.addChildCheck(signerHealth);
 
         result.setHealthy(healthy);
@@ -1154,11 +1324,12 @@ public class OcspServer {
         List<String> sigAlgos = signerType.getAlgorithms().getAlgorithm();
         List<ConcurrentContentSigner> singleSigners = new ArrayList<>(sigAlgos.size());
         for (String sigAlgo : sigAlgos) {
+            SignerConf signerConf = new SignerConf("algo=" + sigAlgo + "," + responderKeyConf);
+            signerConf.setName((sigAlgos.size() == 1) ? signerType.getName()
+                    : signerType.getName() + "/" + sigAlgo);
             try {
                 ConcurrentContentSigner requestorSigner = securityFactory.createSigner(
-                        responderSignerType,
-                        new SignerConf("algo=" + sigAlgo + "," + responderKeyConf),
-                        explicitCertificateChain);
+                        responderSignerType, signerConf, explicitCertificateChain);
                 singleSigners.add(requestorSigner);
             } catch (ObjectCreationException ex) {
                 throw new InvalidConfException(ex.getMessage(), ex);
@@ -1342,9 +1513,8 @@ public class OcspServer {
 
     private static OcspRespWithCacheInfo createUnsuccessfulOcspResp(
             final OcspResponseStatus status) {
-        OCSPResp resp = new OCSPResp(new OCSPResponse(
-                new org.bouncycastle.asn1.ocsp.OCSPResponseStatus(status.getStatus()), null));
-        return new OcspRespWithCacheInfo(resp, null);
+        return new OcspRespWithCacheInfo(OcspRespEncoder.encodeUnsuccessfulResponse(status),
+                null);
     }
 
     private static void fillAuditEvent(final AuditEvent event, final AuditLevel level,
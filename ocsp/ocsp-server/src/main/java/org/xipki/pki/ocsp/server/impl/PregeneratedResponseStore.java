@@ -0,0 +1,182 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.pki.ocsp.server.impl.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CachedResponse;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CertIdKey;
+
+/**
+ * Signed responses generated in background by the {@link ResponsePregenerator}, keyed by the
+ * DER encoded CertID. In contrast to the {@link ResponseCache}, recently used entries are not
+ * preferred: the store is sized to hold the responses of all certificates, and an arbitrary
+ * entry is only evicted if a new one would exceed the maximal size.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class PregeneratedResponseStore {
+
+    private static final class Entry {
+
+        private final CachedResponse response;
+
+        private final long refreshAt;
+
+        Entry(final CachedResponse response, final long refreshAt) {
+            this.response = response;
+            this.refreshAt = refreshAt;
+        }
+
+    } // class Entry
+
+    private final Map<CertIdKey, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictedCount = new AtomicLong(0);
+
+    private final long maxAgeMs;
+
+    private final int maxSize;
+
+    PregeneratedResponseStore(final long maxAgeInSeconds, final int maxSize) {
+        ParamUtil.requireMin("maxAgeInSeconds", maxAgeInSeconds, 1);
+        this.maxAgeMs = maxAgeInSeconds * 1000;
+        this.maxSize = ParamUtil.requireMin("maxSize", maxSize, 1);
+    }
+
+    long getMaxAgeMs() {
+        return maxAgeMs;
+    }
+
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of entries evicted to not exceed the maximal size.
+     */
+    long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    CachedResponse get(final CertIdKey key) {
+        ParamUtil.requireNonNull("key", key);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() >= entry.response.getExpiresAt()) {
+            entries.remove(key, entry);
+            return null;
+        }
+
+        return entry.response;
+    }
+
+    /**
+     * Adds or replaces the response. It is due for refresh once half of its lifetime, limited
+     * by the max-age and the nextUpdate, has passed.
+     */
+    void put(final CertIdKey key, final byte[] encodedResponse,
+            final ResponseCacheInfo cacheInfo) {
+        ParamUtil.requireNonNull("key", key);
+        ParamUtil.requireNonNull("encodedResponse", encodedResponse);
+        ParamUtil.requireNonNull("cacheInfo", cacheInfo);
+        long now = System.currentTimeMillis();
+        long expiresAt = now + maxAgeMs;
+        Long nextUpdate = cacheInfo.getNextUpdate();
+        if (nextUpdate != null) {
+            expiresAt = Math.min(expiresAt, nextUpdate.longValue());
+        }
+        long refreshAt = now + (expiresAt - now) / 2;
+        Entry old = entries.put(key, new Entry(
+                new CachedResponse(encodedResponse, cacheInfo, expiresAt),
+                refreshAt));
+        if (old == null) {
+            evictIfFull(key);
+        }
+    }
+
+    private void evictIfFull(final CertIdKey newKey) {
+        Iterator<CertIdKey> it = entries.keySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            CertIdKey key = it.next();
+            if (!key.equals(newKey)) {
+                it.remove();
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+    void remove(final CertIdKey key) {
+        entries.remove(key);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the keys of the responses that are due for refresh.
+     *
+     * @param now
+     *          Current time in milliseconds.
+     * @param max
+     *          Maximal number of returned keys.
+     * @return the keys, never {@code null}.
+     */
+    List<CertIdKey> getKeysToRefresh(final long now, final int max) {
+        List<CertIdKey> ret = new ArrayList<>();
+        Iterator<Map.Entry<CertIdKey, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && ret.size() < max) {
+            Map.Entry<CertIdKey, Entry> mapEntry = it.next();
+            if (mapEntry.getValue().refreshAt <= now) {
+                ret.add(mapEntry.getKey());
+            }
+        }
+        return ret;
+    }
+
+}
@@ -61,6 +61,10 @@ class Responder {
 
     private final List<OcspStore> stores;
 
+    private final ResponseCache responseCache;
+
+    private final PregeneratedResponseStore pregeneratedResponseStore;
+
     Responder(final ResponderOption responderOption, final RequestOption requestOption,
             final ResponseOption responseOption, final AuditOption auditOption,
             final CertprofileOption certprofileOption, final ResponderSigner signer,
@@ -72,6 +76,16 @@ class Responder {
         this.stores = ParamUtil.requireNonEmpty("stores", stores);
         this.auditOption = auditOption;
         this.certprofileOption = certprofileOption;
+
+        // cached responses are not kept longer than HTTP caches may keep them
+        int cacheSize = responseOption.getResponseCacheSize();
+        Long tmpMaxAge = responseOption.getCacheMaxAge();
+        long maxAge = (tmpMaxAge == null) ? OcspServer.DFLT_CACHE_MAX_AGE : tmpMaxAge.longValue();
+        this.responseCache = (cacheSize > 0 && maxAge > 0)
+                ? new ResponseCache(cacheSize, maxAge) : null;
+        this.pregeneratedResponseStore = (responseOption.isPregenerateResponses() && maxAge > 0)
+                ? new PregeneratedResponseStore(maxAge,
+                        responseOption.getPregenerateMaxSize()) : null;
     }
 
     public ResponderOption getResponderOption() {
@@ -102,4 +116,12 @@ class Responder {
         return stores;
     }
 
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public PregeneratedResponseStore getPregeneratedResponseStore() {
+        return pregeneratedResponseStore;
+    }
+
 }
@@ -42,6 +42,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.ASN1Sequence;
 import org.bouncycastle.asn1.DEROctetString;
@@ -78,6 +79,16 @@ class ResponderSigner {
 
     private final RespID responderIdByKey;
 
+    private final byte[] encodedResponderIdByName;
+
+    private final byte[] encodedResponderIdByKey;
+
+    private final byte[] encodedCertsSigner;
+
+    private final byte[] encodedCertsSignerAndCa;
+
+    private final Map<ConcurrentContentSigner, byte[]> encodedSigAlgIds;
+
     ResponderSigner(final List<ConcurrentContentSigner> signers)
     throws CertificateException, IOException {
         this.signers = ParamUtil.requireNonEmpty("signers", signers);
@@ -108,11 +119,22 @@ class ResponderSigner {
         byte[] keySha1 = HashAlgoType.SHA1.hash(
                 this.bcCertificate.getSubjectPublicKeyInfo().getPublicKeyData().getBytes());
         this.responderIdByKey = new RespID(new ResponderID(new DEROctetString(keySha1)));
+        this.encodedResponderIdByName =
+                responderIdByName.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+        this.encodedResponderIdByKey =
+                responderIdByKey.toASN1Primitive().getEncoded(ASN1Encoding.DER);
+
+        this.encodedCertsSigner = OcspRespEncoder.encodeCerts(
+                new X509CertificateHolder[]{this.bcCertificate});
+        this.encodedCertsSignerAndCa = OcspRespEncoder.encodeCerts(this.bcCertificateChain);
 
         algoSignerMap = new HashMap<>();
+        encodedSigAlgIds = new HashMap<>();
         for (ConcurrentContentSigner signer : signers) {
             String algoName = getSignatureAlgorithmName(signer.getAlgorithmIdentifier());
             algoSignerMap.put(algoName, signer);
+            encodedSigAlgIds.put(signer,
+                    signer.getAlgorithmIdentifier().getEncoded(ASN1Encoding.DER));
         }
     } // constructor
 
@@ -142,6 +164,22 @@ class ResponderSigner {
         return byName ? responderIdByName :  responderIdByKey;
     }
 
+    public byte[] getEncodedResponderId(final boolean byName) {
+        return byName ? encodedResponderIdByName : encodedResponderIdByKey;
+    }
+
+    public byte[] getEncodedCertsSigner() {
+        return encodedCertsSigner;
+    }
+
+    public byte[] getEncodedCertsSignerAndCa() {
+        return encodedCertsSignerAndCa;
+    }
+
+    public byte[] getEncodedSigAlgId(final ConcurrentContentSigner signer) {
+        return encodedSigAlgIds.get(signer);
+    }
+
     public X509Certificate getCertificate() {
         return certificate;
     }
@@ -158,6 +196,10 @@ class ResponderSigner {
         return bcCertificateChain;
     }
 
+    public List<ConcurrentContentSigner> getSigners() {
+        return signers;
+    }
+
     public boolean isHealthy() {
         for (ConcurrentContentSigner signer : signers) {
             if (!signer.isHealthy()) {
@@ -0,0 +1,297 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.xipki.commons.common.LruCache;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.HashAlgoType;
+import org.xipki.pki.ocsp.server.impl.OcspRespWithCacheInfo.ResponseCacheInfo;
+
+/**
+ * Cache of signed OCSP responses for requests with exactly one CertID and without any
+ * extension (RFC 5019). The cache is bound to one {@link Responder}, the key is the DER
+ * encoded CertID.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class ResponseCache {
+
+    static final class CertIdKey {
+
+        private final byte[] encoded;
+
+        private final int hashCode;
+
+        CertIdKey(final byte[] encoded) {
+            this.encoded = ParamUtil.requireNonNull("encoded", encoded);
+            this.hashCode = Arrays.hashCode(encoded);
+        }
+
+        byte[] getEncoded() {
+            return encoded;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof CertIdKey)) {
+                return false;
+            }
+
+            return Arrays.equals(encoded, ((CertIdKey) obj).encoded);
+        }
+
+    } // class CertIdKey
+
+    static final class CachedResponse {
+
+        private final byte[] encodedResponse;
+
+        private final long thisUpdate;
+
+        private final Long nextUpdate;
+
+        private final long expiresAt;
+
+        private final String etag;
+
+        private final BigInteger serialNumber;
+
+        private final String certStatus;
+
+        CachedResponse(final byte[] encodedResponse, final ResponseCacheInfo cacheInfo,
+                final long expiresAt) {
+            this.encodedResponse = encodedResponse;
+            this.thisUpdate = cacheInfo.getThisUpdate();
+            this.nextUpdate = cacheInfo.getNextUpdate();
+            this.serialNumber = cacheInfo.getSerialNumber();
+            this.certStatus = cacheInfo.getCertStatus();
+            this.expiresAt = expiresAt;
+            this.etag = new StringBuilder(42).append('\\')
+                    .append(HashAlgoType.SHA1.hexHash(encodedResponse))
+                    .append('\\').toString();
+        }
+
+        public byte[] getEncodedResponse() {
+            return encodedResponse;
+        }
+
+        public long getThisUpdate() {
+            return thisUpdate;
+        }
+
+        public Long getNextUpdate() {
+            return nextUpdate;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public BigInteger getSerialNumber() {
+            return serialNumber;
+        }
+
+        public String getCertStatus() {
+            return certStatus;
+        }
+
+    } // class CachedResponse
+
+    private static final int TAG_SEQUENCE = 0x30;
+
+    private static final int TAG_INTEGER = 0x02;
+
+    private static final int TAG_OCTET_STRING = 0x04;
+
+    private static final int TAG_OID = 0x06;
+
+    private static final int TAG_CONTEXT_0 = 0xA0;
+
+    private static final int TAG_CONTEXT_1 = 0xA1;
+
+    private final LruCache<CertIdKey, CachedResponse> cache;
+
+    private final long maxAgeMs;
+
+    ResponseCache(final int maxSize, final long maxAgeInSeconds) {
+        ParamUtil.requireMin("maxAgeInSeconds", maxAgeInSeconds, 1);
+        this.cache = new LruCache<>(maxSize);
+        this.maxAgeMs = maxAgeInSeconds * 1000;
+    }
+
+    CachedResponse get(final CertIdKey key) {
+        ParamUtil.requireNonNull("key", key);
+        CachedResponse entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (System.currentTimeMillis() >= entry.expiresAt) {
+            cache.remove(key);
+            return null;
+        }
+
+        return entry;
+    }
+
+    void put(final CertIdKey key, final byte[] encodedResponse,
+            final ResponseCacheInfo cacheInfo) {
+        ParamUtil.requireNonNull("key", key);
+        ParamUtil.requireNonNull("encodedResponse", encodedResponse);
+        ParamUtil.requireNonNull("cacheInfo", cacheInfo);
+        long expiresAt = System.currentTimeMillis() + maxAgeMs;
+        Long nextUpdate = cacheInfo.getNextUpdate();
+        if (nextUpdate != null) {
+            expiresAt = Math.min(expiresAt, nextUpdate.longValue());
+        }
+        cache.put(key, new CachedResponse(encodedResponse, cacheInfo, expiresAt));
+    }
+
+    /**
+     * Extracts the CertID from the DER encoded OCSPRequest without building the ASN.1 objects.
+     *
+     * @param request
+     *          DER encoded OCSPRequest. Must not be {@code null}.
+     * @return the key of the only CertID, or {@code null} if the request is signed, contains
+     *     any extension or more than one CertID, is not of version v1, or is not well-formed.
+     */
+    static CertIdKey getCertIdKey(final byte[] request) {
+        ParamUtil.requireNonNull("request", request);
+        try {
+            int[] pos = new int[]{0};
+            // OCSPRequest, a present optionalSignature is detected below
+            final int reqEnd = readHeader(request, pos, TAG_SEQUENCE);
+            if (reqEnd != request.length) {
+                return null;
+            }
+
+            // TBSRequest
+            final int tbsEnd = readHeader(request, pos, TAG_SEQUENCE);
+            if (peekTag(request, pos) == TAG_CONTEXT_0) {
+                // version
+                final int versionEnd = readHeader(request, pos, TAG_CONTEXT_0);
+                final int intEnd = readHeader(request, pos, TAG_INTEGER);
+                if (intEnd - pos[0] != 1 || request[pos[0]] != 0 || intEnd != versionEnd) {
+                    return null;
+                }
+                pos[0] = versionEnd;
+            }
+
+            if (peekTag(request, pos) == TAG_CONTEXT_1) {
+                // requestorName
+                pos[0] = readHeader(request, pos, TAG_CONTEXT_1);
+            }
+
+            // requestList
+            final int listEnd = readHeader(request, pos, TAG_SEQUENCE);
+            final int singleReqEnd = readHeader(request, pos, TAG_SEQUENCE);
+            final int certIdStart = pos[0];
+            final int certIdEnd = readHeader(request, pos, TAG_SEQUENCE);
+            final int algIdEnd = readHeader(request, pos, TAG_SEQUENCE);
+            pos[0] = readHeader(request, pos, TAG_OID);
+            pos[0] = algIdEnd;
+            pos[0] = readHeader(request, pos, TAG_OCTET_STRING);
+            pos[0] = readHeader(request, pos, TAG_OCTET_STRING);
+            pos[0] = readHeader(request, pos, TAG_INTEGER);
+
+            if (pos[0] != certIdEnd || certIdEnd != singleReqEnd || singleReqEnd != listEnd
+                    || listEnd != tbsEnd || tbsEnd != reqEnd) {
+                // singleRequestExtensions, more than one request, requestExtensions or
+                // optionalSignature is present
+                return null;
+            }
+
+            return new CertIdKey(Arrays.copyOfRange(request, certIdStart, certIdEnd));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    } // method getCertIdKey
+
+    private static int peekTag(final byte[] data, final int[] pos) {
+        return (pos[0] < data.length) ? (data[pos[0]] & 0xFF) : -1;
+    }
+
+    /**
+     * Reads the tag and length of the next TLV.
+     *
+     * @return the end offset of the value. The {@code pos} points to the start of the value.
+     */
+    private static int readHeader(final byte[] data, final int[] pos, final int expectedTag) {
+        int off = pos[0];
+        if (off + 2 > data.length || (data[off++] & 0xFF) != expectedTag) {
+            throw new IllegalArgumentException("unexpected tag");
+        }
+
+        int len = data[off++] & 0xFF;
+        if (len > 0x7F) {
+            int numLenBytes = len & 0x7F;
+            if (numLenBytes == 0 || numLenBytes > 3 || off + numLenBytes > data.length) {
+                throw new IllegalArgumentException("unsupported length");
+            }
+
+            len = 0;
+            for (int i = 0; i < numLenBytes; i++) {
+                len = (len << 8) | (data[off++] & 0xFF);
+            }
+        }
+
+        int end = off + len;
+        if (end > data.length) {
+            throw new IllegalArgumentException("truncated");
+        }
+
+        pos[0] = off;
+        return end;
+    }
+
+}
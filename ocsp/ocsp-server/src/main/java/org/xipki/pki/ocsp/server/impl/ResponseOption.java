@@ -49,6 +49,16 @@ import org.xipki.pki.ocsp.server.impl.jaxb.ResponseOptionType;
 
 class ResponseOption {
 
+    /**
+     * Default maximal number of pre-generated responses signed per second.
+     */
+    static final int DFLT_PREGENERATE_RATE = 100;
+
+    /**
+     * Default maximal number of pre-generated responses kept in memory.
+     */
+    static final int DFLT_PREGENERATE_MAX_SIZE = 300000;
+
     private final boolean responderIdByName;
 
     private final boolean includeInvalidityDate;
@@ -63,6 +73,14 @@ class ResponseOption {
 
     private final Long cacheMaxAge;
 
+    private final int responseCacheSize;
+
+    private final boolean pregenerateResponses;
+
+    private final int pregenerateRate;
+
+    private final int pregenerateMaxSize;
+
     ResponseOption(final ResponseOptionType conf) throws InvalidConfException {
         ParamUtil.requireNonNull("conf", conf);
         this.responderIdByName = getBoolean(conf.isResponderIdByName(), true);
@@ -77,6 +95,38 @@ class ResponseOption {
             this.cacheMaxAge = null;
         }
 
+        if (cacheConf != null && cacheConf.getResponseCacheSize() != null) {
+            int size = cacheConf.getResponseCacheSize().intValue();
+            if (size < 0) {
+                throw new InvalidConfException("responseCacheSize must not be negative: " + size);
+            }
+            this.responseCacheSize = size;
+        } else {
+            this.responseCacheSize = 0;
+        }
+
+        this.pregenerateResponses = (cacheConf == null) ? false
+                : getBoolean(cacheConf.isPregenerate(), false);
+        if (cacheConf != null && cacheConf.getPregenerateRate() != null) {
+            int rate = cacheConf.getPregenerateRate().intValue();
+            if (rate < 1) {
+                throw new InvalidConfException("pregenerateRate must be positive: " + rate);
+            }
+            this.pregenerateRate = rate;
+        } else {
+            this.pregenerateRate = DFLT_PREGENERATE_RATE;
+        }
+
+        if (cacheConf != null && cacheConf.getPregenerateMaxSize() != null) {
+            int size = cacheConf.getPregenerateMaxSize().intValue();
+            if (size < 1) {
+                throw new InvalidConfException("pregenerateMaxSize must be positive: " + size);
+            }
+            this.pregenerateMaxSize = size;
+        } else {
+            this.pregenerateMaxSize = DFLT_PREGENERATE_MAX_SIZE;
+        }
+
         HashAlgoType tmpCertHashAlgo = null;
         String str = conf.getCerthashAlgorithm();
         if (str != null) {
@@ -113,6 +163,22 @@ class ResponseOption {
         return cacheMaxAge;
     }
 
+    public int getResponseCacheSize() {
+        return responseCacheSize;
+    }
+
+    public boolean isPregenerateResponses() {
+        return pregenerateResponses;
+    }
+
+    public int getPregenerateRate() {
+        return pregenerateRate;
+    }
+
+    public int getPregenerateMaxSize() {
+        return pregenerateMaxSize;
+    }
+
     public EmbedCertsMode getEmbedCertsMode() {
         return embedCertsMode;
     }
@@ -0,0 +1,392 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.ocsp.OCSPRequest;
+import org.bouncycastle.asn1.ocsp.Request;
+import org.bouncycastle.asn1.ocsp.TBSRequest;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.commons.common.util.LogUtil;
+import org.xipki.commons.common.util.ParamUtil;
+import org.xipki.commons.security.HashAlgoType;
+import org.xipki.pki.ocsp.api.IssuerHashNameAndKey;
+import org.xipki.pki.ocsp.api.OcspStore;
+import org.xipki.pki.ocsp.api.OcspStoreException;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CertIdKey;
+import org.xipki.pki.ocsp.server.impl.store.db.DbCertStatusStore;
+import org.xipki.pki.ocsp.server.impl.store.db.IssuerAndSerialEntry;
+
+/**
+ * Generates the responses for the certificates in the database based stores of a responder
+ * and puts them in its {@link PregeneratedResponseStore}. A response is generated
+ * <ul>
+ *   <li>once for every certificate after the start (initial scan),</li>
+ *   <li>if the database entry of the certificate has been updated (column LUPDATE), and</li>
+ *   <li>if half of the lifetime of the previous response has passed.</li>
+ * </ul>
+ * The updated certificates are scanned before the initial scan continues in every run, so
+ * that a revocation is reflected within one run even if the initial scan has already passed
+ * the certificate. At most {@code rate} responses are signed per second, the remaining work
+ * is continued in the next run. If the stores contain more certificates than the
+ * {@link PregeneratedResponseStore} can hold, the pre-generation is disabled.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class ResponsePregenerator implements Runnable {
+
+    /**
+     * Position of a scan of the certificates in one store.
+     */
+    private static final class ScanCursor {
+
+        // LUPDATE of the current scan, 0 for all certificates
+        private long updatedSince;
+
+        // ID to continue the current scan with
+        private long startId = 1;
+
+        // start of the current scan, in milliseconds
+        private long scanStart;
+
+        ScanCursor(final long updatedSince, final long scanStart) {
+            this.updatedSince = updatedSince;
+            this.scanStart = scanStart;
+        }
+
+    } // class ScanCursor
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponsePregenerator.class);
+
+    private static final AlgorithmIdentifier SHA1_ALGID =
+            new AlgorithmIdentifier(HashAlgoType.SHA1.getOid(), DERNull.INSTANCE);
+
+    private final String responderName;
+
+    private final List<DbCertStatusStore> stores = new ArrayList<>();
+
+    private final PregeneratedResponseStore responseStore;
+
+    private final Function<OCSPReq, OcspRespWithCacheInfo> responseGenerator;
+
+    private final int rate;
+
+    private final int maxResponsesPerRun;
+
+    // scans of the updated certificates
+    private final Map<String, ScanCursor> deltaCursors = new HashMap<>();
+
+    // initial scans, removed once completed
+    private final Map<String, ScanCursor> initialCursors = new HashMap<>();
+
+    private boolean sizeChecked;
+
+    private boolean disabled;
+
+    private long runStart;
+
+    private int numSigned;
+
+    /**
+     * Constructor.
+     *
+     * @param responderName
+     *          Name of the responder. Must not be blank.
+     * @param stores
+     *          Stores of the responder, only the database based ones are considered. Must not
+     *          be {@code null}.
+     * @param responseStore
+     *          Store of the pre-generated responses. Must not be {@code null}.
+     * @param responseGenerator
+     *          Answers the given request without putting the response in the response cache.
+     *          Must not be {@code null}.
+     * @param rate
+     *          Maximal number of responses signed per second. Must be positive.
+     * @param period
+     *          Delay in seconds between two runs. Must be positive.
+     */
+    ResponsePregenerator(final String responderName, final List<OcspStore> stores,
+            final PregeneratedResponseStore responseStore,
+            final Function<OCSPReq, OcspRespWithCacheInfo> responseGenerator, final int rate,
+            final long period) {
+        this.responderName = ParamUtil.requireNonBlank("responderName", responderName);
+        ParamUtil.requireNonNull("stores", stores);
+        for (OcspStore store : stores) {
+            if (store instanceof DbCertStatusStore) {
+                this.stores.add((DbCertStatusStore) store);
+            }
+        }
+        this.responseStore = ParamUtil.requireNonNull("responseStore", responseStore);
+        this.responseGenerator = ParamUtil.requireNonNull("responseGenerator",
+                responseGenerator);
+        this.rate = ParamUtil.requireMin("rate", rate, 1);
+        ParamUtil.requireMin("period", period, 1);
+        this.maxResponsesPerRun = (int) Math.min(Integer.MAX_VALUE, rate * period);
+    }
+
+    @Override
+    public void run() {
+        // an exception would suppress the subsequent executions
+        try {
+            doRun();
+        } catch (Throwable th) {
+            LogUtil.error(LOG, th, "could not pre-generate responses for responder "
+                    + responderName);
+        }
+    }
+
+    boolean isDisabled() {
+        return disabled;
+    }
+
+    void doRun() {
+        if (disabled) {
+            return;
+        }
+
+        runStart = System.currentTimeMillis();
+        numSigned = 0;
+
+        if (!sizeChecked) {
+            if (!checkSize()) {
+                // retry in the next run
+                return;
+            }
+
+            if (disabled) {
+                return;
+            }
+
+            for (DbCertStatusStore store : stores) {
+                // LUPDATE is in seconds, tolerate one second to not miss any update
+                deltaCursors.put(store.getName(), new ScanCursor(runStart / 1000 - 1, runStart));
+                initialCursors.put(store.getName(), new ScanCursor(0, runStart));
+            }
+        }
+
+        // changed certificates first, then the initial scan
+        int[] counts = new int[2];
+        for (DbCertStatusStore store : stores) {
+            scan(store, deltaCursors.get(store.getName()), counts);
+        }
+
+        for (DbCertStatusStore store : stores) {
+            ScanCursor cursor = initialCursors.get(store.getName());
+            if (cursor != null && scan(store, cursor, counts)) {
+                initialCursors.remove(store.getName());
+                LOG.info("completed initial pre-generation of responses for store {} of "
+                        + "responder {}", store.getName(), responderName);
+            }
+        }
+
+        int updated = counts[0];
+        int failed = counts[1];
+
+        // then the responses that will expire soon
+        int refreshed = 0;
+        if (hasCapacity()) {
+            List<CertIdKey> keys = responseStore.getKeysToRefresh(System.currentTimeMillis(),
+                    maxResponsesPerRun - numSigned);
+            for (CertIdKey key : keys) {
+                if (!hasCapacity()) {
+                    break;
+                }
+
+                if (generateResponse(CertID.getInstance(key.getEncoded()))) {
+                    refreshed++;
+                } else {
+                    // e.g. the issuer is no longer served, do not retry it in every run
+                    responseStore.remove(key);
+                    failed++;
+                }
+            }
+        }
+
+        if (numSigned > 0) {
+            LOG.info("pre-generated {} responses for updated certificates and refreshed {} "
+                    + "responses ({} failed) for responder {} in {} ms, total {} responses, "
+                    + "{} evicted", updated, refreshed, failed, responderName,
+                    System.currentTimeMillis() - runStart, responseStore.size(),
+                    responseStore.getEvictedCount());
+        }
+    } // method doRun
+
+    /**
+     * Disables the pre-generation if the stores contain more certificates than the
+     * {@link PregeneratedResponseStore} can hold.
+     *
+     * @return whether the check has been done.
+     */
+    private boolean checkSize() {
+        long numCerts = 0;
+        for (DbCertStatusStore store : stores) {
+            try {
+                numCerts += store.getNumCerts();
+            } catch (OcspStoreException ex) {
+                LogUtil.warn(LOG, ex, "could not count certificates in store " + store.getName());
+                return false;
+            }
+        }
+
+        sizeChecked = true;
+        if (numCerts > responseStore.getMaxSize()) {
+            LOG.warn("disabled pre-generation of responses for responder {}: {} certificates "
+                    + "exceed pregenerateMaxSize {}", responderName, numCerts,
+                    responseStore.getMaxSize());
+            disabled = true;
+        }
+        return true;
+    }
+
+    /**
+     * Generates the responses for the certificates found by the scan, till the scan is
+     * completed or the capacity of this run is exhausted.
+     *
+     * @param counts
+     *          the number of generated responses is added to counts[0], the number of failed
+     *          ones to counts[1].
+     * @return whether the scan has been completed.
+     */
+    private boolean scan(final DbCertStatusStore store, final ScanCursor cursor,
+            final int[] counts) {
+        while (hasCapacity()) {
+            List<IssuerAndSerialEntry> entries;
+            try {
+                entries = store.getUpdatedCerts(cursor.startId, cursor.updatedSince);
+            } catch (OcspStoreException ex) {
+                LogUtil.error(LOG, ex, "could not retrieve certificates from store "
+                        + store.getName());
+                // retry in the next run
+                return false;
+            }
+
+            if (entries.isEmpty()) {
+                // scan completed. LUPDATE is in seconds, tolerate one second to not
+                // miss any update
+                cursor.updatedSince = cursor.scanStart / 1000 - 1;
+                cursor.startId = 1;
+                cursor.scanStart = System.currentTimeMillis();
+                return true;
+            }
+
+            for (IssuerAndSerialEntry entry : entries) {
+                if (!hasCapacity()) {
+                    return false;
+                }
+
+                cursor.startId = Math.max(cursor.startId, entry.getId() + 1);
+                if (generateResponse(buildCertId(entry))) {
+                    counts[0]++;
+                } else {
+                    counts[1]++;
+                }
+            }
+        } // end while
+
+        return false;
+    } // method scan
+
+    /**
+     * Returns whether another response may be signed in this run, and waits if the signing
+     * rate would be exceeded otherwise.
+     */
+    private boolean hasCapacity() {
+        if (numSigned >= maxResponsesPerRun || Thread.currentThread().isInterrupted()) {
+            return false;
+        }
+
+        long waitMs = runStart + numSigned * 1000L / rate - System.currentTimeMillis();
+        if (waitMs > 0) {
+            try {
+                Thread.sleep(waitMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static CertID buildCertId(final IssuerAndSerialEntry entry) {
+        IssuerHashNameAndKey issuerHash = entry.getIssuerHash();
+        return new CertID(SHA1_ALGID,
+                new DEROctetString(issuerHash.getIssuerNameHash()),
+                new DEROctetString(issuerHash.getIssuerKeyHash()),
+                new ASN1Integer(entry.getSerialNumber()));
+    }
+
+    private boolean generateResponse(final CertID certId) {
+        numSigned++;
+        TBSRequest tbsRequest = new TBSRequest(null, new DERSequence(new Request(certId, null)),
+                (Extensions) null);
+        OCSPReq request = new OCSPReq(new OCSPRequest(tbsRequest, null));
+
+        OcspRespWithCacheInfo resp = responseGenerator.apply(request);
+        if (resp == null || resp.getCacheInfo() == null) {
+            return false;
+        }
+
+        byte[] encodedCertId;
+        try {
+            encodedCertId = certId.getEncoded(ASN1Encoding.DER);
+        } catch (IOException ex) {
+            LogUtil.warn(LOG, ex, "could not encode CertID");
+            return false;
+        }
+
+        responseStore.put(new CertIdKey(encodedCertId), resp.getEncodedResponse(),
+                resp.getCacheInfo());
+        return true;
+    }
+
+}
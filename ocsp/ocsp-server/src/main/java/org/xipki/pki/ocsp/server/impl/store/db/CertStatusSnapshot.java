@@ -0,0 +1,543 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl.store.db;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.xipki.commons.common.util.ParamUtil;
+
+/**
+ * In-memory copy of the status columns of the table CERT.
+ *
+ * <p>The entries of a full load are kept per issuer in sorted primitive arrays: the serial
+ * numbers are packed into one byte array, the certificate profiles are referenced by the index
+ * in a table of distinct names, and the revocation information is only stored for revoked
+ * certificates. The entries of the incremental updates are put into an overlay map, which is
+ * shared by all snapshots derived from the same full load and replaced by the next full load.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+class CertStatusSnapshot {
+
+    static final class CertStatusRecord {
+
+        private final int issuerId;
+
+        private final BigInteger serialNumber;
+
+        private final long notBefore;
+
+        private final long notAfter;
+
+        private final boolean revoked;
+
+        private final int reason;
+
+        private final long revocationTime;
+
+        private final long invalidityTime;
+
+        private final String certprofile;
+
+        CertStatusRecord(final int issuerId, final BigInteger serialNumber, final long notBefore,
+                final long notAfter, final boolean revoked, final int reason,
+                final long revocationTime, final long invalidityTime, final String certprofile) {
+            this.issuerId = issuerId;
+            this.serialNumber = ParamUtil.requireNonNull("serialNumber", serialNumber);
+            this.notBefore = notBefore;
+            this.notAfter = notAfter;
+            this.revoked = revoked;
+            this.reason = reason;
+            this.revocationTime = revocationTime;
+            this.invalidityTime = invalidityTime;
+            this.certprofile = certprofile;
+        }
+
+        public long getNotBefore() {
+            return notBefore;
+        }
+
+        public long getNotAfter() {
+            return notAfter;
+        }
+
+        public boolean isRevoked() {
+            return revoked;
+        }
+
+        public int getReason() {
+            return reason;
+        }
+
+        public long getRevocationTime() {
+            return revocationTime;
+        }
+
+        public long getInvalidityTime() {
+            return invalidityTime;
+        }
+
+        public String getCertprofile() {
+            return certprofile;
+        }
+
+    } // class CertStatusRecord
+
+    /**
+     * Collects the entries of a full load row by row, without keeping an object per entry.
+     */
+    static final class Builder {
+
+        private final Map<Integer, IssuerCertsBuilder> issuerBuilders = new HashMap<>();
+
+        private final Map<String, Integer> profileIds = new HashMap<>();
+
+        private String[] profiles = new String[16];
+
+        private int numProfiles;
+
+        private int size;
+
+        /**
+         * Adds an entry.
+         * @param issuerId the issuer id.
+         * @param hexSerialNumber the serial number in hex as stored in the table CERT.
+         * @param notBefore notBefore in seconds.
+         * @param notAfter notAfter in seconds.
+         * @param revoked whether the certificate is revoked.
+         * @param reason the revocation reason, ignored if not revoked.
+         * @param revocationTime the revocation time in seconds, ignored if not revoked.
+         * @param invalidityTime the invalidity time in seconds, ignored if not revoked.
+         * @param certprofile the name of the certificate profile, may be {@code null}.
+         */
+        void add(final int issuerId, final String hexSerialNumber, final long notBefore,
+                final long notAfter, final boolean revoked, final int reason,
+                final long revocationTime, final long invalidityTime, final String certprofile) {
+            IssuerCertsBuilder builder = issuerBuilders.get(issuerId);
+            if (builder == null) {
+                builder = new IssuerCertsBuilder();
+                issuerBuilders.put(issuerId, builder);
+            }
+
+            builder.add(hexToMagnitude(hexSerialNumber), notBefore, notAfter, revoked,
+                    reason, revocationTime, invalidityTime, getProfileId(certprofile));
+            size++;
+        }
+
+        CertStatusSnapshot build() {
+            String[] profileTable = Arrays.copyOf(profiles, numProfiles);
+            Map<Integer, IssuerCerts> map = new HashMap<>();
+            for (Integer issuerId : issuerBuilders.keySet()) {
+                map.put(issuerId, issuerBuilders.get(issuerId).build(profileTable));
+            }
+            issuerBuilders.clear();
+            return new CertStatusSnapshot(map, new ConcurrentHashMap<>(), size);
+        }
+
+        // 0 for no profile
+        private int getProfileId(final String certprofile) {
+            if (certprofile == null) {
+                return 0;
+            }
+
+            Integer id = profileIds.get(certprofile);
+            if (id != null) {
+                return id;
+            }
+
+            if (numProfiles == MAX_PROFILES) {
+                throw new IllegalStateException("too many certificate profiles");
+            }
+
+            if (numProfiles == profiles.length) {
+                profiles = Arrays.copyOf(profiles, 2 * numProfiles);
+            }
+            profiles[numProfiles++] = certprofile;
+            profileIds.put(certprofile, numProfiles);
+            return numProfiles;
+        }
+
+    } // class Builder
+
+    private static final class IssuerCertsBuilder {
+
+        private byte[] serials = new byte[1024];
+
+        private int serialsLen;
+
+        private int[] serialOffsets = new int[128];
+
+        private long[] notBefores = new long[128];
+
+        private long[] notAfters = new long[128];
+
+        private short[] profileIds = new short[128];
+
+        private int size;
+
+        private int[] revokedIndexes = new int[16];
+
+        private long[] revocationTimes = new long[16];
+
+        private long[] invalidityTimes = new long[16];
+
+        private byte[] reasons = new byte[16];
+
+        private int numRevoked;
+
+        void add(final byte[] serial, final long notBefore, final long notAfter,
+                final boolean revoked, final int reason, final long revocationTime,
+                final long invalidityTime, final int profileId) {
+            if (size == notBefores.length) {
+                int newLen = 2 * size;
+                serialOffsets = Arrays.copyOf(serialOffsets, newLen);
+                notBefores = Arrays.copyOf(notBefores, newLen);
+                notAfters = Arrays.copyOf(notAfters, newLen);
+                profileIds = Arrays.copyOf(profileIds, newLen);
+            }
+
+            if (serialsLen + serial.length > serials.length) {
+                serials = Arrays.copyOf(serials, Math.max(2 * serials.length,
+                        serialsLen + serial.length));
+            }
+            serialOffsets[size] = serialsLen;
+            System.arraycopy(serial, 0, serials, serialsLen, serial.length);
+            serialsLen += serial.length;
+
+            notBefores[size] = notBefore;
+            notAfters[size] = notAfter;
+            profileIds[size] = (short) profileId;
+
+            if (revoked) {
+                if (numRevoked == revokedIndexes.length) {
+                    int newLen = 2 * numRevoked;
+                    revokedIndexes = Arrays.copyOf(revokedIndexes, newLen);
+                    revocationTimes = Arrays.copyOf(revocationTimes, newLen);
+                    invalidityTimes = Arrays.copyOf(invalidityTimes, newLen);
+                    reasons = Arrays.copyOf(reasons, newLen);
+                }
+                revokedIndexes[numRevoked] = size;
+                revocationTimes[numRevoked] = revocationTime;
+                invalidityTimes[numRevoked] = invalidityTime;
+                reasons[numRevoked] = (byte) reason;
+                numRevoked++;
+            }
+            size++;
+        }
+
+        IssuerCerts build(final String[] profileTable) {
+            // sort the entries by serial number via a permutation of the indexes
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int[] offsets = Arrays.copyOf(serialOffsets, size + 1);
+            offsets[size] = serialsLen;
+            sort(order, new int[size], 0, size, serials, offsets);
+
+            int[] position = new int[size];
+            IssuerCerts ret = new IssuerCerts(size, serialsLen, numRevoked, profileTable);
+            int off = 0;
+            for (int i = 0; i < size; i++) {
+                int src = order[i];
+                position[src] = i;
+                int len = offsets[src + 1] - offsets[src];
+                System.arraycopy(serials, offsets[src], ret.serials, off, len);
+                ret.serialOffsets[i] = off;
+                off += len;
+                ret.notBefores[i] = notBefores[src];
+                ret.notAfters[i] = notAfters[src];
+                ret.profileIds[i] = profileIds[src];
+            }
+            ret.serialOffsets[size] = off;
+
+            // revoked entries, sorted by the new position
+            long[] keys = new long[numRevoked];
+            for (int i = 0; i < numRevoked; i++) {
+                keys[i] = ((long) position[revokedIndexes[i]] << 32) | i;
+            }
+            Arrays.sort(keys);
+            for (int i = 0; i < numRevoked; i++) {
+                int src = (int) keys[i];
+                ret.revokedIndexes[i] = (int) (keys[i] >>> 32);
+                ret.revocationTimes[i] = revocationTimes[src];
+                ret.invalidityTimes[i] = invalidityTimes[src];
+                ret.reasons[i] = reasons[src];
+            }
+
+            return ret;
+        } // method build
+
+        /**
+         * Merge sort of the indexes by the serial number.
+         */
+        private static void sort(final int[] idx, final int[] tmp, final int from, final int to,
+                final byte[] serials, final int[] offsets) {
+            if (to - from < 2) {
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            sort(idx, tmp, from, mid, serials, offsets);
+            sort(idx, tmp, mid, to, serials, offsets);
+            if (compare(serials, offsets, idx[mid - 1], idx[mid]) <= 0) {
+                return;
+            }
+
+            System.arraycopy(idx, from, tmp, from, to - from);
+            int left = from;
+            int right = mid;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < mid
+                        && compare(serials, offsets, tmp[left], tmp[right]) <= 0)) {
+                    idx[i] = tmp[left++];
+                } else {
+                    idx[i] = tmp[right++];
+                }
+            }
+        }
+
+        private static int compare(final byte[] serials, final int[] offsets, final int idx1,
+                final int idx2) {
+            int off1 = offsets[idx1];
+            int off2 = offsets[idx2];
+            return compareSerial(serials, off1, offsets[idx1 + 1] - off1,
+                    serials, off2, offsets[idx2 + 1] - off2);
+        }
+
+    } // class IssuerCertsBuilder
+
+    private static final class IssuerCerts {
+
+        // magnitudes of the serial numbers without leading zeros, ascending
+        private final byte[] serials;
+
+        // entry i is serials[serialOffsets[i]..serialOffsets[i + 1]]
+        private final int[] serialOffsets;
+
+        private final long[] notBefores;
+
+        private final long[] notAfters;
+
+        // index in profileTable + 1, 0 for no profile
+        private final short[] profileIds;
+
+        private final String[] profileTable;
+
+        // ascending indexes of the revoked entries
+        private final int[] revokedIndexes;
+
+        private final long[] revocationTimes;
+
+        private final long[] invalidityTimes;
+
+        private final byte[] reasons;
+
+        IssuerCerts(final int size, final int serialsLen, final int numRevoked,
+                final String[] profileTable) {
+            this.serials = new byte[serialsLen];
+            this.serialOffsets = new int[size + 1];
+            this.notBefores = new long[size];
+            this.notAfters = new long[size];
+            this.profileIds = new short[size];
+            this.profileTable = profileTable;
+            this.revokedIndexes = new int[numRevoked];
+            this.revocationTimes = new long[numRevoked];
+            this.invalidityTimes = new long[numRevoked];
+            this.reasons = new byte[numRevoked];
+        }
+
+        CertStatusRecord get(final int issuerId, final BigInteger serialNumber) {
+            int idx = indexOf(toMagnitude(serialNumber));
+            if (idx < 0) {
+                return null;
+            }
+
+            int profileId = profileIds[idx] & 0xFFFF;
+            String certprofile = (profileId == 0) ? null : profileTable[profileId - 1];
+
+            int revIdx = Arrays.binarySearch(revokedIndexes, idx);
+            if (revIdx < 0) {
+                return new CertStatusRecord(issuerId, serialNumber, notBefores[idx],
+                        notAfters[idx], false, 0, 0, 0, certprofile);
+            } else {
+                return new CertStatusRecord(issuerId, serialNumber, notBefores[idx],
+                        notAfters[idx], true, reasons[revIdx], revocationTimes[revIdx],
+                        invalidityTimes[revIdx], certprofile);
+            }
+        }
+
+        boolean contains(final BigInteger serialNumber) {
+            return indexOf(toMagnitude(serialNumber)) >= 0;
+        }
+
+        private int indexOf(final byte[] serial) {
+            int low = 0;
+            int high = notBefores.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int off = serialOffsets[mid];
+                int cmp = compareSerial(serials, off, serialOffsets[mid + 1] - off,
+                        serial, 0, serial.length);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+    } // class IssuerCerts
+
+    // profile ids are stored as unsigned short, 0 for no profile
+    private static final int MAX_PROFILES = 0xFFFF;
+
+    private final Map<Integer, IssuerCerts> issuerCertsMap;
+
+    private final ConcurrentHashMap<Integer, Map<BigInteger, CertStatusRecord>> updates;
+
+    private final int size;
+
+    private CertStatusSnapshot(final Map<Integer, IssuerCerts> issuerCertsMap,
+            final ConcurrentHashMap<Integer, Map<BigInteger, CertStatusRecord>> updates,
+            final int size) {
+        this.issuerCertsMap = issuerCertsMap;
+        this.updates = updates;
+        this.size = size;
+    }
+
+    /**
+     * Returns a snapshot containing the entries of this snapshot and the given records.
+     * Existing entries with the same issuer and serial number are replaced. The records are
+     * put into the overlay shared with this snapshot, hence only the changed entries are
+     * copied.
+     */
+    CertStatusSnapshot withUpdates(final Iterable<CertStatusRecord> records) {
+        int newSize = size;
+        for (CertStatusRecord record : records) {
+            Map<BigInteger, CertStatusRecord> map = updates.get(record.issuerId);
+            if (map == null) {
+                map = new ConcurrentHashMap<>();
+                updates.put(record.issuerId, map);
+            }
+
+            if (map.put(record.serialNumber, record) == null) {
+                IssuerCerts issuerCerts = issuerCertsMap.get(record.issuerId);
+                if (issuerCerts == null || !issuerCerts.contains(record.serialNumber)) {
+                    newSize++;
+                }
+            }
+        }
+
+        return (newSize == size) ? this
+                : new CertStatusSnapshot(issuerCertsMap, updates, newSize);
+    }
+
+    CertStatusRecord get(final int issuerId, final BigInteger serialNumber) {
+        Map<BigInteger, CertStatusRecord> issuerUpdates = updates.get(issuerId);
+        if (issuerUpdates != null) {
+            CertStatusRecord record = issuerUpdates.get(serialNumber);
+            if (record != null) {
+                return record;
+            }
+        }
+
+        IssuerCerts issuerCerts = issuerCertsMap.get(issuerId);
+        return (issuerCerts == null) ? null : issuerCerts.get(issuerId, serialNumber);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Compares two serial numbers given by their magnitudes without leading zeros.
+     */
+    private static int compareSerial(final byte[] a, final int aOff, final int aLen,
+            final byte[] b, final int bOff, final int bLen) {
+        if (aLen != bLen) {
+            return (aLen < bLen) ? -1 : 1;
+        }
+
+        for (int i = 0; i < aLen; i++) {
+            int ai = a[aOff + i] & 0xFF;
+            int bi = b[bOff + i] & 0xFF;
+            if (ai != bi) {
+                return (ai < bi) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] toMagnitude(final BigInteger serialNumber) {
+        byte[] bytes = serialNumber.toByteArray();
+        int off = 0;
+        while (off < bytes.length - 1 && bytes[off] == 0) {
+            off++;
+        }
+        return (off == 0) ? bytes : Arrays.copyOfRange(bytes, off, bytes.length);
+    }
+
+    private static byte[] hexToMagnitude(final String hex) {
+        int start = 0;
+        final int len = hex.length();
+        while (start < len - 1 && hex.charAt(start) == '0') {
+            start++;
+        }
+
+        int numBytes = (len - start + 1) / 2;
+        byte[] bytes = new byte[numBytes];
+        int pos = len;
+        for (int i = numBytes - 1; i >= 0; i--) {
+            int lo = Character.digit(hex.charAt(--pos), 16);
+            int hi = (pos > start) ? Character.digit(hex.charAt(--pos), 16) : 0;
+            if (lo < 0 || hi < 0) {
+                throw new IllegalArgumentException("invalid hex serial number " + hex);
+            }
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return bytes;
+    }
+
+}
@@ -44,10 +44,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -111,28 +113,47 @@ public class DbCertStatusStore extends OcspStore {
         @Override
         public void run() {
             initIssuerStore();
+            if (snapshotEnabled) {
+                refreshSnapshot();
+            }
         }
 
     } // class StoreUpdateService
 
     private static final Logger LOG = LoggerFactory.getLogger(DbCertStatusStore.class);
 
+    private static final int MAX_SERIALS_PER_QUERY = 100;
+
     private String sqlCs;
 
+    private String sqlUpdatedCerts;
+
+    private String sqlSnapshot;
+
     private Map<HashAlgoType, String> sqlCsMap;
 
     private DataSourceWrapper datasource;
 
     private IssuerFilter issuerFilter;
 
-    private IssuerStore issuerStore;
+    private volatile IssuerStore issuerStore;
 
-    private boolean initialized;
+    private volatile boolean initialized;
 
-    private boolean initializationFailed;
+    private volatile boolean initializationFailed;
 
     private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
 
+    private boolean snapshotEnabled;
+
+    private long snapshotFullReloadIntervalMs;
+
+    private long lastSnapshotFullLoad;
+
+    private long lastSnapshotLoad;
+
+    private volatile CertStatusSnapshot snapshot;
+
     private synchronized void initIssuerStore() {
         try {
             if (initialized) {
@@ -169,7 +190,7 @@ public class DbCertStatusStore extends OcspStore {
                         for (Integer id : newIds) {
                             IssuerEntry entry = issuerStore.getIssuerForId(id);
                             SimpleIssuerEntry newEntry = newIssuers.get(id);
-                            if (newEntry.match(entry)) {
+                            if (!newEntry.match(entry)) {
                                 issuersUnchanged = false;
                                 break;
                             }
@@ -202,16 +223,6 @@ public class DbCertStatusStore extends OcspStore {
                     String b64Cert = rs.getString("CERT");
                     Map<HashAlgoType, IssuerHashNameAndKey> hashes = getIssuerHashAndKeys(
                             Base64.decode(b64Cert));
-                    IssuerHashNameAndKey sha1IssuerHash = hashes.get(HashAlgoType.SHA1);
-                    for (IssuerEntry existingIssuer : caInfos) {
-                        if (existingIssuer.matchHash(HashAlgoType.SHA1,
-                                sha1IssuerHash.getIssuerNameHash(),
-                                sha1IssuerHash.getIssuerKeyHash())) {
-                            throw new Exception(
-                                "found at least two issuers with the same subject and key");
-                        }
-                    }
-
                     IssuerEntry caInfoEntry = new IssuerEntry(id, hashes,
                             new Date(notBeforeInSecond * 1000));
                     boolean revoked = rs.getBoolean("REV");
@@ -223,8 +234,10 @@ public class DbCertStatusStore extends OcspStore {
                     caInfos.add(caInfoEntry);
                 } // end while (rs.next())
 
-                initialized = false;
-                this.issuerStore = new IssuerStore(caInfos);
+                // build the index before the switch, requests use either the old
+                // or the new one
+                IssuerStore newIssuerStore = new IssuerStore(caInfos);
+                this.issuerStore = newIssuerStore;
                 LOG.info("Updated CertStore: {}", name);
                 initializationFailed = false;
                 initialized = true;
@@ -238,6 +251,85 @@ public class DbCertStatusStore extends OcspStore {
         }
     } // method initIssuerStore
 
+    private synchronized void refreshSnapshot() {
+        if (!initialized || initializationFailed) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        boolean fullLoad = (snapshot == null)
+                || (start - lastSnapshotFullLoad >= snapshotFullReloadIntervalMs);
+        // LUPDATE is in seconds, tolerate one second to not miss any update
+        long updatedSince = fullLoad ? 0 : lastSnapshotLoad / 1000 - 1;
+
+        // full load: stream the rows into the compact arrays of the builder
+        CertStatusSnapshot.Builder builder = fullLoad ? new CertStatusSnapshot.Builder() : null;
+        List<CertStatusSnapshot.CertStatusRecord> records = fullLoad ? null : new ArrayList<>();
+        int numEntries = 0;
+        final String sql = sqlSnapshot;
+        try {
+            long startId = 1;
+            while (true) {
+                PreparedStatement ps = borrowPreparedStatement(sql);
+                ResultSet rs = null;
+                int num = 0;
+                try {
+                    ps.setLong(1, startId);
+                    ps.setLong(2, updatedSince);
+                    rs = ps.executeQuery();
+                    while (rs.next()) {
+                        num++;
+                        startId = Math.max(startId, rs.getLong("ID") + 1);
+                        int issuerId = rs.getInt("IID");
+                        if (issuerStore.getIssuerForId(issuerId) == null) {
+                            continue;
+                        }
+
+                        numEntries++;
+                        boolean revoked = rs.getBoolean("REV");
+                        String hexSerial = rs.getString("SN");
+                        long notBefore = rs.getLong("NBEFORE");
+                        long notAfter = rs.getLong("NAFTER");
+                        int reason = revoked ? rs.getInt("RR") : 0;
+                        long revTime = revoked ? rs.getLong("RT") : 0;
+                        long invTime = revoked ? rs.getLong("RIT") : 0;
+                        String certprofile = rs.getString("PN");
+                        if (fullLoad) {
+                            builder.add(issuerId, hexSerial, notBefore, notAfter, revoked,
+                                    reason, revTime, invTime, certprofile);
+                        } else {
+                            records.add(new CertStatusSnapshot.CertStatusRecord(issuerId,
+                                    new BigInteger(hexSerial, 16), notBefore, notAfter, revoked,
+                                    reason, revTime, invTime, certprofile));
+                        }
+                    }
+                } catch (SQLException ex) {
+                    throw datasource.translate(sql, ex);
+                } finally {
+                    releaseDbResources(ps, rs);
+                }
+
+                if (num == 0) {
+                    break;
+                }
+            }
+        } catch (DataAccessException ex) {
+            // keep the current snapshot, retry in the next run
+            LogUtil.error(LOG, ex, "could not refresh the certificate status snapshot");
+            return;
+        }
+
+        snapshot = fullLoad ? builder.build() : snapshot.withUpdates(records);
+        lastSnapshotLoad = start;
+        if (fullLoad) {
+            lastSnapshotFullLoad = start;
+        }
+
+        LOG.info("{} certificate status snapshot of CertStore {} with {} changed entries in {} ms,"
+                + " total {} entries", fullLoad ? "loaded" : "updated", name, numEntries,
+                System.currentTimeMillis() - start, snapshot.size());
+    } // method refreshSnapshot
+
     private Map<HashAlgoType, IssuerHashNameAndKey> getIssuerHashAndKeys(byte[] encodedCert)
     throws CertificateEncodingException {
         byte[] encodedName;
@@ -271,6 +363,20 @@ public class DbCertStatusStore extends OcspStore {
             return CertStatusInfo.getUnknownCertStatusInfo(new Date(), null);
         }
 
+        return getCertStatuses(time, hashAlgo, issuerNameHash, issuerKeyHash,
+                Collections.singletonList(serialNumber), includeCertHash, certHashAlg,
+                certprofileOption).get(0);
+    } // method getCertStatus
+
+    @Override
+    public List<CertStatusInfo> getCertStatuses(final Date time, final HashAlgoType hashAlgo,
+            final byte[] issuerNameHash, final byte[] issuerKeyHash,
+            final List<BigInteger> serialNumbers, final boolean includeCertHash,
+            final HashAlgoType certHashAlg, final CertprofileOption certprofileOption)
+    throws OcspStoreException {
+        ParamUtil.requireNonNull("hashAlgo", hashAlgo);
+        ParamUtil.requireNonEmpty("serialNumbers", serialNumbers);
+
         // wait for max. 0.5 second
         int num = 5;
         while (!initialized && (num-- > 0)) {
@@ -288,139 +394,276 @@ public class DbCertStatusStore extends OcspStore {
             throw new OcspStoreException("initialization of CertStore failed");
         }
 
-        String sql;
         HashAlgoType certHashAlgo = null;
         if (includeCertHash) {
             certHashAlgo = (certHashAlg == null) ? hashAlgo : certHashAlg;
-            sql = sqlCsMap.get(certHashAlgo);
-        } else {
-            sql = sqlCs;
         }
 
-        try {
-            Date thisUpdate = new Date();
+        Date thisUpdate = new Date();
+        List<CertStatusInfo> ret = new ArrayList<>(serialNumbers.size());
 
-            IssuerEntry issuer = issuerStore.getIssuerForFp(hashAlgo, issuerNameHash,
-                    issuerKeyHash);
-            if (issuer == null) {
-                return CertStatusInfo.getIssuerUnknownCertStatusInfo(thisUpdate, null);
+        IssuerEntry issuer = issuerStore.getIssuerForFp(hashAlgo, issuerNameHash, issuerKeyHash);
+        if (issuer == null) {
+            for (int i = 0; i < serialNumbers.size(); i++) {
+                ret.add(CertStatusInfo.getIssuerUnknownCertStatusInfo(thisUpdate, null));
             }
+            return ret;
+        }
 
-            ResultSet rs = null;
-            CertStatusInfo certStatusInfo = null;
-
-            boolean unknown = true;
-            boolean ignore = false;
-            String certprofile = null;
-            String b64CertHash = null;
-            boolean revoked = false;
-            int reason = 0;
-            long revocationTime = 0;
-            long invalidatityTime = 0;
+        // the snapshot does not contain the certificate hashes
+        CertStatusSnapshot tmpSnapshot = includeCertHash ? null : snapshot;
+        Map<BigInteger, CertStatusSnapshot.CertStatusRecord> records = new HashMap<>();
+        Map<BigInteger, String> b64CertHashes = new HashMap<>();
+        Set<BigInteger> serialsToQuery = new LinkedHashSet<>();
+        for (BigInteger serialNumber : serialNumbers) {
+            if (serialNumber.signum() != 1) { // non-positive serial number
+                continue;
+            }
 
-            PreparedStatement ps = borrowPreparedStatement(sql);
+            CertStatusSnapshot.CertStatusRecord record = (tmpSnapshot == null) ? null
+                    : tmpSnapshot.get(issuer.getId(), serialNumber);
+            if (record != null) {
+                records.put(serialNumber, record);
+            } else {
+                // not in the snapshot (maybe added since the last refresh) or no snapshot
+                serialsToQuery.add(serialNumber);
+            }
+        }
 
+        if (!serialsToQuery.isEmpty()) {
             try {
-                int idx = 1;
-                ps.setInt(idx++, issuer.getId());
-                ps.setString(idx++, serialNumber.toString(16));
-
-                rs = ps.executeQuery();
+                queryCerts(issuer.getId(), new ArrayList<>(serialsToQuery), certHashAlgo,
+                        records, b64CertHashes);
+            } catch (DataAccessException ex) {
+                throw new OcspStoreException(ex.getMessage(), ex);
+            }
+        }
 
-                if (rs.next()) {
-                    unknown = false;
+        Date archiveCutOff = null;
+        if (includeArchiveCutoff) {
+            if (retentionInterval != 0) {
+                // expired certificate remains in status store for ever
+                if (retentionInterval < 0) {
+                    archiveCutOff = issuer.getNotBefore();
+                } else {
+                    long nowInMs = System.currentTimeMillis();
+                    long dateInMs = Math.max(issuer.getNotBefore().getTime(),
+                            nowInMs - DAY * retentionInterval);
+                    archiveCutOff = new Date(dateInMs);
+                }
+            }
+        }
 
-                    long timeInSec = time.getTime() / 1000;
-                    long notBeforeInSec = rs.getLong("NBEFORE");
-                    long notAfterInSec = rs.getLong("NAFTER");
+        for (BigInteger serialNumber : serialNumbers) {
+            if (serialNumber.signum() != 1) { // non-positive serial number
+                ret.add(CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null));
+                continue;
+            }
 
-                    if (!ignore && ignoreExpiredCert && timeInSec > notAfterInSec) {
-                        ignore = true;
-                    }
+            CertStatusInfo certStatusInfo = buildCertStatusInfo(time, thisUpdate,
+                    records.get(serialNumber), b64CertHashes.get(serialNumber), certHashAlgo,
+                    certprofileOption);
+            if (archiveCutOff != null) {
+                certStatusInfo.setArchiveCutOff(archiveCutOff);
+            }
+            ret.add(certStatusInfo);
+        }
 
-                    if (!ignore && ignoreNotYetValidCert && timeInSec < notBeforeInSec) {
-                        ignore = true;
-                    }
+        return ret;
+    } // method getCertStatuses
+
+    private void queryCerts(final int issuerId, final List<BigInteger> serialNumbers,
+            final HashAlgoType certHashAlgo,
+            final Map<BigInteger, CertStatusSnapshot.CertStatusRecord> records,
+            final Map<BigInteger, String> b64CertHashes) throws DataAccessException {
+        final int size = serialNumbers.size();
+        for (int from = 0; from < size; from += MAX_SERIALS_PER_QUERY) {
+            List<BigInteger> serials = serialNumbers.subList(from,
+                    Math.min(size, from + MAX_SERIALS_PER_QUERY));
+
+            String sql;
+            if (serials.size() == 1) {
+                sql = (certHashAlgo == null) ? sqlCs : sqlCsMap.get(certHashAlgo);
+            } else {
+                sql = buildSqlCsForSerials(serials.size(), certHashAlgo);
+            }
 
-                    certprofile = rs.getString("PN");
-                    if (!ignore) {
-                        ignore = (certprofile != null) && (certprofileOption != null)
-                                && !certprofileOption.include(certprofile);
-                    }
+            ResultSet rs = null;
+            PreparedStatement ps = borrowPreparedStatement(sql);
 
-                    if (!ignore) {
-                        if (includeCertHash) {
-                            b64CertHash = rs.getString(certHashAlgo.getShortName());
-                        }
+            try {
+                int idx = 1;
+                ps.setInt(idx++, issuerId);
+                for (BigInteger serial : serials) {
+                    ps.setString(idx++, serial.toString(16));
+                }
 
-                        revoked = rs.getBoolean("REV");
-                        if (revoked) {
-                            reason = rs.getInt("RR");
-                            revocationTime = rs.getLong("RT");
-                            invalidatityTime = rs.getLong("RIT");
-                        }
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    BigInteger serial = new BigInteger(rs.getString("SN"), 16);
+                    boolean revoked = rs.getBoolean("REV");
+                    records.put(serial, new CertStatusSnapshot.CertStatusRecord(issuerId, serial,
+                            rs.getLong("NBEFORE"), rs.getLong("NAFTER"), revoked,
+                            revoked ? rs.getInt("RR") : 0, revoked ? rs.getLong("RT") : 0,
+                            revoked ? rs.getLong("RIT") : 0, rs.getString("PN")));
+                    if (certHashAlgo != null) {
+                        b64CertHashes.put(serial, rs.getString(certHashAlgo.getShortName()));
                     }
-                } // end if (rs.next())
+                }
             } catch (SQLException ex) {
                 throw datasource.translate(sql, ex);
             } finally {
                 releaseDbResources(ps, rs);
             }
+        }
+    } // method queryCerts
+
+    private CertStatusInfo buildCertStatusInfo(final Date time, final Date thisUpdate,
+            final CertStatusSnapshot.CertStatusRecord record, final String b64CertHash,
+            final HashAlgoType certHashAlgo, final CertprofileOption certprofileOption) {
+        if (record == null) {
+            return unknownSerialAsGood
+                    ? CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, null, thisUpdate,
+                            null, null)
+                    : CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null);
+        }
 
-            if (unknown) {
-                if (unknownSerialAsGood) {
-                    certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, null,
-                            thisUpdate, null, null);
-                } else {
-                    certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, null);
-                }
-            } else {
-                if (ignore) {
-                    certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, null);
-                } else {
-                    byte[] certHash = null;
-                    if (b64CertHash != null) {
-                        certHash = Base64.decode(b64CertHash);
-                    }
+        long timeInSec = time.getTime() / 1000;
+        boolean ignore = false;
+        if (ignoreExpiredCert && timeInSec > record.getNotAfter()) {
+            ignore = true;
+        }
 
-                    if (revoked) {
-                        Date invTime = null;
-                        if (invalidatityTime != 0 && invalidatityTime != revocationTime) {
-                            invTime = new Date(invalidatityTime * 1000);
-                        }
-                        CertRevocationInfo revInfo = new CertRevocationInfo(reason,
-                                new Date(revocationTime * 1000), invTime);
-                        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-                                certHashAlgo, certHash, thisUpdate, null, certprofile);
-                    } else {
-                        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
-                                certHash, thisUpdate, null, certprofile);
-                    }
-                }
+        if (!ignore && ignoreNotYetValidCert && timeInSec < record.getNotBefore()) {
+            ignore = true;
+        }
+
+        String certprofile = record.getCertprofile();
+        if (!ignore) {
+            ignore = (certprofile != null) && (certprofileOption != null)
+                    && !certprofileOption.include(certprofile);
+        }
+
+        if (ignore) {
+            return CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, null);
+        }
+
+        byte[] certHash = null;
+        if (b64CertHash != null) {
+            certHash = Base64.decode(b64CertHash);
+        }
+
+        if (record.isRevoked()) {
+            long revocationTime = record.getRevocationTime();
+            long invalidatityTime = record.getInvalidityTime();
+            Date invTime = null;
+            if (invalidatityTime != 0 && invalidatityTime != revocationTime) {
+                invTime = new Date(invalidatityTime * 1000);
             }
+            CertRevocationInfo revInfo = new CertRevocationInfo(record.getReason(),
+                    new Date(revocationTime * 1000), invTime);
+            return CertStatusInfo.getRevokedCertStatusInfo(revInfo, certHashAlgo, certHash,
+                    thisUpdate, null, certprofile);
+        } else {
+            return CertStatusInfo.getGoodCertStatusInfo(certHashAlgo, certHash, thisUpdate,
+                    null, certprofile);
+        }
+    } // method buildCertStatusInfo
+
+    private static String buildSqlCsForSerials(final int numSerials,
+            final HashAlgoType certHashAlgo) {
+        StringBuilder sb = new StringBuilder(200 + numSerials * 2);
+        sb.append("SELECT SN,NBEFORE,NAFTER,REV,RR,RT,RIT,PN");
+        if (certHashAlgo == null) {
+            sb.append(" FROM CERT WHERE IID=? AND SN IN (");
+        } else {
+            sb.append(",").append(certHashAlgo.getShortName());
+            sb.append(" FROM CERT INNER JOIN CHASH ON CERT.IID=? AND CERT.SN IN (");
+        }
 
-            if (includeArchiveCutoff) {
-                if (retentionInterval != 0) {
-                    Date date;
-                    // expired certificate remains in status store for ever
-                    if (retentionInterval < 0) {
-                        date = issuer.getNotBefore();
-                    } else {
-                        long nowInMs = System.currentTimeMillis();
-                        long dateInMs = Math.max(issuer.getNotBefore().getTime(),
-                                nowInMs - DAY * retentionInterval);
-                        date = new Date(dateInMs);
+        for (int i = 0; i < numSerials; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append("?");
+        }
+        sb.append(")");
+
+        if (certHashAlgo != null) {
+            sb.append(" AND CERT.ID=CHASH.CID");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Retrieves the certificates whose database entries have been updated since the given time.
+     *
+     * @param startId
+     *          Minimal ID of the CERT entries.
+     * @param updatedSince
+     *          Minimal last update of the CERT entries, seconds since January 1, 1970,
+     *          00:00:00 GMT. 0 for all entries.
+     * @return up to 1000 entries ordered by ID. Certificates of issuers that are not
+     *     served by this store are skipped.
+     * @throws OcspStoreException
+     *           if the query fails.
+     */
+    public List<IssuerAndSerialEntry> getUpdatedCerts(final long startId, final long updatedSince)
+    throws OcspStoreException {
+        if (!initialized || initializationFailed) {
+            throw new OcspStoreException("CertStore is not initialized");
+        }
+
+        final String sql = sqlUpdatedCerts;
+        List<IssuerAndSerialEntry> ret = new LinkedList<>();
+        try {
+            PreparedStatement ps = borrowPreparedStatement(sql);
+            ResultSet rs = null;
+            try {
+                ps.setLong(1, startId);
+                ps.setLong(2, updatedSince);
+                rs = ps.executeQuery();
+                while (rs.next()) {
+                    IssuerEntry issuer = issuerStore.getIssuerForId(rs.getInt("IID"));
+                    if (issuer == null) {
+                        continue;
                     }
 
-                    certStatusInfo.setArchiveCutOff(date);
+                    ret.add(new IssuerAndSerialEntry(rs.getLong("ID"),
+                            issuer.getIssuerHashNameAndKey(HashAlgoType.SHA1),
+                            new BigInteger(rs.getString("SN"), 16)));
                 }
+            } catch (SQLException ex) {
+                throw datasource.translate(sql, ex);
+            } finally {
+                releaseDbResources(ps, rs);
             }
+        } catch (DataAccessException ex) {
+            throw new OcspStoreException(ex.getMessage(), ex);
+        }
+
+        return ret;
+    } // method getUpdatedCerts
 
-            return certStatusInfo;
+    /**
+     * Returns the number of certificates in the table CERT, including the ones of issuers not
+     * served by this store.
+     *
+     * @return the number of certificates.
+     * @throws OcspStoreException
+     *           if the query fails.
+     */
+    public int getNumCerts() throws OcspStoreException {
+        if (!initialized || initializationFailed) {
+            throw new OcspStoreException("CertStore is not initialized");
+        }
+
+        try {
+            return datasource.getCount(null, "CERT");
         } catch (DataAccessException ex) {
             throw new OcspStoreException(ex.getMessage(), ex);
         }
-    } // method getCertStatus
+    }
 
     /**
      * Borrow Prepared Statement.
@@ -470,18 +713,26 @@ public class DbCertStatusStore extends OcspStore {
         this.datasource = ParamUtil.requireNonNull("datasource", datasource);
 
         sqlCs = datasource.buildSelectFirstSql(
-                "NBEFORE,NAFTER,REV,RR,RT,RIT,PN FROM CERT WHERE IID=? AND SN=?", 1);
+                "SN,NBEFORE,NAFTER,REV,RR,RT,RIT,PN FROM CERT WHERE IID=? AND SN=?", 1);
         sqlCsMap = new HashMap<>();
+        sqlUpdatedCerts = datasource.buildSelectFirstSql(
+                "ID,IID,SN FROM CERT WHERE ID>=? AND LUPDATE>=?", 1000, "ID ASC");
 
         HashAlgoType[] hashAlgos = new HashAlgoType[]{HashAlgoType.SHA1,  HashAlgoType.SHA224,
             HashAlgoType.SHA256, HashAlgoType.SHA384, HashAlgoType.SHA512};
         for (HashAlgoType hashAlgo : hashAlgos) {
-            String coreSql = "NBEFORE,NAFTER,ID,REV,RR,RT,RIT,PN," + hashAlgo.getShortName()
+            String coreSql = "SN,NBEFORE,NAFTER,ID,REV,RR,RT,RIT,PN," + hashAlgo.getShortName()
                 + " FROM CERT INNER JOIN CHASH ON CERT.IID=? AND CERT.SN=? AND CERT.ID=CHASH.CID";
             sqlCsMap.put(hashAlgo, datasource.buildSelectFirstSql(coreSql, 1));
         }
 
         StoreConf storeConf = new StoreConf(conf);
+        this.snapshotEnabled = storeConf.isSnapshotEnabled();
+        this.snapshotFullReloadIntervalMs = storeConf.getSnapshotFullReloadInterval() * 60L * 1000;
+        if (snapshotEnabled) {
+            sqlSnapshot = datasource.buildSelectFirstSql("ID,IID,SN,NBEFORE,NAFTER,REV,RR,RT,RIT,PN"
+                    + " FROM CERT WHERE ID>=? AND LUPDATE>=?", 1000, "ID ASC");
+        }
 
         try {
             Set<X509Certificate> includeIssuers = null;
@@ -506,6 +757,15 @@ public class DbCertStatusStore extends OcspStore {
         this.scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
         this.scheduledThreadPoolExecutor.scheduleAtFixedRate(storeUpdateService, 60, 60,
                 TimeUnit.SECONDS);
+        if (snapshotEnabled) {
+            // load the snapshot in background, the database is used until it is available
+            this.scheduledThreadPoolExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refreshSnapshot();
+                }
+            });
+        }
     }
 
     @Override
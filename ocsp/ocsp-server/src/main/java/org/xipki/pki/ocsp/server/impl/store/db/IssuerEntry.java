@@ -91,6 +91,10 @@ public class IssuerEntry {
         return notBefore;
     }
 
+    public IssuerHashNameAndKey getIssuerHashNameAndKey(final HashAlgoType hashAlgo) {
+        return issuerHashMap.get(hashAlgo);
+    }
+
     Collection<IssuerHashNameAndKey> getIssuerHashNameAndKeys() {
         return Collections.unmodifiableCollection(issuerHashMap.values());
     }
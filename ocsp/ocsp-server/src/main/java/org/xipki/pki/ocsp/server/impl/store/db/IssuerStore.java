@@ -34,42 +34,106 @@
 
 package org.xipki.pki.ocsp.server.impl.store.db;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.xipki.commons.security.HashAlgoType;
 import org.xipki.pki.ocsp.api.IssuerHashNameAndKey;
 
 /**
+ * Immutable index of the issuers. A new instance is created for each refresh.
+ *
  * @author Lijun Liao
  * @since 2.0.0
  */
 
 public class IssuerStore {
 
+    private static final class HashKey {
+
+        private final byte[] issuerNameHash;
+
+        private final byte[] issuerKeyHash;
+
+        private final int hashCode;
+
+        HashKey(final byte[] issuerNameHash, final byte[] issuerKeyHash) {
+            this.issuerNameHash = issuerNameHash;
+            this.issuerKeyHash = issuerKeyHash;
+            this.hashCode = 31 * Arrays.hashCode(issuerNameHash) + Arrays.hashCode(issuerKeyHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof HashKey)) {
+                return false;
+            }
+
+            HashKey other = (HashKey) obj;
+            return Arrays.equals(issuerNameHash, other.issuerNameHash)
+                    && Arrays.equals(issuerKeyHash, other.issuerKeyHash);
+        }
+
+    } // class HashKey
+
     private final Set<Integer> ids;
 
-    private final List<IssuerEntry> entries;
+    private final Map<Integer, IssuerEntry> idMap;
+
+    private final Map<HashAlgoType, Map<HashKey, IssuerEntry>> hashMap;
+
+    private final Set<IssuerHashNameAndKey> issuerHashNameAndKeys;
 
     public IssuerStore(final List<IssuerEntry> entries) {
-        this.entries = new ArrayList<>(entries.size());
-        Set<Integer> idSet = new HashSet<>(entries.size());
+        Map<Integer, IssuerEntry> tmpIdMap = new HashMap<>(entries.size() * 2);
+        Map<HashAlgoType, Map<HashKey, IssuerEntry>> tmpHashMap = new EnumMap<>(HashAlgoType.class);
+        Set<IssuerHashNameAndKey> tmpIssuerHashNameAndKeys = new HashSet<>();
 
         for (IssuerEntry entry : entries) {
-            for (IssuerEntry existingEntry : this.entries) {
-                if (existingEntry.getId() == entry.getId()) {
+            if (tmpIdMap.containsKey(entry.getId())) {
+                throw new IllegalArgumentException(
+                        "issuer with the same id " + entry.getId() + " already available");
+            }
+            tmpIdMap.put(entry.getId(), entry);
+
+            for (IssuerHashNameAndKey issuerHash : entry.getIssuerHashNameAndKeys()) {
+                HashAlgoType algo = issuerHash.getAlgo();
+                Map<HashKey, IssuerEntry> map = tmpHashMap.get(algo);
+                if (map == null) {
+                    map = new HashMap<>(entries.size() * 2);
+                    tmpHashMap.put(algo, map);
+                }
+
+                HashKey key = new HashKey(issuerHash.getIssuerNameHash(),
+                        issuerHash.getIssuerKeyHash());
+                if (map.containsKey(key)) {
                     throw new IllegalArgumentException(
-                            "issuer with the same id " + entry.getId() + " already available");
+                            "found at least two issuers with the same subject and key");
                 }
+                map.put(key, entry);
+                tmpIssuerHashNameAndKeys.add(issuerHash);
             }
-            this.entries.add(entry);
-            idSet.add(entry.getId());
         }
 
-        this.ids = Collections.unmodifiableSet(idSet);
+        this.idMap = tmpIdMap;
+        this.hashMap = tmpHashMap;
+        this.ids = Collections.unmodifiableSet(tmpIdMap.keySet());
+        this.issuerHashNameAndKeys = Collections.unmodifiableSet(tmpIssuerHashNameAndKeys);
     }
 
     public int getSize() {
@@ -87,32 +151,17 @@ public class IssuerStore {
     }
 
     public IssuerEntry getIssuerForId(final int id) {
-        for (IssuerEntry entry : entries) {
-            if (entry.getId() == id) {
-                return entry;
-            }
-        }
-
-        return null;
+        return idMap.get(id);
     }
 
     public IssuerEntry getIssuerForFp(final HashAlgoType hashAlgo, final byte[] issuerNameHash,
             final byte[] issuerKeyHash) {
-        for (IssuerEntry entry : entries) {
-            if (entry.matchHash(hashAlgo, issuerNameHash, issuerKeyHash)) {
-                return entry;
-            }
-        }
-
-        return null;
+        Map<HashKey, IssuerEntry> map = hashMap.get(hashAlgo);
+        return (map == null) ? null : map.get(new HashKey(issuerNameHash, issuerKeyHash));
     }
 
     public Set<IssuerHashNameAndKey> getIssuerHashNameAndKeys() {
-        Set<IssuerHashNameAndKey> ret = new HashSet<>();
-        for (IssuerEntry issuerEntry : entries) {
-            ret.addAll(issuerEntry.getIssuerHashNameAndKeys());
-        }
-        return ret;
+        return issuerHashNameAndKeys;
     }
 
 }
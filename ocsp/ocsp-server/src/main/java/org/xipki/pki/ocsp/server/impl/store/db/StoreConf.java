@@ -54,10 +54,21 @@ class StoreConf {
 
     private static final String KEY_cacerts_excludes = "cacerts.excludes";
 
+    private static final String KEY_snapshot_enabled = "snapshot.enabled";
+
+    private static final String KEY_snapshot_fullReloadInterval = "snapshot.fullReloadInterval";
+
     private final Set<String> caCertsIncludes = new HashSet<>();
 
     private final Set<String> caCertsExcludes = new HashSet<>();
 
+    private final boolean snapshotEnabled;
+
+    /**
+     * Interval in minutes.
+     */
+    private final int snapshotFullReloadInterval;
+
     StoreConf(final String propsConf) throws OcspStoreException {
         Properties props = new Properties();
         try {
@@ -81,6 +92,21 @@ class StoreConf {
                 caCertsExcludes.add(st.nextToken());
             }
         }
+
+        this.snapshotEnabled = Boolean.parseBoolean(
+                props.getProperty(KEY_snapshot_enabled, "false").trim());
+
+        str = props.getProperty(KEY_snapshot_fullReloadInterval, "60").trim();
+        try {
+            this.snapshotFullReloadInterval = Integer.parseInt(str);
+        } catch (NumberFormatException ex) {
+            throw new OcspStoreException("invalid " + KEY_snapshot_fullReloadInterval + ": " + str);
+        }
+
+        if (snapshotFullReloadInterval < 1) {
+            throw new OcspStoreException(KEY_snapshot_fullReloadInterval
+                    + " must not be less than 1: " + str);
+        }
     }
 
     Set<String> getCaCertsIncludes() {
@@ -91,4 +117,12 @@ class StoreConf {
         return caCertsExcludes;
     }
 
+    boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    int getSnapshotFullReloadInterval() {
+        return snapshotFullReloadInterval;
+    }
+
 }
@@ -0,0 +1,381 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1GeneralizedTime;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.BasicOCSPResponse;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.ResponderID;
+import org.bouncycastle.asn1.ocsp.RevokedInfo;
+import org.bouncycastle.asn1.ocsp.SingleResponse;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.cert.ocsp.RevokedStatus;
+import org.bouncycastle.cert.ocsp.SingleResp;
+import org.bouncycastle.cert.ocsp.UnknownStatus;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.commons.security.ConcurrentContentSigner;
+import org.xipki.commons.security.HashAlgoType;
+
+/**
+ * Compares the responses built by {@link OcspRespEncoder} with the ones built by
+ * {@link BasicOCSPRespBuilder}. Both use the same RSA key, whose PKCS#1 v1.5 signatures are
+ * deterministic, hence the encoded responses must be identical.
+ *
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class OcspRespEncoderTest {
+
+    private static final String SIG_ALGO = "SHA256withRSA";
+
+    private static final X500Name RESPONDER_NAME = new X500Name("CN=OCSP Responder");
+
+    private static KeyPair keyPair;
+
+    private static ConcurrentContentSigner signer;
+
+    private static byte[] encodedSigAlgId;
+
+    private static X509CertificateHolder responderCert;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        KeyPairGenerator kpGen = KeyPairGenerator.getInstance("RSA");
+        kpGen.initialize(1024);
+        keyPair = kpGen.generateKeyPair();
+
+        signer = (ConcurrentContentSigner) Proxy.newProxyInstance(
+                ConcurrentContentSigner.class.getClassLoader(),
+                new Class<?>[]{ConcurrentContentSigner.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(final Object proxy, final Method method,
+                            final Object[] args) throws Throwable {
+                        if ("sign".equals(method.getName()) && args[0] instanceof byte[]) {
+                            Signature sig = Signature.getInstance(SIG_ALGO);
+                            sig.initSign(keyPair.getPrivate());
+                            sig.update((byte[]) args[0]);
+                            return sig.sign();
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        encodedSigAlgId = new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption,
+                DERNull.INSTANCE).getEncoded(ASN1Encoding.DER);
+
+        Date notBefore = date(2016, 1, 1, 0, 0, 0);
+        X509v3CertificateBuilder certBuilder = new X509v3CertificateBuilder(RESPONDER_NAME,
+                BigInteger.ONE, notBefore, new Date(notBefore.getTime() + 365L * 86400000),
+                RESPONDER_NAME,
+                SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded()));
+        responderCert = certBuilder.build(newContentSigner());
+    }
+
+    @Test
+    public void testGoodWithoutNextUpdate() throws Exception {
+        Date producedAt = date(2016, 12, 1, 10, 20, 30);
+        Date thisUpdate = date(2016, 12, 1, 10, 0, 0);
+        CertID certId = certId(1);
+
+        OcspRespEncoder encoder = newEncoder();
+        encoder.addSingleResponse(certId.getEncoded(ASN1Encoding.DER),
+                OcspRespEncoder.CERT_STATUS_GOOD, thisUpdate, null, null);
+        byte[] encoded = encoder.build(signer, encodedSigAlgId, null, producedAt);
+
+        BasicOCSPRespBuilder builder = newBuilder();
+        builder.addResponse(new CertificateID(certId), CertificateStatus.GOOD, thisUpdate, null,
+                null);
+        assertEncoded(builder, null, producedAt, encoded);
+
+        BasicOCSPResp basicResp = parse(encoded);
+        Assert.assertEquals(producedAt, basicResp.getProducedAt());
+        Assert.assertFalse(basicResp.hasExtensions());
+        Assert.assertEquals(0, basicResp.getCerts().length);
+
+        SingleResp[] singleResps = basicResp.getResponses();
+        Assert.assertEquals(1, singleResps.length);
+        Assert.assertEquals(new CertificateID(certId), singleResps[0].getCertID());
+        Assert.assertNull(singleResps[0].getCertStatus());
+        Assert.assertEquals(thisUpdate, singleResps[0].getThisUpdate());
+        Assert.assertNull(singleResps[0].getNextUpdate());
+        Assert.assertFalse(singleResps[0].hasExtensions());
+    }
+
+    @Test
+    public void testRevokedWithExtensions() throws Exception {
+        Date producedAt = date(2016, 12, 1, 10, 20, 30);
+        Date thisUpdate = date(2016, 12, 1, 10, 0, 0);
+        Date nextUpdate = date(2016, 12, 2, 10, 0, 0);
+        Date revTime = date(2016, 11, 30, 23, 59, 59);
+        Date invTime = date(2016, 11, 29, 0, 0, 1);
+        CertID certId = certId(0x1234567);
+
+        Extension invalidityDate = new Extension(Extension.invalidityDate, false,
+                new ASN1GeneralizedTime(invTime).getEncoded());
+        Extension nonce = new Extension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false,
+                new DEROctetString(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}).getEncoded());
+
+        OcspRespEncoder encoder = newEncoder();
+        encoder.addSingleResponse(certId.getEncoded(ASN1Encoding.DER),
+                OcspRespEncoder.encodeRevokedStatus(revTime, CRLReason.keyCompromise),
+                thisUpdate, nextUpdate,
+                OcspRespEncoder.encodeExtensions(Arrays.asList(invalidityDate)));
+        encoder.setResponseExtensions(OcspRespEncoder.encodeExtensions(Arrays.asList(nonce)));
+        X509CertificateHolder[] certs = new X509CertificateHolder[]{responderCert};
+        byte[] encoded = encoder.build(signer, encodedSigAlgId,
+                OcspRespEncoder.encodeCerts(certs), producedAt);
+
+        BasicOCSPRespBuilder builder = newBuilder();
+        builder.addResponse(new CertificateID(certId),
+                new RevokedStatus(revTime, CRLReason.keyCompromise), thisUpdate, nextUpdate,
+                new Extensions(invalidityDate));
+        builder.setResponseExtensions(new Extensions(nonce));
+        assertEncoded(builder, certs, producedAt, encoded);
+
+        BasicOCSPResp basicResp = parse(encoded);
+        Assert.assertEquals(nonce, basicResp.getExtension(nonce.getExtnId()));
+        Assert.assertEquals(1, basicResp.getCerts().length);
+        Assert.assertEquals(responderCert, basicResp.getCerts()[0]);
+
+        SingleResp singleResp = basicResp.getResponses()[0];
+        Assert.assertEquals(nextUpdate, singleResp.getNextUpdate());
+        Assert.assertEquals(invalidityDate, singleResp.getExtension(Extension.invalidityDate));
+        RevokedStatus status = (RevokedStatus) singleResp.getCertStatus();
+        Assert.assertEquals(revTime, status.getRevocationTime());
+        Assert.assertTrue(status.hasRevocationReason());
+        Assert.assertEquals(CRLReason.keyCompromise, status.getRevocationReason());
+    }
+
+    @Test
+    public void testSeveralResponses() throws Exception {
+        Date producedAt = date(2016, 12, 1, 10, 20, 30);
+        Date thisUpdate = date(2016, 12, 1, 10, 0, 0);
+        Date nextUpdate = date(2016, 12, 8, 10, 0, 0);
+        Date revTime = date(2016, 2, 29, 12, 0, 0);
+
+        OcspRespEncoder encoder = newEncoder();
+        BasicOCSPRespBuilder builder = newBuilder();
+        List<CertificateStatus> expectedStatuses = new ArrayList<>();
+        // enough responses to require a length of more than one byte
+        for (int i = 0; i < 30; i++) {
+            CertID certId = certId(i + 1);
+            byte[] encodedStatus;
+            CertificateStatus status;
+            switch (i % 3) {
+            case 0:
+                encodedStatus = OcspRespEncoder.CERT_STATUS_GOOD;
+                status = CertificateStatus.GOOD;
+                break;
+            case 1:
+                encodedStatus = OcspRespEncoder.CERT_STATUS_UNKNOWN;
+                status = new UnknownStatus();
+                break;
+            default:
+                // without reason
+                encodedStatus = OcspRespEncoder.encodeRevokedStatus(revTime, null);
+                status = new RevokedStatus(
+                        new RevokedInfo(new ASN1GeneralizedTime(revTime), null));
+                break;
+            }
+            expectedStatuses.add(status);
+
+            Date tmpNextUpdate = (i % 2 == 0) ? nextUpdate : null;
+            encoder.addSingleResponse(certId.getEncoded(ASN1Encoding.DER), encodedStatus,
+                    thisUpdate, tmpNextUpdate, null);
+            builder.addResponse(new CertificateID(certId), status, thisUpdate, tmpNextUpdate,
+                    null);
+        }
+
+        byte[] encoded = encoder.build(signer, encodedSigAlgId, null, producedAt);
+        assertEncoded(builder, null, producedAt, encoded);
+
+        SingleResp[] singleResps = parse(encoded).getResponses();
+        Assert.assertEquals(expectedStatuses.size(), singleResps.length);
+        for (int i = 0; i < singleResps.length; i++) {
+            Object status = singleResps[i].getCertStatus();
+            Object expected = expectedStatuses.get(i);
+            if (expected == CertificateStatus.GOOD) {
+                Assert.assertNull(status);
+            } else {
+                Assert.assertEquals(expected.getClass(), status.getClass());
+            }
+
+            if (status instanceof RevokedStatus) {
+                RevokedStatus revStatus = (RevokedStatus) status;
+                Assert.assertEquals(revTime, revStatus.getRevocationTime());
+                Assert.assertFalse(revStatus.hasRevocationReason());
+            }
+        }
+    }
+
+    @Test
+    public void testGeneralizedTime() throws Exception {
+        Date[] dates = new Date[]{
+            date(1970, 1, 1, 0, 0, 0),
+            date(1999, 12, 31, 23, 59, 59),
+            date(2000, 2, 29, 12, 30, 45),
+            date(2016, 2, 29, 0, 0, 0),
+            date(2017, 3, 1, 1, 2, 3),
+            date(2049, 12, 31, 23, 59, 59),
+            date(2100, 3, 1, 0, 0, 0)};
+
+        for (Date date : dates) {
+            // milliseconds are truncated
+            Date dateWithMs = new Date(date.getTime() + 999);
+            OcspRespEncoder encoder = newEncoder();
+            encoder.addSingleResponse(certId(1).getEncoded(ASN1Encoding.DER),
+                    OcspRespEncoder.encodeRevokedStatus(dateWithMs, null), dateWithMs,
+                    dateWithMs, null);
+            byte[] encoded = encoder.build(signer, encodedSigAlgId, null, dateWithMs);
+
+            BasicOCSPResponse basicResp = BasicOCSPResponse.getInstance(
+                    parse(encoded).getEncoded());
+            String expected = new ASN1GeneralizedTime(date).getTimeString();
+            Assert.assertEquals(15, expected.length());
+            Assert.assertEquals(expected,
+                    basicResp.getTbsResponseData().getProducedAt().getTimeString());
+
+            SingleResponse singleResp = SingleResponse.getInstance(
+                    basicResp.getTbsResponseData().getResponses().getObjectAt(0));
+            Assert.assertEquals(expected, singleResp.getThisUpdate().getTimeString());
+            Assert.assertEquals(expected, singleResp.getNextUpdate().getTimeString());
+            RevokedInfo revInfo = RevokedInfo.getInstance(
+                    singleResp.getCertStatus().getStatus());
+            Assert.assertEquals(expected, revInfo.getRevocationTime().getTimeString());
+        }
+    }
+
+    @Test
+    public void testUnsuccessfulResponse() throws Exception {
+        for (OcspResponseStatus status : OcspResponseStatus.values()) {
+            if (status == OcspResponseStatus.successful) {
+                continue;
+            }
+
+            byte[] encoded = OcspRespEncoder.encodeUnsuccessfulResponse(status);
+            Assert.assertArrayEquals(new OCSPRespBuilder().build(status.getStatus(), null)
+                    .getEncoded(), encoded);
+            Assert.assertEquals(status.getStatus(), new OCSPResp(encoded).getStatus());
+        }
+    }
+
+    private static OcspRespEncoder newEncoder() throws Exception {
+        return new OcspRespEncoder(new ResponderID(RESPONDER_NAME).getEncoded(ASN1Encoding.DER));
+    }
+
+    private static BasicOCSPRespBuilder newBuilder() {
+        return new BasicOCSPRespBuilder(new RespID(RESPONDER_NAME));
+    }
+
+    private static ContentSigner newContentSigner() throws Exception {
+        return new JcaContentSignerBuilder(SIG_ALGO).build(keyPair.getPrivate());
+    }
+
+    private static void assertEncoded(final BasicOCSPRespBuilder builder,
+            final X509CertificateHolder[] certs, final Date producedAt, final byte[] encoded)
+    throws Exception {
+        BasicOCSPResp expected = builder.build(newContentSigner(), certs, producedAt);
+        byte[] expectedEncoded = new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL,
+                expected).getEncoded();
+        Assert.assertArrayEquals(expectedEncoded, encoded);
+    }
+
+    private static BasicOCSPResp parse(final byte[] encoded) throws Exception {
+        OCSPResp ocspResp = new OCSPResp(encoded);
+        Assert.assertEquals(OCSPRespBuilder.SUCCESSFUL, ocspResp.getStatus());
+        BasicOCSPResp basicResp = (BasicOCSPResp) ocspResp.getResponseObject();
+        Assert.assertTrue("signature", basicResp.isSignatureValid(
+                new JcaContentVerifierProviderBuilder().build(keyPair.getPublic())));
+        Assert.assertEquals(new RespID(RESPONDER_NAME), basicResp.getResponderId());
+        return basicResp;
+    }
+
+    private static CertID certId(final long serialNumber) {
+        byte[] keyHash = new byte[20];
+        Arrays.fill(keyHash, (byte) 0x11);
+        return new CertID(new AlgorithmIdentifier(HashAlgoType.SHA1.getOid(), DERNull.INSTANCE),
+                new DEROctetString(new byte[20]), new DEROctetString(keyHash),
+                new ASN1Integer(serialNumber));
+    }
+
+    private static Date date(final int year, final int month, final int day, final int hour,
+            final int minute, final int second) {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.clear();
+        cal.set(year, month - 1, day, hour, minute, second);
+        return cal.getTime();
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.xipki.pki.ocsp.server.impl.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CachedResponse;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CertIdKey;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class PregeneratedResponseStoreTest {
+
+    @Test
+    public void testNoEvictionBelowMaxSize() {
+        PregeneratedResponseStore store = new PregeneratedResponseStore(3600, 20000);
+        final int num = 20000;
+        for (int i = 0; i < num; i++) {
+            store.put(key(i), new byte[]{(byte) i}, cacheInfo(0, null));
+        }
+
+        assertEquals(num, store.size());
+        for (int i = 0; i < num; i++) {
+            CachedResponse resp = store.get(key(i));
+            assertNotNull("response " + i, resp);
+            assertArrayEquals(new byte[]{(byte) i}, resp.getEncodedResponse());
+        }
+
+        // replace
+        store.put(key(1), new byte[]{9, 9}, cacheInfo(0, null));
+        assertEquals(num, store.size());
+        assertArrayEquals(new byte[]{9, 9}, store.get(key(1)).getEncodedResponse());
+    }
+
+    @Test
+    public void testMaxSize() {
+        PregeneratedResponseStore store = new PregeneratedResponseStore(3600, 100);
+        for (int i = 0; i < 150; i++) {
+            store.put(key(i), new byte[]{(byte) i}, cacheInfo(0, null));
+            // the new entry is never evicted
+            assertNotNull(store.get(key(i)));
+        }
+
+        assertEquals(100, store.size());
+        assertEquals(50, store.getEvictedCount());
+
+        // replacing an entry does not evict another one
+        store.put(key(149), new byte[]{1}, cacheInfo(0, null));
+        assertEquals(100, store.size());
+        assertEquals(50, store.getEvictedCount());
+    }
+
+    @Test
+    public void testRefreshAndExpiry() {
+        PregeneratedResponseStore store = new PregeneratedResponseStore(3600, 100);
+        long now = System.currentTimeMillis();
+
+        store.put(key(1), new byte[1], cacheInfo(now, null));
+        // nextUpdate in 10 minutes limits the lifetime
+        store.put(key(2), new byte[1], cacheInfo(now, now + 600 * 1000L));
+        // already expired
+        store.put(key(3), new byte[1], cacheInfo(now, now - 1));
+
+        // expired responses are not returned and removed
+        assertNull(store.get(key(3)));
+        assertEquals(2, store.size());
+
+        CachedResponse resp2 = store.get(key(2));
+        assertEquals(now + 600 * 1000L, resp2.getExpiresAt());
+        assertTrue(store.get(key(1)).getExpiresAt() >= now + 3600 * 1000L);
+
+        assertTrue(store.getKeysToRefresh(now, 10).isEmpty());
+
+        // half of the lifetime of key(2) has passed
+        List<CertIdKey> keys = store.getKeysToRefresh(now + 301 * 1000L, 10);
+        assertEquals(1, keys.size());
+        assertEquals(key(2), keys.get(0));
+
+        keys = store.getKeysToRefresh(now + 1801 * 1000L, 10);
+        assertEquals(2, keys.size());
+        assertEquals(1, store.getKeysToRefresh(now + 1801 * 1000L, 1).size());
+
+        store.remove(key(1));
+        assertNull(store.get(key(1)));
+        assertEquals(1, store.size());
+    }
+
+    private static ResponseCacheInfo cacheInfo(final long thisUpdate, final Long nextUpdate) {
+        ResponseCacheInfo cacheInfo = new ResponseCacheInfo(thisUpdate);
+        cacheInfo.setNextUpdate(nextUpdate);
+        return cacheInfo;
+    }
+
+    private static CertIdKey key(final int index) {
+        return new CertIdKey(new byte[]{0x30, 0x03, 0x02, 0x01, (byte) index,
+            (byte) (index >> 8)});
+    }
+
+}
@@ -0,0 +1,226 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.ocsp.OCSPRequest;
+import org.bouncycastle.asn1.ocsp.Request;
+import org.bouncycastle.asn1.ocsp.Signature;
+import org.bouncycastle.asn1.ocsp.TBSRequest;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.junit.Test;
+import org.xipki.pki.ocsp.server.impl.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CachedResponse;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CertIdKey;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testCertIdKey() throws Exception {
+        CertID certId = certId(OIWObjectIdentifiers.idSHA1, 20, BigInteger.valueOf(0x1234));
+        byte[] request = request(null, null, certId);
+
+        CertIdKey key = ResponseCache.getCertIdKey(request);
+        assertNotNull("key", key);
+        assertArrayEquals(certId.getEncoded(ASN1Encoding.DER), key.getEncoded());
+    }
+
+    @Test
+    public void testLongFormLength() throws Exception {
+        // the CertID and the requestorName exceed 127 bytes
+        CertID certId = certId(NISTObjectIdentifiers.id_sha512, 64,
+                BigInteger.ONE.shiftLeft(159));
+        char[] chars = new char[300];
+        Arrays.fill(chars, 'a');
+        GeneralName requestorName = new GeneralName(new X500Name("CN=" + new String(chars)));
+        byte[] request = request(requestorName, null, certId);
+
+        CertIdKey key = ResponseCache.getCertIdKey(request);
+        assertNotNull("key", key);
+        assertArrayEquals(certId.getEncoded(ASN1Encoding.DER), key.getEncoded());
+    }
+
+    @Test
+    public void testExplicitVersion() throws Exception {
+        CertID certId = certId(OIWObjectIdentifiers.idSHA1, 20, BigInteger.TEN);
+        ASN1EncodableVector tbs = new ASN1EncodableVector();
+        tbs.add(new DERTaggedObject(true, 0, new ASN1Integer(0)));
+        tbs.add(new DERSequence(new Request(certId, null)));
+        byte[] request = new DERSequence(new DERSequence(tbs)).getEncoded();
+        assertArrayEquals(certId.getEncoded(ASN1Encoding.DER),
+                ResponseCache.getCertIdKey(request).getEncoded());
+
+        tbs = new ASN1EncodableVector();
+        tbs.add(new DERTaggedObject(true, 0, new ASN1Integer(1)));
+        tbs.add(new DERSequence(new Request(certId, null)));
+        request = new DERSequence(new DERSequence(tbs)).getEncoded();
+        assertNull("version v2", ResponseCache.getCertIdKey(request));
+    }
+
+    @Test
+    public void testNotCacheable() throws Exception {
+        CertID certId = certId(OIWObjectIdentifiers.idSHA1, 20, BigInteger.TEN);
+        Extensions nonce = new Extensions(new Extension(
+                OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false,
+                new DEROctetString(new byte[16])));
+
+        assertNull("nonce", ResponseCache.getCertIdKey(request(null, nonce, certId)));
+
+        byte[] request = new OCSPRequest(new TBSRequest(null,
+                new DERSequence(new Request(certId, nonce)), (Extensions) null), null)
+                .getEncoded();
+        assertNull("singleRequestExtensions", ResponseCache.getCertIdKey(request));
+
+        CertID certId2 = certId(OIWObjectIdentifiers.idSHA1, 20, BigInteger.ONE);
+        assertNull("two CertIDs",
+                ResponseCache.getCertIdKey(request(null, null, certId, certId2)));
+
+        TBSRequest tbsRequest = new TBSRequest(null,
+                new DERSequence(new Request(certId, null)), (Extensions) null);
+        Signature signature = new Signature(
+                new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption,
+                        DERNull.INSTANCE),
+                new DERBitString(new byte[256]));
+        request = new OCSPRequest(tbsRequest, signature).getEncoded();
+        assertNull("signed", ResponseCache.getCertIdKey(request));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        byte[] request = request(null, null,
+                certId(OIWObjectIdentifiers.idSHA1, 20, BigInteger.TEN));
+        for (int i = 0; i < request.length; i++) {
+            assertNull("truncated to " + i,
+                    ResponseCache.getCertIdKey(Arrays.copyOf(request, i)));
+        }
+
+        byte[] trailing = Arrays.copyOf(request, request.length + 1);
+        assertNull("trailing byte", ResponseCache.getCertIdKey(trailing));
+
+        byte[] tooLong = new byte[]{0x30, (byte) 0x84, 0x7F, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF};
+        assertNull("4-byte length", ResponseCache.getCertIdKey(tooLong));
+
+        Random random = new Random(0);
+        for (int i = 0; i < 1000; i++) {
+            byte[] garbage = new byte[1 + random.nextInt(request.length)];
+            random.nextBytes(garbage);
+            garbage[0] = 0x30;
+            // must not throw any exception
+            ResponseCache.getCertIdKey(garbage);
+
+            garbage = request.clone();
+            garbage[random.nextInt(garbage.length)] = (byte) random.nextInt();
+            ResponseCache.getCertIdKey(garbage);
+        }
+    }
+
+    @Test
+    public void testCacheInfo() {
+        ResponseCache cache = new ResponseCache(10, 3600);
+        long now = System.currentTimeMillis();
+        ResponseCacheInfo cacheInfo = new ResponseCacheInfo(now);
+        cacheInfo.setNextUpdate(now + 60 * 1000L);
+        cacheInfo.setCertStatus(BigInteger.TEN, "revoked");
+
+        CertIdKey key = new CertIdKey(new byte[]{0x30, 0x00});
+        cache.put(key, new byte[]{1, 2}, cacheInfo);
+
+        CachedResponse resp = cache.get(key);
+        assertNotNull("response", resp);
+        assertEquals(BigInteger.TEN, resp.getSerialNumber());
+        assertEquals("revoked", resp.getCertStatus());
+        assertEquals(now + 60 * 1000L, resp.getExpiresAt());
+
+        cacheInfo = new ResponseCacheInfo(now);
+        cacheInfo.setNextUpdate(now - 1);
+        cache.put(key, new byte[]{1, 2}, cacheInfo);
+        assertNull("expired", cache.get(key));
+    }
+
+    private static CertID certId(final ASN1ObjectIdentifier hashAlgo,
+            final int hashLen, final BigInteger serial) {
+        byte[] nameHash = new byte[hashLen];
+        Arrays.fill(nameHash, (byte) 1);
+        byte[] keyHash = new byte[hashLen];
+        Arrays.fill(keyHash, (byte) 2);
+        return new CertID(new AlgorithmIdentifier(hashAlgo, DERNull.INSTANCE),
+                new DEROctetString(nameHash), new DEROctetString(keyHash),
+                new ASN1Integer(serial));
+    }
+
+    private static byte[] request(final GeneralName requestorName,
+            final Extensions extensions, final CertID... certIds) throws Exception {
+        ASN1EncodableVector requests = new ASN1EncodableVector();
+        for (CertID certId : certIds) {
+            requests.add(new Request(certId, null));
+        }
+        TBSRequest tbsRequest = new TBSRequest(requestorName, new DERSequence(requests),
+                extensions);
+        return new OCSPRequest(tbsRequest, null).getEncoded();
+    }
+
+}
@@ -0,0 +1,210 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.CertID;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.commons.security.HashAlgoType;
+import org.xipki.pki.ocsp.api.IssuerHashNameAndKey;
+import org.xipki.pki.ocsp.api.OcspStore;
+import org.xipki.pki.ocsp.api.OcspStoreException;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CachedResponse;
+import org.xipki.pki.ocsp.server.impl.ResponseCache.CertIdKey;
+import org.xipki.pki.ocsp.server.impl.store.db.DbCertStatusStore;
+import org.xipki.pki.ocsp.server.impl.store.db.IssuerAndSerialEntry;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class ResponsePregeneratorTest {
+
+    private static final class Row {
+
+        private final long id;
+
+        private volatile long lastUpdate;
+
+        private volatile boolean revoked;
+
+        Row(final long id, final long lastUpdate) {
+            this.id = id;
+            this.lastUpdate = lastUpdate;
+        }
+
+    } // class Row
+
+    /**
+     * Table CERT in memory, the ID is also the serial number.
+     */
+    private static final class StubStore extends DbCertStatusStore {
+
+        private final Map<Long, Row> rows = new TreeMap<>();
+
+        StubStore(final int numCerts) {
+            setName("stub");
+            for (long id = 1; id <= numCerts; id++) {
+                rows.put(id, new Row(id, 1000));
+            }
+        }
+
+        synchronized void revoke(final long id) {
+            Row row = rows.get(id);
+            row.revoked = true;
+            row.lastUpdate = System.currentTimeMillis() / 1000;
+        }
+
+        synchronized boolean isRevoked(final long id) {
+            return rows.get(id).revoked;
+        }
+
+        @Override
+        public synchronized List<IssuerAndSerialEntry> getUpdatedCerts(final long startId,
+                final long updatedSince) throws OcspStoreException {
+            List<IssuerAndSerialEntry> ret = new ArrayList<>();
+            for (Row row : rows.values()) {
+                if (row.id >= startId && row.lastUpdate >= updatedSince) {
+                    ret.add(new IssuerAndSerialEntry(row.id, ISSUER, BigInteger.valueOf(row.id)));
+                    if (ret.size() == 3) {
+                        break;
+                    }
+                }
+            }
+            return ret;
+        }
+
+        @Override
+        public synchronized int getNumCerts() throws OcspStoreException {
+            return rows.size();
+        }
+
+    } // class StubStore
+
+    private static final IssuerHashNameAndKey ISSUER = new IssuerHashNameAndKey(
+            HashAlgoType.SHA1, new byte[20], new byte[20]);
+
+    @Test
+    public void testRevocationDuringInitialScan() throws Exception {
+        final int numCerts = 20;
+        final StubStore store = new StubStore(numCerts);
+        final AtomicInteger numGenerated = new AtomicInteger(0);
+        // the response contains only the status
+        Function<OCSPReq, OcspRespWithCacheInfo> generator = (req) -> {
+            numGenerated.incrementAndGet();
+            long serial = req.getRequestList()[0].getCertID().getSerialNumber().longValue();
+            byte[] resp = new byte[]{(byte) (store.isRevoked(serial) ? 1 : 0)};
+            return new OcspRespWithCacheInfo(resp,
+                    new OcspRespWithCacheInfo.ResponseCacheInfo(System.currentTimeMillis()));
+        };
+
+        PregeneratedResponseStore responseStore = new PregeneratedResponseStore(3600, 1000);
+        // 5 responses per run
+        ResponsePregenerator pregenerator = new ResponsePregenerator("test",
+                Arrays.asList((OcspStore) store), responseStore, generator, 5, 1);
+
+        pregenerator.doRun();
+        Assert.assertEquals(5, responseStore.size());
+        assertStatus(responseStore, 2, false);
+
+        // revoke a certificate already passed by the initial scan
+        store.revoke(2);
+        pregenerator.doRun();
+        assertStatus(responseStore, 2, true);
+        Assert.assertEquals("initial scan not completed", 9, responseStore.size());
+
+        while (responseStore.size() < numCerts) {
+            pregenerator.doRun();
+        }
+        for (long serial = 1; serial <= numCerts; serial++) {
+            assertStatus(responseStore, serial, serial == 2);
+        }
+
+        // revocation after the initial scan, only updated certificates are regenerated.
+        // Certificates updated within the last second are scanned again to not miss any
+        // update.
+        store.revoke(17);
+        int num = numGenerated.get();
+        pregenerator.doRun();
+        assertStatus(responseStore, 17, true);
+        Assert.assertTrue(numGenerated.get() - num <= 2);
+    }
+
+    @Test
+    public void testTooManyCertificates() throws Exception {
+        StubStore store = new StubStore(20);
+        AtomicInteger numGenerated = new AtomicInteger(0);
+        Function<OCSPReq, OcspRespWithCacheInfo> generator = (req) -> {
+            numGenerated.incrementAndGet();
+            return null;
+        };
+
+        ResponsePregenerator pregenerator = new ResponsePregenerator("test",
+                Arrays.asList((OcspStore) store), new PregeneratedResponseStore(3600, 10),
+                generator, 1000, 1);
+        pregenerator.doRun();
+        Assert.assertTrue(pregenerator.isDisabled());
+        Assert.assertEquals(0, numGenerated.get());
+    }
+
+    private static void assertStatus(final PregeneratedResponseStore responseStore,
+            final long serial, final boolean revoked) throws Exception {
+        CertID certId = new CertID(
+                new AlgorithmIdentifier(HashAlgoType.SHA1.getOid(), DERNull.INSTANCE),
+                new DEROctetString(ISSUER.getIssuerNameHash()),
+                new DEROctetString(ISSUER.getIssuerKeyHash()), new ASN1Integer(serial));
+        CachedResponse resp = responseStore.get(
+                new CertIdKey(certId.getEncoded(ASN1Encoding.DER)));
+        Assert.assertNotNull("response for " + serial, resp);
+        Assert.assertEquals("revoked " + serial, revoked ? 1 : 0, resp.getEncodedResponse()[0]);
+    }
+
+}
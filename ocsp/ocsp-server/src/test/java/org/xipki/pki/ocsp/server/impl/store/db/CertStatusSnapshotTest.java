@@ -0,0 +1,154 @@
+/*
+ *
+ * Copyright (c) 2013 - 2016 Lijun Liao
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License version 3
+ * as published by the Free Software Foundation with the addition of the
+ * following permission added to Section 15 as permitted in Section 7(a):
+ *
+ * FOR ANY PART OF THE COVERED WORK IN WHICH THE COPYRIGHT IS OWNED BY
+ * THE AUTHOR LIJUN LIAO. LIJUN LIAO DISCLAIMS THE WARRANTY OF NON INFRINGEMENT
+ * OF THIRD PARTY RIGHTS.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * The interactive user interfaces in modified source and object code versions
+ * of this program must display Appropriate Legal Notices, as required under
+ * Section 5 of the GNU Affero General Public License.
+ *
+ * You can be released from the requirements of the license by purchasing
+ * a commercial license. Buying such a license is mandatory as soon as you
+ * develop commercial activities involving the XiPKI software without
+ * disclosing the source code of your own applications.
+ *
+ * For more information, please contact Lijun Liao at this
+ * address: lijun.liao@gmail.com
+ */
+
+package org.xipki.pki.ocsp.server.impl.store.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @author Lijun Liao
+ * @since 2.1.0
+ */
+
+public class CertStatusSnapshotTest {
+
+    @Test
+    public void testLookup() {
+        CertStatusSnapshot.Builder builder = new CertStatusSnapshot.Builder();
+        Random rnd = new Random(1);
+        int num = 5000;
+        BigInteger[] serials = new BigInteger[num];
+        Set<BigInteger> used = new HashSet<>();
+        for (int i = 0; i < num; i++) {
+            // different lengths, including leading zero bits
+            BigInteger serial;
+            do {
+                serial = new BigInteger(1 + rnd.nextInt(160), rnd);
+            } while (!used.add(serial));
+            serials[i] = serial;
+
+            boolean revoked = (i % 7 == 0);
+            String hex = serial.toString(16);
+            if (i % 3 == 0) {
+                hex = "00" + hex;
+            }
+            builder.add(1 + (i % 2), hex, i, i + 1000, revoked, revoked ? 1 : 0,
+                    revoked ? 2000 + i : 0, revoked ? 3000 + i : 0,
+                    (i % 5 == 0) ? null : "profile-" + (i % 4));
+        }
+
+        CertStatusSnapshot snapshot = builder.build();
+        assertEquals(num, snapshot.size());
+
+        for (int i = 0; i < num; i++) {
+            CertStatusSnapshot.CertStatusRecord record = snapshot.get(1 + (i % 2), serials[i]);
+            assertNotNull("serial " + serials[i], record);
+            assertEquals(i, record.getNotBefore());
+            assertEquals(i + 1000, record.getNotAfter());
+            boolean revoked = (i % 7 == 0);
+            assertEquals(revoked, record.isRevoked());
+            if (revoked) {
+                assertEquals(1, record.getReason());
+                assertEquals(2000 + i, record.getRevocationTime());
+                assertEquals(3000 + i, record.getInvalidityTime());
+            }
+            assertEquals((i % 5 == 0) ? null : "profile-" + (i % 4), record.getCertprofile());
+
+            // wrong issuer
+            assertNull(snapshot.get(2 - (i % 2), serials[i]));
+        }
+
+        assertNull(snapshot.get(3, serials[0]));
+        assertNull(snapshot.get(1, BigInteger.ONE.shiftLeft(200)));
+    }
+
+    @Test
+    public void testSerialOrder() {
+        CertStatusSnapshot.Builder builder = new CertStatusSnapshot.Builder();
+        long[] serials = {0x100, 0xFF, 1, 0, 0x80, 0x7F, 0x8000, 0x10000};
+        for (long serial : serials) {
+            builder.add(1, Long.toHexString(serial), serial, 0, false, 0, 0, 0, "p");
+        }
+        CertStatusSnapshot snapshot = builder.build();
+        for (long serial : serials) {
+            CertStatusSnapshot.CertStatusRecord record =
+                    snapshot.get(1, BigInteger.valueOf(serial));
+            assertNotNull("serial " + serial, record);
+            assertEquals(serial, record.getNotBefore());
+        }
+        assertNull(snapshot.get(1, BigInteger.valueOf(2)));
+        assertNull(snapshot.get(1, BigInteger.valueOf(0x81)));
+    }
+
+    @Test
+    public void testWithUpdates() {
+        CertStatusSnapshot.Builder builder = new CertStatusSnapshot.Builder();
+        builder.add(1, "0a", 10, 20, false, 0, 0, 0, "p1");
+        builder.add(1, "0b", 11, 21, false, 0, 0, 0, "p1");
+        CertStatusSnapshot snapshot = builder.build();
+        assertEquals(2, snapshot.size());
+
+        // revoke an existing entry
+        CertStatusSnapshot.CertStatusRecord revoked = new CertStatusSnapshot.CertStatusRecord(
+                1, BigInteger.valueOf(0x0a), 10, 20, true, 1, 15, 14, "p1");
+        CertStatusSnapshot snapshot2 = snapshot.withUpdates(Collections.singletonList(revoked));
+        assertSame(snapshot, snapshot2);
+        assertEquals(2, snapshot2.size());
+        assertTrue(snapshot2.get(1, BigInteger.valueOf(0x0a)).isRevoked());
+        assertFalse(snapshot2.get(1, BigInteger.valueOf(0x0b)).isRevoked());
+
+        // add new entries, one of them twice
+        CertStatusSnapshot.CertStatusRecord added = new CertStatusSnapshot.CertStatusRecord(
+                2, BigInteger.valueOf(0x0c), 12, 22, false, 0, 0, 0, null);
+        CertStatusSnapshot snapshot3 = snapshot2.withUpdates(Arrays.asList(added, added));
+        assertEquals(3, snapshot3.size());
+        assertEquals(12, snapshot3.get(2, BigInteger.valueOf(0x0c)).getNotBefore());
+        assertEquals(3, snapshot3.withUpdates(Collections.singletonList(added)).size());
+    }
+
+}